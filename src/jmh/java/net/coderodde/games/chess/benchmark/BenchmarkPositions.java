@@ -0,0 +1,55 @@
+package net.coderodde.games.chess.benchmark;
+
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Fen;
+
+/**
+ * This class holds the fixed corpus of positions all the benchmarks run on,
+ * so that the results of different builds are comparable. The corpus mixes
+ * the well-known perft positions with quiet middlegames and endgames.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class BenchmarkPositions {
+    
+    /**
+     * The number of corpus positions. A constant, so that it may be used in
+     * the benchmark annotations.
+     */
+    public static final int SIZE = 10;
+    
+    /**
+     * The FENs of the corpus positions.
+     */
+    public static final String[] FENS = {
+        Fen.START_POSITION,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 " +
+                "w - - 0 10",
+        "r1bq1rk1/pp2bppp/2n1pn2/2pp4/3P4/2PBPN2/PP1N1PPP/R1BQ1RK1 w - - 0 8",
+        "2r3k1/pp3ppp/4p3/3pP3/3P4/P4N2/1P3PPP/2R3K1 b - - 0 24",
+        "8/5pk1/6p1/7p/7P/6P1/5PK1/8 w - - 0 50",
+        "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1",
+    };
+    
+    private BenchmarkPositions() {}
+    
+    /**
+     * Parses the corpus into new game states.
+     * 
+     * @return the corpus positions.
+     */
+    public static ChessGameState[] load() {
+        final ChessGameState[] states = new ChessGameState[FENS.length];
+        
+        for (int i = 0; i < FENS.length; ++i) {
+            states[i] = Fen.parse(FENS[i]);
+        }
+        
+        return states;
+    }
+}
@@ -0,0 +1,31 @@
+package net.coderodde.games.chess.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, so that every result 
+ * comes with its allocation rate. Accepts the usual JMH command line 
+ * options, for example a benchmark name pattern or {@code -f 1 -wi 3}.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class Benchmarks {
+    
+    private Benchmarks() {}
+    
+    public static void main(final String[] args) 
+    throws CommandLineOptionException, RunnerException {
+        final Options options = 
+                new OptionsBuilder().parent(new CommandLineOptions(args))
+                                    .addProfiler(GCProfiler.class)
+                                    .build();
+        new Runner(options).run();
+    }
+}
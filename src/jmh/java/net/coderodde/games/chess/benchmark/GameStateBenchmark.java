@@ -0,0 +1,95 @@
+package net.coderodde.games.chess.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.ChessPiece;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the construction and the whole-board scans of
+ * {@link ChessGameState}.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GameStateBenchmark {
+    
+    private ChessGameState[] positions;
+    private ChessGameState copy;
+    private ChessPiece[][] board;
+    
+    @Setup
+    public void setUp() {
+        positions = BenchmarkPositions.load();
+        copy = new ChessGameState();
+        board = new ChessPiece[8][8];
+    }
+    
+    @Benchmark
+    public ChessGameState construct() {
+        return new ChessGameState();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkPositions.SIZE)
+    public ChessGameState copyFrom() {
+        for (final ChessGameState position : positions) {
+            copy.copyFrom(position);
+        }
+        
+        return copy;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkPositions.SIZE)
+    public int checkVictory() {
+        int victories = 0;
+        
+        for (final ChessGameState position : positions) {
+            if (position.checkVictory().isGameOver()) {
+                ++victories;
+            }
+        }
+        
+        return victories;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkPositions.SIZE)
+    public int scanSquares() {
+        int whitePieces = 0;
+        
+        for (final ChessGameState position : positions) {
+            for (int square = 0; square < 64; ++square) {
+                final ChessPiece piece = position.getPiece(square);
+                
+                if (piece != null && piece.getColor() == ChessColor.WHITE) {
+                    ++whitePieces;
+                }
+            }
+        }
+        
+        return whitePieces;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkPositions.SIZE)
+    public ChessPiece[][] copyTo() {
+        for (final ChessGameState position : positions) {
+            position.copyTo(board);
+        }
+        
+        return board;
+    }
+}
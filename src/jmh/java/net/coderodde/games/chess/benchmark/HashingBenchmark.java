@@ -0,0 +1,89 @@
+package net.coderodde.games.chess.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Zobrist;
+import net.coderodde.games.chess.search.TranspositionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the computation of the Zobrist keys from scratch and the probes 
+ * and stores of the transposition table. The incremental key maintenance is
+ * covered by {@link MakeUnmakeBenchmark}.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HashingBenchmark {
+    
+    private static final int KEYS = 1024;
+    
+    private ChessGameState[] positions;
+    private final long[] keys = new long[KEYS];
+    private TranspositionTable transpositionTable;
+    
+    @Setup
+    public void setUp() {
+        positions = BenchmarkPositions.load();
+        transpositionTable = new TranspositionTable();
+        long seed = 0x9e3779b97f4a7c15L;
+        
+        for (int i = 0; i < KEYS; ++i) {
+            // SplitMix64, so that the keys are the same on every run.
+            seed += 0x9e3779b97f4a7c15L;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            keys[i] = z ^ (z >>> 31);
+            
+            if ((i & 1) == 0) {
+                // Half of the probes hit.
+                transpositionTable.store(keys[i], 0, i, 5, 
+                                         TranspositionTable.BOUND_EXACT);
+            }
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkPositions.SIZE)
+    public long computeKey() {
+        long hash = 0L;
+        
+        for (final ChessGameState position : positions) {
+            hash ^= Zobrist.computeKey(position);
+        }
+        
+        return hash;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public long probe() {
+        long hash = 0L;
+        
+        for (final long key : keys) {
+            hash ^= transpositionTable.probe(key);
+        }
+        
+        return hash;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void store() {
+        for (int i = 0; i < KEYS; ++i) {
+            transpositionTable.store(keys[i], 0, i, 5, 
+                                     TranspositionTable.BOUND_LOWER);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package net.coderodde.games.chess.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.MoveGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a single {@link ChessGameState#makeMove(int)} followed by
+ * {@link ChessGameState#unmakeMove()}. A fixed number of moves is drawn 
+ * round robin from the legal moves of the corpus positions.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MakeUnmakeBenchmark {
+    
+    private static final int MOVES = 256;
+    
+    private final ChessGameState[] owners = new ChessGameState[MOVES];
+    private final int[] moves = new int[MOVES];
+    
+    @Setup
+    public void setUp() {
+        final ChessGameState[] positions = BenchmarkPositions.load();
+        final int[][] legalMoves = new int[positions.length][];
+        final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        
+        for (int i = 0; i < positions.length; ++i) {
+            final int count = 
+                    MoveGenerator.generateLegalMoves(positions[i], buffer);
+            legalMoves[i] = new int[count];
+            System.arraycopy(buffer, 0, legalMoves[i], 0, count);
+        }
+        
+        for (int i = 0; i < MOVES; ++i) {
+            final int position = i % positions.length;
+            final int[] candidates = legalMoves[position];
+            owners[i] = positions[position];
+            moves[i] = candidates[(i / positions.length) % 
+                                  candidates.length];
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(MOVES)
+    public long makeUnmake() {
+        long keys = 0L;
+        
+        for (int i = 0; i < MOVES; ++i) {
+            final ChessGameState state = owners[i];
+            state.makeMove(moves[i]);
+            keys ^= state.getZobristKey();
+            state.unmakeMove();
+        }
+        
+        return keys;
+    }
+}
@@ -0,0 +1,71 @@
+package net.coderodde.games.chess.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.MoveGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the legal move generation of a single position.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoveGenerationBenchmark {
+    
+    private ChessGameState[] positions;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    
+    @Setup
+    public void setUp() {
+        positions = BenchmarkPositions.load();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkPositions.SIZE)
+    public int generateLegalMoves() {
+        int total = 0;
+        
+        for (final ChessGameState position : positions) {
+            total += MoveGenerator.generateLegalMoves(position, moves);
+        }
+        
+        return total;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkPositions.SIZE)
+    public int generateLegalCaptures() {
+        int total = 0;
+        
+        for (final ChessGameState position : positions) {
+            total += MoveGenerator.generateLegalCaptures(position, moves);
+        }
+        
+        return total;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkPositions.SIZE)
+    public int isInCheck() {
+        int checks = 0;
+        
+        for (final ChessGameState position : positions) {
+            if (MoveGenerator.isInCheck(position)) {
+                ++checks;
+            }
+        }
+        
+        return checks;
+    }
+}
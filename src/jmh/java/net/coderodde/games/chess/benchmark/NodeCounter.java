@@ -0,0 +1,26 @@
+package net.coderodde.games.chess.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the nodes visited by a benchmark, which JMH reports as a secondary
+ * result in nodes per time unit.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class NodeCounter {
+    
+    public long nodes;
+    
+    @Setup(Level.Iteration)
+    public void reset() {
+        nodes = 0L;
+    }
+}
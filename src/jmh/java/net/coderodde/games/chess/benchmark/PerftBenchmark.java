@@ -0,0 +1,53 @@
+package net.coderodde.games.chess.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Perft;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the perft of the corpus positions, reporting the move generation
+ * and make/unmake throughput in nodes per second.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PerftBenchmark {
+    
+    @Param({ "3" })
+    public int depth;
+    
+    private Perft[] perfts;
+    
+    @Setup
+    public void setUp() {
+        final ChessGameState[] positions = BenchmarkPositions.load();
+        perfts = new Perft[positions.length];
+        
+        for (int i = 0; i < positions.length; ++i) {
+            perfts[i] = new Perft(positions[i]);
+        }
+    }
+    
+    @Benchmark
+    public long perft(final NodeCounter counter) {
+        long nodes = 0L;
+        
+        for (final Perft perft : perfts) {
+            nodes += perft.perft(depth);
+        }
+        
+        counter.nodes += nodes;
+        return nodes;
+    }
+}
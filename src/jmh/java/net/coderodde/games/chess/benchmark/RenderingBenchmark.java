@@ -0,0 +1,85 @@
+package net.coderodde.games.chess.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import net.coderodde.games.chess.ChessCanvas;
+import net.coderodde.games.chess.ChessGameState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures {@link ChessCanvas#update(java.awt.Graphics)} rendering into an
+ * offscreen image, both for the whole canvas and for a single cell as
+ * after a hover change.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderingBenchmark {
+    
+    private static final int CANVAS_SIZE = 440;
+    
+    private ChessCanvas canvas;
+    private ChessGameState[] positions;
+    private int positionIndex;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    
+    @Setup
+    public void setUp() {
+        canvas = new ChessCanvas();
+        canvas.setSize(CANVAS_SIZE, CANVAS_SIZE);
+        positions = BenchmarkPositions.load();
+        canvas.showGameState(positions[1]);
+        canvas.setStatusText("depth 12  +0.35  e2a6 b4c3 d2c3");
+        image = new BufferedImage(CANVAS_SIZE, 
+                                  CANVAS_SIZE, 
+                                  BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        
+        // Warm the glyph and board caches.
+        canvas.update(graphics);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+    
+    @Benchmark
+    public BufferedImage updateFull() {
+        graphics.setClip(0, 0, CANVAS_SIZE, CANVAS_SIZE);
+        canvas.update(graphics);
+        return image;
+    }
+    
+    @Benchmark
+    public BufferedImage updateCell() {
+        graphics.setClip(CANVAS_SIZE / 2, CANVAS_SIZE / 2, 40, 40);
+        canvas.update(graphics);
+        return image;
+    }
+    
+    /**
+     * Measures switching to the next corpus position, which diffs the boards
+     * and marks the changed cells for repainting.
+     */
+    @Benchmark
+    public ChessCanvas showGameState() {
+        positionIndex = (positionIndex + 1) % positions.length;
+        canvas.showGameState(positions[positionIndex]);
+        return canvas;
+    }
+}
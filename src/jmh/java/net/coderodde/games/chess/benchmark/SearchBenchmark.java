@@ -0,0 +1,66 @@
+package net.coderodde.games.chess.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.search.SearchEngine;
+import net.coderodde.games.chess.search.SearchLimits;
+import net.coderodde.games.chess.search.SearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures fixed-depth searches of the corpus positions, reporting the 
+ * search speed in nodes per second. The transposition table is cleared 
+ * before each iteration by using a new engine.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SearchBenchmark {
+    
+    @Param({ "6" })
+    public int depth;
+    
+    @Param({ "1" })
+    public int threads;
+    
+    private ChessGameState[] positions;
+    private SearchLimits limits;
+    private SearchEngine engine;
+    
+    @Setup(Level.Iteration)
+    public void setUp() {
+        positions = BenchmarkPositions.load();
+        limits = new SearchLimits().setMaximumDepth(depth);
+        engine = new SearchEngine(threads);
+    }
+    
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        engine.shutdown();
+    }
+    
+    @Benchmark
+    public int search(final NodeCounter counter) {
+        int moves = 0;
+        
+        for (final ChessGameState position : positions) {
+            final SearchResult result = engine.search(position, limits);
+            counter.nodes += result.getNodes();
+            moves ^= result.getBestMove();
+        }
+        
+        return moves;
+    }
+}
@@ -1,22 +1,111 @@
 package net.coderodde.games.chess;
 
 import java.awt.BorderLayout;
-import java.awt.Canvas;
 import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Paths;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import net.coderodde.games.chess.analysis.BatchAnalyzer;
+import net.coderodde.games.chess.book.OpeningBookBuilder;
+import net.coderodde.games.chess.search.AsyncSearchEngine;
+import net.coderodde.games.chess.search.SearchEngine;
+import net.coderodde.games.chess.search.SearchLimits;
+import net.coderodde.games.chess.search.SearchListener;
+import net.coderodde.games.chess.search.SearchMetrics;
+import net.coderodde.games.chess.search.SearchResult;
+import net.coderodde.games.chess.store.GameStore;
+import net.coderodde.games.chess.tablebase.TablebaseGenerator;
+import net.coderodde.games.chess.tournament.SelfPlayRunner;
+import net.coderodde.games.chess.uci.UciServer;
+import net.coderodde.games.chess.uci.UciSession;
+import net.coderodde.games.chess.variant.VariantPerft;
 
 /**
  *
  * @author rodionefremov
  */
 public class App {
-
+    
+    /**
+     * The time the engine thinks about each of its moves in milliseconds.
+     */
+    private static final long ENGINE_MOVE_TIME_MILLIS = 3000L;
+    
+    /**
+     * The directory under the home directory of the user in which the games
+     * played against the engine are stored.
+     */
+    private static final String GAME_STORE_DIRECTORY = ".chess-games";
+    
+    /**
+     * The interval between two refreshes of the search metrics overlay in 
+     * milliseconds.
+     */
+    private static final int METRICS_REFRESH_MILLIS = 500;
+    
     public static void main(String[] args) {
+        if (args.length > 0) {
+            // The command line modes run without a display.
+            switch (args[0]) {
+                case "book":
+                    OpeningBookBuilder.main(args);
+                    return;
+                
+                case "tablebase":
+                    TablebaseGenerator.main(args);
+                    return;
+                
+                case "uci":
+                    UciSession.main(args);
+                    return;
+                
+                case "server":
+                    UciServer.main(args);
+                    return;
+                
+                case "variant-perft":
+                    VariantPerft.main(args);
+                    return;
+                
+                case "selfplay":
+                    SelfPlayRunner.main(args);
+                    return;
+                
+                case "games":
+                    GameStore.main(args);
+                    return;
+            }
+        }
+        
+        if (args.length > 0 || GraphicsEnvironment.isHeadless()) {
+            // The batch analysis runs without a display.
+            BatchAnalyzer.main(args);
+            return;
+        }
+        
+        // All the Swing components are created and touched on the event 
+        // dispatch thread only.
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                createAndShowGui();
+            }
+        });
+    }
+    
+    private static void createAndShowGui() {
         JFrame frame = new JFrame();
         JPanel panel = new JPanel();
-        ChessCanvas canvas = new ChessCanvas();
+        final ChessCanvas canvas = new ChessCanvas();
         panel.setLayout(new BorderLayout());
         panel.add(canvas, BorderLayout.CENTER);
         frame.getContentPane().add(panel);
@@ -27,9 +116,340 @@ public class App {
         putFrameToCenterOfScreen(frame);
         frame.setVisible(true);
         
-        canvas.getChessBoard()[1][2] = new ChessPiece(ChessColor.WHITE,
-                                                      ChessPieceType.BISHOP);
-        canvas.repaint();
+        // The games are stored as they are played, and an unfinished game 
+        // is resumed on the next start.
+        final GameStore store = openGameStore();
+        final int resumedGameId = findUnfinishedGame(store);
+        ChessGameState resumedState = null;
+        
+        if (resumedGameId != -1) {
+            // The game may not have survived in full; a new game is started 
+            // then.
+            try {
+                resumedState = store.resume(resumedGameId);
+            } catch (final IOException | RuntimeException ex) {
+                System.err.println("Resuming the last game failed: " + ex);
+            }
+        }
+        
+        final ChessGameState state = resumedState != null ?
+                                     resumedState :
+                                     new ChessGameState();
+        final int gameId = resumedState != null ?
+                           resumedGameId :
+                           createGame(store, state);
+        canvas.showGameState(state);
+        canvas.setStatusText("Your move");
+        
+        // The engine searches on its own threads and reports back to the 
+        // canvas through the event dispatch thread.
+        final AsyncSearchEngine engine = 
+                new AsyncSearchEngine(
+                        new SearchEngine(Runtime.getRuntime()
+                                                .availableProcessors()));
+        
+        // The user plays white by moving the pieces on the canvas, and the 
+        // engine replies with an animated move.
+        canvas.setMoveInputListener(new MoveInputListener() {
+            @Override
+            public void moveEntered(final int fromFile,
+                                    final int fromRank,
+                                    final int toFile,
+                                    final int toRank) {
+                final int move = findMove(state, 
+                                          Bitboards.square(fromFile, 
+                                                           fromRank), 
+                                          Bitboards.square(toFile, toRank));
+                
+                if (move == Move.NONE) {
+                    return;
+                }
+                
+                state.makeMove(move);
+                recordMove(store, gameId, move, state);
+                canvas.showGameState(state);
+                
+                if (showGameOver(canvas, store, gameId, state)) {
+                    engine.cancel();
+                } else if (engine.ponderHit(move)) {
+                    // The engine has been searching this position all 
+                    // along and answers from where it got.
+                    canvas.setMouseEnabled(false);
+                } else {
+                    playEngineMove(canvas, engine, store, gameId, state);
+                }
+            }
+        });
+        
+        if (!showGameOver(canvas, store, gameId, state)
+                && state.getSideToMove() == ChessColor.BLACK) {
+            // The engine did not get to store its move before the exit.
+            playEngineMove(canvas, engine, store, gameId, state);
+        }
+        
+        if (SearchMetrics.ENABLED) {
+            new Timer(METRICS_REFRESH_MILLIS, new ActionListener() {
+                @Override
+                public void actionPerformed(final ActionEvent e) {
+                    canvas.setOverlayLines(
+                            SearchMetrics.getInstance().getSummaryLines());
+                }
+            }).start();
+        }
+        
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(final WindowEvent e) {
+                engine.shutdown();
+                
+                if (store != null) {
+                    try {
+                        store.close();
+                    } catch (final IOException ex) {
+                        System.err.println("Closing the game store " + 
+                                           "failed: " + ex);
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * Lets the engine search its move in {@code state} in the background, 
+     * then plays and animates it. The mouse input is disabled meanwhile.
+     */
+    private static void playEngineMove(final ChessCanvas canvas,
+                                       final AsyncSearchEngine engine,
+                                       final GameStore store,
+                                       final int gameId,
+                                       final ChessGameState state) {
+        canvas.setMouseEnabled(false);
+        engine.search(state,
+                      new SearchLimits().setTimeLimitMillis(
+                              ENGINE_MOVE_TIME_MILLIS),
+                      createEngineMoveListener(canvas, 
+                                               engine, 
+                                               store, 
+                                               gameId, 
+                                               state));
+    }
+    
+    /**
+     * Returns the listener that shows the progress of the search of the 
+     * engine, and then plays, animates and stores its move in 
+     * {@code state}. After the move the engine ponders on the reply it 
+     * expects, if any.
+     */
+    private static SearchListener createEngineMoveListener(
+            final ChessCanvas canvas,
+            final AsyncSearchEngine engine,
+            final GameStore store,
+            final int gameId,
+            final ChessGameState state) {
+        return new SwingSearchListener(new SearchListener() {
+            @Override
+            public void searchProgress(final SearchResult progress) {
+                final int ponderMove = engine.getPonderMove();
+                
+                if (ponderMove == Move.NONE) {
+                    canvas.setStatusText(describe(progress));
+                } else {
+                    canvas.setStatusText("Your move  (pondering on " + 
+                                         Move.toString(ponderMove) + 
+                                         ": " + describe(progress) + ")");
+                }
+            }
+            
+            @Override
+            public void searchFinished(final SearchResult result) {
+                final int move = result.getBestMove();
+                
+                if (move != Move.NONE) {
+                    final int from = Move.getFrom(move);
+                    final int to = Move.getTo(move);
+                    state.makeMove(move);
+                    recordMove(store, gameId, move, state);
+                    canvas.showGameState(state,
+                                         Bitboards.file(from),
+                                         Bitboards.rank(from),
+                                         Bitboards.file(to),
+                                         Bitboards.rank(to));
+                }
+                
+                canvas.setStatusText(describe(result));
+                
+                if (showGameOver(canvas, store, gameId, state)) {
+                    return;
+                }
+                
+                canvas.setMouseEnabled(true);
+                final int ponderMove = result.getPonderMove();
+                
+                if (move != Move.NONE && ponderMove != Move.NONE) {
+                    // Think on the time of the user about the expected 
+                    // reply, keeping the search going on a ponder hit.
+                    engine.ponder(state,
+                                  ponderMove,
+                                  new SearchLimits().setTimeLimitMillis(
+                                          ENGINE_MOVE_TIME_MILLIS),
+                                  createEngineMoveListener(canvas,
+                                                           engine,
+                                                           store,
+                                                           gameId,
+                                                           state));
+                }
+            }
+        });
+    }
+    
+    /**
+     * Returns the legal move of {@code state} from the square {@code from}
+     * to the square {@code to}, promoting to a queen, or 
+     * {@link Move#NONE}.
+     */
+    private static int findMove(final ChessGameState state,
+                                final int from,
+                                final int to) {
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        final int moveCount = MoveGenerator.generateLegalMoves(state, moves);
+        
+        for (int i = 0; i < moveCount; ++i) {
+            final int move = moves[i];
+            
+            if (Move.getFrom(move) == from 
+                    && Move.getTo(move) == to
+                    && (!Move.isPromotion(move) 
+                        || Move.getPromotion(move) == ChessPieceType.QUEEN)) {
+                return move;
+            }
+        }
+        
+        return Move.NONE;
+    }
+    
+    /**
+     * Shows the result on the status line if the game is over.
+     * 
+     * @return {@code true} if the game is over.
+     */
+    private static boolean showGameOver(final ChessCanvas canvas,
+                                        final GameStore store,
+                                        final int gameId,
+                                        final ChessGameState state) {
+        final GameResult result = state.checkVictory();
+        
+        if (!result.isGameOver()) {
+            return false;
+        }
+        
+        if (store != null && gameId != -1) {
+            try {
+                store.finishGame(gameId, result);
+            } catch (final IOException | IllegalStateException ex) {
+                System.err.println("Storing the game result failed: " + ex);
+            }
+        }
+        
+        canvas.setMouseEnabled(false);
+        canvas.setStatusText("Game over: " + result);
+        return true;
+    }
+    
+    /**
+     * Opens the game store in the home directory of the user, or returns 
+     * {@code null} if it cannot be opened, in which case the games are not 
+     * stored.
+     */
+    private static GameStore openGameStore() {
+        try {
+            return new GameStore(Paths.get(System.getProperty("user.home"),
+                                           GAME_STORE_DIRECTORY));
+        } catch (final IOException ex) {
+            System.err.println("Opening the game store failed: " + ex);
+            return null;
+        }
+    }
+    
+    /**
+     * Returns the ID of the last stored game if it is unfinished, or -1.
+     */
+    private static int findUnfinishedGame(final GameStore store) {
+        if (store == null) {
+            return -1;
+        }
+        
+        final int gameCount = store.getGameCount();
+        
+        if (gameCount == 0 
+                || store.getGameInfo(gameCount - 1).isFinished()) {
+            return -1;
+        }
+        
+        return gameCount - 1;
+    }
+    
+    /**
+     * Starts storing a new game from {@code state}, returning its ID, or -1 
+     * if the game is not stored.
+     */
+    private static int createGame(final GameStore store,
+                                  final ChessGameState state) {
+        if (store == null) {
+            return -1;
+        }
+        
+        try {
+            return store.createGame(state, 
+                                    System.getProperty("user.name"), 
+                                    "Engine");
+        } catch (final IOException ex) {
+            System.err.println("Storing the new game failed: " + ex);
+            return -1;
+        }
+    }
+    
+    /**
+     * Appends the move {@code move} leading to {@code state} to the stored 
+     * game {@code gameId}, if any. The move is written through to the log 
+     * without an {@code fsync}, so that it survives the crash of the JVM 
+     * and is still cheap enough for the event dispatch thread.
+     */
+    private static void recordMove(final GameStore store,
+                                   final int gameId,
+                                   final int move,
+                                   final ChessGameState state) {
+        if (store == null || gameId == -1) {
+            return;
+        }
+        
+        try {
+            store.recordMove(gameId, move, state);
+            store.flush();
+        } catch (final IOException ex) {
+            System.err.println("Storing the move failed: " + ex);
+        }
+    }
+    
+    /**
+     * Returns a one-line summary of the search result {@code result}.
+     */
+    private static String describe(final SearchResult result) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("depth ").append(result.getDepth()).append("  ");
+        
+        if (result.isMateScore()) {
+            sb.append('#').append(result.getMovesToMate());
+        } else {
+            sb.append(String.format("%+.2f", result.getScore() / 100.0));
+        }
+        
+        sb.append(" ");
+        
+        for (final int move : result.getPrincipalVariation()) {
+            sb.append(' ').append(Move.toString(move));
+        }
+        
+        return sb.toString();
     }
     
     private static void putFrameToCenterOfScreen(final JFrame frame) {
@@ -0,0 +1,362 @@
+package net.coderodde.games.chess;
+
+/**
+ * This class contains the constants and helper methods for working with 
+ * 64-bit bitboards. Bit {@code i} of a bitboard corresponds to the square
+ * {@code i}, where square {@code 0} is <i>a1</i>, square {@code 7} is 
+ * <i>h1</i> and square {@code 63} is <i>h8</i>.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class Bitboards {
+    
+    /**
+     * The width and height of the standard chess board.
+     */
+    public static final int BOARD_SIZE = 8;
+    
+    /**
+     * The total number of squares on the standard chess board.
+     */
+    public static final int NUMBER_OF_SQUARES = BOARD_SIZE * BOARD_SIZE;
+    
+    /**
+     * The value denoting an absent square.
+     */
+    public static final int NO_SQUARE = -1;
+    
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    
+    public static final long RANK_1 = 0xffL;
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_4 = RANK_1 << 24;
+    public static final long RANK_5 = RANK_1 << 32;
+    public static final long RANK_7 = RANK_1 << 48;
+    public static final long RANK_8 = RANK_1 << 56;
+    
+    /**
+     * The light squares, such as <i>b1</i> and <i>h1</i>.
+     */
+    public static final long LIGHT_SQUARES = 0x55aa55aa55aa55aaL;
+    
+    /**
+     * The direction indices of the sliding rays. The first four directions
+     * increase the square index, the last four decrease it.
+     */
+    private static final int NORTH      = 0;
+    private static final int EAST       = 1;
+    private static final int NORTH_EAST = 2;
+    private static final int NORTH_WEST = 3;
+    private static final int SOUTH      = 4;
+    private static final int WEST       = 5;
+    private static final int SOUTH_WEST = 6;
+    private static final int SOUTH_EAST = 7;
+    
+    private static final int[] DIRECTION_FILE_DELTAS = 
+            { 0, 1,  1, -1,  0, -1, -1,  1 };
+    
+    private static final int[] DIRECTION_RANK_DELTAS = 
+            { 1, 0,  1,  1, -1,  0, -1, -1 };
+    
+    /**
+     * The squares reachable from each square in each direction on an empty 
+     * board, excluding the square itself.
+     */
+    private static final long[][] RAYS = new long[8][NUMBER_OF_SQUARES];
+    
+    private static final long[] KNIGHT_ATTACKS = new long[NUMBER_OF_SQUARES];
+    private static final long[] KING_ATTACKS   = new long[NUMBER_OF_SQUARES];
+    
+    /**
+     * The pawn attacks indexed by the color ordinal of the pawn and its 
+     * square.
+     */
+    private static final long[][] PAWN_ATTACKS = 
+            new long[2][NUMBER_OF_SQUARES];
+    
+    /**
+     * The squares strictly between two squares lying on a common line, or 
+     * zero if the squares are not aligned.
+     */
+    private static final long[][] BETWEEN = 
+            new long[NUMBER_OF_SQUARES][NUMBER_OF_SQUARES];
+    
+    /**
+     * The entire line through two aligned squares, or zero if the squares are
+     * not aligned.
+     */
+    private static final long[][] LINE = 
+            new long[NUMBER_OF_SQUARES][NUMBER_OF_SQUARES];
+    
+    static {
+        for (int square = 0; square < NUMBER_OF_SQUARES; ++square) {
+            final int file = file(square);
+            final int rank = rank(square);
+            
+            for (int direction = 0; direction < 8; ++direction) {
+                long ray = 0L;
+                int f = file + DIRECTION_FILE_DELTAS[direction];
+                int r = rank + DIRECTION_RANK_DELTAS[direction];
+                
+                while (onBoard(f, r)) {
+                    ray |= bit(square(f, r));
+                    f += DIRECTION_FILE_DELTAS[direction];
+                    r += DIRECTION_RANK_DELTAS[direction];
+                }
+                
+                RAYS[direction][square] = ray;
+            }
+            
+            KNIGHT_ATTACKS[square] = 
+                    leaperAttacks(file, rank, new int[][] {
+                        { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 },
+                        { -1, -2 }, { -2, -1 }, { -2, 1 }, { -1, 2 }
+                    });
+            
+            KING_ATTACKS[square] = 
+                    leaperAttacks(file, rank, new int[][] {
+                        { 0, 1 }, { 1, 1 }, { 1, 0 }, { 1, -1 },
+                        { 0, -1 }, { -1, -1 }, { -1, 0 }, { -1, 1 }
+                    });
+            
+            PAWN_ATTACKS[ChessColor.WHITE.ordinal()][square] = 
+                    leaperAttacks(file, rank, new int[][] { 
+                        { -1, 1 }, { 1, 1 } 
+                    });
+            
+            PAWN_ATTACKS[ChessColor.BLACK.ordinal()][square] = 
+                    leaperAttacks(file, rank, new int[][] { 
+                        { -1, -1 }, { 1, -1 } 
+                    });
+        }
+        
+        for (int square = 0; square < NUMBER_OF_SQUARES; ++square) {
+            for (int direction = 0; direction < 8; ++direction) {
+                final int opposite = (direction + 4) & 7;
+                long ray = RAYS[direction][square];
+                
+                while (ray != 0L) {
+                    final int target = lowestSquare(ray);
+                    ray &= ray - 1;
+                    
+                    BETWEEN[square][target] = RAYS[direction][square] &
+                                              RAYS[opposite][target];
+                    LINE[square][target] = RAYS[direction][square] |
+                                           RAYS[opposite][square]  |
+                                           bit(square);
+                }
+            }
+        }
+    }
+    
+    private Bitboards() {}
+    
+    public static long knightAttacks(final int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+    
+    public static long kingAttacks(final int square) {
+        return KING_ATTACKS[square];
+    }
+    
+    /**
+     * Returns the squares attacked by a pawn of color {@code color} standing 
+     * at {@code square}.
+     * 
+     * @param color  the color of the pawn.
+     * @param square the square of the pawn.
+     * @return the attacked squares.
+     */
+    public static long pawnAttacks(final ChessColor color, final int square) {
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+    
+    static long pawnAttacks(final int colorIndex, final int square) {
+        return PAWN_ATTACKS[colorIndex][square];
+    }
+    
+    /**
+     * Returns the squares attacked by a bishop standing at {@code square} 
+     * when the board occupancy is {@code occupancy}.
+     * 
+     * @param square    the square of the bishop.
+     * @param occupancy the occupied squares.
+     * @return the attacked squares.
+     */
+    public static long bishopAttacks(final int square, final long occupancy) {
+        return positiveRayAttacks(NORTH_EAST, square, occupancy) |
+               positiveRayAttacks(NORTH_WEST, square, occupancy) |
+               negativeRayAttacks(SOUTH_EAST, square, occupancy) |
+               negativeRayAttacks(SOUTH_WEST, square, occupancy);
+    }
+    
+    /**
+     * Returns the squares attacked by a rook standing at {@code square} when 
+     * the board occupancy is {@code occupancy}.
+     * 
+     * @param square    the square of the rook.
+     * @param occupancy the occupied squares.
+     * @return the attacked squares.
+     */
+    public static long rookAttacks(final int square, final long occupancy) {
+        return positiveRayAttacks(NORTH, square, occupancy) |
+               positiveRayAttacks(EAST,  square, occupancy) |
+               negativeRayAttacks(SOUTH, square, occupancy) |
+               negativeRayAttacks(WEST,  square, occupancy);
+    }
+    
+    public static long queenAttacks(final int square, final long occupancy) {
+        return bishopAttacks(square, occupancy) | 
+               rookAttacks(square, occupancy);
+    }
+    
+    /**
+     * Returns the squares strictly between {@code from} and {@code to}, or 
+     * zero if the two squares do not share a rank, a file or a diagonal.
+     * 
+     * @param from the first square.
+     * @param to   the second square.
+     * @return the squares in between.
+     */
+    public static long between(final int from, final int to) {
+        return BETWEEN[from][to];
+    }
+    
+    /**
+     * Returns the full line passing through {@code from} and {@code to}, or 
+     * zero if the two squares are not aligned.
+     * 
+     * @param from the first square.
+     * @param to   the second square.
+     * @return the line through both squares.
+     */
+    public static long line(final int from, final int to) {
+        return LINE[from][to];
+    }
+    
+    /**
+     * Returns the index of the square at file {@code file} and rank 
+     * {@code rank}. Both arguments are zero-based.
+     * 
+     * @param file the file of the square, {@code 0} denoting the <i>a</i>-file.
+     * @param rank the rank of the square, {@code 0} denoting the first rank.
+     * @return the index of the square.
+     */
+    public static int square(final int file, final int rank) {
+        return (rank << 3) | file;
+    }
+    
+    public static int file(final int square) {
+        return square & 7;
+    }
+    
+    public static int rank(final int square) {
+        return square >>> 3;
+    }
+    
+    /**
+     * Returns the bitboard with only the bit of the square {@code square} set.
+     * 
+     * @param square the target square.
+     * @return the single-bit bitboard.
+     */
+    public static long bit(final int square) {
+        return 1L << square;
+    }
+    
+    /**
+     * Returns the index of the least significant set bit of 
+     * {@code bitboard}. The result is {@code 64} if {@code bitboard} is zero.
+     * 
+     * @param bitboard the bitboard to scan.
+     * @return the lowest square in the bitboard.
+     */
+    public static int lowestSquare(final long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+    
+    public static int count(final long bitboard) {
+        return Long.bitCount(bitboard);
+    }
+    
+    private static boolean onBoard(final int file, final int rank) {
+        return file >= 0 && file < BOARD_SIZE && rank >= 0 && rank < BOARD_SIZE;
+    }
+    
+    private static long leaperAttacks(final int file,
+                                      final int rank, 
+                                      final int[][] deltas) {
+        long attacks = 0L;
+        
+        for (final int[] delta : deltas) {
+            if (onBoard(file + delta[0], rank + delta[1])) {
+                attacks |= bit(square(file + delta[0], rank + delta[1]));
+            }
+        }
+        
+        return attacks;
+    }
+    
+    private static long positiveRayAttacks(final int direction, 
+                                           final int square,
+                                           final long occupancy) {
+        final long ray = RAYS[direction][square];
+        final long blockers = ray & occupancy;
+        
+        if (blockers == 0L) {
+            return ray;
+        }
+        
+        return ray ^ RAYS[direction][Long.numberOfTrailingZeros(blockers)];
+    }
+    
+    private static long negativeRayAttacks(final int direction, 
+                                           final int square,
+                                           final long occupancy) {
+        final long ray = RAYS[direction][square];
+        final long blockers = ray & occupancy;
+        
+        if (blockers == 0L) {
+            return ray;
+        }
+        
+        return ray ^ RAYS[direction][63 - Long.numberOfLeadingZeros(blockers)];
+    }
+    
+    /**
+     * Returns the algebraic name of the square, such as <i>e4</i>.
+     * 
+     * @param square the square index.
+     * @return the name of the square.
+     */
+    public static String squareName(final int square) {
+        return new String(new char[] { (char)('a' + file(square)), 
+                                       (char)('1' + rank(square)) });
+    }
+    
+    /**
+     * Parses the algebraic square name such as <i>e4</i>.
+     * 
+     * @param name the name of the square.
+     * @return the square index.
+     * @throws IllegalArgumentException if the name is not a valid square.
+     */
+    public static int parseSquare(final String name) {
+        if (name.length() != 2) {
+            throw new IllegalArgumentException(
+                    "Bad square name: \"" + name + "\".");
+        }
+        
+        final int file = name.charAt(0) - 'a';
+        final int rank = name.charAt(1) - '1';
+        
+        if (file < 0 || file >= BOARD_SIZE || rank < 0 || rank >= BOARD_SIZE) {
+            throw new IllegalArgumentException(
+                    "Bad square name: \"" + name + "\".");
+        }
+        
+        return square(file, rank);
+    }
+}
@@ -0,0 +1,34 @@
+package net.coderodde.games.chess;
+
+/**
+ * This interface defines the API for objects following the piece changes of
+ * a {@link Position}, such as incremental evaluators. Every change of the 
+ * board, including the ones made by {@link Position#makeMove(int)} and 
+ * {@link Position#unmakeMove()}, is reported as a sequence of piece 
+ * removals and additions; a moving piece is removed from its source square
+ * and added to its target square. The piece codes are the ones of 
+ * {@link ChessPiece}.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public interface BoardListener {
+    
+    /**
+     * Called after the piece {@code pieceCode} is placed on the square 
+     * {@code square}.
+     * 
+     * @param square    the square index.
+     * @param pieceCode the piece code.
+     */
+    void pieceAdded(int square, int pieceCode);
+    
+    /**
+     * Called after the piece {@code pieceCode} is removed from the square 
+     * {@code square}.
+     * 
+     * @param square    the square index.
+     * @param pieceCode the piece code.
+     */
+    void pieceRemoved(int square, int pieceCode);
+}
@@ -0,0 +1,46 @@
+package net.coderodde.games.chess;
+
+/**
+ * This interface defines the read-only view of a board of any size that a
+ * {@link ChessCanvas} renders. The files and the ranks are counted from 
+ * zero, starting from the <i>a</i>-file and the first rank.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public interface ChessBoardView {
+    
+    /**
+     * Returns the number of files of the board.
+     * 
+     * @return the board width.
+     */
+    int getBoardWidth();
+    
+    /**
+     * Returns the number of ranks of the board.
+     * 
+     * @return the board height.
+     */
+    int getBoardHeight();
+    
+    /**
+     * Returns the piece at the given file and rank, or {@code null} if the
+     * square is empty.
+     * 
+     * @param file the file index.
+     * @param rank the rank index.
+     * @return the piece at the square.
+     */
+    ChessPiece getPieceAt(int file, int rank);
+    
+    /**
+     * Returns the code of the piece at the given file and rank, or 
+     * {@link ChessPiece#NONE} if the square is empty.
+     * 
+     * @param file the file index.
+     * @param rank the rank index.
+     * @return the piece code at the square.
+     */
+    byte getPieceCodeAt(int file, int rank);
+}
@@ -1,17 +1,43 @@
 package net.coderodde.games.chess;
 
+import java.awt.BufferCapabilities;
 import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import javax.swing.Timer;
 
 /**
- * This class implements a canvas component rendering a chess board.
+ * This class implements a canvas component rendering a chess board. The 
+ * user may move the pieces of its color by dragging them or by clicking 
+ * them and then their target cells; the moves are reported to a 
+ * {@link MoveInputListener}. The moves of the other side may be animated 
+ * with {@link #showGameState(ChessBoardView, int, int, int, int)}.
+ * <p>
+ * All the changes are repainted by a frame loop running at a fixed rate 
+ * while there is something to repaint. A dragged or animated piece is a 
+ * sprite drawn over the cells, and each frame repaints only the regions the
+ * sprite left and entered over the cached board image.
  * 
  * @author Rodion "rodde" Efremov
  * @version 1.6 (Jun 21, 2016)
@@ -51,6 +77,55 @@ implements MouseListener, MouseMotionListener {
     
     private static final Color DEFAULT_BORDER_COLOR = Color.BLACK;
     
+    /**
+     * The font of the status line.
+     */
+    private static final Font STATUS_FONT = new Font("Verdana", Font.PLAIN, 12);
+    
+    /**
+     * The duration of a frame in milliseconds. The changes made within a 
+     * frame are repainted together.
+     */
+    private static final int FRAME_MILLIS = 16;
+    
+    /**
+     * The duration of a move animation in nanoseconds.
+     */
+    private static final long ANIMATION_NANOS = 200L * 1000L * 1000L;
+    
+    /**
+     * Whether to print the mouse tracking events to the standard output. Set
+     * with the system property {@code net.coderodde.games.chess.debug}.
+     */
+    private static final boolean DEBUG = 
+            Boolean.getBoolean("net.coderodde.games.chess.debug");
+    
+    /**
+     * The height of the status line area at the bottom of the canvas.
+     */
+    private static final int STATUS_LINE_HEIGHT = 16;
+    
+    /**
+     * The distance of the overlay from the corner of the canvas, and of its
+     * text from its edges, in pixels.
+     */
+    private static final int OVERLAY_MARGIN = 6;
+    
+    private static final Color OVERLAY_BACKGROUND_COLOR = 
+            new Color(0, 0, 0, 160);
+    
+    private static final Color OVERLAY_TEXT_COLOR = Color.WHITE;
+    
+    /**
+     * The thickness of the frame around the selected cell in pixels.
+     */
+    private static final int SELECTION_FRAME_THICKNESS = 3;
+    
+    /**
+     * The name of the font the piece glyphs are rendered with.
+     */
+    private static final String PIECE_FONT_NAME = "Verdana";
+    
     private static final Color DEFAULT_OWN_HIGHLIGHT_COLOR = Color.GREEN;
     private static final Color DEFAULT_ENEMY_HIGHLIGHT_COLOR = Color.ORANGE;
     
@@ -62,15 +137,124 @@ implements MouseListener, MouseMotionListener {
     
     private final int width;
     private final int height;
-    private final ChessPiece[][] chessBoard;
+    
+    /**
+     * The piece codes of the cells, row by row: the cell {@code (x, y)} is 
+     * at the index {@code y * width + x}.
+     */
+    private final byte[] chessBoard;
     private final ChessColor[][] highlightBoard;
     private ChessColor humanColor;
     
-    private int currentSelectedCellX; 
-    private int currentSelectedCellY;
+    /**
+     * The cell selected by a mouse click, or {@code -1} if there is none.
+     */
+    private int selectedCellX = -1;
+    private int selectedCellY = -1;
+    
+    /**
+     * The cell under the mouse pointer, or {@code -1} if there is none.
+     */
+    private int hoveredCellX = -1;
+    private int hoveredCellY = -1;
+    
+    /**
+     * The cell under the mouse pointer, reused by every mouse event.
+     */
+    private final Point pointerCell = new Point();
+    
+    /**
+     * The union of the regions changed since the last repaint request, or 
+     * an empty rectangle.
+     */
+    private final Rectangle dirtyRegion = new Rectangle();
+    
+    /**
+     * Drives the frame loop: advances the sprite and issues at most one 
+     * repaint of the dirty region per frame. Runs only while there is 
+     * something to repaint.
+     */
+    private final Timer frameTimer;
+    
+    /**
+     * The piece drawn at a pixel position instead of in its cell, because it
+     * is dragged or animated, or {@link ChessPiece#NONE}.
+     */
+    private byte spriteCode = ChessPiece.NONE;
     
-    private int previousSelectedCellX;
-    private int previousSelectedCellY;
+    /**
+     * The region the sprite is drawn at, or an empty rectangle.
+     */
+    private final Rectangle spriteBounds = new Rectangle();
+    
+    /**
+     * The index of the cell whose piece is not drawn because the sprite 
+     * stands for it, or {@code -1}.
+     */
+    private int hiddenCell = -1;
+    
+    // The state of the drag: the source cell, the pointer position and the
+    // offset of the pointer within the dragged piece.
+    private boolean dragging;
+    private int dragCellX;
+    private int dragCellY;
+    private int dragPointerX;
+    private int dragPointerY;
+    private int dragOffsetX;
+    private int dragOffsetY;
+    
+    // The state of the move animation: the source and target cells and the
+    // start time.
+    private boolean animating;
+    private int animationFromX;
+    private int animationFromY;
+    private int animationToX;
+    private int animationToY;
+    private long animationStartNanos;
+    
+    private MoveInputListener moveInputListener;
+    
+    /**
+     * The text shown at the bottom of the canvas, or {@code null}.
+     */
+    private String statusText;
+    
+    /**
+     * The lines of text shown in the overlay at the top left corner of the 
+     * canvas, or {@code null} if the overlay is hidden.
+     */
+    private List<String> overlayLines;
+    
+    /**
+     * The region covered by the overlay, or an empty rectangle.
+     */
+    private final Rectangle overlayBounds = new Rectangle();
+    
+    // The layout of the board, recomputed when the canvas is resized.
+    private int layoutWidth = -1;
+    private int layoutHeight = -1;
+    private int cellSize;
+    private int boardStartX;
+    private int boardStartY;
+    
+    /**
+     * The cached image of the static board, or {@code null} if it must be
+     * redrawn.
+     */
+    private BufferedImage boardImage;
+    
+    /**
+     * The cached piece glyphs at the current cell size, indexed by the piece
+     * codes.
+     */
+    private final BufferedImage[] glyphImages = 
+            new BufferedImage[ChessPiece.CODES];
+    
+    /**
+     * Whether the back buffer of the buffer strategy holds the previous 
+     * frame, so that rendering only the dirty region is enough.
+     */
+    private boolean backBufferValid;
     
     private volatile boolean disallowMouse;
     private volatile boolean disallowKeyboard;
@@ -86,7 +270,8 @@ implements MouseListener, MouseMotionListener {
                        final int height) {
         this.width = Math.max(1, width);
         this.height = Math.max(1, height);
-        this.chessBoard = new ChessPiece[this.height][this.width];
+        this.chessBoard = new byte[this.height * this.width];
+        Arrays.fill(chessBoard, ChessPiece.NONE);
         this.highlightBoard = new ChessColor[this.height][this.width];
         
         final int minimumWidth = (MINIMUM_CELL_SIZE + borderThickness) *
@@ -104,20 +289,216 @@ implements MouseListener, MouseMotionListener {
         setMinimumSize(new Dimension(minimumWidth, minimumHeight));
         setPreferredSize(new Dimension(preferredWidth, preferredHeight));
         
-        currentSelectedCellX = previousSelectedCellX = this.width / 2;
-        currentSelectedCellY = previousSelectedCellY = this.height / 2;
-        
         this.humanColor = ChessColor.WHITE;
         
+        this.frameTimer = new Timer(FRAME_MILLIS, new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                renderFrame();
+            }
+        });
+        
+        this.frameTimer.setCoalesce(true);
+        
+        addMouseListener(this);
         addMouseMotionListener(this);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(final ComponentEvent e) {
+                // The layout is recomputed on the next use.
+                layoutWidth = -1;
+            }
+        });
     }
     
     public ChessCanvas() {
         this(DEFAULT_BOARD_WIDTH, DEFAULT_BOARD_HEIGHT);
     }
     
-    public ChessPiece[][] getChessBoard() {
-        return chessBoard;
+    /**
+     * Returns the piece shown at the cell {@code (x, y)}, or {@code null} if
+     * the cell is empty.
+     * 
+     * @param x the column of the cell.
+     * @param y the row of the cell.
+     * @return the piece at the cell.
+     */
+    public ChessPiece getPieceAt(final int x, final int y) {
+        return ChessPiece.valueOf(chessBoard[y * width + x]);
+    }
+    
+    /**
+     * Copies the position of {@code gameState} to the board of this canvas
+     * and schedules a repaint. The board of the game state must have the 
+     * dimensions of this canvas. As in 
+     * {@link ChessGameState#copyTo(ChessPiece[][])}, the row {@code y} shows 
+     * the rank {@code y} and the column {@code x} the file counted from the 
+     * last one.
+     * 
+     * @param gameState the game state to render.
+     * @throws IllegalArgumentException if the board sizes differ.
+     */
+    public void showGameState(final ChessBoardView gameState) {
+        // A new position ends the drag and the animation of the old one.
+        clearSprite();
+        
+        if (gameState.getBoardWidth() != width 
+                || gameState.getBoardHeight() != height) {
+            throw new IllegalArgumentException(
+                    "Cannot show a " + gameState.getBoardWidth() + "x" + 
+                    gameState.getBoardHeight() + " board on a " + width + 
+                    "x" + height + " canvas.");
+        }
+        
+        // Repaint only the cells whose pieces changed.
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                final byte code = gameState.getPieceCodeAt(width - 1 - x, y);
+                
+                if (chessBoard[y * width + x] != code) {
+                    chessBoard[y * width + x] = code;
+                    markCellDirty(x, y);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Shows the position of {@code gameState} as 
+     * {@link #showGameState(ChessBoardView)} does, and animates the piece 
+     * arriving at {@code (toFile, toRank)} sliding there from 
+     * {@code (fromFile, fromRank)}. The other changes, such as the rook of a
+     * castling, are shown at once. Must be called on the event dispatch 
+     * thread.
+     * 
+     * @param gameState the game state to render.
+     * @param fromFile  the file of the source square of the move.
+     * @param fromRank  the rank of the source square of the move.
+     * @param toFile    the file of the target square of the move.
+     * @param toRank    the rank of the target square of the move.
+     * @throws IllegalArgumentException if the board sizes differ.
+     */
+    public void showGameState(final ChessBoardView gameState,
+                              final int fromFile,
+                              final int fromRank,
+                              final int toFile,
+                              final int toRank) {
+        showGameState(gameState);
+        
+        final int toX = width - 1 - toFile;
+        final byte code = chessBoard[toRank * width + toX];
+        
+        if (code == ChessPiece.NONE) {
+            return;
+        }
+        
+        animating           = true;
+        animationFromX      = width - 1 - fromFile;
+        animationFromY      = fromRank;
+        animationToX        = toX;
+        animationToY        = toRank;
+        animationStartNanos = System.nanoTime();
+        spriteCode          = code;
+        hiddenCell          = toRank * width + toX;
+        markCellDirty(toX, toRank);
+        updateLayout();
+        moveSprite(getCellX(animationFromX), getCellY(animationFromY));
+    }
+    
+    public MoveInputListener getMoveInputListener() {
+        return moveInputListener;
+    }
+    
+    public void setMoveInputListener(
+            final MoveInputListener moveInputListener) {
+        this.moveInputListener = moveInputListener;
+    }
+    
+    public boolean isMouseEnabled() {
+        return !disallowMouse;
+    }
+    
+    /**
+     * Enables or disables the mouse input, such as while the engine is 
+     * thinking. Disabling the input cancels the drag in progress.
+     * 
+     * @param mouseEnabled whether the mouse input is enabled.
+     */
+    public void setMouseEnabled(final boolean mouseEnabled) {
+        disallowMouse = !mouseEnabled;
+        
+        if (!mouseEnabled) {
+            hover(-1, -1);
+            select(-1, -1);
+            
+            if (dragging) {
+                clearSprite();
+            }
+        }
+    }
+    
+    public String getStatusText() {
+        return statusText;
+    }
+    
+    /**
+     * Sets the text shown at the bottom of the canvas, such as the progress 
+     * of the engine, and schedules a repaint. Must be called on the event 
+     * dispatch thread.
+     * 
+     * @param statusText the new status text, or {@code null} for none.
+     */
+    public void setStatusText(final String statusText) {
+        this.statusText = statusText;
+        markDirty(0, 
+                  getHeight() - STATUS_LINE_HEIGHT, 
+                  getWidth(), 
+                  STATUS_LINE_HEIGHT);
+    }
+    
+    public List<String> getOverlayLines() {
+        return overlayLines;
+    }
+    
+    /**
+     * Sets the lines of text shown in a translucent overlay over the top 
+     * left corner of the board, such as the search statistics, and schedules
+     * a repaint. Must be called on the event dispatch thread.
+     * 
+     * @param overlayLines the lines to show, or {@code null} to hide the 
+     *                     overlay.
+     */
+    public void setOverlayLines(final List<String> overlayLines) {
+        if (!overlayBounds.isEmpty()) {
+            markDirty(overlayBounds.x, 
+                      overlayBounds.y, 
+                      overlayBounds.width, 
+                      overlayBounds.height);
+        }
+        
+        this.overlayLines = overlayLines;
+        
+        if (overlayLines == null || overlayLines.isEmpty()) {
+            overlayBounds.setBounds(0, 0, 0, 0);
+            return;
+        }
+        
+        final FontMetrics metrics = getFontMetrics(STATUS_FONT);
+        int textWidth = 0;
+        
+        for (final String line : overlayLines) {
+            textWidth = Math.max(textWidth, metrics.stringWidth(line));
+        }
+        
+        overlayBounds.setBounds(OVERLAY_MARGIN, 
+                                OVERLAY_MARGIN,
+                                textWidth + 2 * OVERLAY_MARGIN,
+                                metrics.getHeight() * overlayLines.size() + 
+                                2 * OVERLAY_MARGIN);
+        markDirty(overlayBounds.x, 
+                  overlayBounds.y, 
+                  overlayBounds.width, 
+                  overlayBounds.height);
     }
     
     public Color getWhiteCellColor() {
@@ -136,142 +517,621 @@ implements MouseListener, MouseMotionListener {
         return humanPlayerColor;
     }
     
+    /**
+     * Sets the color of the pieces the user may move.
+     * 
+     * @param humanPlayerColor the color of the user.
+     */
+    public void setHumanPlayerColor(final ChessColor humanPlayerColor) {
+        this.humanPlayerColor = 
+                Objects.requireNonNull(humanPlayerColor, 
+                                       "The input color is null.");
+    }
+    
     public void setWhiteCellColor(final Color newWhiteCelColor) {
         if (newWhiteCelColor != null) {
             whiteCellColor = newWhiteCelColor;
+            boardImage = null;
+            repaint();
         }
     }
     
     public void setBlackCellColor(final Color newBlackCellColor) {
         if (newBlackCellColor != null) {
             blackCellColor = newBlackCellColor;
+            boardImage = null;
+            repaint();
         }
     }
     
     public void setBorderColor(final Color newBorderColor) {
         if (newBorderColor != null) {
             borderColor = newBorderColor;
+            boardImage = null;
+            repaint();
         }
     }
     
+    /**
+     * Creates the buffer strategy used for double buffering once the canvas
+     * becomes displayable.
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        createBufferStrategy(2);
+        backBufferValid = false;
+    }
+    
     @Override
     public void update(final Graphics g) {
-        final int availableCanvasWidth  = getWidth() - 
-                                          (width + 1) * borderThickness;
-        final int availableCanvasHeight = getHeight() -
-                                          (height + 1) * borderThickness;
+        // No background clearing: every pixel is covered by the board image.
+        paint(g);
+    }
+    
+    @Override
+    public void paint(final Graphics g) {
+        final BufferStrategy bufferStrategy = getBufferStrategy();
         
-        final int preliminaryCellWidth  = availableCanvasWidth / width;
-        final int preliminaryCellHeight = availableCanvasHeight / height; 
+        if (bufferStrategy == null) {
+            // Not displayable, for example when rendering to an offscreen
+            // image: draw directly.
+            render(g, g.getClipBounds());
+            return;
+        }
         
-        final int cellSize = Math.min(preliminaryCellWidth,
-                                      preliminaryCellHeight);
+        final Rectangle clip = g.getClipBounds();
+        final BufferCapabilities capabilities = 
+                bufferStrategy.getCapabilities();
         
-        final int totalChessBoardWidth = 
-                width * (cellSize + borderThickness) + borderThickness;
+        // A page-flipping back buffer does not necessarily hold the previous 
+        // frame, so only the full frame may be rendered into it.
+        final boolean partialRenderingAllowed = 
+                !capabilities.isPageFlipping() 
+                || capabilities.getFlipContents() == 
+                   BufferCapabilities.FlipContents.COPIED;
         
-        final int totalChessBoardHeight = 
-                height * (cellSize + borderThickness) + borderThickness;
+        do {
+            do {
+                final Graphics bufferGraphics = 
+                        bufferStrategy.getDrawGraphics();
+                
+                try {
+                    if (backBufferValid && partialRenderingAllowed) {
+                        render(bufferGraphics, clip);
+                    } else {
+                        render(bufferGraphics, null);
+                    }
+                } finally {
+                    bufferGraphics.dispose();
+                }
+                
+                backBufferValid = !bufferStrategy.contentsRestored();
+            } while (!backBufferValid);
+            
+            bufferStrategy.show();
+            
+            if (bufferStrategy.contentsLost()) {
+                backBufferValid = false;
+            }
+        } while (!backBufferValid);
+    }
+    
+    /**
+     * Renders the region {@code clip} of the canvas. The static board comes 
+     * from a cached image, and the highlights and pieces are drawn only for 
+     * the cells intersecting the region.
+     * 
+     * @param g    the graphics context to render to.
+     * @param clip the region to render, or {@code null} for the whole canvas.
+     */
+    private void render(final Graphics g, Rectangle clip) {
+        updateLayout();
         
-        // Compute the start coordinates so that the actual chess board is 
-        // painted at the center of the actual canvas.
-        final int startX = (getWidth() - totalChessBoardWidth) / 2;
-        final int startY = (getHeight() - totalChessBoardHeight) / 2;
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
         
-        Color currentCellColor = whiteCellColor;
+        g.setClip(clip);
+        
+        if (boardImage == null) {
+            boardImage = createBoardImage();
+        }
+        
+        g.drawImage(boardImage, 0, 0, null);
         
         for (int y = 0; y < height; ++y) {
+            final int cellY = getCellY(y);
+            
+            if (cellY >= clip.y + clip.height || cellY + cellSize <= clip.y) {
+                continue;
+            }
+            
             for (int x = 0; x < width; ++x) {
+                final int cellX = getCellX(x);
+                
+                if (cellX >= clip.x + clip.width 
+                        || cellX + cellSize <= clip.x) {
+                    continue;
+                }
+                
                 if (highlightBoard[y][x] != null) {
                     if (highlightBoard[y][x] == humanPlayerColor) {
                         g.setColor(ownHighlightColor);
                     } else {
                         g.setColor(enemyHighlightColor);
                     }
-                } else {
-                    g.setColor(currentCellColor);
+                    
+                    g.fillRect(cellX, cellY, cellSize, cellSize);
                 }
                 
-                g.fillRect(startX + borderThickness + 
-                                   (cellSize + borderThickness) * x, 
-                        
-                           startY + borderThickness + 
-                                   (cellSize + borderThickness) * y, 
-                           cellSize, 
-                           cellSize);
+                if (x == selectedCellX && y == selectedCellY) {
+                    g.setColor(ownHighlightColor);
+                    
+                    for (int i = 0; i < SELECTION_FRAME_THICKNESS; ++i) {
+                        g.drawRect(cellX + i, 
+                                   cellY + i, 
+                                   cellSize - 1 - 2 * i, 
+                                   cellSize - 1 - 2 * i);
+                    }
+                }
                 
-                currentCellColor = (currentCellColor == blackCellColor ? 
-                                    whiteCellColor : 
-                                    blackCellColor);
-            }
-
-            if (width % 2 == 0) {
-                currentCellColor = (currentCellColor == blackCellColor ? 
-                                    whiteCellColor : 
-                                    blackCellColor);
+                final byte code = chessBoard[y * width + x];
+                
+                if (code != ChessPiece.NONE && y * width + x != hiddenCell) {
+                    g.drawImage(getGlyphImage(code), 
+                                cellX,
+                                cellY, 
+                                null);
+                }
             }
         }
         
-        g.setColor(borderColor);
+        if (spriteCode != ChessPiece.NONE && spriteBounds.intersects(clip)) {
+            g.drawImage(getGlyphImage(spriteCode), 
+                        spriteBounds.x, 
+                        spriteBounds.y, 
+                        null);
+        }
         
-        // Draw the vertical borders:
-        for (int x = 0; x <= width; ++x) {
-            g.fillRect(startX + x * (cellSize + borderThickness), 
-                       startY,
-                       borderThickness,
-                       totalChessBoardHeight);
+        if (statusText != null 
+                && clip.y + clip.height > getHeight() - STATUS_LINE_HEIGHT) {
+            g.setColor(borderColor);
+            g.setFont(STATUS_FONT);
+            g.drawString(statusText, 
+                         borderThickness, 
+                         getHeight() - borderThickness);
         }
         
-        // Draw the horizontal borders:
-        for (int y = 0; y <= height; ++y) {
-            g.fillRect(startX,
-                       startY + y * (cellSize + borderThickness),
-                       totalChessBoardWidth,
-                       borderThickness);
+        if (overlayLines != null && overlayBounds.intersects(clip)) {
+            renderOverlay(g);
         }
+    }
+    
+    /**
+     * Draws the overlay lines over a translucent background.
+     */
+    private void renderOverlay(final Graphics g) {
+        g.setColor(OVERLAY_BACKGROUND_COLOR);
+        g.fillRect(overlayBounds.x, 
+                   overlayBounds.y, 
+                   overlayBounds.width, 
+                   overlayBounds.height);
+        g.setColor(OVERLAY_TEXT_COLOR);
+        g.setFont(STATUS_FONT);
         
-        g.setFont(new Font("Verdana", Font.PLAIN, 50));
+        final FontMetrics metrics = g.getFontMetrics();
+        int y = overlayBounds.y + OVERLAY_MARGIN + metrics.getAscent();
         
-        // Draw the chess pieces:
-        for (int y = 0; y < height; ++y) {
-            for (int x = 0; x < width; ++x) {
-                if (chessBoard[y][x] != null) {
-                    g.drawString(chessBoard[y][x].getRepresentationString(), 
-                                 startX + borderThickness + x * (cellSize + borderThickness),
-                                 startY + borderThickness + y * (cellSize + borderThickness));
+        for (final String line : overlayLines) {
+            g.drawString(line, overlayBounds.x + OVERLAY_MARGIN, y);
+            y += metrics.getHeight();
+        }
+    }
+    
+    /**
+     * Recomputes the cell size and the board position if the size of the 
+     * canvas has changed since the last call, dropping the cached images 
+     * drawn for the old size.
+     */
+    private void updateLayout() {
+        if (getWidth() == layoutWidth && getHeight() == layoutHeight) {
+            return;
+        }
+        
+        layoutWidth  = getWidth();
+        layoutHeight = getHeight();
+        cellSize = Math.max(1, computeCellSize());
+        
+        final int totalChessBoardWidth = 
+                width * (cellSize + borderThickness) + borderThickness;
+        
+        final int totalChessBoardHeight = 
+                height * (cellSize + borderThickness) + borderThickness;
+        
+        // Compute the start coordinates so that the actual chess board is 
+        // painted at the center of the actual canvas.
+        boardStartX = (layoutWidth - totalChessBoardWidth) / 2;
+        boardStartY = (layoutHeight - totalChessBoardHeight) / 2;
+        
+        boardImage = null;
+        Arrays.fill(glyphImages, null);
+    }
+    
+    private int getCellX(final int x) {
+        return boardStartX + borderThickness + 
+               (cellSize + borderThickness) * x;
+    }
+    
+    private int getCellY(final int y) {
+        return boardStartY + borderThickness + 
+               (cellSize + borderThickness) * y;
+    }
+    
+    /**
+     * Marks the single cell {@code (x, y)} for repainting.
+     */
+    private void markCellDirty(final int x, final int y) {
+        updateLayout();
+        markDirty(getCellX(x), getCellY(y), cellSize, cellSize);
+    }
+    
+    /**
+     * Adds the given region to the dirty region, which is repainted at the 
+     * end of the current frame.
+     */
+    private void markDirty(final int x, 
+                           final int y, 
+                           final int regionWidth,
+                           final int regionHeight) {
+        if (dirtyRegion.isEmpty()) {
+            dirtyRegion.setBounds(x, y, regionWidth, regionHeight);
+        } else {
+            dirtyRegion.add(x, y);
+            dirtyRegion.add(x + regionWidth, y + regionHeight);
+        }
+        
+        if (!frameTimer.isRunning()) {
+            frameTimer.start();
+        }
+    }
+    
+    /**
+     * Renders a frame: moves the sprite to its position at this time and 
+     * repaints the changed regions. Stops the frame loop once nothing moves.
+     */
+    private void renderFrame() {
+        if (dragging) {
+            moveSprite(dragPointerX - dragOffsetX, 
+                       dragPointerY - dragOffsetY);
+        } else if (animating) {
+            advanceAnimation();
+        }
+        
+        flushDirtyRegion();
+        
+        if (!dragging && !animating) {
+            frameTimer.stop();
+        }
+    }
+    
+    /**
+     * Moves the animated piece to its position at this time, and ends the 
+     * animation once the piece arrives.
+     */
+    private void advanceAnimation() {
+        final double t = (System.nanoTime() - animationStartNanos) / 
+                         (double) ANIMATION_NANOS;
+        
+        if (t >= 1.0) {
+            clearSprite();
+            return;
+        }
+        
+        // Ease in and out.
+        final double s = t * t * (3.0 - 2.0 * t);
+        final int fromX = getCellX(animationFromX);
+        final int fromY = getCellY(animationFromY);
+        moveSprite(fromX + (int) Math.round((getCellX(animationToX) - fromX)
+                                            * s),
+                   fromY + (int) Math.round((getCellY(animationToY) - fromY)
+                                            * s));
+    }
+    
+    /**
+     * Moves the sprite so that its top left corner is at {@code (x, y)}, 
+     * marking the regions it leaves and enters dirty.
+     */
+    private void moveSprite(final int x, final int y) {
+        if (spriteBounds.x == x 
+                && spriteBounds.y == y 
+                && spriteBounds.width == cellSize) {
+            return;
+        }
+        
+        if (!spriteBounds.isEmpty()) {
+            markDirty(spriteBounds.x, 
+                      spriteBounds.y, 
+                      spriteBounds.width, 
+                      spriteBounds.height);
+        }
+        
+        spriteBounds.setBounds(x, y, cellSize, cellSize);
+        markDirty(x, y, cellSize, cellSize);
+    }
+    
+    /**
+     * Ends the drag or the animation, showing the hidden piece in its cell 
+     * again.
+     */
+    private void clearSprite() {
+        if (hiddenCell >= 0) {
+            markCellDirty(hiddenCell % width, hiddenCell / width);
+        }
+        
+        if (!spriteBounds.isEmpty()) {
+            markDirty(spriteBounds.x, 
+                      spriteBounds.y, 
+                      spriteBounds.width, 
+                      spriteBounds.height);
+        }
+        
+        spriteBounds.setBounds(0, 0, 0, 0);
+        spriteCode = ChessPiece.NONE;
+        hiddenCell = -1;
+        dragging   = false;
+        animating  = false;
+    }
+    
+    /**
+     * Returns whether the cell {@code (x, y)} holds a piece the user may 
+     * move.
+     */
+    private boolean holdsOwnPiece(final int x, final int y) {
+        final ChessPiece piece = ChessPiece.valueOf(chessBoard[y * width + x]);
+        return piece != null && piece.getColor() == humanPlayerColor;
+    }
+    
+    /**
+     * Reports the move from the cell {@code (fromX, fromY)} to the cell 
+     * {@code (toX, toY)} to the move input listener.
+     */
+    private void fireMoveEntered(final int fromX, 
+                                 final int fromY, 
+                                 final int toX, 
+                                 final int toY) {
+        if (moveInputListener != null) {
+            moveInputListener.moveEntered(width - 1 - fromX, 
+                                          fromY, 
+                                          width - 1 - toX, 
+                                          toY);
+        }
+    }
+    
+    private void flushDirtyRegion() {
+        if (!dirtyRegion.isEmpty()) {
+            repaint(dirtyRegion.x, 
+                    dirtyRegion.y,
+                    dirtyRegion.width, 
+                    dirtyRegion.height);
+            dirtyRegion.setBounds(0, 0, 0, 0);
+        }
+    }
+    
+    private BufferedImage createCompatibleImage(final int imageWidth,
+                                                final int imageHeight,
+                                                final int transparency) {
+        final GraphicsConfiguration configuration = 
+                getGraphicsConfiguration();
+        
+        if (configuration == null) {
+            return new BufferedImage(imageWidth, 
+                                     imageHeight,
+                                     BufferedImage.TYPE_INT_ARGB);
+        }
+        
+        return configuration.createCompatibleImage(imageWidth, 
+                                                   imageHeight,
+                                                   transparency);
+    }
+    
+    /**
+     * Draws the static part of the board, the background, the cells and the
+     * borders, into an image of the size of the canvas.
+     */
+    private BufferedImage createBoardImage() {
+        final BufferedImage image = 
+                createCompatibleImage(Math.max(1, layoutWidth),
+                                      Math.max(1, layoutHeight),
+                                      Transparency.OPAQUE);
+        final Graphics g = image.getGraphics();
+        
+        try {
+            g.setColor(getBackground() != null ? getBackground() 
+                                               : Color.WHITE);
+            g.fillRect(0, 0, layoutWidth, layoutHeight);
+            
+            for (int y = 0; y < height; ++y) {
+                for (int x = 0; x < width; ++x) {
+                    g.setColor((x + y) % 2 == 0 ? whiteCellColor 
+                                                : blackCellColor);
+                    g.fillRect(getCellX(x), getCellY(y), cellSize, cellSize);
                 }
             }
+            
+            final int totalChessBoardWidth = 
+                    width * (cellSize + borderThickness) + borderThickness;
+            
+            final int totalChessBoardHeight = 
+                    height * (cellSize + borderThickness) + borderThickness;
+            
+            g.setColor(borderColor);
+            
+            // Draw the vertical borders:
+            for (int x = 0; x <= width; ++x) {
+                g.fillRect(boardStartX + x * (cellSize + borderThickness), 
+                           boardStartY,
+                           borderThickness,
+                           totalChessBoardHeight);
+            }
+            
+            // Draw the horizontal borders:
+            for (int y = 0; y <= height; ++y) {
+                g.fillRect(boardStartX,
+                           boardStartY + y * (cellSize + borderThickness),
+                           totalChessBoardWidth,
+                           borderThickness);
+            }
+        } finally {
+            g.dispose();
         }
+        
+        return image;
     }
     
-    @Override
-    public void paint(final Graphics g) {
-        update(g);
+    /**
+     * Returns the image of the piece of the code {@code code} at the current
+     * cell size, rendering it on the first request.
+     */
+    private BufferedImage getGlyphImage(final byte code) {
+        if (glyphImages[code] == null) {
+            glyphImages[code] = createGlyphImage(code);
+        }
+        
+        return glyphImages[code];
     }
-
+    
+    private BufferedImage createGlyphImage(final byte code) {
+        final BufferedImage image = createCompatibleImage(
+                cellSize, 
+                cellSize, 
+                Transparency.TRANSLUCENT);
+        final Graphics2D g = image.createGraphics();
+        
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                               RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(new Font(PIECE_FONT_NAME, 
+                               Font.PLAIN, 
+                               Math.max(1, cellSize * 4 / 5)));
+            g.setColor(Color.BLACK);
+            
+            final String glyph = ChessPiece.getRepresentationString(code);
+            final FontMetrics metrics = g.getFontMetrics();
+            
+            // Center the glyph in the cell.
+            g.drawString(glyph,
+                         (cellSize - metrics.stringWidth(glyph)) / 2,
+                         (cellSize - metrics.getHeight()) / 2 
+                                 + metrics.getAscent());
+        } finally {
+            g.dispose();
+        }
+        
+        return image;
+    }
+    
     @Override
-    public void mouseClicked(MouseEvent e) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void mouseClicked(final MouseEvent e) {
+        if (disallowMouse) {
+            return;
+        }
+        
+        convertCanvasCoordinatesToCellCoordinates(e.getX(), 
+                                                  e.getY(), 
+                                                  pointerCell);
+        
+        if (pointerCell.x < 0) {
+            select(-1, -1);
+        } else if (pointerCell.x == selectedCellX 
+                && pointerCell.y == selectedCellY) {
+            // A second click on the selected cell deselects it.
+            select(-1, -1);
+        } else if (selectedCellX >= 0 
+                && holdsOwnPiece(selectedCellX, selectedCellY)
+                && !holdsOwnPiece(pointerCell.x, pointerCell.y)) {
+            // A click on a target cell moves the selected piece there.
+            final int fromX = selectedCellX;
+            final int fromY = selectedCellY;
+            select(-1, -1);
+            fireMoveEntered(fromX, fromY, pointerCell.x, pointerCell.y);
+        } else {
+            select(pointerCell.x, pointerCell.y);
+        }
+        
+        if (DEBUG) {
+            System.out.println("Selected cell: " + selectedCellX + ", " + 
+                               selectedCellY);
+        }
     }
-
+    
+    /**
+     * Picks up the piece of the user under the pointer.
+     */
     @Override
-    public void mousePressed(MouseEvent e) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void mousePressed(final MouseEvent e) {
+        if (disallowMouse || e.getButton() != MouseEvent.BUTTON1) {
+            return;
+        }
+        
+        convertCanvasCoordinatesToCellCoordinates(e.getX(), 
+                                                  e.getY(), 
+                                                  pointerCell);
+        
+        if (pointerCell.x < 0 
+                || !holdsOwnPiece(pointerCell.x, pointerCell.y)) {
+            return;
+        }
+        
+        clearSprite();
+        dragging     = true;
+        dragCellX    = pointerCell.x;
+        dragCellY    = pointerCell.y;
+        dragPointerX = e.getX();
+        dragPointerY = e.getY();
+        dragOffsetX  = e.getX() - getCellX(dragCellX);
+        dragOffsetY  = e.getY() - getCellY(dragCellY);
+        spriteCode   = chessBoard[dragCellY * width + dragCellX];
+        hiddenCell   = dragCellY * width + dragCellX;
+        markCellDirty(dragCellX, dragCellY);
+        moveSprite(getCellX(dragCellX), getCellY(dragCellY));
     }
-
+    
+    /**
+     * Drops the dragged piece. A drop on another cell is reported as a move,
+     * and the piece returns to its cell until the listener shows the new 
+     * position.
+     */
     @Override
-    public void mouseReleased(MouseEvent e) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void mouseReleased(final MouseEvent e) {
+        if (!dragging) {
+            return;
+        }
+        
+        clearSprite();
+        convertCanvasCoordinatesToCellCoordinates(e.getX(), 
+                                                  e.getY(), 
+                                                  pointerCell);
+        
+        if (pointerCell.x >= 0 
+                && (pointerCell.x != dragCellX 
+                    || pointerCell.y != dragCellY)) {
+            select(-1, -1);
+            fireMoveEntered(dragCellX, 
+                            dragCellY, 
+                            pointerCell.x, 
+                            pointerCell.y);
+        }
     }
-
+    
     @Override
     public void mouseEntered(final MouseEvent e) {
         
     }
-
+    
     @Override
-    public void mouseExited(MouseEvent e) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void mouseExited(final MouseEvent e) {
+        hover(-1, -1);
     }
     
     private int computeCellSize() {
@@ -289,7 +1149,7 @@ implements MouseListener, MouseMotionListener {
      * board cell containing that pixels, and stores the result in 
      * {@code result}. If the input coordinates specify a pixel on the board 
      * border or outside of entire board, sets {@code result.x} to a negative
-     * value.
+     * value. Uses the cached layout and does not allocate.
      * 
      * @param x      the {@code x} coordinate of the pixel.
      * @param y      the {@code y} coordinate of the pixel.
@@ -298,81 +1158,118 @@ implements MouseListener, MouseMotionListener {
     private void convertCanvasCoordinatesToCellCoordinates(final int x, 
                                                            final int y,
                                                            final Point result) {
-        final int cellSize = computeCellSize();
+        updateLayout();
         
-        final int boardWidth = (cellSize + borderThickness) * width +
-                                borderThickness;
-        final int leftMarginWidth  = (getWidth() - boardWidth) / 2;
-        
-        if (x < leftMarginWidth + borderThickness) {
-            result.x = -1;
-            return;
-        }
+        final int boardX = x - boardStartX - borderThickness;
+        final int boardY = y - boardStartY - borderThickness;
         
-        if (x >= leftMarginWidth + boardWidth) {
+        if (boardX < 0 || boardY < 0) {
             result.x = -1;
             return;
         }
         
-        final int boardHeight = (cellSize + borderThickness) * height + 
-                                 borderThickness;
-        
-        final int topMarginHeight = (getHeight() - boardHeight) / 2;
-        
-        if (y < topMarginHeight + borderThickness) {
-            result.x = -1;
-            return;
-        }
+        final int tmp = cellSize + borderThickness;
+        final int cellX = boardX / tmp;
+        final int cellY = boardY / tmp;
         
-        if (y >= topMarginHeight + boardHeight) {
+        if (cellX >= width || cellY >= height) {
             result.x = -1;
             return;
         }
         
-        final int tmp = cellSize + borderThickness;
-        final int newx = (x - leftMarginWidth - borderThickness) % tmp;
-        final int newy = (y - topMarginHeight - borderThickness) % tmp;
-        
-        if (newx < cellSize && newy < cellSize) {
-            result.x = (x - leftMarginWidth - borderThickness) / tmp;
-            result.y = (y - topMarginHeight - borderThickness) / tmp;
+        if (boardX % tmp < cellSize && boardY % tmp < cellSize) {
+            result.x = cellX;
+            result.y = cellY;
             return;
         }
         
         result.x = -1;
     }
-
+    
     @Override
-    public void mouseDragged(MouseEvent e) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void mouseDragged(final MouseEvent e) {
+        // The pointer keeps hovering over the cells while dragging.
+        mouseMoved(e);
+        
+        if (dragging) {
+            // The sprite follows the pointer on the next frame, so the 
+            // events arriving within a frame cost one repaint.
+            dragPointerX = e.getX();
+            dragPointerY = e.getY();
+            
+            if (!frameTimer.isRunning()) {
+                frameTimer.start();
+            }
+        }
     }
-
+    
     @Override
-    public void mouseMoved(MouseEvent e) {
-        Point p = new Point();
+    public void mouseMoved(final MouseEvent e) {
+        if (disallowMouse) {
+            return;
+        }
         
-        convertCanvasCoordinatesToCellCoordinates(e.getX(), e.getY(), p);
+        convertCanvasCoordinatesToCellCoordinates(e.getX(), 
+                                                  e.getY(), 
+                                                  pointerCell);
         
-        if (p.x >= 0) {
-            if (p.x != previousSelectedCellX || p.y != previousSelectedCellY) {
-                highlight(p.x, p.y, humanColor);
-                highlight(previousSelectedCellX, previousSelectedCellY, null);
-                previousSelectedCellX = p.x;
-                previousSelectedCellY = p.y;
-                
-                System.out.println("repaint");
-                repaint();
-            }
+        if (pointerCell.x >= 0) {
+            hover(pointerCell.x, pointerCell.y);
         } else {
-            highlight(previousSelectedCellX, previousSelectedCellY, null);
-            repaint();
+            hover(-1, -1);
+        }
+    }
+    
+    /**
+     * Moves the hover highlight to the cell {@code (x, y)}, or removes it if
+     * {@code x} is negative. Does nothing if the hovered cell does not 
+     * change.
+     */
+    private void hover(final int x, final int y) {
+        if (x == hoveredCellX && y == hoveredCellY) {
+            return;
         }
         
+        if (hoveredCellX >= 0) {
+            highlight(hoveredCellX, hoveredCellY, null);
+        }
         
-        System.out.println(p);
+        if (x >= 0) {
+            highlight(x, y, humanColor);
+            hoveredCellX = x;
+            hoveredCellY = y;
+        } else {
+            hoveredCellX = -1;
+            hoveredCellY = -1;
+        }
+        
+        if (DEBUG) {
+            System.out.println("Hovered cell: " + hoveredCellX + ", " + 
+                               hoveredCellY);
+        }
+    }
+    
+    /**
+     * Selects the cell {@code (x, y)}, or clears the selection if {@code x} 
+     * is negative.
+     */
+    private void select(final int x, final int y) {
+        if (selectedCellX >= 0) {
+            markCellDirty(selectedCellX, selectedCellY);
+        }
+        
+        selectedCellX = x;
+        selectedCellY = y;
+        
+        if (x >= 0) {
+            markCellDirty(x, y);
+        }
     }
     
     private void highlight(final int x, final int y, final ChessColor color) {
-        highlightBoard[y][x] = color;
+        if (highlightBoard[y][x] != color) {
+            highlightBoard[y][x] = color;
+            markCellDirty(x, y);
+        }
     }
 }
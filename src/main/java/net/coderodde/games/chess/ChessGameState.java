@@ -1,65 +1,1095 @@
 package net.coderodde.games.chess;
 
+import java.util.Arrays;
+import java.util.Objects;
+import net.coderodde.games.chess.tablebase.Tablebases;
+
 /**
- * This class maintains the game state of a chess match.
+ * This class maintains the game state of a chess match. The position is
+ * stored as one 64-bit bitboard per color/piece type pair, accompanied by the
+ * side to move, the castling rights and the en passant square. The moves are
+ * played in place with {@link #makeMove(int)} and taken back with 
+ * {@link #unmakeMove()}; both update the position and its Zobrist key 
+ * incrementally.
  * 
  * @author Rodion "rodde" Efremov
  * @version 1.6 (Jun 21, 2016)
  */
-public class ChessGameState {
+public class ChessGameState implements Position {
+    
+    /**
+     * The castling right bit for white castling king side.
+     */
+    public static final int WHITE_KING_SIDE_CASTLING = 1;
+    
+    /**
+     * The castling right bit for white castling queen side.
+     */
+    public static final int WHITE_QUEEN_SIDE_CASTLING = 2;
+    
+    /**
+     * The castling right bit for black castling king side.
+     */
+    public static final int BLACK_KING_SIDE_CASTLING = 4;
+    
+    /**
+     * The castling right bit for black castling queen side.
+     */
+    public static final int BLACK_QUEEN_SIDE_CASTLING = 8;
+    
+    /**
+     * All the castling rights.
+     */
+    public static final int ALL_CASTLING_RIGHTS = 15;
+    
+    /**
+     * The number of the standard piece types, which come first in
+     * {@link ChessPieceType}.
+     */
+    public static final int PIECE_TYPES = 6;
+    
+    /**
+     * The number of the codes of the standard pieces.
+     */
+    public static final int PIECE_CODES = 2 * PIECE_TYPES;
+    
+    /**
+     * Denotes an empty square in the mailbox array.
+     */
+    static final byte EMPTY = ChessPiece.NONE;
+    
+    private static final int PAWN = ChessPieceType.PAWN.ordinal();
+    
+    /**
+     * The initial capacity of the move history.
+     */
+    private static final int INITIAL_HISTORY_CAPACITY = 256;
+    
+    // The layout of the undo records: the move, the captured piece code plus
+    // one, the castling rights, the en passant square plus one and the 
+    // halfmove clock.
+    private static final int UNDO_CAPTURE_SHIFT    = 17;
+    private static final int UNDO_CASTLING_SHIFT   = 21;
+    private static final int UNDO_EN_PASSANT_SHIFT = 25;
+    private static final int UNDO_HALFMOVE_SHIFT   = 32;
+    private static final long UNDO_MOVE_MASK       = (1L << 17) - 1;
+    
+    private static final ChessColor[] COLORS = ChessColor.values();
+    
+    /**
+     * The castling rights surviving a move from or to each square.
+     */
+    private static final int[] CASTLING_RIGHTS_MASKS = 
+            new int[Bitboards.NUMBER_OF_SQUARES];
+    
+    static {
+        for (int i = 0; i < CASTLING_RIGHTS_MASKS.length; ++i) {
+            CASTLING_RIGHTS_MASKS[i] = ALL_CASTLING_RIGHTS;
+        }
+        
+        CASTLING_RIGHTS_MASKS[0]  &= ~WHITE_QUEEN_SIDE_CASTLING;
+        CASTLING_RIGHTS_MASKS[4]  &= ~(WHITE_KING_SIDE_CASTLING | 
+                                       WHITE_QUEEN_SIDE_CASTLING);
+        CASTLING_RIGHTS_MASKS[7]  &= ~WHITE_KING_SIDE_CASTLING;
+        CASTLING_RIGHTS_MASKS[56] &= ~BLACK_QUEEN_SIDE_CASTLING;
+        CASTLING_RIGHTS_MASKS[60] &= ~(BLACK_KING_SIDE_CASTLING | 
+                                       BLACK_QUEEN_SIDE_CASTLING);
+        CASTLING_RIGHTS_MASKS[63] &= ~BLACK_KING_SIDE_CASTLING;
+    }
     
-    private final ChessPiece[][] board = new ChessPiece[8][8];
+    /**
+     * The piece bitboards indexed by piece codes.
+     */
+    private final long[] pieceBitboards = new long[PIECE_CODES];
+    
+    /**
+     * The occupancy bitboards indexed by color ordinals.
+     */
+    private final long[] colorBitboards = new long[2];
+    
+    /**
+     * The piece code of each square, or {@link #EMPTY}.
+     */
+    private final byte[] mailbox = new byte[Bitboards.NUMBER_OF_SQUARES];
+    
+    private ChessColor sideToMove;
+    private int castlingRights;
+    private int enPassantSquare;
+    
+    /**
+     * The number of plies since the last capture or pawn move.
+     */
+    private int halfmoveClock;
+    
+    /**
+     * The number of the full move, starting from one and incremented after
+     * each black move.
+     */
+    private int fullmoveNumber;
+    
+    /**
+     * The Zobrist key of the current position.
+     */
+    private long zobristKey;
+    
+    /**
+     * The undo records of the played moves.
+     */
+    private long[] undoRecords = new long[INITIAL_HISTORY_CAPACITY];
+    
+    /**
+     * The Zobrist keys of the positions preceding each played move.
+     */
+    private long[] keyHistory = new long[INITIAL_HISTORY_CAPACITY];
+    
+    /**
+     * The number of moves that may be unmade.
+     */
+    private int historySize;
+    
+    /**
+     * The Zobrist key of the pawns only.
+     */
+    private long pawnKey;
+    
+    /**
+     * The move buffer of {@link #checkVictory()}, allocated on first use.
+     */
+    private int[] moveBuffer;
+    
+    /**
+     * The listener notified of the piece changes, or {@code null}.
+     */
+    private BoardListener boardListener;
     
     public ChessGameState() {
         populateBoard();
     }
     
-    public ChessColor checkVictory() {
-        for (int y = 0; y < board.length; ++y) {
-            for (int x = 0; x < board.length; ++x) {
-                final ChessPiece currentCellPiece = board[y][x];
+    /**
+     * Constructs a copy of the game state {@code other}.
+     * 
+     * @param other the game state to copy.
+     */
+    public ChessGameState(final ChessGameState other) {
+        copyFrom(other);
+    }
+    
+    /**
+     * {@inheritDoc} A game state is copied into another 
+     * {@code ChessGameState}.
+     */
+    @Override
+    public Position copyInto(final Position target) {
+        if (target instanceof ChessGameState) {
+            ((ChessGameState) target).copyFrom(this);
+            return target;
+        }
+        
+        return new ChessGameState(this);
+    }
+    
+    /**
+     * Makes this game state identical to {@code other}. Does not allocate.
+     * 
+     * @param other the game state to copy.
+     */
+    public void copyFrom(final ChessGameState other) {
+        if (boardListener != null) {
+            notifyAllPieces(false);
+        }
+        
+        System.arraycopy(other.pieceBitboards, 
+                         0, 
+                         pieceBitboards, 
+                         0, 
+                         PIECE_CODES);
+        System.arraycopy(other.colorBitboards, 0, colorBitboards, 0, 2);
+        System.arraycopy(other.mailbox, 0, mailbox, 0, mailbox.length);
+        sideToMove      = other.sideToMove;
+        castlingRights  = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock   = other.halfmoveClock;
+        fullmoveNumber  = other.fullmoveNumber;
+        zobristKey      = other.zobristKey;
+        pawnKey         = other.pawnKey;
+        historySize     = other.historySize;
+        
+        if (undoRecords.length < historySize) {
+            undoRecords = new long[other.undoRecords.length];
+            keyHistory  = new long[other.keyHistory.length];
+        }
+        
+        System.arraycopy(other.undoRecords, 0, undoRecords, 0, historySize);
+        System.arraycopy(other.keyHistory,  0, keyHistory,  0, historySize);
+        
+        if (boardListener != null) {
+            notifyAllPieces(true);
+        }
+    }
+    
+    /**
+     * Returns the piece code of the piece of color {@code color} and type
+     * {@code type}.
+     * 
+     * @param color the color of the piece.
+     * @param type  the type of the piece.
+     * @return the piece code.
+     */
+    public static int pieceCode(final ChessColor color, 
+                                final ChessPieceType type) {
+        return ChessPiece.code(color, type);
+    }
+    
+    long pieces(final int code) {
+        return pieceBitboards[code];
+    }
+    
+    long occupancy(final int colorIndex) {
+        return colorBitboards[colorIndex];
+    }
+    
+    int pieceCodeAt(final int square) {
+        return mailbox[square];
+    }
+    
+    /**
+     * Returns the Zobrist key of the position preceding the move with index 
+     * {@code index} in the move history.
+     */
+    long historyKey(final int index) {
+        return keyHistory[index];
+    }
+    
+    public long getPieceBitboard(final ChessColor color,
+                                 final ChessPieceType type) {
+        return pieceBitboards[pieceCode(color, type)];
+    }
+    
+    public long getOccupancy(final ChessColor color) {
+        return colorBitboards[color.ordinal()];
+    }
+    
+    public long getOccupancy() {
+        return colorBitboards[0] | colorBitboards[1];
+    }
+    
+    @Override
+    public ChessColor getSideToMove() {
+        return sideToMove;
+    }
+    
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+    
+    /**
+     * Returns the square a pawn may capture en passant to, or
+     * {@link Bitboards#NO_SQUARE} if there is none.
+     * 
+     * @return the en passant target square.
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+    
+    @Override
+    public BoardListener getBoardListener() {
+        return boardListener;
+    }
+    
+    /**
+     * Sets the listener notified of every piece change of this game state.
+     * The listener is not told about the pieces already on the board, and it
+     * is not copied along with the game state.
+     * 
+     * @param boardListener the listener, or {@code null} for none.
+     */
+    @Override
+    public void setBoardListener(final BoardListener boardListener) {
+        this.boardListener = boardListener;
+    }
+    
+    /**
+     * Returns the 64-bit Zobrist key of the current position. The key covers
+     * the pieces, the side to move, the castling rights and the en passant
+     * square.
+     * 
+     * @return the Zobrist key.
+     */
+    @Override
+    public long getZobristKey() {
+        return zobristKey;
+    }
+    
+    /**
+     * Returns the Zobrist key of the pawn placement alone, which identifies
+     * the pawn structure for the pawn hash tables.
+     * 
+     * @return the pawn key.
+     */
+    public long getPawnKey() {
+        return pawnKey;
+    }
+    
+    /**
+     * Returns the number of played moves that may be unmade.
+     * 
+     * @return the length of the move history.
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+    
+    /**
+     * Returns the last played move, or {@link Move#NONE} if there is none.
+     * 
+     * @return the last move.
+     */
+    public int getLastMove() {
+        return historySize == 0 ? 
+               Move.NONE : 
+               (int)(undoRecords[historySize - 1] & UNDO_MOVE_MASK);
+    }
+    
+    @Override
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+    
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+    
+    public void setHalfmoveClock(final int halfmoveClock) {
+        this.halfmoveClock = Math.max(0, halfmoveClock);
+    }
+    
+    public void setFullmoveNumber(final int fullmoveNumber) {
+        this.fullmoveNumber = Math.max(1, fullmoveNumber);
+    }
+    
+    public void setSideToMove(final ChessColor sideToMove) {
+        Objects.requireNonNull(sideToMove, "The input color is null.");
+        
+        if (this.sideToMove != sideToMove) {
+            this.sideToMove = sideToMove;
+            zobristKey ^= Zobrist.BLACK_TO_MOVE_KEY;
+        }
+    }
+    
+    public void setCastlingRights(final int castlingRights) {
+        zobristKey ^= Zobrist.CASTLING_KEYS[this.castlingRights];
+        this.castlingRights = castlingRights & ALL_CASTLING_RIGHTS;
+        zobristKey ^= Zobrist.CASTLING_KEYS[this.castlingRights];
+    }
+    
+    public void setEnPassantSquare(final int enPassantSquare) {
+        if (enPassantSquare < Bitboards.NO_SQUARE
+                || enPassantSquare >= Bitboards.NUMBER_OF_SQUARES) {
+            throw new IllegalArgumentException(
+                    "Bad en passant square: " + enPassantSquare + ".");
+        }
+        
+        toggleEnPassantKey();
+        this.enPassantSquare = enPassantSquare;
+        toggleEnPassantKey();
+    }
+    
+    /**
+     * Returns the piece occupying the square {@code square}, or {@code null}
+     * if the square is empty. The returned objects are shared and immutable.
+     * 
+     * @param square the square index.
+     * @return the piece at the square.
+     */
+    @Override
+    public ChessPiece getPiece(final int square) {
+        return ChessPiece.valueOf(mailbox[square]);
+    }
+    
+    /**
+     * Returns the code of the piece occupying the square {@code square}, or
+     * {@link ChessPiece#NONE} if the square is empty.
+     * 
+     * @param square the square index.
+     * @return the piece code at the square.
+     */
+    @Override
+    public byte getPieceCode(final int square) {
+        return mailbox[square];
+    }
+    
+    @Override
+    public int getBoardWidth() {
+        return Bitboards.BOARD_SIZE;
+    }
+    
+    @Override
+    public int getBoardHeight() {
+        return Bitboards.BOARD_SIZE;
+    }
+    
+    @Override
+    public ChessPiece getPieceAt(final int file, final int rank) {
+        return getPiece(Bitboards.square(file, rank));
+    }
+    
+    @Override
+    public byte getPieceCodeAt(final int file, final int rank) {
+        return mailbox[Bitboards.square(file, rank)];
+    }
+    
+    @Override
+    public int getSquareCount() {
+        return Bitboards.NUMBER_OF_SQUARES;
+    }
+    
+    @Override
+    public int getMaxMoves() {
+        return MoveGenerator.MAX_MOVES;
+    }
+    
+    @Override
+    public int generateLegalMoves(final int[] moves) {
+        return MoveGenerator.generateLegalMoves(this, moves);
+    }
+    
+    @Override
+    public int generateLegalCaptures(final int[] moves) {
+        return MoveGenerator.generateLegalCaptures(this, moves);
+    }
+    
+    @Override
+    public boolean isInCheck() {
+        return MoveGenerator.isInCheck(this);
+    }
+    
+    @Override
+    public int getMoveFrom(final int move) {
+        return Move.getFrom(move);
+    }
+    
+    @Override
+    public int getMoveTo(final int move) {
+        return Move.getTo(move);
+    }
+    
+    @Override
+    public boolean isEnPassant(final int move) {
+        return Move.getKind(move) == Move.EN_PASSANT;
+    }
+    
+    @Override
+    public ChessPieceType getMovePromotion(final int move) {
+        return Move.getPromotion(move);
+    }
+    
+    @Override
+    public String formatMove(final int move) {
+        return Move.toString(move);
+    }
+    
+    /**
+     * Places a piece at the square {@code square}, replacing the piece that
+     * was there.
+     * 
+     * @param square the target square.
+     * @param color  the color of the new piece.
+     * @param type   the type of the new piece.
+     * @throws IllegalArgumentException if the type is not a standard one.
+     */
+    public void putPiece(final int square,
+                         final ChessColor color,
+                         final ChessPieceType type) {
+        Objects.requireNonNull(color, "The input piece color is null.");
+        Objects.requireNonNull(type, "The input piece type is null.");
+        
+        if (type.ordinal() >= PIECE_TYPES) {
+            throw new IllegalArgumentException(
+                    "The standard board holds no " + 
+                    type.name().toLowerCase() + ".");
+        }
+        
+        removePiece(square);
+        addPiece(square, pieceCode(color, type));
+    }
+    
+    /**
+     * Removes the piece at the square {@code square}, if there is one.
+     * 
+     * @param square the square to clear.
+     */
+    public void removePiece(final int square) {
+        final byte code = mailbox[square];
+        
+        if (code != EMPTY) {
+            final long mask = ~(1L << square);
+            pieceBitboards[code] &= mask;
+            colorBitboards[code / PIECE_TYPES] &= mask;
+            mailbox[square] = EMPTY;
+            zobristKey ^= Zobrist.PIECE_SQUARE_KEYS[code][square];
+            pawnKey    ^= Zobrist.PAWN_SQUARE_KEYS[code][square];
+            
+            if (boardListener != null) {
+                boardListener.pieceRemoved(square, code);
+            }
+        }
+    }
+    
+    /**
+     * Removes all the pieces from the board and resets the rest of the state,
+     * including the move history.
+     */
+    public void clear() {
+        if (boardListener != null) {
+            notifyAllPieces(false);
+        }
+        
+        for (int i = 0; i < PIECE_CODES; ++i) {
+            pieceBitboards[i] = 0L;
+        }
+        
+        colorBitboards[0] = 0L;
+        colorBitboards[1] = 0L;
+        
+        for (int i = 0; i < mailbox.length; ++i) {
+            mailbox[i] = EMPTY;
+        }
+        
+        sideToMove = ChessColor.WHITE;
+        castlingRights = 0;
+        enPassantSquare = Bitboards.NO_SQUARE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        zobristKey = 0L;
+        pawnKey = 0L;
+        historySize = 0;
+    }
+    
+    /**
+     * Plays the move {@code move}, which must be legal in this position (see 
+     * {@link MoveGenerator#generateLegalMoves(ChessGameState, int[])}). Runs
+     * in constant time; the move may be taken back with 
+     * {@link #unmakeMove()}.
+     * 
+     * @param move the packed move to play.
+     */
+    @Override
+    public void makeMove(final int move) {
+        final int from = Move.getFrom(move);
+        final int to   = Move.getTo(move);
+        final int kind = Move.getKind(move);
+        final int us   = sideToMove.ordinal();
+        final boolean isPawnMove = mailbox[from] == us * PIECE_TYPES + PAWN;
+        final int captureSquare = 
+                kind != Move.EN_PASSANT ? to : (us == 0 ? to - 8 : to + 8);
+        final int captured = mailbox[captureSquare];
+        
+        if (historySize == undoRecords.length) {
+            undoRecords = Arrays.copyOf(undoRecords, 2 * historySize);
+            keyHistory  = Arrays.copyOf(keyHistory,  2 * historySize);
+        }
+        
+        keyHistory[historySize] = zobristKey;
+        undoRecords[historySize++] = 
+                  move
+                | ((long)(captured + 1) << UNDO_CAPTURE_SHIFT)
+                | ((long) castlingRights << UNDO_CASTLING_SHIFT)
+                | ((long)(enPassantSquare + 1) << UNDO_EN_PASSANT_SHIFT)
+                | ((long) halfmoveClock << UNDO_HALFMOVE_SHIFT);
+        
+        ++halfmoveClock;
+        
+        if (captured != EMPTY) {
+            removePiece(captureSquare);
+            halfmoveClock = 0;
+        }
+        
+        if (kind == Move.CASTLING) {
+            if (to > from) {
+                movePiece(from + 3, from + 1);
+            } else {
+                movePiece(from - 4, from - 1);
+            }
+        }
+        
+        if (Move.isPromotion(move)) {
+            removePiece(from);
+            addPiece(to, us * PIECE_TYPES + Move.getPromotion(move).ordinal());
+        } else {
+            movePiece(from, to);
+        }
+        
+        final int newCastlingRights = castlingRights 
+                                    & CASTLING_RIGHTS_MASKS[from] 
+                                    & CASTLING_RIGHTS_MASKS[to];
+        
+        if (newCastlingRights != castlingRights) {
+            zobristKey ^= Zobrist.CASTLING_KEYS[castlingRights] 
+                        ^ Zobrist.CASTLING_KEYS[newCastlingRights];
+            castlingRights = newCastlingRights;
+        }
+        
+        toggleEnPassantKey();
+        enPassantSquare = Bitboards.NO_SQUARE;
+        
+        if (isPawnMove) {
+            halfmoveClock = 0;
+            
+            if (Math.abs(to - from) == 16) {
+                final int skippedSquare = (from + to) >>> 1;
                 
-                if (currentCellPiece != null 
-                        && currentCellPiece.getType()
-                                           .equals(ChessPieceType.KING)) {
-                    
+                // Record the en passant square only if an enemy pawn can 
+                // actually capture there, so that equal positions have equal
+                // keys.
+                if ((Bitboards.pawnAttacks(us, skippedSquare) 
+                        & pieceBitboards[(us ^ 1) * PIECE_TYPES + PAWN])
+                        != 0L) {
+                    enPassantSquare = skippedSquare;
+                    toggleEnPassantKey();
                 }
             }
         }
         
-        // No victory yet.
+        if (sideToMove == ChessColor.BLACK) {
+            ++fullmoveNumber;
+            sideToMove = ChessColor.WHITE;
+        } else {
+            sideToMove = ChessColor.BLACK;
+        }
+        
+        zobristKey ^= Zobrist.BLACK_TO_MOVE_KEY;
+    }
+    
+    /**
+     * Passes the turn to the opponent without moving a piece. This is used by
+     * the null move pruning of the search and must not be called while in 
+     * check. The halfmove clock is reset, so that no repetition is detected 
+     * across the null move. Taken back with {@link #unmakeMove()}.
+     */
+    @Override
+    public void makeNullMove() {
+        if (historySize == undoRecords.length) {
+            undoRecords = Arrays.copyOf(undoRecords, 2 * historySize);
+            keyHistory  = Arrays.copyOf(keyHistory,  2 * historySize);
+        }
+        
+        keyHistory[historySize] = zobristKey;
+        undoRecords[historySize++] = 
+                  Move.NONE
+                | ((long)(EMPTY + 1) << UNDO_CAPTURE_SHIFT)
+                | ((long) castlingRights << UNDO_CASTLING_SHIFT)
+                | ((long)(enPassantSquare + 1) << UNDO_EN_PASSANT_SHIFT)
+                | ((long) halfmoveClock << UNDO_HALFMOVE_SHIFT);
+        
+        toggleEnPassantKey();
+        enPassantSquare = Bitboards.NO_SQUARE;
+        halfmoveClock = 0;
+        
+        if (sideToMove == ChessColor.BLACK) {
+            ++fullmoveNumber;
+            sideToMove = ChessColor.WHITE;
+        } else {
+            sideToMove = ChessColor.BLACK;
+        }
+        
+        zobristKey ^= Zobrist.BLACK_TO_MOVE_KEY;
+    }
+    
+    /**
+     * Checks whether the current position has occurred before since the last
+     * capture or pawn move, with the same side to move.
+     * 
+     * @return {@code true} if the position is a repetition.
+     */
+    @Override
+    public boolean isRepetition() {
+        final int limit = Math.max(0, historySize - halfmoveClock);
+        
+        for (int i = historySize - 4; i >= limit; i -= 2) {
+            if (keyHistory[i] == zobristKey) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Takes back the last move played with {@link #makeMove(int)} or 
+     * {@link #makeNullMove()}, restoring
+     * the position, the castling and en passant state, the clocks and the 
+     * Zobrist key. Runs in constant time.
+     * 
+     * @throws IllegalStateException if there is no move to take back.
+     */
+    @Override
+    public void unmakeMove() {
+        if (historySize == 0) {
+            throw new IllegalStateException("There is no move to unmake.");
+        }
+        
+        final long record = undoRecords[--historySize];
+        final int move = (int)(record & UNDO_MOVE_MASK);
+        final int from = Move.getFrom(move);
+        final int to   = Move.getTo(move);
+        
+        if (sideToMove == ChessColor.WHITE) {
+            --fullmoveNumber;
+            sideToMove = ChessColor.BLACK;
+        } else {
+            sideToMove = ChessColor.WHITE;
+        }
+        
+        if (move == Move.NONE) {
+            enPassantSquare = 
+                    (int)((record >>> UNDO_EN_PASSANT_SHIFT) & 0x7f) - 1;
+            halfmoveClock = (int)(record >>> UNDO_HALFMOVE_SHIFT);
+            zobristKey    = keyHistory[historySize];
+            return;
+        }
+        
+        final int us = sideToMove.ordinal();
+        
+        if (Move.isPromotion(move)) {
+            removePiece(to);
+            addPiece(from, us * PIECE_TYPES + PAWN);
+        } else {
+            movePiece(to, from);
+        }
+        
+        final int kind = Move.getKind(move);
+        
+        if (kind == Move.CASTLING) {
+            if (to > from) {
+                movePiece(from + 1, from + 3);
+            } else {
+                movePiece(from - 1, from - 4);
+            }
+        }
+        
+        final int captured = 
+                (int)((record >>> UNDO_CAPTURE_SHIFT) & 0xf) - 1;
+        
+        if (captured != EMPTY) {
+            addPiece(kind != Move.EN_PASSANT ? to 
+                                             : (us == 0 ? to - 8 : to + 8),
+                     captured);
+        }
+        
+        castlingRights  = (int)((record >>> UNDO_CASTLING_SHIFT) & 0xf);
+        enPassantSquare = (int)((record >>> UNDO_EN_PASSANT_SHIFT) & 0x7f) - 1;
+        halfmoveClock   = (int)(record >>> UNDO_HALFMOVE_SHIFT);
+        zobristKey      = keyHistory[historySize];
+    }
+    
+    /**
+     * Copies the piece codes of the board into {@code board}, indexed by the
+     * squares, with {@link ChessPiece#NONE} for the empty ones. Does not 
+     * allocate.
+     * 
+     * @param board the array of at least 64 codes to fill.
+     */
+    public void copyTo(final byte[] board) {
+        System.arraycopy(mailbox, 0, board, 0, mailbox.length);
+    }
+    
+    /**
+     * Writes the position into {@code board}. The view has the layout of the
+     * original {@code ChessPiece[8][8]} board: the row {@code y} holds the
+     * rank {@code y + 1}, and the column {@code x} holds the file counted
+     * from the <i>h</i>-file, so that the white king starts at
+     * {@code board[0][3]}.
+     * 
+     * @param board the 8x8 board to fill.
+     */
+    public void copyTo(final ChessPiece[][] board) {
+        if (board.length != Bitboards.BOARD_SIZE) {
+            throw new IllegalArgumentException(
+                    "The target board must have " + Bitboards.BOARD_SIZE +
+                    " rows.");
+        }
+        
+        for (int y = 0; y < Bitboards.BOARD_SIZE; ++y) {
+            if (board[y].length != Bitboards.BOARD_SIZE) {
+                throw new IllegalArgumentException(
+                        "The target board must have " + Bitboards.BOARD_SIZE +
+                        " columns.");
+            }
+            
+            for (int x = 0; x < Bitboards.BOARD_SIZE; ++x) {
+                board[y][x] = getPiece(
+                        Bitboards.square(Bitboards.BOARD_SIZE - 1 - x, y));
+            }
+        }
+    }
+    
+    /**
+     * Checks whether the game is over: by checkmate, stalemate, threefold 
+     * repetition, the fifty-move rule or insufficient material. The 
+     * repetitions are counted within the move history of this game state 
+     * only. Runs in the time of a move generation and does not allocate, so
+     * it may be called at every search node.
+     * 
+     * @return the result of the game.
+     */
+    public GameResult checkVictory() {
+        if (pieceBitboards[pieceCode(sideToMove, ChessPieceType.KING)] 
+                == 0L) {
+            return GameResult.checkmate(sideToMove);
+        }
+        
+        // Neither a dead position nor a repeated one can be a checkmate, so
+        // the cheap tests go first.
+        if (isInsufficientMaterial()) {
+            return GameResult.DRAW_BY_INSUFFICIENT_MATERIAL;
+        }
+        
+        if (isThreefoldRepetition()) {
+            return GameResult.DRAW_BY_THREEFOLD_REPETITION;
+        }
+        
+        if (moveBuffer == null) {
+            moveBuffer = new int[MoveGenerator.MAX_MOVES];
+        }
+        
+        // A checkmate on the hundredth halfmove still wins.
+        if (MoveGenerator.generateLegalMoves(this, moveBuffer) == 0) {
+            return MoveGenerator.isInCheck(this) ? 
+                   GameResult.checkmate(sideToMove) : 
+                   GameResult.DRAW_BY_STALEMATE;
+        }
+        
+        if (halfmoveClock >= 100) {
+            return GameResult.DRAW_BY_FIFTY_MOVE_RULE;
+        }
+        
+        return GameResult.IN_PROGRESS;
+    }
+    
+    /**
+     * Checks whether the game is over as {@link #checkVictory()} does, and 
+     * otherwise adjudicates the positions found in the endgame tables 
+     * {@code tablebases} by their perfect-play result.
+     * 
+     * @param tablebases the endgame tables, or {@code null}.
+     * @return the result of the game.
+     */
+    public GameResult checkVictory(final Tablebases tablebases) {
+        final GameResult result = checkVictory();
+        
+        if (result.isGameOver() || tablebases == null) {
+            return result;
+        }
+        
+        final int value = tablebases.probe(this);
+        
+        if (value == Tablebases.NOT_FOUND) {
+            return result;
+        }
+        
+        if (value == 0) {
+            return GameResult.tablebase(null);
+        }
+        
+        return GameResult.tablebase(value > 0 ? 
+                                    sideToMove : 
+                                    COLORS[sideToMove.ordinal() ^ 1]);
+    }
+    
+    /**
+     * Checks whether the current position has occurred at least twice 
+     * before since the last capture or pawn move, with the same side to move.
+     * 
+     * @return {@code true} if the position occurred three times.
+     */
+    public boolean isThreefoldRepetition() {
+        final int limit = Math.max(0, historySize - halfmoveClock);
+        int repetitions = 0;
+        
+        for (int i = historySize - 4; i >= limit; i -= 2) {
+            if (keyHistory[i] == zobristKey && ++repetitions == 2) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Checks whether neither player can possibly checkmate: the kings are 
+     * alone, or accompanied by a single minor piece, or by bishops all on 
+     * squares of the same color.
+     * 
+     * @return {@code true} if the material is insufficient for a checkmate.
+     */
+    @Override
+    public boolean isInsufficientMaterial() {
+        final long pawnsAndMajors = piecesOfType(ChessPieceType.PAWN)
+                                  | piecesOfType(ChessPieceType.ROOK)
+                                  | piecesOfType(ChessPieceType.QUEEN);
+        
+        if (pawnsAndMajors != 0L) {
+            return false;
+        }
+        
+        final long knights = piecesOfType(ChessPieceType.KNIGHT);
+        final long bishops = piecesOfType(ChessPieceType.BISHOP);
+        
+        if (Long.bitCount(knights | bishops) <= 1) {
+            return true;
+        }
+        
+        return knights == 0L && ((bishops & Bitboards.LIGHT_SQUARES) == 0L 
+                || (bishops & ~Bitboards.LIGHT_SQUARES) == 0L);
+    }
+    
+    @Override
+    public boolean hasNonPawnMaterial(final ChessColor color) {
+        final int base = color.ordinal() * PIECE_TYPES;
+        
+        return (colorBitboards[color.ordinal()]
+                & ~pieceBitboards[base + PAWN]
+                & ~pieceBitboards[base + ChessPieceType.KING.ordinal()]) 
+                != 0L;
+    }
+    
+    /**
+     * Checks that the position is one the move generator and the search 
+     * can handle: each side has exactly one king, no pawn stands on the 
+     * first or the last rank, and the side not to move is not in check.
+     * 
+     * @return the reason why the position is not valid, or {@code null} if
+     *         it is.
+     */
+    String checkPosition() {
+        for (final ChessColor color : COLORS) {
+            final int kings = 
+                    Long.bitCount(getPieceBitboard(color, 
+                                                   ChessPieceType.KING));
+            
+            if (kings != 1) {
+                return "the " + color.name().toLowerCase() + 
+                       " side has " + kings + " kings";
+            }
+        }
+        
+        if ((piecesOfType(ChessPieceType.PAWN) 
+                & (Bitboards.RANK_1 | Bitboards.RANK_8)) != 0L) {
+            return "a pawn stands on the first or the last rank";
+        }
+        
+        final ChessColor them = sideToMove == ChessColor.WHITE ?
+                                ChessColor.BLACK :
+                                ChessColor.WHITE;
+        final int theirKingSquare = 
+                Long.numberOfTrailingZeros(
+                        getPieceBitboard(them, ChessPieceType.KING));
+        
+        if (MoveGenerator.isSquareAttacked(this, 
+                                           theirKingSquare, 
+                                           sideToMove)) {
+            return "the side not to move is in check";
+        }
+        
         return null;
     }
     
-    private void populateBoard() {
-        board[7] = new ChessPiece[] {
-            new ChessPiece(ChessColor.BLACK, ChessPieceType.ROOK),
-            new ChessPiece(ChessColor.BLACK, ChessPieceType.KNIGHT),
-            new ChessPiece(ChessColor.BLACK, ChessPieceType.BISHOP),
-            new ChessPiece(ChessColor.BLACK, ChessPieceType.KING),
-            new ChessPiece(ChessColor.BLACK, ChessPieceType.QUEEN),
-            new ChessPiece(ChessColor.BLACK, ChessPieceType.BISHOP),
-            new ChessPiece(ChessColor.BLACK, ChessPieceType.KNIGHT),
-            new ChessPiece(ChessColor.BLACK, ChessPieceType.ROOK),
-        };
+    /**
+     * Returns the bitboard of the pieces of type {@code type} of both 
+     * colors.
+     */
+    private long piecesOfType(final ChessPieceType type) {
+        final int code = type.ordinal();
+        return pieceBitboards[code] | pieceBitboards[PIECE_TYPES + code];
+    }
+    
+    /**
+     * Places the piece {@code code} on the empty square {@code square}.
+     */
+    void addPiece(final int square, final int code) {
+        final long bit = 1L << square;
+        pieceBitboards[code] |= bit;
+        colorBitboards[code / PIECE_TYPES] |= bit;
+        mailbox[square] = (byte) code;
+        zobristKey ^= Zobrist.PIECE_SQUARE_KEYS[code][square];
+        pawnKey    ^= Zobrist.PAWN_SQUARE_KEYS[code][square];
         
-        for (int x = 0; x < 8; ++x) {
-            board[6][x] = new ChessPiece(ChessColor.BLACK, ChessPieceType.PAWN);
+        if (boardListener != null) {
+            boardListener.pieceAdded(square, code);
         }
+    }
+    
+    private void movePiece(final int from, final int to) {
+        final int code = mailbox[from];
+        final long fromTo = (1L << from) | (1L << to);
+        pieceBitboards[code] ^= fromTo;
+        colorBitboards[code / PIECE_TYPES] ^= fromTo;
+        mailbox[from] = EMPTY;
+        mailbox[to] = (byte) code;
+        zobristKey ^= Zobrist.PIECE_SQUARE_KEYS[code][from] 
+                    ^ Zobrist.PIECE_SQUARE_KEYS[code][to];
+        pawnKey    ^= Zobrist.PAWN_SQUARE_KEYS[code][from] 
+                    ^ Zobrist.PAWN_SQUARE_KEYS[code][to];
         
-        for (int x = 0; x < 8; ++x) {
-            board[1][x] = new ChessPiece(ChessColor.WHITE, ChessPieceType.PAWN);
+        if (boardListener != null) {
+            boardListener.pieceRemoved(from, code);
+            boardListener.pieceAdded(to, code);
         }
+    }
+    
+    /**
+     * Reports every piece on the board to the board listener as added if 
+     * {@code added} is {@code true}, and as removed otherwise.
+     */
+    private void notifyAllPieces(final boolean added) {
+        for (int square = 0; square < mailbox.length; ++square) {
+            final int code = mailbox[square];
+            
+            if (code == EMPTY) {
+                continue;
+            }
+            
+            if (added) {
+                boardListener.pieceAdded(square, code);
+            } else {
+                boardListener.pieceRemoved(square, code);
+            }
+        }
+    }
+    
+    private void toggleEnPassantKey() {
+        if (enPassantSquare != Bitboards.NO_SQUARE) {
+            zobristKey ^= Zobrist.EN_PASSANT_KEYS[enPassantSquare & 7];
+        }
+    }
+    
+    private void populateBoard() {
+        clear();
         
-        board[0] = new ChessPiece[] {
-            new ChessPiece(ChessColor.WHITE, ChessPieceType.ROOK),
-            new ChessPiece(ChessColor.WHITE, ChessPieceType.KNIGHT),
-            new ChessPiece(ChessColor.WHITE, ChessPieceType.BISHOP),
-            new ChessPiece(ChessColor.WHITE, ChessPieceType.KING),
-            new ChessPiece(ChessColor.WHITE, ChessPieceType.QUEEN),
-            new ChessPiece(ChessColor.WHITE, ChessPieceType.BISHOP),
-            new ChessPiece(ChessColor.WHITE, ChessPieceType.KNIGHT),
-            new ChessPiece(ChessColor.WHITE, ChessPieceType.ROOK),
+        final ChessPieceType[] backRank = {
+            ChessPieceType.ROOK,
+            ChessPieceType.KNIGHT,
+            ChessPieceType.BISHOP,
+            ChessPieceType.QUEEN,
+            ChessPieceType.KING,
+            ChessPieceType.BISHOP,
+            ChessPieceType.KNIGHT,
+            ChessPieceType.ROOK,
         };
+        
+        for (int file = 0; file < Bitboards.BOARD_SIZE; ++file) {
+            addPiece(Bitboards.square(file, 0),
+                     pieceCode(ChessColor.WHITE, backRank[file]));
+            addPiece(Bitboards.square(file, 1),
+                     pieceCode(ChessColor.WHITE, ChessPieceType.PAWN));
+            addPiece(Bitboards.square(file, 6),
+                     pieceCode(ChessColor.BLACK, ChessPieceType.PAWN));
+            addPiece(Bitboards.square(file, 7),
+                     pieceCode(ChessColor.BLACK, backRank[file]));
+        }
+        
+        setCastlingRights(ALL_CASTLING_RIGHTS);
     }
 }
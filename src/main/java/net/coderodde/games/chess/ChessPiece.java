@@ -4,22 +4,135 @@ import java.util.Objects;
 
 /**
  * This class describes a piece on a board by specifying its type and color.
+ * There are exactly sixteen instances, one per color and type, obtained by
+ * {@link #valueOf(ChessColor, ChessPieceType)} or {@link #valueOf(int)}, so
+ * the pieces may be compared by identity.
+ * <p>
+ * Each piece also has a primitive code, which is the encoding the game
+ * states store their boards in; {@link #NONE} denotes an empty square. The
+ * standard pieces have the codes {@code color.ordinal() * 6 +
+ * type.ordinal()}, below {@link ChessGameState#PIECE_CODES}, and the
+ * compound pieces of the variants follow them, two per color. A whole
+ * board thus fits in a {@code byte} per square.
  * 
  * @author Rodion "rodde" Efremov
- * @version 1.6 (Jun 21, 2016) 
+ * @version 1.6 (Jun 21, 2016)
  */
-public class ChessPiece {
-   
+public final class ChessPiece {
+    
+    /**
+     * The code of an empty square.
+     */
+    public static final byte NONE = -1;
+    
+    /**
+     * The number of piece codes.
+     */
+    public static final int CODES = 16;
+    
+    /**
+     * The number of the compound piece types following the standard ones.
+     */
+    private static final int COMPOUND_TYPES = 2;
+    
+    /**
+     * The Unicode chess symbols indexed by the piece codes. The compound
+     * pieces use the knight-bishop and the knight-rook of the Chess Symbols
+     * block.
+     */
+    private static final String[] GLYPHS = {
+        "\u2654", "\u2655", "\u2656", "\u2657", "\u2658", "\u2659",
+        "\u265a", "\u265b", "\u265c", "\u265d", "\u265e", "\u265f",
+        "\uD83E\uDE50", "\uD83E\uDE4F", "\uD83E\uDE53", "\uD83E\uDE52"
+    };
+    
+    private static final ChessPiece[] PIECES = new ChessPiece[CODES];
+    
+    static {
+        for (final ChessColor color : ChessColor.values()) {
+            for (final ChessPieceType type : ChessPieceType.values()) {
+                final byte code = code(color, type);
+                PIECES[code] = new ChessPiece(color, type, code);
+            }
+        }
+    }
+    
     private final ChessColor color;
     private final ChessPieceType type;
+    private final byte code;
+    
+    private ChessPiece(final ChessColor color,
+                       final ChessPieceType type,
+                       final byte code) {
+        this.color = color;
+        this.type  = type;
+        this.code  = code;
+    }
+    
+    /**
+     * Returns the piece of color {@code color} and type {@code type}.
+     * 
+     * @param color the color of the piece.
+     * @param type  the type of the piece.
+     * @return the shared piece instance.
+     */
+    public static ChessPiece valueOf(final ChessColor color,
+                                     final ChessPieceType type) {
+        Objects.requireNonNull(color, "The input piece color is null.");
+        Objects.requireNonNull(type, "The input piece type is null.");
+        return PIECES[code(color, type)];
+    }
+    
+    /**
+     * Returns the piece of the code {@code code}, or {@code null} for
+     * {@link #NONE}.
+     * 
+     * @param code the piece code.
+     * @return the shared piece instance.
+     * @throws IllegalArgumentException if the code is invalid.
+     */
+    public static ChessPiece valueOf(final int code) {
+        if (code == NONE) {
+            return null;
+        }
+        
+        checkCode(code);
+        return PIECES[code];
+    }
     
-    public ChessPiece(final ChessColor color, final ChessPieceType type) {
-        this.color = 
-                Objects.requireNonNull(color, 
-                                       "The input piece color is null.");
-        this.type =
-                Objects.requireNonNull(type,
-                                       "The input piece type is null.");
+    /**
+     * Returns the code of the piece of color {@code color} and type
+     * {@code type}.
+     * 
+     * @param color the color of the piece.
+     * @param type  the type of the piece.
+     * @return the piece code.
+     */
+    public static byte code(final ChessColor color,
+                            final ChessPieceType type) {
+        final int ordinal = type.ordinal();
+        
+        if (ordinal < ChessGameState.PIECE_TYPES) {
+            return (byte)(color.ordinal() * ChessGameState.PIECE_TYPES +
+                          ordinal);
+        }
+        
+        return (byte)(ChessGameState.PIECE_CODES + 
+                      color.ordinal() * COMPOUND_TYPES + 
+                      ordinal - ChessGameState.PIECE_TYPES);
+    }
+    
+    /**
+     * Returns the Unicode chess symbol of the piece of the code
+     * {@code code}.
+     * 
+     * @param code the piece code.
+     * @return the symbol of the piece.
+     * @throws IllegalArgumentException if the code is invalid.
+     */
+    public static String getRepresentationString(final int code) {
+        checkCode(code);
+        return GLYPHS[code];
     }
     
     public ChessColor getColor() {
@@ -30,63 +143,24 @@ public class ChessPiece {
         return type;
     }
     
+    public byte getCode() {
+        return code;
+    }
+    
     public String getRepresentationString() {
-        if (color.equals(ChessColor.WHITE)) {
-            switch (type) {
-                case PAWN:
-                    return "\u2659";
-                    
-                case KNIGHT:
-                    return "\u2658";
-                    
-                case BISHOP:
-                    return "\u2657";
-                    
-                case ROOK:
-                    return "\u2656";
-                    
-                case QUEEN:
-                    return "\u2655";
-                    
-                case KING:
-                    return "\u2654";
-                    
-                default:
-                    throw new IllegalStateException(
-                            "Should never get here: the piece type is unknown."
-                            );
-            }
-        }
-        
-        if (color.equals(ChessColor.BLACK)) {
-            switch (type) {
-                case PAWN:
-                    return "\u265f";
-                    
-                case KNIGHT:
-                    return "\u265e";
-                    
-                case BISHOP:
-                    return "\u265d";
-                    
-                case ROOK:
-                    return "\u265C";
-                    
-                case QUEEN:
-                    return "\u265B";
-                    
-                case KING:
-                    return "\u265A";
-                    
-                default:
-                    throw new IllegalStateException(
-                            "Should never get here: the piece type is unknown."
-                            );
-            }
+        return GLYPHS[code];
+    }
+    
+    @Override
+    public String toString() {
+        return color.name().toLowerCase() + " " +
+               type.name().toLowerCase();
+    }
+    
+    private static void checkCode(final int code) {
+        if (code < 0 || code >= CODES) {
+            throw new IllegalArgumentException(
+                    "Bad piece code: " + code + ".");
         }
-        
-        throw new IllegalStateException(
-                "Should never get here: the piece coloris neither white, nor " +
-                "black.");
     }
 }
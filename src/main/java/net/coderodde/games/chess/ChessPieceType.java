@@ -1,7 +1,10 @@
 package net.coderodde.games.chess;
 
 /**
- * This enumeration enumerates all chess piece types.
+ * This enumeration enumerates all chess piece types. The first six are the
+ * standard pieces; the archbishop (bishop + knight) and the chancellor
+ * (rook + knight) of Capablanca chess appear only on the boards of
+ * {@link net.coderodde.games.chess.variant.VariantGameState}.
  * 
  * @author Rodion "rodde" Efremov
  * @version 1.6 (Jun 21, 2016)
@@ -13,6 +16,8 @@ public enum ChessPieceType {
     ROOK,
     BISHOP,
     KNIGHT,
-    PAWN
+    PAWN,
+    ARCHBISHOP,
+    CHANCELLOR
     
 }
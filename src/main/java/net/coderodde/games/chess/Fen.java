@@ -0,0 +1,320 @@
+package net.coderodde.games.chess;
+
+import java.util.Objects;
+
+/**
+ * This class converts between game states and the Forsyth-Edwards Notation
+ * (FEN), such as
+ * <i>rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1</i>.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class Fen {
+    
+    /**
+     * The FEN of the standard starting position.
+     */
+    public static final String START_POSITION =
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    
+    /**
+     * The FEN letters of the pieces indexed by their piece codes.
+     */
+    private static final String PIECE_LETTERS = "KQRBNPkqrbnp";
+    
+    private Fen() {}
+    
+    /**
+     * Parses the FEN {@code fen} into a new game state. The halfmove clock
+     * and the fullmove number may be omitted, as in EPD, and default to 0
+     * and 1. The castling rights whose king or rook is not on its home square
+     * are dropped, and the en passant square is dropped unless a pawn of the
+     * side to move attacks it, so that equal positions get equal Zobrist
+     * keys.
+     * 
+     * @param fen the FEN string.
+     * @return the parsed game state.
+     * @throws IllegalArgumentException if {@code fen} is not a valid FEN, 
+     *                                  or its position does not have one 
+     *                                  king per side, has a pawn on the 
+     *                                  first or the last rank, or leaves 
+     *                                  the side not to move in check.
+     */
+    public static ChessGameState parse(final String fen) {
+        Objects.requireNonNull(fen, "The input FEN is null.");
+        final String[] fields = fen.trim().split("\\s+");
+        
+        if (fields.length < 4) {
+            throw new IllegalArgumentException(
+                    "A FEN must have at least 4 fields: \"" + fen + "\".");
+        }
+        
+        final ChessGameState state = new ChessGameState();
+        state.clear();
+        parsePlacement(fields[0], state, fen);
+        
+        switch (fields[1]) {
+            case "w":
+                state.setSideToMove(ChessColor.WHITE);
+                break;
+            
+            case "b":
+                state.setSideToMove(ChessColor.BLACK);
+                break;
+            
+            default:
+                throw new IllegalArgumentException(
+                        "Bad side to move in FEN \"" + fen + "\".");
+        }
+        
+        final String error = state.checkPosition();
+        
+        if (error != null) {
+            throw new IllegalArgumentException(
+                    "Bad position in FEN \"" + fen + "\": " + error + ".");
+        }
+        
+        state.setCastlingRights(parseCastlingRights(fields[2], state, fen));
+        
+        if (!fields[3].equals("-")) {
+            final int square = Bitboards.parseSquare(fields[3]);
+            final ChessColor us = state.getSideToMove();
+            final long attackers =
+                    Bitboards.pawnAttacks(us == ChessColor.WHITE ?
+                                          ChessColor.BLACK :
+                                          ChessColor.WHITE,
+                                          square) &
+                    state.getPieceBitboard(us, ChessPieceType.PAWN);
+            
+            if (attackers != 0L) {
+                state.setEnPassantSquare(square);
+            }
+        }
+        
+        if (fields.length >= 6) {
+            try {
+                state.setHalfmoveClock(Integer.parseInt(fields[4]));
+                state.setFullmoveNumber(Integer.parseInt(fields[5]));
+            } catch (final NumberFormatException ex) {
+                throw new IllegalArgumentException(
+                        "Bad move counters in FEN \"" + fen + "\".", ex);
+            }
+        }
+        
+        return state;
+    }
+    
+    /**
+     * Returns the FEN of the game state {@code state}. The en passant square
+     * is printed only if a pawn of the side to move attacks it.
+     * 
+     * @param state the game state.
+     * @return the FEN of the game state.
+     */
+    public static String toString(final ChessGameState state) {
+        Objects.requireNonNull(state, "The input game state is null.");
+        final StringBuilder sb = new StringBuilder(90);
+        
+        for (int rank = Bitboards.BOARD_SIZE - 1; rank >= 0; --rank) {
+            int emptySquares = 0;
+            
+            for (int file = 0; file < Bitboards.BOARD_SIZE; ++file) {
+                final int code = state.pieceCodeAt(Bitboards.square(file, 
+                                                                    rank));
+                
+                if (code == ChessGameState.EMPTY) {
+                    ++emptySquares;
+                    continue;
+                }
+                
+                if (emptySquares > 0) {
+                    sb.append((char)('0' + emptySquares));
+                    emptySquares = 0;
+                }
+                
+                sb.append(PIECE_LETTERS.charAt(code));
+            }
+            
+            if (emptySquares > 0) {
+                sb.append((char)('0' + emptySquares));
+            }
+            
+            if (rank > 0) {
+                sb.append('/');
+            }
+        }
+        
+        sb.append(state.getSideToMove() == ChessColor.WHITE ? " w " : " b ");
+        final int rights = state.getCastlingRights();
+        
+        if (rights == 0) {
+            sb.append('-');
+        } else {
+            if ((rights & ChessGameState.WHITE_KING_SIDE_CASTLING) != 0) {
+                sb.append('K');
+            }
+            
+            if ((rights & ChessGameState.WHITE_QUEEN_SIDE_CASTLING) != 0) {
+                sb.append('Q');
+            }
+            
+            if ((rights & ChessGameState.BLACK_KING_SIDE_CASTLING) != 0) {
+                sb.append('k');
+            }
+            
+            if ((rights & ChessGameState.BLACK_QUEEN_SIDE_CASTLING) != 0) {
+                sb.append('q');
+            }
+        }
+        
+        sb.append(' ');
+        
+        if (state.getEnPassantSquare() == Bitboards.NO_SQUARE) {
+            sb.append('-');
+        } else {
+            sb.append(Bitboards.squareName(state.getEnPassantSquare()));
+        }
+        
+        return sb.append(' ').append(state.getHalfmoveClock())
+                 .append(' ').append(state.getFullmoveNumber())
+                 .toString();
+    }
+    
+    private static void parsePlacement(final String placement,
+                                       final ChessGameState state,
+                                       final String fen) {
+        int rank = Bitboards.BOARD_SIZE - 1;
+        int file = 0;
+        
+        for (int i = 0; i < placement.length(); ++i) {
+            final char c = placement.charAt(i);
+            
+            if (c == '/') {
+                if (file != Bitboards.BOARD_SIZE || rank == 0) {
+                    throw new IllegalArgumentException(
+                            "Bad piece placement in FEN \"" + fen + "\".");
+                }
+                
+                --rank;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                final ChessPieceType type = parsePieceType(c);
+                
+                if (type == null || file >= Bitboards.BOARD_SIZE) {
+                    throw new IllegalArgumentException(
+                            "Bad piece placement in FEN \"" + fen + "\".");
+                }
+                
+                state.putPiece(Bitboards.square(file, rank),
+                               Character.isUpperCase(c) ?
+                                       ChessColor.WHITE :
+                                       ChessColor.BLACK,
+                               type);
+                ++file;
+            }
+            
+            if (file > Bitboards.BOARD_SIZE) {
+                throw new IllegalArgumentException(
+                        "Bad piece placement in FEN \"" + fen + "\".");
+            }
+        }
+        
+        if (rank != 0 || file != Bitboards.BOARD_SIZE) {
+            throw new IllegalArgumentException(
+                    "Bad piece placement in FEN \"" + fen + "\".");
+        }
+    }
+    
+    private static int parseCastlingRights(final String text,
+                                           final ChessGameState state,
+                                           final String fen) {
+        if (text.equals("-")) {
+            return 0;
+        }
+        
+        int rights = 0;
+        
+        for (int i = 0; i < text.length(); ++i) {
+            switch (text.charAt(i)) {
+                case 'K':
+                    rights |= castlingRight(state, ChessColor.WHITE, 4, 7,
+                            ChessGameState.WHITE_KING_SIDE_CASTLING);
+                    break;
+                
+                case 'Q':
+                    rights |= castlingRight(state, ChessColor.WHITE, 4, 0,
+                            ChessGameState.WHITE_QUEEN_SIDE_CASTLING);
+                    break;
+                
+                case 'k':
+                    rights |= castlingRight(state, ChessColor.BLACK, 60, 63,
+                            ChessGameState.BLACK_KING_SIDE_CASTLING);
+                    break;
+                
+                case 'q':
+                    rights |= castlingRight(state, ChessColor.BLACK, 60, 56,
+                            ChessGameState.BLACK_QUEEN_SIDE_CASTLING);
+                    break;
+                
+                default:
+                    throw new IllegalArgumentException(
+                            "Bad castling rights in FEN \"" + fen + "\".");
+            }
+        }
+        
+        return rights;
+    }
+    
+    /**
+     * Returns {@code right} if the king and the rook of color {@code color}
+     * stand on the squares {@code kingSquare} and {@code rookSquare}, and
+     * zero otherwise.
+     */
+    private static int castlingRight(final ChessGameState state,
+                                     final ChessColor color,
+                                     final int kingSquare,
+                                     final int rookSquare,
+                                     final int right) {
+        final long kings = state.getPieceBitboard(color, ChessPieceType.KING);
+        final long rooks = state.getPieceBitboard(color, ChessPieceType.ROOK);
+        
+        if ((kings & Bitboards.bit(kingSquare)) != 0L
+                && (rooks & Bitboards.bit(rookSquare)) != 0L) {
+            return right;
+        }
+        
+        return 0;
+    }
+    
+    /**
+     * Returns the piece type denoted by the FEN letter {@code c} of either
+     * case, or {@code null} if there is no such piece type.
+     */
+    static ChessPieceType parsePieceType(final char c) {
+        switch (Character.toLowerCase(c)) {
+            case 'k':
+                return ChessPieceType.KING;
+            
+            case 'q':
+                return ChessPieceType.QUEEN;
+            
+            case 'r':
+                return ChessPieceType.ROOK;
+            
+            case 'b':
+                return ChessPieceType.BISHOP;
+            
+            case 'n':
+                return ChessPieceType.KNIGHT;
+            
+            case 'p':
+                return ChessPieceType.PAWN;
+            
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package net.coderodde.games.chess;
+
+/**
+ * This class describes the state of a game: still in progress, won by one
+ * of the players, or drawn, together with the reason. The instances are 
+ * shared constants, so that the result may be computed at every search node
+ * without allocation.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class GameResult {
+    
+    /**
+     * This enumeration enumerates the reasons a game ends.
+     */
+    public enum Reason {
+        CHECKMATE,
+        STALEMATE,
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE,
+        INSUFFICIENT_MATERIAL,
+        
+        /**
+         * The game is adjudicated by the endgame tables.
+         */
+        TABLEBASE,
+        
+        /**
+         * The game is adjudicated by the referee of a match, such as for 
+         * exceeding its length limit.
+         */
+        ADJUDICATION
+    }
+    
+    public static final GameResult IN_PROGRESS = new GameResult(null, null);
+    
+    public static final GameResult WHITE_WINS_BY_CHECKMATE = 
+            new GameResult(ChessColor.WHITE, Reason.CHECKMATE);
+    
+    public static final GameResult BLACK_WINS_BY_CHECKMATE = 
+            new GameResult(ChessColor.BLACK, Reason.CHECKMATE);
+    
+    public static final GameResult DRAW_BY_STALEMATE = 
+            new GameResult(null, Reason.STALEMATE);
+    
+    public static final GameResult DRAW_BY_THREEFOLD_REPETITION = 
+            new GameResult(null, Reason.THREEFOLD_REPETITION);
+    
+    public static final GameResult DRAW_BY_FIFTY_MOVE_RULE = 
+            new GameResult(null, Reason.FIFTY_MOVE_RULE);
+    
+    public static final GameResult DRAW_BY_INSUFFICIENT_MATERIAL = 
+            new GameResult(null, Reason.INSUFFICIENT_MATERIAL);
+    
+    public static final GameResult WHITE_WINS_BY_TABLEBASE = 
+            new GameResult(ChessColor.WHITE, Reason.TABLEBASE);
+    
+    public static final GameResult BLACK_WINS_BY_TABLEBASE = 
+            new GameResult(ChessColor.BLACK, Reason.TABLEBASE);
+    
+    public static final GameResult DRAW_BY_TABLEBASE = 
+            new GameResult(null, Reason.TABLEBASE);
+    
+    public static final GameResult DRAW_BY_ADJUDICATION = 
+            new GameResult(null, Reason.ADJUDICATION);
+    
+    private final ChessColor winner;
+    private final Reason reason;
+    
+    private GameResult(final ChessColor winner, final Reason reason) {
+        this.winner = winner;
+        this.reason = reason;
+    }
+    
+    /**
+     * Returns the result of the checkmate of the player {@code loser}.
+     * 
+     * @param loser the color of the checkmated player.
+     * @return the result of the checkmate.
+     */
+    public static GameResult checkmate(final ChessColor loser) {
+        return loser == ChessColor.WHITE ? 
+               BLACK_WINS_BY_CHECKMATE : 
+               WHITE_WINS_BY_CHECKMATE;
+    }
+    
+    /**
+     * Returns the result of a game adjudicated by the endgame tables.
+     * 
+     * @param winner the color of the winning player, or {@code null} for a
+     *               draw.
+     * @return the adjudicated result.
+     */
+    public static GameResult tablebase(final ChessColor winner) {
+        if (winner == null) {
+            return DRAW_BY_TABLEBASE;
+        }
+        
+        return winner == ChessColor.WHITE ? 
+               WHITE_WINS_BY_TABLEBASE : 
+               BLACK_WINS_BY_TABLEBASE;
+    }
+    
+    /**
+     * Returns the color of the winning player, or {@code null} if the game 
+     * is drawn or in progress.
+     * 
+     * @return the winner.
+     */
+    public ChessColor getWinner() {
+        return winner;
+    }
+    
+    /**
+     * Returns the reason the game ended, or {@code null} if it is in 
+     * progress.
+     * 
+     * @return the reason.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+    
+    public boolean isGameOver() {
+        return reason != null;
+    }
+    
+    public boolean isDraw() {
+        return reason != null && winner == null;
+    }
+    
+    /**
+     * Returns the result in the notation of the PGN result tag: 
+     * <i>1-0</i>, <i>0-1</i>, <i>1/2-1/2</i> or <i>*</i> for a game in 
+     * progress.
+     * 
+     * @return the PGN result.
+     */
+    public String toPgnString() {
+        if (reason == null) {
+            return "*";
+        }
+        
+        if (winner == null) {
+            return "1/2-1/2";
+        }
+        
+        return winner == ChessColor.WHITE ? "1-0" : "0-1";
+    }
+    
+    @Override
+    public String toString() {
+        return reason == null ? 
+               "in progress" : 
+               toPgnString() + " (" + 
+                       reason.name().toLowerCase().replace('_', ' ') + ")";
+    }
+}
@@ -0,0 +1,138 @@
+package net.coderodde.games.chess;
+
+/**
+ * This class packs chess moves into primitive {@code int}s. Bits 0-5 hold 
+ * the source square, bits 6-11 the target square, bits 12-14 the promotion 
+ * piece type ({@code ordinal() + 1}, or zero if the move is not a promotion),
+ * and bits 15-16 the kind of the move.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class Move {
+    
+    /**
+     * The value denoting the absence of a move.
+     */
+    public static final int NONE = 0;
+    
+    public static final int NORMAL     = 0;
+    public static final int CASTLING   = 1;
+    public static final int EN_PASSANT = 2;
+    
+    private static final int TO_SHIFT        = 6;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final int KIND_SHIFT      = 15;
+    
+    private static final ChessPieceType[] TYPES = ChessPieceType.values();
+    
+    private Move() {}
+    
+    public static int create(final int from, final int to) {
+        return from | (to << TO_SHIFT);
+    }
+    
+    public static int create(final int from, final int to, final int kind) {
+        return from | (to << TO_SHIFT) | (kind << KIND_SHIFT);
+    }
+    
+    public static int createPromotion(final int from, 
+                                      final int to,
+                                      final ChessPieceType promotion) {
+        return from | (to << TO_SHIFT) 
+                    | ((promotion.ordinal() + 1) << PROMOTION_SHIFT);
+    }
+    
+    public static int getFrom(final int move) {
+        return move & 63;
+    }
+    
+    public static int getTo(final int move) {
+        return (move >>> TO_SHIFT) & 63;
+    }
+    
+    public static int getKind(final int move) {
+        return move >>> KIND_SHIFT;
+    }
+    
+    public static boolean isPromotion(final int move) {
+        return ((move >>> PROMOTION_SHIFT) & 7) != 0;
+    }
+    
+    /**
+     * Returns the piece type a pawn promotes to, or {@code null} if the move
+     * is not a promotion.
+     * 
+     * @param move the move.
+     * @return the promotion piece type.
+     */
+    public static ChessPieceType getPromotion(final int move) {
+        final int index = (move >>> PROMOTION_SHIFT) & 7;
+        return index == 0 ? null : TYPES[index - 1];
+    }
+    
+    /**
+     * Returns the legal move of {@code state} written in the long algebraic
+     * notation used by UCI, such as <i>e2e4</i>, <i>e1g1</i> or 
+     * <i>e7e8q</i>.
+     * 
+     * @param state the position the move is played in.
+     * @param text  the move in the long algebraic notation.
+     * @return the packed move.
+     * @throws IllegalArgumentException if {@code text} does not denote a 
+     *                                  legal move.
+     */
+    public static int parse(final ChessGameState state, final String text) {
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        final int moveCount = MoveGenerator.generateLegalMoves(state, moves);
+        
+        for (int i = 0; i < moveCount; ++i) {
+            if (toString(moves[i]).equals(text)) {
+                return moves[i];
+            }
+        }
+        
+        throw new IllegalArgumentException("Illegal move: \"" + text + 
+                                           "\".");
+    }
+    
+    /**
+     * Returns the move in the long algebraic notation used by UCI, such as
+     * <i>e2e4</i> or <i>e7e8q</i>.
+     * 
+     * @param move the move.
+     * @return the textual representation of the move.
+     */
+    public static String toString(final int move) {
+        if (move == NONE) {
+            return "0000";
+        }
+        
+        final String text = Bitboards.squareName(getFrom(move)) +
+                            Bitboards.squareName(getTo(move));
+        
+        final ChessPieceType promotion = getPromotion(move);
+        
+        if (promotion == null) {
+            return text;
+        }
+        
+        switch (promotion) {
+            case QUEEN:
+                return text + "q";
+            
+            case ROOK:
+                return text + "r";
+            
+            case BISHOP:
+                return text + "b";
+            
+            case KNIGHT:
+                return text + "n";
+            
+            default:
+                throw new IllegalStateException(
+                        "Should never get here: bad promotion piece type.");
+        }
+    }
+}
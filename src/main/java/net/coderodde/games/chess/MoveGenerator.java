@@ -0,0 +1,465 @@
+package net.coderodde.games.chess;
+
+/**
+ * This class implements a legal move generator working on the bitboards of 
+ * {@link ChessGameState}. The moves are written as packed {@code int}s (see
+ * {@link Move}) into caller-supplied buffers, so that the generator never 
+ * allocates.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class MoveGenerator {
+    
+    /**
+     * The capacity of a move buffer sufficient for any legal position.
+     */
+    public static final int MAX_MOVES = 256;
+    
+    private static final int KING   = ChessPieceType.KING.ordinal();
+    private static final int QUEEN  = ChessPieceType.QUEEN.ordinal();
+    private static final int ROOK   = ChessPieceType.ROOK.ordinal();
+    private static final int BISHOP = ChessPieceType.BISHOP.ordinal();
+    private static final int KNIGHT = ChessPieceType.KNIGHT.ordinal();
+    private static final int PAWN   = ChessPieceType.PAWN.ordinal();
+    
+    private static final int WHITE = ChessColor.WHITE.ordinal();
+    
+    private MoveGenerator() {}
+    
+    /**
+     * Writes all the legal moves of the side to move in {@code state} into 
+     * {@code moves}, starting from index zero.
+     * 
+     * @param state the position to generate the moves for.
+     * @param moves the output buffer of length at least {@link #MAX_MOVES}.
+     * @return the number of generated moves.
+     */
+    public static int generateLegalMoves(final ChessGameState state, 
+                                         final int[] moves) {
+        return generate(state, moves, false);
+    }
+    
+    /**
+     * Writes the legal captures and promotions of the side to move in 
+     * {@code state} into {@code moves}, starting from index zero. This is the
+     * move set searched by a quiescence search.
+     * 
+     * @param state the position to generate the moves for.
+     * @param moves the output buffer of length at least {@link #MAX_MOVES}.
+     * @return the number of generated moves.
+     */
+    public static int generateLegalCaptures(final ChessGameState state, 
+                                            final int[] moves) {
+        return generate(state, moves, true);
+    }
+    
+    private static int generate(final ChessGameState state, 
+                                final int[] moves,
+                                final boolean capturesOnly) {
+        final int us   = state.getSideToMove().ordinal();
+        final int them = us ^ 1;
+        final int ownBase   = us   * ChessGameState.PIECE_TYPES;
+        final int enemyBase = them * ChessGameState.PIECE_TYPES;
+        
+        final long own       = state.occupancy(us);
+        final long enemy     = state.occupancy(them);
+        final long occupancy = own | enemy;
+        
+        final int kingSquare = 
+                Long.numberOfTrailingZeros(state.pieces(ownBase + KING));
+        
+        final long checkers = attackersTo(state, 
+                                          kingSquare,
+                                          them, 
+                                          occupancy);
+        int count = 0;
+        
+        // The king may not step to an attacked square. The king itself is
+        // removed from the occupancy so that it does not shadow the squares
+        // behind it on the line of a checking slider.
+        final long occupancyWithoutKing = occupancy ^ (1L << kingSquare);
+        long targets = Bitboards.kingAttacks(kingSquare) 
+                     & (capturesOnly ? enemy : ~own);
+        
+        while (targets != 0L) {
+            final int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            
+            if (!isAttacked(state, to, them, occupancyWithoutKing)) {
+                moves[count++] = Move.create(kingSquare, to);
+            }
+        }
+        
+        if ((checkers & (checkers - 1)) != 0L) {
+            // Double check: only the king may move.
+            return count;
+        }
+        
+        final long checkMask = 
+                checkers == 0L ? 
+                -1L : 
+                checkers | Bitboards.between(
+                        kingSquare,
+                        Long.numberOfTrailingZeros(checkers));
+        
+        final long pinned = pinnedPieces(state, 
+                                         kingSquare, 
+                                         own, 
+                                         occupancy, 
+                                         enemyBase);
+        final long targetMask = (capturesOnly ? enemy : ~own) & checkMask;
+        
+        // Knights: a pinned knight can never move.
+        long pieces = state.pieces(ownBase + KNIGHT) & ~pinned;
+        
+        while (pieces != 0L) {
+            final int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            count = addMoves(from, 
+                             Bitboards.knightAttacks(from) & targetMask,
+                             moves,
+                             count);
+        }
+        
+        final long queens = state.pieces(ownBase + QUEEN);
+        pieces = state.pieces(ownBase + BISHOP) | queens;
+        
+        while (pieces != 0L) {
+            final int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            long attacks = Bitboards.bishopAttacks(from, occupancy) 
+                         & targetMask;
+            
+            if ((pinned & (1L << from)) != 0L) {
+                attacks &= Bitboards.line(kingSquare, from);
+            }
+            
+            count = addMoves(from, attacks, moves, count);
+        }
+        
+        pieces = state.pieces(ownBase + ROOK) | queens;
+        
+        while (pieces != 0L) {
+            final int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            long attacks = Bitboards.rookAttacks(from, occupancy) 
+                         & targetMask;
+            
+            if ((pinned & (1L << from)) != 0L) {
+                attacks &= Bitboards.line(kingSquare, from);
+            }
+            
+            count = addMoves(from, attacks, moves, count);
+        }
+        
+        count = addPawnMoves(state,
+                             us,
+                             kingSquare, 
+                             enemy, 
+                             occupancy,
+                             checkMask,
+                             pinned,
+                             capturesOnly,
+                             moves, 
+                             count);
+        
+        if (checkers == 0L && !capturesOnly) {
+            count = addCastlingMoves(state, 
+                                     us, 
+                                     kingSquare,
+                                     occupancy,
+                                     moves, 
+                                     count);
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Checks whether the side to move in {@code state} is in check.
+     * 
+     * @param state the position to examine.
+     * @return {@code true} if the king of the side to move is attacked.
+     */
+    public static boolean isInCheck(final ChessGameState state) {
+        final int us = state.getSideToMove().ordinal();
+        final long king = 
+                state.pieces(us * ChessGameState.PIECE_TYPES + KING);
+        
+        return isAttacked(state,
+                          Long.numberOfTrailingZeros(king),
+                          us ^ 1,
+                          state.getOccupancy());
+    }
+    
+    /**
+     * Checks whether the square {@code square} is attacked by any piece of 
+     * the color {@code attacker}.
+     * 
+     * @param state    the position to examine.
+     * @param square   the square to check.
+     * @param attacker the color of the attacking side.
+     * @return {@code true} if the square is attacked.
+     */
+    public static boolean isSquareAttacked(final ChessGameState state,
+                                           final int square,
+                                           final ChessColor attacker) {
+        return isAttacked(state,
+                          square,
+                          attacker.ordinal(),
+                          state.getOccupancy());
+    }
+    
+    static boolean isAttacked(final ChessGameState state,
+                              final int square, 
+                              final int attacker,
+                              final long occupancy) {
+        return attackersTo(state, square, attacker, occupancy) != 0L;
+    }
+    
+    /**
+     * Returns the pieces of color {@code attacker} attacking {@code square}
+     * when the board occupancy is {@code occupancy}.
+     */
+    static long attackersTo(final ChessGameState state,
+                            final int square,
+                            final int attacker,
+                            final long occupancy) {
+        final int base = attacker * ChessGameState.PIECE_TYPES;
+        final long queens = state.pieces(base + QUEEN);
+        
+        return (Bitboards.pawnAttacks(attacker ^ 1, square) 
+                        & state.pieces(base + PAWN))
+             | (Bitboards.knightAttacks(square) 
+                        & state.pieces(base + KNIGHT))
+             | (Bitboards.kingAttacks(square) 
+                        & state.pieces(base + KING))
+             | (Bitboards.bishopAttacks(square, occupancy) 
+                        & (state.pieces(base + BISHOP) | queens))
+             | (Bitboards.rookAttacks(square, occupancy) 
+                        & (state.pieces(base + ROOK) | queens));
+    }
+    
+    /**
+     * Returns the own pieces that are the only blocker between the own king
+     * and an enemy slider aligned with it.
+     */
+    private static long pinnedPieces(final ChessGameState state,
+                                     final int kingSquare,
+                                     final long own,
+                                     final long occupancy,
+                                     final int enemyBase) {
+        final long queens = state.pieces(enemyBase + QUEEN);
+        long snipers = 
+                (Bitboards.rookAttacks(kingSquare, 0L) 
+                        & (state.pieces(enemyBase + ROOK) | queens))
+              | (Bitboards.bishopAttacks(kingSquare, 0L) 
+                        & (state.pieces(enemyBase + BISHOP) | queens));
+        
+        long pinned = 0L;
+        
+        while (snipers != 0L) {
+            final int sniperSquare = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            
+            final long blockers = Bitboards.between(kingSquare, sniperSquare)
+                                & occupancy;
+            
+            if (blockers != 0L && (blockers & (blockers - 1)) == 0L) {
+                pinned |= blockers & own;
+            }
+        }
+        
+        return pinned;
+    }
+    
+    private static int addMoves(final int from, 
+                                long targets, 
+                                final int[] moves, 
+                                int count) {
+        while (targets != 0L) {
+            moves[count++] = 
+                    Move.create(from, Long.numberOfTrailingZeros(targets));
+            targets &= targets - 1;
+        }
+        
+        return count;
+    }
+    
+    private static int addPawnMoves(final ChessGameState state,
+                                    final int us,
+                                    final int kingSquare,
+                                    final long enemy,
+                                    final long occupancy,
+                                    final long checkMask,
+                                    final long pinned,
+                                    final boolean capturesOnly,
+                                    final int[] moves,
+                                    int count) {
+        final int forward = us == WHITE ? 8 : -8;
+        final long startRank = us == WHITE ? Bitboards.RANK_2 
+                                           : Bitboards.RANK_7;
+        final long promotionRank = us == WHITE ? Bitboards.RANK_8 
+                                               : Bitboards.RANK_1;
+        final int enPassantSquare = state.getEnPassantSquare();
+        
+        long pawns = state.pieces(us * ChessGameState.PIECE_TYPES + PAWN);
+        
+        while (pawns != 0L) {
+            final int from = Long.numberOfTrailingZeros(pawns);
+            final long fromBit = pawns & -pawns;
+            pawns ^= fromBit;
+            
+            final int oneStep = from + forward;
+            long targets = 0L;
+            
+            if ((occupancy & (1L << oneStep)) == 0L) {
+                targets = 1L << oneStep;
+                
+                if (capturesOnly) {
+                    // Only the pushes that promote are kept.
+                    targets &= promotionRank;
+                } else if ((fromBit & startRank) != 0L 
+                        && (occupancy & (1L << (oneStep + forward))) == 0L) {
+                    targets |= 1L << (oneStep + forward);
+                }
+            }
+            
+            final long attacks = Bitboards.pawnAttacks(us, from);
+            targets |= attacks & enemy;
+            targets &= checkMask;
+            
+            if ((pinned & fromBit) != 0L) {
+                targets &= Bitboards.line(kingSquare, from);
+            }
+            
+            while (targets != 0L) {
+                final int to = Long.numberOfTrailingZeros(targets);
+                final long toBit = targets & -targets;
+                targets ^= toBit;
+                
+                if ((toBit & promotionRank) != 0L) {
+                    moves[count++] = Move.createPromotion(
+                            from, to, ChessPieceType.QUEEN);
+                    moves[count++] = Move.createPromotion(
+                            from, to, ChessPieceType.ROOK);
+                    moves[count++] = Move.createPromotion(
+                            from, to, ChessPieceType.BISHOP);
+                    moves[count++] = Move.createPromotion(
+                            from, to, ChessPieceType.KNIGHT);
+                } else {
+                    moves[count++] = Move.create(from, to);
+                }
+            }
+            
+            if (enPassantSquare != Bitboards.NO_SQUARE
+                    && (attacks & (1L << enPassantSquare)) != 0L
+                    && isLegalEnPassant(state, 
+                                        us,
+                                        kingSquare,
+                                        from, 
+                                        enPassantSquare - forward,
+                                        enPassantSquare, 
+                                        occupancy)) {
+                moves[count++] = Move.create(from, 
+                                             enPassantSquare, 
+                                             Move.EN_PASSANT);
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Checks that capturing en passant does not leave the own king attacked.
+     * The capture removes two pieces from a single rank, so the pin test of 
+     * the other moves does not suffice, and the position after the capture is
+     * tested directly.
+     */
+    private static boolean isLegalEnPassant(final ChessGameState state,
+                                            final int us,
+                                            final int kingSquare,
+                                            final int from,
+                                            final int capturedSquare,
+                                            final int to,
+                                            final long occupancy) {
+        final int enemyBase = (us ^ 1) * ChessGameState.PIECE_TYPES;
+        final long newOccupancy = (occupancy ^ (1L << from) 
+                                             ^ (1L << capturedSquare))
+                                | (1L << to);
+        final long queens = state.pieces(enemyBase + QUEEN);
+        
+        if ((Bitboards.rookAttacks(kingSquare, newOccupancy) 
+                & (state.pieces(enemyBase + ROOK) | queens)) != 0L) {
+            return false;
+        }
+        
+        if ((Bitboards.bishopAttacks(kingSquare, newOccupancy) 
+                & (state.pieces(enemyBase + BISHOP) | queens)) != 0L) {
+            return false;
+        }
+        
+        if ((Bitboards.knightAttacks(kingSquare) 
+                & state.pieces(enemyBase + KNIGHT)) != 0L) {
+            return false;
+        }
+        
+        return (Bitboards.pawnAttacks(us, kingSquare)
+                & state.pieces(enemyBase + PAWN) 
+                & ~(1L << capturedSquare)) == 0L;
+    }
+    
+    private static int addCastlingMoves(final ChessGameState state,
+                                        final int us,
+                                        final int kingSquare,
+                                        final long occupancy,
+                                        final int[] moves,
+                                        int count) {
+        final int rights = state.getCastlingRights();
+        final int kingSideRight;
+        final int queenSideRight;
+        final int homeSquare;
+        
+        if (us == WHITE) {
+            kingSideRight  = ChessGameState.WHITE_KING_SIDE_CASTLING;
+            queenSideRight = ChessGameState.WHITE_QUEEN_SIDE_CASTLING;
+            homeSquare     = 4;
+        } else {
+            kingSideRight  = ChessGameState.BLACK_KING_SIDE_CASTLING;
+            queenSideRight = ChessGameState.BLACK_QUEEN_SIDE_CASTLING;
+            homeSquare     = 60;
+        }
+        
+        if (kingSquare != homeSquare 
+                || (rights & (kingSideRight | queenSideRight)) == 0) {
+            return count;
+        }
+        
+        final int them = us ^ 1;
+        final long rooks = 
+                state.pieces(us * ChessGameState.PIECE_TYPES + ROOK);
+        
+        if ((rights & kingSideRight) != 0
+                && (rooks & (1L << (homeSquare + 3))) != 0L
+                && (occupancy & (3L << (homeSquare + 1))) == 0L
+                && !isAttacked(state, homeSquare + 1, them, occupancy)
+                && !isAttacked(state, homeSquare + 2, them, occupancy)) {
+            moves[count++] = Move.create(homeSquare, 
+                                         homeSquare + 2, 
+                                         Move.CASTLING);
+        }
+        
+        if ((rights & queenSideRight) != 0
+                && (rooks & (1L << (homeSquare - 4))) != 0L
+                && (occupancy & (7L << (homeSquare - 3))) == 0L
+                && !isAttacked(state, homeSquare - 1, them, occupancy)
+                && !isAttacked(state, homeSquare - 2, them, occupancy)) {
+            moves[count++] = Move.create(homeSquare, 
+                                         homeSquare - 2, 
+                                         Move.CASTLING);
+        }
+        
+        return count;
+    }
+}
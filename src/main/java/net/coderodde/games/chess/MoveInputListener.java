@@ -0,0 +1,26 @@
+package net.coderodde.games.chess;
+
+/**
+ * This interface defines the API for objects receiving the moves a user 
+ * enters on a {@link ChessCanvas}, by dragging a piece or by clicking its 
+ * cell and then the target cell. The files and the ranks are counted as in
+ * {@link ChessBoardView}. The canvas does not check the legality of the 
+ * moves; a listener accepting a move shows the new position, and otherwise
+ * the piece stays where it was.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public interface MoveInputListener {
+    
+    /**
+     * Called on the event dispatch thread when the user moves the piece at
+     * {@code (fromFile, fromRank)} to {@code (toFile, toRank)}.
+     * 
+     * @param fromFile the file of the source square.
+     * @param fromRank the rank of the source square.
+     * @param toFile   the file of the target square.
+     * @param toRank   the rank of the target square.
+     */
+    void moveEntered(int fromFile, int fromRank, int toFile, int toRank);
+}
@@ -0,0 +1,131 @@
+package net.coderodde.games.chess;
+
+import java.io.PrintStream;
+
+/**
+ * This class counts the leaf nodes of the legal move tree of a position up 
+ * to a given depth. The counts are compared against the well-known perft 
+ * numbers in order to verify the move generator, and the running time gives
+ * the move generator throughput. The tree is walked in place with 
+ * make/unmake, and the move buffers of all the plies are preallocated, so 
+ * that no allocation happens per node.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class Perft {
+    
+    /**
+     * The maximum supported depth.
+     */
+    public static final int MAX_DEPTH = 64;
+    
+    /**
+     * The position being walked.
+     */
+    private final ChessGameState state;
+    
+    /**
+     * The move buffer of each ply.
+     */
+    private final int[][] moveBuffers = 
+            new int[MAX_DEPTH + 1][MoveGenerator.MAX_MOVES];
+    
+    public Perft(final ChessGameState root) {
+        this.state = new ChessGameState(root);
+    }
+    
+    /**
+     * Counts the leaf nodes of the legal move tree of depth {@code depth}.
+     * 
+     * @param depth the depth of the tree.
+     * @return the number of leaf nodes.
+     */
+    public long perft(final int depth) {
+        checkDepth(depth);
+        return depth == 0 ? 1L : perft(0, depth);
+    }
+    
+    /**
+     * Counts the leaf nodes below each root move, printing one line per move
+     * followed by the total node count.
+     * 
+     * @param depth the depth of the tree.
+     * @param out   the stream to print to.
+     * @return the total number of leaf nodes.
+     */
+    public long divide(final int depth, final PrintStream out) {
+        checkDepth(depth);
+        
+        if (depth == 0) {
+            return 1L;
+        }
+        
+        final int[] moves = moveBuffers[0];
+        final int moveCount = 
+                MoveGenerator.generateLegalMoves(state, moves);
+        long total = 0L;
+        
+        for (int i = 0; i < moveCount; ++i) {
+            state.makeMove(moves[i]);
+            final long nodes = depth == 1 ? 1L : perft(1, depth - 1);
+            state.unmakeMove();
+            total += nodes;
+            out.println(Move.toString(moves[i]) + ": " + nodes);
+        }
+        
+        out.println();
+        out.println("Moves: " + moveCount);
+        out.println("Nodes: " + total);
+        return total;
+    }
+    
+    private long perft(final int ply, final int depth) {
+        final int[] moves = moveBuffers[ply];
+        final int moveCount = 
+                MoveGenerator.generateLegalMoves(state, moves);
+        
+        if (depth == 1) {
+            // Bulk counting: the legal moves are exactly the leaves.
+            return moveCount;
+        }
+        
+        long nodes = 0L;
+        
+        for (int i = 0; i < moveCount; ++i) {
+            state.makeMove(moves[i]);
+            nodes += perft(ply + 1, depth - 1);
+            state.unmakeMove();
+        }
+        
+        return nodes;
+    }
+    
+    private static void checkDepth(final int depth) {
+        if (depth < 0 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException(
+                    "The depth must be within [0, " + MAX_DEPTH + "], " +
+                    "received " + depth + ".");
+        }
+    }
+    
+    /**
+     * Runs perft with divide output on the initial position and reports the
+     * throughput. The only argument is the depth.
+     * 
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        final int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        final Perft perft = new Perft(new ChessGameState());
+        
+        final long startTime = System.nanoTime();
+        final long nodes = perft.divide(depth, System.out);
+        final long endTime = System.nanoTime();
+        
+        final double seconds = (endTime - startTime) / 1e9;
+        System.out.printf("Time: %.3f s, %.0f nodes/s%n", 
+                          seconds, 
+                          nodes / Math.max(seconds, 1e-9));
+    }
+}
@@ -0,0 +1,198 @@
+package net.coderodde.games.chess;
+
+/**
+ * This interface defines the operations the search and the evaluators need
+ * from a game state, so that they run on the standard
+ * {@link ChessGameState} and on the game states of the chess variants
+ * alike. The squares are numbered rank by rank, starting from the
+ * <i>a</i>-file of the first rank, and the piece codes are the ones of
+ * {@link ChessPiece}. The moves are packed into {@code int}s in a layout
+ * known to the implementation only, zero denoting the absence of a move;
+ * they are decoded with the move accessors of this interface.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public interface Position extends ChessBoardView {
+    
+    /**
+     * Returns the number of squares of the board.
+     * 
+     * @return the number of squares.
+     */
+    int getSquareCount();
+    
+    /**
+     * Returns the size of a move buffer sufficient for any position of this
+     * board.
+     * 
+     * @return the move buffer size.
+     */
+    int getMaxMoves();
+    
+    /**
+     * Returns the piece occupying the square {@code square}, or {@code null}
+     * if the square is empty.
+     * 
+     * @param square the square index.
+     * @return the piece at the square.
+     */
+    ChessPiece getPiece(int square);
+    
+    /**
+     * Returns the code of the piece occupying the square {@code square}, or
+     * {@link ChessPiece#NONE} if the square is empty.
+     * 
+     * @param square the square index.
+     * @return the piece code at the square.
+     */
+    byte getPieceCode(int square);
+    
+    ChessColor getSideToMove();
+    
+    /**
+     * Returns the Zobrist key of the current position, covering the pieces,
+     * the side to move, the castling rights and the en passant square.
+     * 
+     * @return the Zobrist key.
+     */
+    long getZobristKey();
+    
+    int getHalfmoveClock();
+    
+    /**
+     * Checks whether the current position has occurred before since the last
+     * capture or pawn move, with the same side to move.
+     * 
+     * @return {@code true} if the position is a repetition.
+     */
+    boolean isRepetition();
+    
+    /**
+     * Checks whether neither player can possibly checkmate.
+     * 
+     * @return {@code true} if the material is insufficient for a checkmate.
+     */
+    boolean isInsufficientMaterial();
+    
+    /**
+     * Checks whether the side {@code color} has any piece besides its king
+     * and pawns.
+     * 
+     * @param color the color of the pieces.
+     * @return {@code true} if the side has a piece.
+     */
+    boolean hasNonPawnMaterial(ChessColor color);
+    
+    BoardListener getBoardListener();
+    
+    /**
+     * Sets the listener notified of every piece change of this position.
+     * The listener is not told about the pieces already on the board, and it
+     * is not copied along with the position.
+     * 
+     * @param boardListener the listener, or {@code null} for none.
+     */
+    void setBoardListener(BoardListener boardListener);
+    
+    /**
+     * Writes all the legal moves of the side to move into {@code moves},
+     * starting from index zero.
+     * 
+     * @param moves the output buffer of length at least
+     *              {@link #getMaxMoves()}.
+     * @return the number of generated moves.
+     */
+    int generateLegalMoves(int[] moves);
+    
+    /**
+     * Writes the legal captures and promotions of the side to move into
+     * {@code moves}, starting from index zero.
+     * 
+     * @param moves the output buffer of length at least
+     *              {@link #getMaxMoves()}.
+     * @return the number of generated moves.
+     */
+    int generateLegalCaptures(int[] moves);
+    
+    /**
+     * Returns whether the side to move is in check.
+     * 
+     * @return {@code true} if the king of the side to move is attacked.
+     */
+    boolean isInCheck();
+    
+    /**
+     * Plays the legal move {@code move}. The move may be taken back with
+     * {@link #unmakeMove()}.
+     * 
+     * @param move the packed move to play.
+     */
+    void makeMove(int move);
+    
+    /**
+     * Passes the turn to the opponent without moving a piece, for the null
+     * move pruning of the search. Must not be called while in check. Taken
+     * back with {@link #unmakeMove()}.
+     */
+    void makeNullMove();
+    
+    /**
+     * Takes back the last move played.
+     * 
+     * @throws IllegalStateException if there is no move to take back.
+     */
+    void unmakeMove();
+    
+    /**
+     * Returns the source square of the move {@code move}.
+     * 
+     * @param move the packed move.
+     * @return the source square.
+     */
+    int getMoveFrom(int move);
+    
+    /**
+     * Returns the target square of the move {@code move}.
+     * 
+     * @param move the packed move.
+     * @return the target square.
+     */
+    int getMoveTo(int move);
+    
+    /**
+     * Returns whether the move {@code move} is a pawn capturing en passant.
+     * 
+     * @param move the packed move.
+     * @return {@code true} for an en passant capture.
+     */
+    boolean isEnPassant(int move);
+    
+    /**
+     * Returns the piece type a pawn promotes to, or {@code null} if the move
+     * is not a promotion.
+     * 
+     * @param move the packed move.
+     * @return the promotion piece type.
+     */
+    ChessPieceType getMovePromotion(int move);
+    
+    /**
+     * Returns the move {@code move} in the long algebraic notation, such as
+     * <i>e2e4</i> or <i>e7e8q</i>, or <i>0000</i> for no move.
+     * 
+     * @param move the packed move.
+     * @return the textual representation of the move.
+     */
+    String formatMove(int move);
+    
+    /**
+     * Copies this position, move history included, into {@code target} if
+     * it is a position of the same kind and board, and into a new position
+     * otherwise.
+     * 
+     * @param target the position to overwrite, or {@code null}.
+     * @return the copy.
+     */
+    Position copyInto(Position target);
+}
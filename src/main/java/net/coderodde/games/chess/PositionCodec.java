@@ -0,0 +1,229 @@
+package net.coderodde.games.chess;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class encodes positions into a fixed-width binary record of
+ * {@link #ENCODED_SIZE} bytes, so that large position sets can be stored
+ * back to back in plain {@link ByteBuffer}s and files without an object per
+ * position. The layout of a record is:
+ * <pre>
+ *  0-7   the occupancy bitboard, big-endian;
+ *  8-23  the piece codes of the occupied squares in ascending square order,
+ *        one per nibble, low nibble first;
+ *  24    bit 0: black to move, bits 1-4: the castling rights;
+ *  25    the en passant square, or 255 if there is none;
+ *  26    the halfmove clock, saturated at 255;
+ *  27-28 the fullmove number, big-endian, saturated at 65535;
+ *  29-31 reserved, zero.
+ * </pre>
+ * The records are read and written with the absolute {@code ByteBuffer}
+ * accessors, so a single buffer, such as a memory-mapped file, may be
+ * decoded by many threads at once. The move history is not encoded.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class PositionCodec {
+    
+    /**
+     * The size of an encoded position in bytes.
+     */
+    public static final int ENCODED_SIZE = 32;
+    
+    /**
+     * The maximum number of pieces an encoded position may hold.
+     */
+    public static final int MAX_PIECES = 32;
+    
+    private static final int PIECES_OFFSET    = 8;
+    private static final int FLAGS_OFFSET     = 24;
+    private static final int EN_PASSANT_INDEX = 25;
+    private static final int HALFMOVE_INDEX   = 26;
+    private static final int FULLMOVE_INDEX   = 27;
+    private static final int RESERVED_OFFSET  = 29;
+    
+    private static final int NO_EN_PASSANT = 0xff;
+    
+    private PositionCodec() {}
+    
+    /**
+     * Writes the encoding of {@code state} to {@code buffer} at the byte
+     * offset {@code offset}. Does not change the position of the buffer.
+     * 
+     * @param state  the position to encode.
+     * @param buffer the target buffer.
+     * @param offset the offset of the record in the buffer.
+     * @throws IllegalArgumentException if the position has more than
+     *                                  {@link #MAX_PIECES} pieces.
+     */
+    public static void encode(final ChessGameState state,
+                              final ByteBuffer buffer,
+                              final int offset) {
+        final long occupancy = state.getOccupancy();
+        
+        if (Bitboards.count(occupancy) > MAX_PIECES) {
+            throw new IllegalArgumentException(
+                    "Cannot encode a position with more than " + MAX_PIECES +
+                    " pieces.");
+        }
+        
+        buffer.putLong(offset, occupancy);
+        long remaining = occupancy;
+        int packed = 0;
+        int nibbles = 0;
+        int index = offset + PIECES_OFFSET;
+        
+        while (remaining != 0L) {
+            final int square = Bitboards.lowestSquare(remaining);
+            remaining &= remaining - 1;
+            packed |= state.pieceCodeAt(square) << (4 * nibbles);
+            
+            if (++nibbles == 2) {
+                buffer.put(index++, (byte) packed);
+                packed = 0;
+                nibbles = 0;
+            }
+        }
+        
+        if (nibbles == 1) {
+            buffer.put(index++, (byte) packed);
+        }
+        
+        while (index < offset + FLAGS_OFFSET) {
+            buffer.put(index++, (byte) 0);
+        }
+        
+        final int flags =
+                (state.getSideToMove() == ChessColor.BLACK ? 1 : 0) |
+                (state.getCastlingRights() << 1);
+        final int enPassantSquare = state.getEnPassantSquare();
+        
+        buffer.put(offset + FLAGS_OFFSET, (byte) flags);
+        buffer.put(offset + EN_PASSANT_INDEX,
+                   (byte)(enPassantSquare == Bitboards.NO_SQUARE ?
+                          NO_EN_PASSANT :
+                          enPassantSquare));
+        buffer.put(offset + HALFMOVE_INDEX,
+                   (byte) Math.min(state.getHalfmoveClock(), 0xff));
+        buffer.putShort(offset + FULLMOVE_INDEX,
+                        (short) Math.min(state.getFullmoveNumber(), 0xffff));
+        
+        for (int i = RESERVED_OFFSET; i < ENCODED_SIZE; ++i) {
+            buffer.put(offset + i, (byte) 0);
+        }
+    }
+    
+    /**
+     * Writes the encoding of {@code state} to {@code buffer} at its current
+     * position and advances the position by {@link #ENCODED_SIZE}.
+     * 
+     * @param state  the position to encode.
+     * @param buffer the target buffer.
+     */
+    public static void encode(final ChessGameState state,
+                              final ByteBuffer buffer) {
+        final int offset = buffer.position();
+        
+        if (buffer.remaining() < ENCODED_SIZE) {
+            throw new IllegalArgumentException(
+                    "The buffer has room for " + buffer.remaining() +
+                    " bytes, need " + ENCODED_SIZE + ".");
+        }
+        
+        encode(state, buffer, offset);
+        buffer.position(offset + ENCODED_SIZE);
+    }
+    
+    /**
+     * Decodes the record at the byte offset {@code offset} of
+     * {@code buffer} into {@code state}, replacing its contents and
+     * clearing its move history. Neither allocates nor changes the position
+     * of the buffer.
+     * 
+     * @param buffer the source buffer.
+     * @param offset the offset of the record in the buffer.
+     * @param state  the game state to decode into.
+     * @throws IllegalArgumentException if the record is malformed or its
+     *                                  position is not valid.
+     */
+    public static void decode(final ByteBuffer buffer,
+                              final int offset,
+                              final ChessGameState state) {
+        final long occupancy = buffer.getLong(offset);
+        
+        if (Bitboards.count(occupancy) > MAX_PIECES) {
+            throw new IllegalArgumentException(
+                    "Bad position record at offset " + offset + ".");
+        }
+        
+        state.clear();
+        long remaining = occupancy;
+        int nibbles = 0;
+        int index = offset + PIECES_OFFSET;
+        
+        while (remaining != 0L) {
+            final int square = Bitboards.lowestSquare(remaining);
+            remaining &= remaining - 1;
+            final int code = (buffer.get(index) >>> (4 * nibbles)) & 0xf;
+            
+            if (code >= ChessGameState.PIECE_CODES) {
+                throw new IllegalArgumentException(
+                        "Bad piece code " + code + " in the position " +
+                        "record at offset " + offset + ".");
+            }
+            
+            state.addPiece(square, code);
+            
+            if (++nibbles == 2) {
+                ++index;
+                nibbles = 0;
+            }
+        }
+        
+        final int flags = buffer.get(offset + FLAGS_OFFSET);
+        final int enPassantSquare =
+                buffer.get(offset + EN_PASSANT_INDEX) & 0xff;
+        
+        state.setSideToMove((flags & 1) != 0 ?
+                            ChessColor.BLACK :
+                            ChessColor.WHITE);
+        state.setCastlingRights(flags >>> 1);
+        state.setEnPassantSquare(enPassantSquare == NO_EN_PASSANT ?
+                                 Bitboards.NO_SQUARE :
+                                 enPassantSquare);
+        state.setHalfmoveClock(buffer.get(offset + HALFMOVE_INDEX) & 0xff);
+        state.setFullmoveNumber(buffer.getShort(offset + FULLMOVE_INDEX)
+                                & 0xffff);
+        
+        final String error = state.checkPosition();
+        
+        if (error != null) {
+            throw new IllegalArgumentException(
+                    "Bad position record at offset " + offset + ": " + 
+                    error + ".");
+        }
+    }
+    
+    /**
+     * Decodes the record at the current position of {@code buffer} into a
+     * new game state and advances the position by {@link #ENCODED_SIZE}.
+     * 
+     * @param buffer the source buffer.
+     * @return the decoded game state.
+     */
+    public static ChessGameState decode(final ByteBuffer buffer) {
+        final int offset = buffer.position();
+        
+        if (buffer.remaining() < ENCODED_SIZE) {
+            throw new IllegalArgumentException(
+                    "The buffer holds " + buffer.remaining() +
+                    " bytes, need " + ENCODED_SIZE + ".");
+        }
+        
+        final ChessGameState state = new ChessGameState();
+        decode(buffer, offset, state);
+        buffer.position(offset + ENCODED_SIZE);
+        return state;
+    }
+}
@@ -0,0 +1,111 @@
+package net.coderodde.games.chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class gives random read access to a file of positions encoded by 
+ * {@link PositionCodec} by mapping it into memory. A mapped buffer may not
+ * exceed 2 GB, so large files are mapped as several chunks. Reading does 
+ * not allocate and may happen from many threads at once.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class PositionFile implements Closeable {
+    
+    /**
+     * The number of positions per mapped chunk.
+     */
+    private static final int POSITIONS_PER_CHUNK = 1 << 25;
+    
+    private static final long CHUNK_SIZE = 
+            (long) POSITIONS_PER_CHUNK * PositionCodec.ENCODED_SIZE;
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+    
+    /**
+     * Maps the position file {@code path} for reading.
+     * 
+     * @param path the path of the file.
+     * @throws IOException if the file cannot be mapped.
+     * @throws IllegalArgumentException if the file size is not a multiple of
+     *                                  the record size.
+     */
+    public PositionFile(final Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        
+        try {
+            final long fileSize = channel.size();
+            
+            if (fileSize % PositionCodec.ENCODED_SIZE != 0) {
+                throw new IllegalArgumentException(
+                        "The size of the position file \"" + path + 
+                        "\" is not a multiple of " + 
+                        PositionCodec.ENCODED_SIZE + ".");
+            }
+            
+            this.size = fileSize / PositionCodec.ENCODED_SIZE;
+            this.chunks = 
+                    new MappedByteBuffer[(int)((fileSize + CHUNK_SIZE - 1) /
+                                               CHUNK_SIZE)];
+            
+            for (int i = 0; i < chunks.length; ++i) {
+                final long start = i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                        start,
+                                        Math.min(CHUNK_SIZE, 
+                                                 fileSize - start));
+            }
+        } catch (final IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Returns the number of positions in the file.
+     * 
+     * @return the number of positions.
+     */
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * Decodes the position with index {@code index} into {@code state}.
+     * 
+     * @param index the index of the position.
+     * @param state the game state to decode into.
+     */
+    public void read(final long index, final ChessGameState state) {
+        if (index < 0L || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Position index " + index + " is out of range [0, " + 
+                    size + ").");
+        }
+        
+        PositionCodec.decode(
+                chunks[(int)(index / POSITIONS_PER_CHUNK)],
+                (int)(index % POSITIONS_PER_CHUNK) * 
+                        PositionCodec.ENCODED_SIZE,
+                state);
+    }
+    
+    /**
+     * Closes the file. The mapping stays valid until it is garbage 
+     * collected, but the positions may not be read afterwards.
+     * 
+     * @throws IOException if closing the file fails.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,95 @@
+package net.coderodde.games.chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class appends positions encoded by {@link PositionCodec} to a file.
+ * The records are collected in a direct buffer and written to the channel 
+ * in large blocks, so writing a position costs no allocation and no system
+ * call.
+ *
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class PositionFileWriter implements Closeable {
+    
+    /**
+     * The number of positions buffered before a write.
+     */
+    private static final int BUFFERED_POSITIONS = 4096;
+    
+    private final FileChannel channel;
+    private final ByteBuffer buffer = 
+            ByteBuffer.allocateDirect(BUFFERED_POSITIONS * 
+                                      PositionCodec.ENCODED_SIZE);
+    private long size;
+    
+    /**
+     * Opens the position file {@code path} for appending, creating it if it
+     * does not exist.
+     * 
+     * @param path the path of the file.
+     * @throws IOException if the file cannot be opened.
+     */
+    public PositionFileWriter(final Path path) throws IOException {
+        this.channel = FileChannel.open(path, 
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.WRITE,
+                                        StandardOpenOption.APPEND);
+        this.size = channel.size() / PositionCodec.ENCODED_SIZE;
+    }
+    
+    /**
+     * Returns the number of positions in the file, including the buffered 
+     * ones.
+     * 
+     * @return the number of positions.
+     */
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * Appends the position {@code state} to the file.
+     * 
+     * @param state the position to append.
+     * @throws IOException if writing the file fails.
+     */
+    public void write(final ChessGameState state) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        
+        PositionCodec.encode(state, buffer);
+        ++size;
+    }
+    
+    /**
+     * Writes the buffered positions to the file.
+     * 
+     * @throws IOException if writing the file fails.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        
+        buffer.clear();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
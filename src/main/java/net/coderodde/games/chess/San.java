@@ -0,0 +1,262 @@
+package net.coderodde.games.chess;
+
+import java.util.Objects;
+
+/**
+ * This class parses and writes moves in the Standard Algebraic Notation 
+ * (SAN) used by PGN, such as <i>Nf3</i>, <i>exd5</i>, <i>O-O</i> or
+ * <i>e8=Q+</i>, by matching them against the legal moves of a position.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class San {
+    
+    /**
+     * The SAN letters of the piece types indexed by their ordinals.
+     */
+    private static final String PIECE_LETTERS = "KQRBNP";
+    
+    private San() {}
+    
+    /**
+     * Returns the legal move of {@code state} denoted by the SAN
+     * {@code san}. The check and annotation suffixes are ignored, and
+     * castling may also be written with zeros.
+     * 
+     * @param state the position the move is played in.
+     * @param san   the move in SAN.
+     * @return the packed move.
+     * @throws IllegalArgumentException if {@code san} does not denote
+     *                                  exactly one legal move.
+     */
+    public static int parse(final ChessGameState state, final String san) {
+        Objects.requireNonNull(state, "The input game state is null.");
+        Objects.requireNonNull(san, "The input SAN is null.");
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        final int moveCount = MoveGenerator.generateLegalMoves(state, moves);
+        
+        int end = san.length();
+        
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            --end;
+        }
+        
+        final String text = san.substring(0, end);
+        
+        if (text.equals("O-O") || text.equals("0-0")) {
+            return findCastling(moves, moveCount, 2, san);
+        }
+        
+        if (text.equals("O-O-O") || text.equals("0-0-0")) {
+            return findCastling(moves, moveCount, -2, san);
+        }
+        
+        int index = 0;
+        ChessPieceType type = ChessPieceType.PAWN;
+        
+        if (end > 0 && Character.isUpperCase(text.charAt(0))) {
+            type = Fen.parsePieceType(text.charAt(0));
+            
+            if (type == null || type == ChessPieceType.PAWN) {
+                throw new IllegalArgumentException(
+                        "Bad SAN move: \"" + san + "\".");
+            }
+            
+            index = 1;
+        }
+        
+        ChessPieceType promotion = null;
+        
+        if (end >= 2 && type == ChessPieceType.PAWN
+                && Character.isUpperCase(text.charAt(end - 1))) {
+            promotion = Fen.parsePieceType(text.charAt(end - 1));
+            
+            if (promotion == null
+                    || promotion == ChessPieceType.KING
+                    || promotion == ChessPieceType.PAWN) {
+                throw new IllegalArgumentException(
+                        "Bad SAN move: \"" + san + "\".");
+            }
+            
+            end -= text.charAt(end - 2) == '=' ? 2 : 1;
+        }
+        
+        if (end - index < 2) {
+            throw new IllegalArgumentException(
+                    "Bad SAN move: \"" + san + "\".");
+        }
+        
+        final int to = Bitboards.parseSquare(text.substring(end - 2, end));
+        int fromFile = -1;
+        int fromRank = -1;
+        
+        for (int i = index; i < end - 2; ++i) {
+            final char c = text.charAt(i);
+            
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != '-') {
+                throw new IllegalArgumentException(
+                        "Bad SAN move: \"" + san + "\".");
+            }
+        }
+        
+        int result = Move.NONE;
+        
+        for (int i = 0; i < moveCount; ++i) {
+            final int move = moves[i];
+            final int from = Move.getFrom(move);
+            
+            if (Move.getTo(move) != to
+                    || Move.getKind(move) == Move.CASTLING
+                    || Move.getPromotion(move) != promotion
+                    || state.getPiece(from).getType() != type
+                    || (fromFile >= 0 && Bitboards.file(from) != fromFile)
+                    || (fromRank >= 0 && Bitboards.rank(from) != fromRank)) {
+                continue;
+            }
+            
+            if (result != Move.NONE) {
+                throw new IllegalArgumentException(
+                        "Ambiguous SAN move: \"" + san + "\".");
+            }
+            
+            result = move;
+        }
+        
+        if (result == Move.NONE) {
+            throw new IllegalArgumentException(
+                    "Illegal SAN move: \"" + san + "\".");
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Returns the legal move {@code move} of {@code state} written in SAN,
+     * with the minimal disambiguation and the check or checkmate suffix. The
+     * move is made and unmade on {@code state} to find the suffix, so the 
+     * state must not be shared with another thread meanwhile.
+     * 
+     * @param state the position the move is played in.
+     * @param move  the legal move.
+     * @return the move in SAN.
+     */
+    public static String toString(final ChessGameState state, 
+                                  final int move) {
+        Objects.requireNonNull(state, "The input game state is null.");
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        final int moveCount = MoveGenerator.generateLegalMoves(state, moves);
+        final int from = Move.getFrom(move);
+        final int to = Move.getTo(move);
+        final StringBuilder sb = new StringBuilder(8);
+        
+        if (Move.getKind(move) == Move.CASTLING) {
+            sb.append(to > from ? "O-O" : "O-O-O");
+        } else {
+            final ChessPieceType type = state.getPiece(from).getType();
+            final boolean capture = state.getPiece(to) != null 
+                    || Move.getKind(move) == Move.EN_PASSANT;
+            
+            if (type == ChessPieceType.PAWN) {
+                if (capture) {
+                    sb.append((char)('a' + Bitboards.file(from)));
+                }
+            } else {
+                sb.append(PIECE_LETTERS.charAt(type.ordinal()));
+                appendDisambiguation(sb, state, moves, moveCount, move);
+            }
+            
+            if (capture) {
+                sb.append('x');
+            }
+            
+            sb.append(Bitboards.squareName(to));
+            
+            final ChessPieceType promotion = Move.getPromotion(move);
+            
+            if (promotion != null) {
+                sb.append('=')
+                  .append(PIECE_LETTERS.charAt(promotion.ordinal()));
+            }
+        }
+        
+        state.makeMove(move);
+        
+        if (MoveGenerator.isInCheck(state)) {
+            sb.append(MoveGenerator.generateLegalMoves(state, moves) == 0 ? 
+                      '#' : 
+                      '+');
+        }
+        
+        state.unmakeMove();
+        return sb.toString();
+    }
+    
+    /**
+     * Appends the file, the rank or both of the source square of the piece
+     * move {@code move} if another piece of the same type may move to the 
+     * same square.
+     */
+    private static void appendDisambiguation(final StringBuilder sb,
+                                             final ChessGameState state,
+                                             final int[] moves,
+                                             final int moveCount,
+                                             final int move) {
+        final int from = Move.getFrom(move);
+        final ChessPieceType type = state.getPiece(from).getType();
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        
+        for (int i = 0; i < moveCount; ++i) {
+            final int other = Move.getFrom(moves[i]);
+            
+            if (other == from 
+                    || Move.getTo(moves[i]) != Move.getTo(move)
+                    || state.getPiece(other).getType() != type) {
+                continue;
+            }
+            
+            ambiguous = true;
+            sameFile |= Bitboards.file(other) == Bitboards.file(from);
+            sameRank |= Bitboards.rank(other) == Bitboards.rank(from);
+        }
+        
+        if (!ambiguous) {
+            return;
+        }
+        
+        if (!sameFile) {
+            sb.append((char)('a' + Bitboards.file(from)));
+        } else if (!sameRank) {
+            sb.append((char)('1' + Bitboards.rank(from)));
+        } else {
+            sb.append(Bitboards.squareName(from));
+        }
+    }
+    
+    /**
+     * Returns the legal castling move moving the king by {@code delta}
+     * files.
+     */
+    private static int findCastling(final int[] moves,
+                                    final int moveCount,
+                                    final int delta,
+                                    final String san) {
+        for (int i = 0; i < moveCount; ++i) {
+            final int move = moves[i];
+            
+            if (Move.getKind(move) == Move.CASTLING
+                    && Move.getTo(move) - Move.getFrom(move) == delta) {
+                return move;
+            }
+        }
+        
+        throw new IllegalArgumentException(
+                "Illegal SAN move: \"" + san + "\".");
+    }
+}
@@ -0,0 +1,58 @@
+package net.coderodde.games.chess;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+import net.coderodde.games.chess.search.SearchListener;
+import net.coderodde.games.chess.search.SearchResult;
+
+/**
+ * This class forwards the search callbacks to a delegate listener on the 
+ * Swing event dispatch thread. Progress reports arriving faster than the 
+ * event dispatch thread consumes them are coalesced, so that only the latest
+ * report is delivered and the event queue never floods.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class SwingSearchListener implements SearchListener {
+    
+    private final SearchListener delegate;
+    
+    /**
+     * The latest progress report not yet delivered to the delegate.
+     */
+    private final AtomicReference<SearchResult> pendingProgress = 
+            new AtomicReference<>();
+    
+    public SwingSearchListener(final SearchListener delegate) {
+        this.delegate = Objects.requireNonNull(delegate, 
+                                               "The input listener is null.");
+    }
+    
+    @Override
+    public void searchProgress(final SearchResult progress) {
+        if (pendingProgress.getAndSet(progress) == null) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    final SearchResult latest = pendingProgress.getAndSet(null);
+                    
+                    if (latest != null) {
+                        delegate.searchProgress(latest);
+                    }
+                }
+            });
+        }
+    }
+    
+    @Override
+    public void searchFinished(final SearchResult result) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                delegate.searchFinished(result);
+            }
+        });
+    }
+}
@@ -0,0 +1,134 @@
+package net.coderodde.games.chess;
+
+/**
+ * This class holds the random keys for Zobrist hashing of chess positions.
+ * The keys are generated from a fixed seed, so that the hash of a position 
+ * is the same in every run and may be stored on disk.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class Zobrist {
+    
+    private static final long SEED = 0x5eedc0dde5eedL;
+    
+    /**
+     * The keys of each piece code on each square.
+     */
+    static final long[][] PIECE_SQUARE_KEYS = 
+            new long[ChessGameState.PIECE_CODES][Bitboards.NUMBER_OF_SQUARES];
+    
+    /**
+     * The keys of each piece code on each square for the pawn key: the keys
+     * of {@link #PIECE_SQUARE_KEYS} for the pawns and zero for the other 
+     * pieces, so that the pawn key is updated without branching.
+     */
+    static final long[][] PAWN_SQUARE_KEYS = 
+            new long[ChessGameState.PIECE_CODES][Bitboards.NUMBER_OF_SQUARES];
+    
+    /**
+     * The keys of each combination of castling rights.
+     */
+    static final long[] CASTLING_KEYS = 
+            new long[ChessGameState.ALL_CASTLING_RIGHTS + 1];
+    
+    /**
+     * The keys of the file of the en passant square.
+     */
+    static final long[] EN_PASSANT_KEYS = new long[Bitboards.BOARD_SIZE];
+    
+    /**
+     * The key toggled when black is to move.
+     */
+    static final long BLACK_TO_MOVE_KEY;
+    
+    static {
+        long state = SEED;
+        
+        for (final long[] keys : PIECE_SQUARE_KEYS) {
+            for (int i = 0; i < keys.length; ++i) {
+                keys[i] = mix(state += 0x9e3779b97f4a7c15L);
+            }
+        }
+        
+        // The key of "no castling rights" stays zero.
+        for (int i = 1; i < CASTLING_KEYS.length; ++i) {
+            CASTLING_KEYS[i] = mix(state += 0x9e3779b97f4a7c15L);
+        }
+        
+        for (int i = 0; i < EN_PASSANT_KEYS.length; ++i) {
+            EN_PASSANT_KEYS[i] = mix(state += 0x9e3779b97f4a7c15L);
+        }
+        
+        BLACK_TO_MOVE_KEY = mix(state + 0x9e3779b97f4a7c15L);
+        
+        for (final ChessColor color : ChessColor.values()) {
+            final int code = ChessGameState.pieceCode(color, 
+                                                      ChessPieceType.PAWN);
+            PAWN_SQUARE_KEYS[code] = PIECE_SQUARE_KEYS[code].clone();
+        }
+    }
+    
+    private Zobrist() {}
+    
+    /**
+     * Computes the Zobrist key of {@code state} from scratch. The game state
+     * maintains the same key incrementally, so this method is needed only 
+     * for verification.
+     * 
+     * @param state the position to hash.
+     * @return the Zobrist key.
+     */
+    public static long computeKey(final ChessGameState state) {
+        long key = 0L;
+        
+        for (int square = 0; square < Bitboards.NUMBER_OF_SQUARES; ++square) {
+            final int code = state.pieceCodeAt(square);
+            
+            if (code != ChessGameState.EMPTY) {
+                key ^= PIECE_SQUARE_KEYS[code][square];
+            }
+        }
+        
+        key ^= CASTLING_KEYS[state.getCastlingRights()];
+        
+        if (state.getEnPassantSquare() != Bitboards.NO_SQUARE) {
+            key ^= EN_PASSANT_KEYS[Bitboards.file(state.getEnPassantSquare())];
+        }
+        
+        if (state.getSideToMove() == ChessColor.BLACK) {
+            key ^= BLACK_TO_MOVE_KEY;
+        }
+        
+        return key;
+    }
+    
+    /**
+     * Computes the pawn key of {@code state} from scratch, for verification.
+     * 
+     * @param state the position to hash.
+     * @return the pawn key.
+     */
+    public static long computePawnKey(final ChessGameState state) {
+        long key = 0L;
+        
+        for (int square = 0; square < Bitboards.NUMBER_OF_SQUARES; ++square) {
+            final int code = state.pieceCodeAt(square);
+            
+            if (code != ChessGameState.EMPTY) {
+                key ^= PAWN_SQUARE_KEYS[code][square];
+            }
+        }
+        
+        return key;
+    }
+    
+    /**
+     * The SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,44 @@
+package net.coderodde.games.chess.analysis;
+
+import java.util.Objects;
+import net.coderodde.games.chess.ChessGameState;
+
+/**
+ * This class holds a position read from a corpus together with its sequence
+ * number and a label identifying it in the output.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class AnalysisPosition {
+    
+    private final long sequenceNumber;
+    private final String label;
+    private final ChessGameState state;
+    
+    public AnalysisPosition(final long sequenceNumber,
+                            final String label,
+                            final ChessGameState state) {
+        this.sequenceNumber = sequenceNumber;
+        this.label = Objects.requireNonNull(label, "The input label is null.");
+        this.state = Objects.requireNonNull(state,
+                                            "The input game state is null.");
+    }
+    
+    /**
+     * Returns the zero-based index of this position in its corpus.
+     * 
+     * @return the sequence number.
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+    
+    public ChessGameState getState() {
+        return state;
+    }
+}
@@ -0,0 +1,401 @@
+package net.coderodde.games.chess.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Move;
+import net.coderodde.games.chess.search.SearchEngine;
+import net.coderodde.games.chess.search.SearchLimits;
+import net.coderodde.games.chess.search.SearchResult;
+import net.coderodde.games.chess.search.TranspositionTable;
+
+/**
+ * This class analyses a corpus of positions without a display. The reading
+ * thread streams the positions into a bounded queue, from which a pool of
+ * worker threads takes them. Each worker owns a single-threaded
+ * {@link SearchEngine} with a private transposition table, so the workers
+ * share nothing and the throughput scales with the number of cores. The
+ * memory used does not depend on the size of the corpus.
+ * <p>
+ * Each result is written as one tab-separated line holding the label of the
+ * position, the best move in UCI notation, the score in the UCI format
+ * ({@code cp <centipawns>} or {@code mate <moves>}), the search depth and
+ * the node count. The lines are written in the order the searches finish.
+ * <p>
+ * A run over a large corpus survives bad input: the malformed records are
+ * skipped by the readers, and a position whose search fails gets a line 
+ * holding its label, {@code error} and the cause instead of a result. Both
+ * are counted in the final report. Only a failure to write the results 
+ * stops the run.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class BatchAnalyzer {
+    
+    /**
+     * The default search depth of the command line mode.
+     */
+    public static final int DEFAULT_DEPTH = 10;
+    
+    /**
+     * The number of queued positions per worker.
+     */
+    private static final int QUEUE_CAPACITY_PER_WORKER = 64;
+    
+    /**
+     * The interval between two progress reports in milliseconds.
+     */
+    private static final long PROGRESS_INTERVAL_MILLIS = 5000L;
+    
+    /**
+     * Tells a worker that the corpus is exhausted.
+     */
+    private static final AnalysisPosition END_OF_CORPUS =
+            new AnalysisPosition(-1L, "", new ChessGameState());
+    
+    private final int workerCount;
+    private final int hashSizeInMegabytes;
+    private final SearchLimits limits;
+    
+    public BatchAnalyzer(final int workerCount,
+                         final int hashSizeInMegabytes,
+                         final SearchLimits limits) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException(
+                    "The number of workers must be at least 1, received " +
+                    workerCount + ".");
+        }
+        
+        this.workerCount = workerCount;
+        this.hashSizeInMegabytes = hashSizeInMegabytes;
+        this.limits = Objects.requireNonNull(limits,
+                                             "The input search limits are " +
+                                             "null.");
+    }
+    
+    /**
+     * Analyses all the positions of {@code reader} and writes the results to
+     * {@code output}. The throughput is reported to {@code progress}
+     * periodically and once more at the end.
+     * 
+     * @param reader   the corpus to analyse.
+     * @param output   the writer receiving the results.
+     * @param progress the stream receiving the progress reports.
+     * @return the number of positions analysed.
+     * @throws IOException          if reading or writing fails.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    public long analyze(final PositionReader reader,
+                        final Writer output,
+                        final PrintStream progress)
+    throws IOException, InterruptedException {
+        final BlockingQueue<AnalysisPosition> queue =
+                new ArrayBlockingQueue<>(workerCount *
+                                         QUEUE_CAPACITY_PER_WORKER);
+        final AtomicLong analysedCount = new AtomicLong();
+        final AtomicLong failedCount = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Worker[] workers = new Worker[workerCount];
+        
+        for (int i = 0; i < workerCount; ++i) {
+            workers[i] = new Worker(i, 
+                                    queue, 
+                                    output, 
+                                    analysedCount, 
+                                    failedCount,
+                                    failure);
+            workers[i].start();
+        }
+        
+        final long startTime = System.currentTimeMillis();
+        long nextReportTime = startTime + PROGRESS_INTERVAL_MILLIS;
+        
+        try {
+            AnalysisPosition position;
+            
+            while (failure.get() == null
+                    && (position = reader.read()) != null) {
+                // Blocks while the workers are behind, which keeps the
+                // memory use bounded.
+                while (!queue.offer(position,
+                                    PROGRESS_INTERVAL_MILLIS,
+                                    TimeUnit.MILLISECONDS)) {
+                    if (failure.get() != null) {
+                        break;
+                    }
+                }
+                
+                final long now = System.currentTimeMillis();
+                
+                if (now >= nextReportTime) {
+                    report(progress, analysedCount.get(), now - startTime);
+                    nextReportTime = now + PROGRESS_INTERVAL_MILLIS;
+                }
+            }
+        } finally {
+            if (failure.get() != null) {
+                queue.clear();
+            }
+            
+            for (int i = 0; i < workerCount; ++i) {
+                queue.put(END_OF_CORPUS);
+            }
+            
+            for (final Worker worker : workers) {
+                worker.join();
+            }
+            
+            output.flush();
+        }
+        
+        final Throwable cause = failure.get();
+        
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause != null) {
+            throw new IllegalStateException("An analysis worker failed.",
+                                            cause);
+        }
+        
+        report(progress,
+               analysedCount.get(),
+               System.currentTimeMillis() - startTime);
+        progress.println(reader.getSkippedCount() + " records skipped, " + 
+                         failedCount.get() + " searches failed");
+        return analysedCount.get();
+    }
+    
+    /**
+     * Runs the batch analysis from the command line:
+     * <pre>
+     * analyze &lt;corpus.pgn|corpus.epd|corpus.fen&gt; [-o output]
+     *         [-threads N] [-hash MB] [-depth D] [-time MS] [-nodes N]
+     * </pre>
+     * The results are written to the standard output unless an output file
+     * is given, and the progress is reported to the standard error.
+     * 
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 2 || !args[0].equals("analyze")) {
+            printUsage();
+            System.exit(1);
+        }
+        
+        final Path input = Paths.get(args[1]);
+        Path outputPath = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hash = TranspositionTable.DEFAULT_SIZE_IN_MEGABYTES;
+        final SearchLimits limits =
+                new SearchLimits().setMaximumDepth(DEFAULT_DEPTH);
+        
+        try {
+            for (int i = 2; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException(
+                            "Missing value of option " + args[i] + ".");
+                }
+                
+                final String value = args[i + 1];
+                
+                switch (args[i]) {
+                    case "-o":
+                        outputPath = Paths.get(value);
+                        break;
+                    
+                    case "-threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    
+                    case "-hash":
+                        hash = Integer.parseInt(value);
+                        break;
+                    
+                    case "-depth":
+                        limits.setMaximumDepth(Integer.parseInt(value));
+                        break;
+                    
+                    case "-time":
+                        limits.setTimeLimitMillis(Long.parseLong(value));
+                        break;
+                    
+                    case "-nodes":
+                        limits.setNodeLimit(Long.parseLong(value));
+                        break;
+                    
+                    default:
+                        throw new IllegalArgumentException(
+                                "Unknown option " + args[i] + ".");
+                }
+            }
+        } catch (final IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(1);
+        }
+        
+        // ISO-8859-1 decodes any byte sequence, and FEN, EPD and the PGN
+        // movetext are ASCII anyway.
+        try (final PositionReader reader = openReader(input);
+             final Writer output = outputPath == null ?
+                     new BufferedWriter(
+                             new OutputStreamWriter(
+                                     System.out,
+                                     StandardCharsets.ISO_8859_1)) :
+                     Files.newBufferedWriter(outputPath,
+                                             StandardCharsets.ISO_8859_1)) {
+            new BatchAnalyzer(threads, hash, limits).analyze(reader,
+                                                             output,
+                                                             System.err);
+        } catch (final IOException | IllegalArgumentException
+                     | IllegalStateException ex) {
+            System.err.println("Analysis failed: " + ex);
+            System.exit(1);
+        } catch (final InterruptedException ex) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Opens a reader of the corpus {@code input}, choosing the format by the
+     * file name extension.
+     */
+    private static PositionReader openReader(final Path input)
+    throws IOException {
+        final String name = input.getFileName().toString().toLowerCase();
+        
+        if (name.endsWith(".pgn")) {
+            return new PgnReader(
+                    Files.newBufferedReader(input,
+                                            StandardCharsets.ISO_8859_1));
+        }
+        
+        return new EpdReader(
+                Files.newBufferedReader(input, StandardCharsets.ISO_8859_1));
+    }
+    
+    private static void printUsage() {
+        System.err.println(
+                "Usage: analyze <corpus.pgn|corpus.epd|corpus.fen> " +
+                "[-o output] [-threads N] [-hash MB] [-depth D] [-time MS] " +
+                "[-nodes N]");
+    }
+    
+    private static void report(final PrintStream progress,
+                               final long positions,
+                               final long elapsedMillis) {
+        progress.println(positions + " positions in " + elapsedMillis +
+                         " ms, " +
+                         positions * 1000L / Math.max(1L, elapsedMillis) +
+                         " positions/s");
+    }
+    
+    /**
+     * Formats the score of the result {@code result} as in UCI.
+     */
+    private static String formatScore(final SearchResult result) {
+        return result.isMateScore() ?
+               "mate " + result.getMovesToMate() :
+               "cp " + result.getScore();
+    }
+    
+    private SearchEngine createEngine() {
+        return new SearchEngine(1,
+                                new TranspositionTable(hashSizeInMegabytes));
+    }
+    
+    /**
+     * Analyses the queued positions until the end of the corpus is reached.
+     */
+    private final class Worker extends Thread {
+        
+        private final BlockingQueue<AnalysisPosition> queue;
+        private final Writer output;
+        private final AtomicLong analysedCount;
+        private final AtomicLong failedCount;
+        private final AtomicReference<Throwable> failure;
+        private final StringBuilder line = new StringBuilder();
+        
+        Worker(final int id,
+               final BlockingQueue<AnalysisPosition> queue,
+               final Writer output,
+               final AtomicLong analysedCount,
+               final AtomicLong failedCount,
+               final AtomicReference<Throwable> failure) {
+            super("analysis-" + id);
+            setDaemon(true);
+            this.queue = queue;
+            this.output = output;
+            this.analysedCount = analysedCount;
+            this.failedCount = failedCount;
+            this.failure = failure;
+        }
+        
+        @Override
+        public void run() {
+            SearchEngine engine = createEngine();
+            
+            try {
+                AnalysisPosition position;
+                
+                while ((position = queue.take()) != END_OF_CORPUS) {
+                    if (failure.get() != null) {
+                        continue;
+                    }
+                    
+                    line.setLength(0);
+                    line.append(position.getLabel()).append('\t');
+                    
+                    try {
+                        final SearchResult result =
+                                engine.search(position.getState(), limits);
+                        
+                        line.append(Move.toString(result.getBestMove()))
+                            .append('\t')
+                            .append(formatScore(result))
+                            .append('\t')
+                            .append(result.getDepth())
+                            .append('\t')
+                            .append(result.getNodes())
+                            .append('\n');
+                        analysedCount.incrementAndGet();
+                    } catch (final RuntimeException ex) {
+                        // Only this position is lost; a fresh engine takes 
+                        // the next one.
+                        line.append("error\t").append(ex).append('\n');
+                        failedCount.incrementAndGet();
+                        engine.shutdown();
+                        engine = createEngine();
+                    }
+                    
+                    synchronized (output) {
+                        output.append(line);
+                    }
+                }
+            } catch (final Throwable ex) {
+                failure.compareAndSet(null, ex);
+                
+                // Keep draining, so that the reading thread never blocks.
+                try {
+                    while (queue.take() != END_OF_CORPUS) {}
+                } catch (final InterruptedException ignored) {}
+            } finally {
+                engine.shutdown();
+            }
+        }
+    }
+}
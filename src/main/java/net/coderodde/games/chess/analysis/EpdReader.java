@@ -0,0 +1,138 @@
+package net.coderodde.games.chess.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Objects;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Fen;
+
+/**
+ * This class reads a corpus of one FEN or EPD record per line. Empty lines
+ * and lines starting with {@code #} are skipped. A record is labeled with 
+ * the value of its EPD {@code id} operation, or with its line number if 
+ * there is none. A malformed record is reported with its line number, 
+ * counted and skipped, so that a bad line does not stop the analysis of a 
+ * large corpus.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class EpdReader implements PositionReader {
+    
+    private final BufferedReader reader;
+    
+    /**
+     * Receives the reports of the skipped records.
+     */
+    private final PrintStream errors;
+    private long lineNumber;
+    private long sequenceNumber;
+    private long skippedCount;
+    
+    public EpdReader(final BufferedReader reader) {
+        this(reader, System.err);
+    }
+    
+    public EpdReader(final BufferedReader reader, final PrintStream errors) {
+        this.reader = Objects.requireNonNull(reader,
+                                             "The input reader is null.");
+        this.errors = Objects.requireNonNull(errors,
+                                             "The error stream is null.");
+    }
+    
+    @Override
+    public AnalysisPosition read() throws IOException {
+        String line;
+        
+        while ((line = reader.readLine()) != null) {
+            ++lineNumber;
+            line = line.trim();
+            
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            
+            final String[] fields = line.split("\\s+", 7);
+            
+            if (fields.length < 4) {
+                skip("too few fields");
+                continue;
+            }
+            
+            final StringBuilder fen = new StringBuilder();
+            fen.append(fields[0]).append(' ')
+               .append(fields[1]).append(' ')
+               .append(fields[2]).append(' ')
+               .append(fields[3]);
+            
+            if (fields.length >= 6 && isNumber(fields[4]) 
+                                   && isNumber(fields[5])) {
+                // A plain FEN with the move counters.
+                fen.append(' ').append(fields[4])
+                   .append(' ').append(fields[5]);
+            }
+            
+            String label = findId(line);
+            
+            if (label == null) {
+                label = "line " + lineNumber;
+            }
+            
+            final ChessGameState state;
+            
+            try {
+                state = Fen.parse(fen.toString());
+            } catch (final IllegalArgumentException ex) {
+                skip(ex.getMessage());
+                continue;
+            }
+            
+            return new AnalysisPosition(sequenceNumber++, label, state);
+        }
+        
+        return null;
+    }
+    
+    @Override
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+    
+    private void skip(final String reason) {
+        ++skippedCount;
+        errors.println("Skipping the bad EPD record at line " + lineNumber +
+                       ": " + reason);
+    }
+    
+    /**
+     * Returns the operand of the EPD {@code id} operation of the record 
+     * {@code line}, or {@code null} if there is none.
+     */
+    private static String findId(final String line) {
+        final int index = line.indexOf(" id \"");
+        
+        if (index < 0) {
+            return null;
+        }
+        
+        final int start = index + 5;
+        final int end = line.indexOf('"', start);
+        return end < 0 ? null : line.substring(start, end);
+    }
+    
+    private static boolean isNumber(final String text) {
+        for (int i = 0; i < text.length(); ++i) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        
+        return !text.isEmpty();
+    }
+}
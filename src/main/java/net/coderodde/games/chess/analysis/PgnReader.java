@@ -0,0 +1,299 @@
+package net.coderodde.games.chess.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Objects;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Fen;
+import net.coderodde.games.chess.San;
+
+/**
+ * This class reads the positions of the games of a PGN file: the position
+ * after each move of the main line of each game is returned in turn. The 
+ * games start from the starting position unless they have a {@code FEN} 
+ * tag. Comments, variations, numeric annotation glyphs and move numbers are
+ * skipped. A position is labeled with the number of its game and ply, both
+ * counted from 1. A game with an illegal move or a bad {@code FEN} tag is 
+ * reported with its line number, counted and skipped from there on, so 
+ * that one bad game does not stop the analysis of a large corpus.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class PgnReader implements PositionReader {
+    
+    private final BufferedReader reader;
+    
+    /**
+     * Receives the reports of the skipped games.
+     */
+    private final PrintStream errors;
+    
+    /**
+     * The line being tokenized, or {@code null} if a new line must be read.
+     */
+    private String line;
+    
+    /**
+     * The index of the next character of {@link #line}.
+     */
+    private int index;
+    
+    private long lineNumber;
+    private boolean inComment;
+    private int variationDepth;
+    
+    /**
+     * The FEN of the {@code FEN} tag of the next game, or {@code null}.
+     */
+    private String startFen;
+    
+    /**
+     * The game being read, or {@code null} between games.
+     */
+    private ChessGameState game;
+    
+    /**
+     * Whether the rest of the current game is skipped.
+     */
+    private boolean skippingGame;
+    
+    private long gameNumber;
+    private int ply;
+    private long sequenceNumber;
+    private long skippedCount;
+    
+    public PgnReader(final BufferedReader reader) {
+        this(reader, System.err);
+    }
+    
+    public PgnReader(final BufferedReader reader, final PrintStream errors) {
+        this.reader = Objects.requireNonNull(reader,
+                                             "The input reader is null.");
+        this.errors = Objects.requireNonNull(errors,
+                                             "The error stream is null.");
+    }
+    
+    @Override
+    public AnalysisPosition read() throws IOException {
+        String token;
+        
+        while ((token = nextToken()) != null) {
+            if (token.startsWith("$")) {
+                continue;
+            }
+            
+            if (token.equals("1-0") 
+                    || token.equals("0-1") 
+                    || token.equals("1/2-1/2") 
+                    || token.equals("*")) {
+                endGame();
+                continue;
+            }
+            
+            final String san = stripMoveNumber(token);
+            
+            if (san.isEmpty() || skippingGame) {
+                continue;
+            }
+            
+            if (game == null) {
+                ++gameNumber;
+                ply = 0;
+                
+                try {
+                    game = startFen == null ? 
+                           new ChessGameState() : 
+                           Fen.parse(startFen);
+                } catch (final IllegalArgumentException ex) {
+                    skipGame("bad FEN tag: " + ex.getMessage());
+                    continue;
+                }
+            }
+            
+            try {
+                game.makeMove(San.parse(game, san));
+            } catch (final IllegalArgumentException ex) {
+                skipGame("bad move \"" + san + "\": " + ex.getMessage());
+                continue;
+            }
+            
+            ++ply;
+            return new AnalysisPosition(sequenceNumber++, 
+                                        "game " + gameNumber + " ply " + ply,
+                                        new ChessGameState(game));
+        }
+        
+        return null;
+    }
+    
+    @Override
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+    
+    /**
+     * Returns the next movetext token that is not inside a comment or a 
+     * variation, or {@code null} at the end of the file. Tag pairs are 
+     * consumed on the way.
+     */
+    private String nextToken() throws IOException {
+        while (true) {
+            if (line == null) {
+                line = reader.readLine();
+                
+                if (line == null) {
+                    return null;
+                }
+                
+                ++lineNumber;
+                index = 0;
+                
+                if (!inComment && variationDepth == 0) {
+                    final String trimmed = line.trim();
+                    
+                    if (trimmed.startsWith("[")) {
+                        readTag(trimmed);
+                        line = null;
+                        continue;
+                    }
+                    
+                    if (trimmed.startsWith("%")) {
+                        // An escaped line.
+                        line = null;
+                        continue;
+                    }
+                }
+            }
+            
+            if (index >= line.length()) {
+                line = null;
+                continue;
+            }
+            
+            final char c = line.charAt(index);
+            
+            if (inComment) {
+                final int end = line.indexOf('}', index);
+                
+                if (end < 0) {
+                    line = null;
+                } else {
+                    index = end + 1;
+                    inComment = false;
+                }
+                
+                continue;
+            }
+            
+            if (Character.isWhitespace(c)) {
+                ++index;
+                continue;
+            }
+            
+            switch (c) {
+                case '{':
+                    inComment = true;
+                    ++index;
+                    continue;
+                
+                case ';':
+                    line = null;
+                    continue;
+                
+                case '(':
+                    ++variationDepth;
+                    ++index;
+                    continue;
+                
+                case ')':
+                    variationDepth = Math.max(0, variationDepth - 1);
+                    ++index;
+                    continue;
+            }
+            
+            final int start = index;
+            
+            while (index < line.length() 
+                    && !Character.isWhitespace(line.charAt(index))
+                    && "{}();".indexOf(line.charAt(index)) < 0) {
+                ++index;
+            }
+            
+            if (variationDepth == 0) {
+                return line.substring(start, index);
+            }
+        }
+    }
+    
+    /**
+     * Handles the tag pair {@code tag}. A tag pair after movetext without a
+     * game termination marker starts a new game.
+     */
+    private void readTag(final String tag) {
+        if (game != null || skippingGame) {
+            endGame();
+        }
+        
+        final int nameEnd = tag.indexOf(' ');
+        final int valueStart = tag.indexOf('"');
+        final int valueEnd = tag.lastIndexOf('"');
+        
+        if (nameEnd < 0 || valueStart < 0 || valueEnd <= valueStart) {
+            return;
+        }
+        
+        if (tag.substring(1, nameEnd).equals("FEN")) {
+            startFen = tag.substring(valueStart + 1, valueEnd);
+        }
+    }
+    
+    private void endGame() {
+        game = null;
+        startFen = null;
+        skippingGame = false;
+    }
+    
+    /**
+     * Reports the current game as bad and skips the rest of it.
+     */
+    private void skipGame(final String reason) {
+        ++skippedCount;
+        errors.println("Skipping game " + gameNumber + " at line " + 
+                       lineNumber + ": " + reason);
+        game = null;
+        skippingGame = true;
+    }
+    
+    /**
+     * Removes the leading move number, such as <i>12.</i> or <i>12...</i>,
+     * from the token {@code token}.
+     */
+    private static String stripMoveNumber(final String token) {
+        int i = 0;
+        
+        while (i < token.length() && Character.isDigit(token.charAt(i))) {
+            ++i;
+        }
+        
+        int j = i;
+        
+        while (j < token.length() && token.charAt(j) == '.') {
+            ++j;
+        }
+        
+        if (j > i) {
+            return token.substring(j);
+        }
+        
+        // Not a move number unless it is a bare one; castling may be 
+        // written as 0-0.
+        return i == token.length() ? "" : token;
+    }
+}
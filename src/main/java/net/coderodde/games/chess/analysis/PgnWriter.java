@@ -0,0 +1,143 @@
+package net.coderodde.games.chess.analysis;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Objects;
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Fen;
+import net.coderodde.games.chess.GameResult;
+import net.coderodde.games.chess.San;
+
+/**
+ * This class writes games in the PGN export format readable by 
+ * {@link PgnReader}. The moves are written in SAN and the movetext is 
+ * wrapped before {@link #LINE_WIDTH} characters. Each game is formatted in
+ * memory and handed to the underlying writer in a single call, so that 
+ * several threads may write whole games by synchronizing on this writer.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class PgnWriter {
+    
+    /**
+     * The maximum length of a movetext line.
+     */
+    public static final int LINE_WIDTH = 79;
+    
+    private final Writer writer;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder line = new StringBuilder();
+    
+    public PgnWriter(final Writer writer) {
+        this.writer = Objects.requireNonNull(writer,
+                                             "The input writer is null.");
+    }
+    
+    /**
+     * Writes the game played from {@code start} with the first 
+     * {@code moveCount} moves of {@code moves}. The tags {@code tags} are 
+     * written in their iteration order, followed by the {@code Result} tag,
+     * the {@code SetUp} and {@code FEN} tags if the game does not start from
+     * the starting position, the {@code PlyCount} tag and, for a finished 
+     * game, the {@code Termination} tag. The reason of the result is 
+     * written as a comment after the last move.
+     * 
+     * @param tags      the leading tags, such as the Seven Tag Roster 
+     *                  without {@code Result}.
+     * @param start     the position the game starts from.
+     * @param moves     the moves of the game.
+     * @param moveCount the number of moves.
+     * @param result    the result of the game.
+     * @throws IOException if writing fails.
+     */
+    public void writeGame(final Map<String, String> tags,
+                          final ChessGameState start,
+                          final int[] moves,
+                          final int moveCount,
+                          final GameResult result) throws IOException {
+        text.setLength(0);
+        
+        for (final Map.Entry<String, String> tag : tags.entrySet()) {
+            appendTag(tag.getKey(), tag.getValue());
+        }
+        
+        appendTag("Result", result.toPgnString());
+        
+        final String fen = Fen.toString(start);
+        
+        if (!fen.equals(Fen.START_POSITION)) {
+            appendTag("SetUp", "1");
+            appendTag("FEN", fen);
+        }
+        
+        appendTag("PlyCount", Integer.toString(moveCount));
+        
+        if (result.isGameOver()) {
+            appendTag("Termination", 
+                      result.getReason() == GameResult.Reason.ADJUDICATION
+                      || result.getReason() == GameResult.Reason.TABLEBASE ?
+                      "adjudication" : 
+                      "normal");
+        }
+        
+        text.append('\n');
+        line.setLength(0);
+        
+        final ChessGameState state = new ChessGameState(start);
+        
+        for (int i = 0; i < moveCount; ++i) {
+            final boolean white = state.getSideToMove() == ChessColor.WHITE;
+            
+            if (white) {
+                appendToken(state.getFullmoveNumber() + ".");
+            } else if (i == 0) {
+                appendToken(state.getFullmoveNumber() + "...");
+            }
+            
+            appendToken(San.toString(state, moves[i]));
+            state.makeMove(moves[i]);
+        }
+        
+        if (result.isGameOver()) {
+            appendToken("{" + result.getReason().name().toLowerCase()
+                                    .replace('_', ' ') + "}");
+        }
+        
+        appendToken(result.toPgnString());
+        text.append(line).append("\n\n");
+        writer.write(text.toString());
+    }
+    
+    public void flush() throws IOException {
+        writer.flush();
+    }
+    
+    private void appendTag(final String name, final String value) {
+        text.append('[')
+            .append(name)
+            .append(" \"")
+            .append(value.replace("\\", "\\\\").replace("\"", "\\\""))
+            .append("\"]\n");
+    }
+    
+    /**
+     * Appends the movetext token {@code token}, starting a new line if the
+     * current one would become too long.
+     */
+    private void appendToken(final String token) {
+        if (line.length() > 0 
+                && line.length() + 1 + token.length() > LINE_WIDTH) {
+            text.append(line).append('\n');
+            line.setLength(0);
+        }
+        
+        if (line.length() > 0) {
+            line.append(' ');
+        }
+        
+        line.append(token);
+    }
+}
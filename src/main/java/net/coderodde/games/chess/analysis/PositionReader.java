@@ -0,0 +1,32 @@
+package net.coderodde.games.chess.analysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * This interface defines the API for reading the positions of a corpus one
+ * at a time, so that the corpus never needs to fit in memory.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public interface PositionReader extends Closeable {
+    
+    /**
+     * Reads the next position of the corpus. Each returned position owns its
+     * game state.
+     * 
+     * Malformed records are reported, counted and skipped.
+     * 
+     * @return the next position, or {@code null} if the corpus is exhausted.
+     * @throws IOException if reading the underlying file fails.
+     */
+    AnalysisPosition read() throws IOException;
+    
+    /**
+     * Returns the number of malformed records skipped so far.
+     * 
+     * @return the number of skipped records.
+     */
+    long getSkippedCount();
+}
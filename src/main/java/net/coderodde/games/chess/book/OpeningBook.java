@@ -0,0 +1,245 @@
+package net.coderodde.games.chess.book;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Random;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Move;
+import net.coderodde.games.chess.MoveGenerator;
+
+/**
+ * This class reads an opening book by mapping it into memory. The book 
+ * follows the layout of the Polyglot books: a sequence of 
+ * {@link #ENTRY_SIZE}-byte big-endian entries sorted by the key as an 
+ * unsigned number,
+ * <pre>
+ *  0-7   the Zobrist key of the position;
+ *  8-9   the move: the from square in bits 0-5, the to square in bits 6-11
+ *        and the promotion in bits 12-14, as in {@link Move};
+ *  10-11 the weight of the move;
+ *  12-15 reserved for learning, zero.
+ * </pre>
+ * The keys are those of {@link ChessGameState#getZobristKey()} and not the
+ * Polyglot ones, so the books of other programs cannot be read. A lookup is
+ * a binary search over the mapping: the book is never loaded to the heap.
+ * Reading may happen from many threads at once.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class OpeningBook implements Closeable {
+    
+    /**
+     * The size of a book entry in bytes.
+     */
+    public static final int ENTRY_SIZE = 16;
+    
+    /**
+     * The number of entries per mapped chunk.
+     */
+    private static final int ENTRIES_PER_CHUNK = 1 << 26;
+    
+    private static final long CHUNK_SIZE = 
+            (long) ENTRIES_PER_CHUNK * ENTRY_SIZE;
+    
+    private static final int MOVE_OFFSET   = 8;
+    private static final int WEIGHT_OFFSET = 10;
+    
+    /**
+     * The bits of a packed move stored in a book entry.
+     */
+    static final int MOVE_MASK = (1 << 15) - 1;
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+    
+    /**
+     * Maps the book file {@code path} for reading.
+     * 
+     * @param path the path of the book.
+     * @throws IOException if the file cannot be mapped.
+     * @throws IllegalArgumentException if the file size is not a multiple of
+     *                                  the entry size.
+     */
+    public OpeningBook(final Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        
+        try {
+            final long fileSize = channel.size();
+            
+            if (fileSize % ENTRY_SIZE != 0) {
+                throw new IllegalArgumentException(
+                        "The size of the opening book \"" + path + 
+                        "\" is not a multiple of " + ENTRY_SIZE + ".");
+            }
+            
+            this.size = fileSize / ENTRY_SIZE;
+            this.chunks = 
+                    new MappedByteBuffer[(int)((fileSize + CHUNK_SIZE - 1) /
+                                               CHUNK_SIZE)];
+            
+            for (int i = 0; i < chunks.length; ++i) {
+                final long start = i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                        start,
+                                        Math.min(CHUNK_SIZE, 
+                                                 fileSize - start));
+            }
+        } catch (final IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Returns the number of entries in the book.
+     * 
+     * @return the number of entries.
+     */
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * Stores the book moves of the position with the Zobrist key {@code key}
+     * and their weights into {@code moves} and {@code weights}, at most as 
+     * many as fit. The moves are not checked for legality and carry only 
+     * the squares and the promotion. Does not allocate.
+     * 
+     * @param key     the Zobrist key of the position.
+     * @param moves   the output buffer of the moves.
+     * @param weights the output buffer of the weights, at least as long as 
+     *                {@code moves}.
+     * @return the number of moves stored.
+     */
+    public int lookup(final long key, final int[] moves, final int[] weights) {
+        int count = 0;
+        
+        for (long index = lowerBound(key); 
+                index < size && count < moves.length && keyAt(index) == key;
+                ++index) {
+            final MappedByteBuffer chunk = chunk(index);
+            final int offset = offset(index);
+            moves[count]   = chunk.getShort(offset + MOVE_OFFSET) & MOVE_MASK;
+            weights[count] = chunk.getShort(offset + WEIGHT_OFFSET) & 0xffff;
+            ++count;
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Chooses a book move of the position {@code state} at random, with a 
+     * probability proportional to its weight. Only the moves that are legal
+     * in {@code state} are considered.
+     * 
+     * @param state  the position.
+     * @param random the source of randomness.
+     * @return the legal book move, or {@link Move#NONE} if the position is 
+     *         not in the book.
+     */
+    public int chooseMove(final ChessGameState state, final Random random) {
+        Objects.requireNonNull(state, "The input game state is null.");
+        Objects.requireNonNull(random, "The input random is null.");
+        final int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+        final int legalMoveCount = 
+                MoveGenerator.generateLegalMoves(state, legalMoves);
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        final int[] weights = new int[MoveGenerator.MAX_MOVES];
+        final int bookMoveCount = lookup(state.getZobristKey(), 
+                                         moves, 
+                                         weights);
+        long totalWeight = 0L;
+        
+        // Resolve the book moves to the legal moves, which carry the kind 
+        // bits as well. A move unknown to the position is a key collision.
+        for (int i = 0; i < bookMoveCount; ++i) {
+            moves[i] = findLegalMove(legalMoves, legalMoveCount, moves[i]);
+            
+            if (moves[i] == Move.NONE) {
+                weights[i] = 0;
+            }
+            
+            totalWeight += weights[i];
+        }
+        
+        if (totalWeight == 0L) {
+            return Move.NONE;
+        }
+        
+        long choice = (long)(random.nextDouble() * totalWeight);
+        
+        for (int i = 0; i < bookMoveCount; ++i) {
+            if (choice < weights[i]) {
+                return moves[i];
+            }
+            
+            choice -= weights[i];
+        }
+        
+        return Move.NONE;
+    }
+    
+    /**
+     * Closes the book. The mapping stays valid until it is garbage 
+     * collected, but the book may not be read afterwards.
+     * 
+     * @throws IOException if closing the file fails.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    /**
+     * Returns the index of the first entry whose key is not less than 
+     * {@code key}, comparing as unsigned numbers.
+     */
+    private long lowerBound(final long key) {
+        final long target = key ^ Long.MIN_VALUE;
+        long low = 0L;
+        long high = size;
+        
+        while (low < high) {
+            final long middle = (low + high) >>> 1;
+            
+            if ((keyAt(middle) ^ Long.MIN_VALUE) < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        
+        return low;
+    }
+    
+    private long keyAt(final long index) {
+        return chunk(index).getLong(offset(index));
+    }
+    
+    private MappedByteBuffer chunk(final long index) {
+        return chunks[(int)(index / ENTRIES_PER_CHUNK)];
+    }
+    
+    private static int offset(final long index) {
+        return (int)(index % ENTRIES_PER_CHUNK) * ENTRY_SIZE;
+    }
+    
+    private static int findLegalMove(final int[] legalMoves,
+                                     final int legalMoveCount,
+                                     final int bookMove) {
+        for (int i = 0; i < legalMoveCount; ++i) {
+            if ((legalMoves[i] & MOVE_MASK) == bookMove) {
+                return legalMoves[i];
+            }
+        }
+        
+        return Move.NONE;
+    }
+}
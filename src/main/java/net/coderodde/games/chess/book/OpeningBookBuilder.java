@@ -0,0 +1,459 @@
+package net.coderodde.games.chess.book;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.analysis.AnalysisPosition;
+import net.coderodde.games.chess.analysis.PgnReader;
+import net.coderodde.games.chess.analysis.PositionReader;
+
+/**
+ * This class compiles an {@link OpeningBook} from the games of a corpus. 
+ * The moves are collected into a buffer of a fixed capacity; a full buffer 
+ * is sorted and spilled into a temporary run file, and the runs are merged
+ * into the book at the end, so the memory used does not depend on the size
+ * of the corpus. The weight of a book move is the number of times it was 
+ * played, saturated at 65535.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class OpeningBookBuilder {
+    
+    /**
+     * The default number of plies of each game entered into the book.
+     */
+    public static final int DEFAULT_MAXIMUM_PLY = 20;
+    
+    /**
+     * The default number of times a move must be played to enter the book.
+     */
+    public static final int DEFAULT_MINIMUM_COUNT = 1;
+    
+    /**
+     * The default number of moves buffered before a run is spilled.
+     */
+    public static final int DEFAULT_BUFFER_CAPACITY = 1 << 20;
+    
+    /**
+     * The ranges at most this long are sorted by insertion.
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    
+    private static final int MAXIMUM_WEIGHT = 0xffff;
+    
+    private final int maximumPly;
+    private final int minimumCount;
+    private final long[] keys;
+    private final int[] moves;
+    private int bufferSize;
+    
+    /**
+     * The sorted run files spilled so far.
+     */
+    private final List<Path> runs = new ArrayList<>();
+    
+    public OpeningBookBuilder(final int maximumPly,
+                              final int minimumCount,
+                              final int bufferCapacity) {
+        if (maximumPly < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum ply must be at least 1, received " + 
+                    maximumPly + ".");
+        }
+        
+        if (bufferCapacity < 1) {
+            throw new IllegalArgumentException(
+                    "The buffer capacity must be at least 1, received " + 
+                    bufferCapacity + ".");
+        }
+        
+        this.maximumPly   = maximumPly;
+        this.minimumCount = Math.max(1, minimumCount);
+        this.keys         = new long[bufferCapacity];
+        this.moves        = new int[bufferCapacity];
+    }
+    
+    public OpeningBookBuilder() {
+        this(DEFAULT_MAXIMUM_PLY, 
+             DEFAULT_MINIMUM_COUNT, 
+             DEFAULT_BUFFER_CAPACITY);
+    }
+    
+    /**
+     * Records that the move {@code move} was played in the position with 
+     * the Zobrist key {@code key}.
+     * 
+     * @param key  the Zobrist key of the position.
+     * @param move the packed move.
+     * @throws IOException if spilling a run fails.
+     */
+    public void add(final long key, final int move) throws IOException {
+        if (bufferSize == keys.length) {
+            spill();
+        }
+        
+        keys[bufferSize]    = key;
+        moves[bufferSize++] = move & OpeningBook.MOVE_MASK;
+    }
+    
+    /**
+     * Records the moves leading to the positions of {@code reader}, such as
+     * a {@link PgnReader}, up to the maximum ply of each game. The game 
+     * states returned by the reader are changed.
+     * 
+     * @param reader the positions to read.
+     * @return the number of moves recorded.
+     * @throws IOException if reading the positions or spilling a run fails.
+     */
+    public long addAll(final PositionReader reader) throws IOException {
+        long count = 0L;
+        AnalysisPosition position;
+        
+        while ((position = reader.read()) != null) {
+            final ChessGameState state = position.getState();
+            final int ply = state.getHistorySize();
+            
+            if (ply == 0 || ply > maximumPly) {
+                continue;
+            }
+            
+            final int move = state.getLastMove();
+            state.unmakeMove();
+            add(state.getZobristKey(), move);
+            ++count;
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Merges all the recorded moves into the book file {@code output} and 
+     * empties this builder.
+     * 
+     * @param output the path of the book.
+     * @return the number of entries in the book.
+     * @throws IOException if writing the book fails.
+     */
+    public long build(final Path output) throws IOException {
+        spill();
+        final PriorityQueue<Run> queue = 
+                new PriorityQueue<>(Math.max(1, runs.size()), RUN_COMPARATOR);
+        long entryCount = 0L;
+        
+        try (final DataOutputStream out = 
+                new DataOutputStream(
+                        new BufferedOutputStream(
+                                Files.newOutputStream(output)))) {
+            for (final Path path : runs) {
+                final Run run = new Run(path);
+                
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            
+            while (!queue.isEmpty()) {
+                final Run first = queue.poll();
+                final long key = first.key;
+                final int move = first.move;
+                long count = first.count;
+                advance(first, queue);
+                
+                // Equal entries of several runs are summed up.
+                while (!queue.isEmpty() 
+                        && queue.peek().key == key
+                        && queue.peek().move == move) {
+                    final Run run = queue.poll();
+                    count += run.count;
+                    advance(run, queue);
+                }
+                
+                if (count >= minimumCount) {
+                    out.writeLong(key);
+                    out.writeShort(move);
+                    out.writeShort((int) Math.min(count, MAXIMUM_WEIGHT));
+                    out.writeInt(0);
+                    ++entryCount;
+                }
+            }
+        } finally {
+            for (final Run run : queue) {
+                run.close();
+            }
+            
+            for (final Path path : runs) {
+                Files.deleteIfExists(path);
+            }
+            
+            runs.clear();
+        }
+        
+        return entryCount;
+    }
+    
+    /**
+     * Compiles an opening book from the command line:
+     * <pre>
+     * book &lt;corpus.pgn&gt; &lt;book.bin&gt; [-plies N] [-min N]
+     * </pre>
+     * 
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 3 || !args[0].equals("book")) {
+            printUsage();
+            System.exit(1);
+        }
+        
+        int plies = DEFAULT_MAXIMUM_PLY;
+        int minimum = DEFAULT_MINIMUM_COUNT;
+        
+        try {
+            for (int i = 3; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException(
+                            "Missing value of option " + args[i] + ".");
+                }
+                
+                final String value = args[i + 1];
+                
+                switch (args[i]) {
+                    case "-plies":
+                        plies = Integer.parseInt(value);
+                        break;
+                    
+                    case "-min":
+                        minimum = Integer.parseInt(value);
+                        break;
+                    
+                    default:
+                        throw new IllegalArgumentException(
+                                "Unknown option " + args[i] + ".");
+                }
+            }
+        } catch (final IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(1);
+        }
+        
+        final OpeningBookBuilder builder = 
+                new OpeningBookBuilder(plies, 
+                                       minimum, 
+                                       DEFAULT_BUFFER_CAPACITY);
+        
+        try (final PositionReader reader = 
+                new PgnReader(
+                        Files.newBufferedReader(
+                                Paths.get(args[1]), 
+                                StandardCharsets.ISO_8859_1))) {
+            final long moveCount = builder.addAll(reader);
+            final long entryCount = builder.build(Paths.get(args[2]));
+            System.err.println(moveCount + " moves, " + entryCount + 
+                               " book entries");
+        } catch (final IOException | IllegalArgumentException ex) {
+            System.err.println("Building the book failed: " + ex);
+            System.exit(1);
+        }
+    }
+    
+    private static void printUsage() {
+        System.err.println(
+                "Usage: book <corpus.pgn> <book.bin> [-plies N] [-min N]");
+    }
+    
+    /**
+     * Sorts the buffered moves and writes them into a new run file, with 
+     * the equal entries counted.
+     */
+    private void spill() throws IOException {
+        if (bufferSize == 0) {
+            return;
+        }
+        
+        sort(0, bufferSize - 1);
+        final Path path = Files.createTempFile("book", ".run");
+        runs.add(path);
+        
+        try (final DataOutputStream out = 
+                new DataOutputStream(
+                        new BufferedOutputStream(
+                                Files.newOutputStream(path)))) {
+            int i = 0;
+            
+            while (i < bufferSize) {
+                int j = i + 1;
+                
+                while (j < bufferSize 
+                        && keys[j] == keys[i] 
+                        && moves[j] == moves[i]) {
+                    ++j;
+                }
+                
+                out.writeLong(keys[i]);
+                out.writeInt(moves[i]);
+                out.writeInt(j - i);
+                i = j;
+            }
+        }
+        
+        bufferSize = 0;
+    }
+    
+    /**
+     * Sorts the buffered entries with indices {@code low} through 
+     * {@code high}, inclusive, by the key as an unsigned number and then by
+     * the move.
+     */
+    private void sort(int low, int high) {
+        while (high - low >= INSERTION_SORT_THRESHOLD) {
+            final int middle = (low + high) >>> 1;
+            
+            // The median of three is moved to the middle.
+            if (less(middle, low)) {
+                swap(middle, low);
+            }
+            
+            if (less(high, low)) {
+                swap(high, low);
+            }
+            
+            if (less(high, middle)) {
+                swap(high, middle);
+            }
+            
+            final long pivotKey = keys[middle];
+            final int pivotMove = moves[middle];
+            int i = low;
+            int j = high;
+            
+            while (i <= j) {
+                while (compare(keys[i], moves[i], pivotKey, pivotMove) < 0) {
+                    ++i;
+                }
+                
+                while (compare(keys[j], moves[j], pivotKey, pivotMove) > 0) {
+                    --j;
+                }
+                
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            
+            // Recurse into the smaller part, so the stack stays shallow.
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+        
+        for (int i = low + 1; i <= high; ++i) {
+            for (int j = i; j > low && less(j, j - 1); --j) {
+                swap(j, j - 1);
+            }
+        }
+    }
+    
+    private boolean less(final int i, final int j) {
+        return compare(keys[i], moves[i], keys[j], moves[j]) < 0;
+    }
+    
+    private void swap(final int i, final int j) {
+        final long key = keys[i];
+        final int move = moves[i];
+        keys[i]  = keys[j];
+        moves[i] = moves[j];
+        keys[j]  = key;
+        moves[j] = move;
+    }
+    
+    private static int compare(final long key1, 
+                               final int move1,
+                               final long key2, 
+                               final int move2) {
+        final long unsignedKey1 = key1 ^ Long.MIN_VALUE;
+        final long unsignedKey2 = key2 ^ Long.MIN_VALUE;
+        
+        if (unsignedKey1 != unsignedKey2) {
+            return unsignedKey1 < unsignedKey2 ? -1 : 1;
+        }
+        
+        return Integer.compare(move1, move2);
+    }
+    
+    private static void advance(final Run run, final PriorityQueue<Run> queue)
+    throws IOException {
+        if (run.next()) {
+            queue.add(run);
+        } else {
+            run.close();
+        }
+    }
+    
+    private static final Comparator<Run> RUN_COMPARATOR = 
+            new Comparator<Run>() {
+        @Override
+        public int compare(final Run run1, final Run run2) {
+            return OpeningBookBuilder.compare(run1.key, 
+                                              run1.move, 
+                                              run2.key, 
+                                              run2.move);
+        }
+    };
+    
+    /**
+     * Reads the entries of a run file in order.
+     */
+    private static final class Run implements Closeable {
+        
+        private final DataInputStream in;
+        long key;
+        int move;
+        int count;
+        
+        Run(final Path path) throws IOException {
+            this.in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(path)));
+        }
+        
+        /**
+         * Reads the next entry and returns {@code false} at the end of the 
+         * run.
+         */
+        boolean next() throws IOException {
+            try {
+                key   = in.readLong();
+                move  = in.readInt();
+                count = in.readInt();
+                return true;
+            } catch (final EOFException ex) {
+                return false;
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
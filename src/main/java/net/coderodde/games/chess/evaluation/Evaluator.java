@@ -0,0 +1,34 @@
+package net.coderodde.games.chess.evaluation;
+
+import net.coderodde.games.chess.BoardListener;
+import net.coderodde.games.chess.Position;
+
+/**
+ * This interface defines the API for static position evaluators. An 
+ * evaluator is attached to a single position: it is initialized from the
+ * position once and may then keep its terms up to date incrementally 
+ * through the {@link BoardListener} callbacks, so that {@link #evaluate()} 
+ * does not need to scan the board. An evaluator is used by one thread only.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public interface Evaluator extends BoardListener {
+    
+    /**
+     * Attaches this evaluator to the position {@code state}, computing its 
+     * terms from scratch, and registers it as the board listener of the 
+     * position.
+     * 
+     * @param state the position to evaluate.
+     */
+    void attach(Position state);
+    
+    /**
+     * Returns the score of the current position of the attached state
+     * in centipawns from the point of view of the side to move.
+     * 
+     * @return the static score of the position.
+     */
+    int evaluate();
+}
@@ -0,0 +1,18 @@
+package net.coderodde.games.chess.evaluation;
+
+/**
+ * This interface defines the API for creating evaluators. Each search thread
+ * creates its own evaluator, since evaluators hold per-position state.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public interface EvaluatorFactory {
+    
+    /**
+     * Creates a new evaluator.
+     * 
+     * @return a new evaluator.
+     */
+    Evaluator createEvaluator();
+}
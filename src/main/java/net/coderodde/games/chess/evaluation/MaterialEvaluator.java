@@ -0,0 +1,71 @@
+package net.coderodde.games.chess.evaluation;
+
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessPiece;
+import net.coderodde.games.chess.Position;
+
+/**
+ * This class evaluates positions by the material balance only. The balance 
+ * is kept up to date incrementally.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class MaterialEvaluator implements Evaluator {
+    
+    public static final EvaluatorFactory FACTORY = new EvaluatorFactory() {
+        @Override
+        public Evaluator createEvaluator() {
+            return new MaterialEvaluator();
+        }
+    };
+    
+    /**
+     * The piece values indexed by the piece codes: positive for white and 
+     * negative for black. The last row holds the compound pieces of the
+     * variants.
+     */
+    private static final int[] PIECE_VALUES = {
+         0,  900,  500,  330,  320,  100,
+         0, -900, -500, -330, -320, -100,
+       850,  875, -850, -875,
+    };
+    
+    private Position state;
+    
+    /**
+     * The material balance from the point of view of white.
+     */
+    private int balance;
+    
+    @Override
+    public void attach(final Position state) {
+        this.state = state;
+        this.balance = 0;
+        
+        for (int square = 0; square < state.getSquareCount(); ++square) {
+            final int code = state.getPieceCode(square);
+            
+            if (code != ChessPiece.NONE) {
+                pieceAdded(square, code);
+            }
+        }
+        
+        state.setBoardListener(this);
+    }
+    
+    @Override
+    public int evaluate() {
+        return state.getSideToMove() == ChessColor.WHITE ? balance : -balance;
+    }
+    
+    @Override
+    public void pieceAdded(final int square, final int pieceCode) {
+        balance += PIECE_VALUES[pieceCode];
+    }
+    
+    @Override
+    public void pieceRemoved(final int square, final int pieceCode) {
+        balance -= PIECE_VALUES[pieceCode];
+    }
+}
@@ -0,0 +1,225 @@
+package net.coderodde.games.chess.evaluation;
+
+import net.coderodde.games.chess.Bitboards;
+
+/**
+ * This class scores the pawn structure: doubled, isolated and passed pawns.
+ * The result depends on the pawns only, so it is cached by the pawn key. 
+ * The middlegame and endgame scores are packed into a single {@code int}.
+ * <p>
+ * The king shelter, the own pawns in front of a king and the enemy pawns 
+ * storming it, depends on the pawns and the square of the king only, so it
+ * is cached by the pawn key combined with a key of the king square.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+final class PawnStructure {
+    
+    private static final int DOUBLED_MIDDLEGAME  = -10;
+    private static final int DOUBLED_ENDGAME     = -20;
+    private static final int ISOLATED_MIDDLEGAME = -10;
+    private static final int ISOLATED_ENDGAME    = -15;
+    
+    /**
+     * The passed pawn bonuses indexed by the rank counted from the own side.
+     */
+    private static final int[] PASSED_MIDDLEGAME = 
+            { 0, 5, 10, 15, 25, 40, 60, 0 };
+    private static final int[] PASSED_ENDGAME = 
+            { 0, 10, 20, 35, 55, 85, 120, 0 };
+    
+    /**
+     * The shelter penalties indexed by the distance in ranks from the king 
+     * to the nearest own pawn in front of it on a file, 7 if there is none.
+     */
+    private static final int[] SHELTER_MIDDLEGAME = 
+            { 0, 0, -10, -20, -25, -25, -25, -35 };
+    
+    /**
+     * The storm penalties indexed by the distance in ranks from the king to
+     * the nearest enemy pawn in front of it on a file, 7 if there is none.
+     */
+    private static final int[] STORM_MIDDLEGAME = 
+            { 0, -5, -30, -15, -5, 0, 0, 0 };
+    
+    /**
+     * The squares on the ranks in front of each rank, seen by each color.
+     */
+    private static final long[][] FORWARD_RANKS = new long[2][8];
+    
+    /**
+     * The files adjacent to each file.
+     */
+    private static final long[] ADJACENT_FILES = new long[8];
+    
+    /**
+     * The squares in front of a pawn of each color on each square, on its 
+     * own file and the adjacent files. A pawn is passed if there are no 
+     * enemy pawns there.
+     */
+    private static final long[][] PASSED_MASKS = new long[2][64];
+    
+    static {
+        for (int file = 0; file < 8; ++file) {
+            ADJACENT_FILES[file] = 
+                    (file > 0 ? Bitboards.FILE_A << (file - 1) : 0L) |
+                    (file < 7 ? Bitboards.FILE_A << (file + 1) : 0L);
+        }
+        
+        for (int square = 0; square < 64; ++square) {
+            final int file = Bitboards.file(square);
+            final int rank = Bitboards.rank(square);
+            final long files = ADJACENT_FILES[file] | 
+                               (Bitboards.FILE_A << file);
+            long whiteFront = 0L;
+            long blackFront = 0L;
+            
+            for (int r = rank + 1; r < 8; ++r) {
+                whiteFront |= Bitboards.RANK_1 << (8 * r);
+            }
+            
+            for (int r = rank - 1; r >= 0; --r) {
+                blackFront |= Bitboards.RANK_1 << (8 * r);
+            }
+            
+            PASSED_MASKS[0][square] = files & whiteFront;
+            PASSED_MASKS[1][square] = files & blackFront;
+            FORWARD_RANKS[0][rank] = whiteFront;
+            FORWARD_RANKS[1][rank] = blackFront;
+        }
+    }
+    
+    private PawnStructure() {}
+    
+    /**
+     * Packs the middlegame and endgame scores into an {@code int}.
+     */
+    static int pack(final int middlegame, final int endgame) {
+        return (middlegame << 16) + endgame;
+    }
+    
+    static int middlegame(final int packed) {
+        return (packed + 0x8000) >> 16;
+    }
+    
+    static int endgame(final int packed) {
+        return (short) packed;
+    }
+    
+    /**
+     * Returns the packed score of the pawn structure from the point of view
+     * of white.
+     * 
+     * @param whitePawns the white pawns.
+     * @param blackPawns the black pawns.
+     * @return the packed score.
+     */
+    static int evaluate(final long whitePawns, final long blackPawns) {
+        return evaluate(whitePawns, blackPawns, 0) 
+             - evaluate(blackPawns, whitePawns, 1);
+    }
+    
+    /**
+     * Returns the middlegame shelter score of the king of the color with 
+     * ordinal {@code color} on the square {@code kingSquare}, from the 
+     * point of view of its owner: the own pawns in front of the king on its 
+     * file and the adjacent files, and the enemy pawns advancing on them. 
+     * A king on an edge file is judged by the three files next to the edge.
+     * 
+     * @param ownPawns   the pawns of the king's color.
+     * @param enemyPawns the pawns of the opponent.
+     * @param kingSquare the square of the king.
+     * @param color      the ordinal of the color of the king.
+     * @return the shelter score, zero or negative.
+     */
+    static int kingShelter(final long ownPawns,
+                           final long enemyPawns,
+                           final int kingSquare,
+                           final int color) {
+        final int kingRank = Bitboards.rank(kingSquare);
+        final int centerFile = 
+                Math.max(1, Math.min(6, Bitboards.file(kingSquare)));
+        final long front = FORWARD_RANKS[color][kingRank];
+        int score = 0;
+        
+        for (int file = centerFile - 1; file <= centerFile + 1; ++file) {
+            final long fileFront = front & (Bitboards.FILE_A << file);
+            score += SHELTER_MIDDLEGAME[
+                    distance(ownPawns & fileFront, kingRank, color)];
+            score += STORM_MIDDLEGAME[
+                    distance(enemyPawns & fileFront, kingRank, color)];
+        }
+        
+        return score;
+    }
+    
+    /**
+     * Returns the distance in ranks from the rank {@code kingRank} to the
+     * nearest of the pawns {@code pawns} in front of a king of the color 
+     * with ordinal {@code color}, or 7 if there are none.
+     */
+    private static int distance(final long pawns,
+                                final int kingRank,
+                                final int color) {
+        if (pawns == 0L) {
+            return 7;
+        }
+        
+        return color == 0 ? 
+               Bitboards.rank(Bitboards.lowestSquare(pawns)) - kingRank :
+               kingRank - 
+                       Bitboards.rank(63 - Long.numberOfLeadingZeros(pawns));
+    }
+    
+    /**
+     * Returns the packed score of the pawns {@code ownPawns} of the color 
+     * with ordinal {@code color}.
+     */
+    private static int evaluate(final long ownPawns,
+                                final long enemyPawns,
+                                final int color) {
+        int middlegame = 0;
+        int endgame = 0;
+        
+        for (int file = 0; file < 8; ++file) {
+            final int count = 
+                    Bitboards.count(ownPawns & (Bitboards.FILE_A << file));
+            
+            if (count == 0) {
+                continue;
+            }
+            
+            middlegame += (count - 1) * DOUBLED_MIDDLEGAME;
+            endgame    += (count - 1) * DOUBLED_ENDGAME;
+            
+            if ((ownPawns & ADJACENT_FILES[file]) == 0L) {
+                middlegame += count * ISOLATED_MIDDLEGAME;
+                endgame    += count * ISOLATED_ENDGAME;
+            }
+        }
+        
+        long pawns = ownPawns;
+        
+        while (pawns != 0L) {
+            final int square = Bitboards.lowestSquare(pawns);
+            pawns &= pawns - 1;
+            
+            final long front = PASSED_MASKS[color][square];
+            
+            // Of the doubled passed pawns only the front one counts.
+            if ((enemyPawns & front) == 0L
+                    && (ownPawns & front 
+                                 & (Bitboards.FILE_A << Bitboards.file(square)))
+                       == 0L) {
+                final int rank = color == 0 ? 
+                                 Bitboards.rank(square) : 
+                                 7 - Bitboards.rank(square);
+                middlegame += PASSED_MIDDLEGAME[rank];
+                endgame    += PASSED_ENDGAME[rank];
+            }
+        }
+        
+        return pack(middlegame, endgame);
+    }
+}
@@ -0,0 +1,115 @@
+package net.coderodde.games.chess.evaluation;
+
+/**
+ * This class caches evaluation scores keyed by 64-bit hash keys, such as 
+ * the pawn keys of the pawn structure terms or the Zobrist keys of whole 
+ * positions. The cache is a fixed-size, direct-mapped pair of primitive 
+ * arrays sized to a memory budget, with the always-replace scheme: the most
+ * recent entries are the likeliest to be probed again. A cache is used by a
+ * single thread and counts its probes and hits.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class ScoreCache {
+    
+    /**
+     * Returned by {@link #probe(long)} when the key is not in the cache.
+     */
+    public static final int MISS = Integer.MIN_VALUE;
+    
+    /**
+     * The bytes per entry: a key and a score.
+     */
+    private static final int ENTRY_SIZE = 12;
+    
+    private final long[] keys;
+    private final int[] scores;
+    private final int mask;
+    private long probes;
+    private long hits;
+    
+    public ScoreCache(final int sizeInKilobytes) {
+        if (sizeInKilobytes < 1) {
+            throw new IllegalArgumentException(
+                    "The cache size must be at least 1 KB, received " + 
+                    sizeInKilobytes + ".");
+        }
+        
+        // The largest power of two of entries that fits in the budget.
+        final int capacity = 
+                Integer.highestOneBit(
+                        (int) Math.min(sizeInKilobytes * 1024L / ENTRY_SIZE, 
+                                       1 << 30));
+        this.keys = new long[capacity];
+        this.scores = new int[capacity];
+        this.mask = capacity - 1;
+        clear();
+    }
+    
+    public int getCapacity() {
+        return keys.length;
+    }
+    
+    public long getProbes() {
+        return probes;
+    }
+    
+    public long getHits() {
+        return hits;
+    }
+    
+    /**
+     * Returns the fraction of the probes that hit, or zero if there were no
+     * probes.
+     * 
+     * @return the hit rate between 0 and 1.
+     */
+    public double getHitRate() {
+        return probes == 0L ? 0.0 : (double) hits / probes;
+    }
+    
+    /**
+     * Returns the score stored for the key {@code key}, or {@link #MISS}.
+     * 
+     * @param key the hash key.
+     * @return the score or {@link #MISS}.
+     */
+    public int probe(final long key) {
+        final int index = (int) key & mask;
+        ++probes;
+        
+        if (keys[index] == key && scores[index] != MISS) {
+            ++hits;
+            return scores[index];
+        }
+        
+        return MISS;
+    }
+    
+    /**
+     * Stores the score {@code score} for the key {@code key}, replacing the
+     * entry in its slot.
+     * 
+     * @param key   the hash key.
+     * @param score the score, other than {@link #MISS}.
+     */
+    public void store(final long key, final int score) {
+        final int index = (int) key & mask;
+        keys[index] = key;
+        scores[index] = score;
+    }
+    
+    /**
+     * Empties the cache and resets the probe and hit counts.
+     */
+    public void clear() {
+        for (int i = 0; i < scores.length; ++i) {
+            keys[i] = 0L;
+            scores[i] = MISS;
+        }
+        
+        probes = 0L;
+        hits = 0L;
+    }
+}
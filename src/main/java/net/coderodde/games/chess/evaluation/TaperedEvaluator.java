@@ -0,0 +1,491 @@
+package net.coderodde.games.chess.evaluation;
+
+import java.util.Random;
+import net.coderodde.games.chess.Bitboards;
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.ChessPiece;
+import net.coderodde.games.chess.ChessPieceType;
+import net.coderodde.games.chess.Position;
+
+/**
+ * This class evaluates positions by material, piece-square tables and pawn
+ * structure, with separate middlegame and endgame values blended by the 
+ * game phase. The phase is derived from the non-pawn material left on the 
+ * board, so the evaluation slides smoothly from the middlegame terms to the
+ * endgame terms as the pieces come off. The material and piece-square terms
+ * are sums over the pieces, so they are updated in constant time per piece 
+ * change. The pawn structure terms are cached in a pawn hash table, the 
+ * king shelter of each king in a shelter cache keyed by the pawn key and 
+ * the king square, and the final scores in an evaluation cache.
+ * <p>
+ * On a board other than 8x8 the piece-square tables are stretched over the
+ * files and the ranks of the board. The pawn structure and the king shelter
+ * are evaluated on the bitboards of a {@link ChessGameState}, so they count
+ * on the standard board only.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class TaperedEvaluator implements Evaluator {
+    
+    /**
+     * The default size of the pawn hash table in kilobytes.
+     */
+    public static final int DEFAULT_PAWN_HASH_SIZE_IN_KILOBYTES = 512;
+    
+    /**
+     * The default size of the evaluation cache in kilobytes.
+     */
+    public static final int DEFAULT_EVALUATION_CACHE_SIZE_IN_KILOBYTES = 1024;
+    
+    /**
+     * The size of the king shelter cache in kilobytes.
+     */
+    public static final int KING_SHELTER_CACHE_SIZE_IN_KILOBYTES = 128;
+    
+    /**
+     * Creates the tapered evaluators with the default cache sizes.
+     */
+    public static final EvaluatorFactory FACTORY = 
+            factory(DEFAULT_PAWN_HASH_SIZE_IN_KILOBYTES, 
+                    DEFAULT_EVALUATION_CACHE_SIZE_IN_KILOBYTES);
+    
+    /**
+     * The game phase of the starting position, where the middlegame terms 
+     * count in full.
+     */
+    private static final int MAXIMUM_PHASE = 24;
+    
+    private static final ChessPieceType[] TYPES = ChessPieceType.values();
+    
+    // The tables below are indexed by the piece type ordinals: king, queen,
+    // rook, bishop, knight, pawn, archbishop and chancellor.
+    
+    private static final int[] MIDDLEGAME_VALUES = { 0, 1025, 477, 365, 337, 
+                                                     82, 940, 970 };
+    private static final int[] ENDGAME_VALUES    = { 0, 936, 512, 297, 281, 
+                                                     94, 860, 890 };
+    private static final int[] PHASE_WEIGHTS     = { 0, 4, 2, 1, 1, 0, 2, 3 };
+    
+    // The piece-square tables from the point of view of white, with the 
+    // eighth rank on the first row.
+    
+    private static final int[] KING_MIDDLEGAME = {
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+         20,  20,   0,   0,   0,   0,  20,  20,
+         20,  30,  10,   0,   0,  10,  30,  20,
+    };
+    
+    private static final int[] KING_ENDGAME = {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50,
+    };
+    
+    private static final int[] QUEEN = {
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,   5,   5,   5,   0, -10,
+         -5,   0,   5,   5,   5,   5,   0,  -5,
+          0,   0,   5,   5,   5,   5,   0,  -5,
+        -10,   5,   5,   5,   5,   5,   0, -10,
+        -10,   0,   5,   0,   0,   0,   0, -10,
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+    };
+    
+    private static final int[] ROOK = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+          5,  10,  10,  10,  10,  10,  10,   5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+          0,   0,   0,   5,   5,   0,   0,   0,
+    };
+    
+    private static final int[] BISHOP = {
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,  10,  10,   5,   0, -10,
+        -10,   5,   5,  10,  10,   5,   5, -10,
+        -10,   0,  10,  10,  10,  10,   0, -10,
+        -10,  10,  10,  10,  10,  10,  10, -10,
+        -10,   5,   0,   0,   0,   0,   5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20,
+    };
+    
+    private static final int[] KNIGHT = {
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20,   0,   0,   0,   0, -20, -40,
+        -30,   0,  10,  15,  15,  10,   0, -30,
+        -30,   5,  15,  20,  20,  15,   5, -30,
+        -30,   0,  15,  20,  20,  15,   0, -30,
+        -30,   5,  10,  15,  15,  10,   5, -30,
+        -40, -20,   0,   5,   5,   0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50,
+    };
+    
+    private static final int[] PAWN_MIDDLEGAME = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         10,  10,  20,  30,  30,  20,  10,  10,
+          5,   5,  10,  25,  25,  10,   5,   5,
+          0,   0,   0,  20,  20,   0,   0,   0,
+          5,  -5, -10,   0,   0, -10,  -5,   5,
+          5,  10,  10, -20, -20,  10,  10,   5,
+          0,   0,   0,   0,   0,   0,   0,   0,
+    };
+    
+    private static final int[] PAWN_ENDGAME = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         80,  80,  80,  80,  80,  80,  80,  80,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         30,  30,  30,  30,  30,  30,  30,  30,
+         15,  15,  15,  15,  15,  15,  15,  15,
+          5,   5,   5,   5,   5,   5,   5,   5,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0,
+    };
+    
+    // The archbishop reads the table of the knight, and the chancellor the
+    // one of the rook.
+    
+    private static final int[][] MIDDLEGAME_TABLES = {
+        KING_MIDDLEGAME, QUEEN, ROOK, BISHOP, KNIGHT, PAWN_MIDDLEGAME, KNIGHT,
+        ROOK
+    };
+    
+    private static final int[][] ENDGAME_TABLES = {
+        KING_ENDGAME, QUEEN, ROOK, BISHOP, KNIGHT, PAWN_ENDGAME, KNIGHT, ROOK
+    };
+    
+    /**
+     * The middlegame value of each piece on each square of the standard 
+     * board, material included, indexed by the piece code and the square: 
+     * positive for white and negative for black.
+     */
+    private static final int[][] MIDDLEGAME_SCORES = 
+            computeScores(MIDDLEGAME_VALUES, MIDDLEGAME_TABLES, 8, 8);
+    
+    /**
+     * The endgame counterpart of {@link #MIDDLEGAME_SCORES}.
+     */
+    private static final int[][] ENDGAME_SCORES = 
+            computeScores(ENDGAME_VALUES, ENDGAME_TABLES, 8, 8);
+    
+    /**
+     * The phase weights indexed by the piece codes.
+     */
+    private static final int[] PIECE_PHASES = new int[ChessPiece.CODES];
+    
+    static {
+        for (final ChessPieceType type : ChessPieceType.values()) {
+            PIECE_PHASES[ChessPiece.code(ChessColor.WHITE, type)] = 
+                    PHASE_WEIGHTS[type.ordinal()];
+            PIECE_PHASES[ChessPiece.code(ChessColor.BLACK, type)] = 
+                    PHASE_WEIGHTS[type.ordinal()];
+        }
+    }
+    
+    /**
+     * The keys of the king squares of each color, combined with the pawn 
+     * key into the keys of the king shelter cache.
+     */
+    private static final long[][] KING_SQUARE_KEYS = new long[2][64];
+    
+    static {
+        final Random random = new Random(0x5eedL);
+        
+        for (final long[] colorKeys : KING_SQUARE_KEYS) {
+            for (int square = 0; square < 64; ++square) {
+                colorKeys[square] = random.nextLong();
+            }
+        }
+    }
+    
+    private final ScoreCache pawnHashTable;
+    private final ScoreCache kingShelterCache;
+    private final ScoreCache evaluationCache;
+    private Position state;
+    
+    /**
+     * The attached position if it is a {@link ChessGameState}, and 
+     * {@code null} otherwise.
+     */
+    private ChessGameState standardState;
+    
+    /**
+     * The piece-square scores of the board of the attached position: the
+     * static ones for the standard board.
+     */
+    private int[][] middlegameScores = MIDDLEGAME_SCORES;
+    private int[][] endgameScores = ENDGAME_SCORES;
+    private int boardWidth = 8;
+    private int boardHeight = 8;
+    
+    /**
+     * The middlegame score from the point of view of white.
+     */
+    private int middlegameScore;
+    
+    /**
+     * The endgame score from the point of view of white.
+     */
+    private int endgameScore;
+    
+    /**
+     * The game phase, {@link #MAXIMUM_PHASE} in the starting position. May
+     * exceed it after promotions and with the compound pieces.
+     */
+    private int phase;
+    
+    public TaperedEvaluator(final int pawnHashSizeInKilobytes,
+                            final int evaluationCacheSizeInKilobytes) {
+        this.pawnHashTable = new ScoreCache(pawnHashSizeInKilobytes);
+        this.kingShelterCache = 
+                new ScoreCache(KING_SHELTER_CACHE_SIZE_IN_KILOBYTES);
+        this.evaluationCache = new ScoreCache(evaluationCacheSizeInKilobytes);
+    }
+    
+    public TaperedEvaluator() {
+        this(DEFAULT_PAWN_HASH_SIZE_IN_KILOBYTES,
+             DEFAULT_EVALUATION_CACHE_SIZE_IN_KILOBYTES);
+    }
+    
+    /**
+     * Returns a factory of tapered evaluators with the given cache sizes.
+     * 
+     * @param pawnHashSizeInKilobytes        the pawn hash table size.
+     * @param evaluationCacheSizeInKilobytes the evaluation cache size.
+     * @return the evaluator factory.
+     */
+    public static EvaluatorFactory factory(
+            final int pawnHashSizeInKilobytes,
+            final int evaluationCacheSizeInKilobytes) {
+        return new EvaluatorFactory() {
+            @Override
+            public Evaluator createEvaluator() {
+                return new TaperedEvaluator(pawnHashSizeInKilobytes,
+                                            evaluationCacheSizeInKilobytes);
+            }
+        };
+    }
+    
+    public ScoreCache getPawnHashTable() {
+        return pawnHashTable;
+    }
+    
+    public ScoreCache getKingShelterCache() {
+        return kingShelterCache;
+    }
+    
+    public ScoreCache getEvaluationCache() {
+        return evaluationCache;
+    }
+    
+    @Override
+    public void attach(final Position state) {
+        this.state = state;
+        this.standardState = state instanceof ChessGameState ? 
+                             (ChessGameState) state : 
+                             null;
+        this.middlegameScore = 0;
+        this.endgameScore = 0;
+        this.phase = 0;
+        
+        final int width = state.getBoardWidth();
+        final int height = state.getBoardHeight();
+        
+        if (width != boardWidth || height != boardHeight) {
+            boardWidth = width;
+            boardHeight = height;
+            
+            if (width == 8 && height == 8) {
+                middlegameScores = MIDDLEGAME_SCORES;
+                endgameScores = ENDGAME_SCORES;
+            } else {
+                middlegameScores = computeScores(MIDDLEGAME_VALUES,
+                                                 MIDDLEGAME_TABLES,
+                                                 width,
+                                                 height);
+                endgameScores = computeScores(ENDGAME_VALUES,
+                                              ENDGAME_TABLES,
+                                              width,
+                                              height);
+            }
+        }
+        
+        for (int square = 0; square < state.getSquareCount(); ++square) {
+            final int code = state.getPieceCode(square);
+            
+            if (code != ChessPiece.NONE) {
+                pieceAdded(square, code);
+            }
+        }
+        
+        state.setBoardListener(this);
+    }
+    
+    @Override
+    public int evaluate() {
+        final long key = state.getZobristKey();
+        final int cachedScore = evaluationCache.probe(key);
+        
+        if (cachedScore != ScoreCache.MISS) {
+            return cachedScore;
+        }
+        
+        int pawnScore = 0;
+        int kingShelter = 0;
+        
+        if (standardState != null) {
+            pawnScore = evaluatePawnStructure();
+            kingShelter = evaluateKingShelter(ChessColor.WHITE) - 
+                          evaluateKingShelter(ChessColor.BLACK);
+        }
+        
+        final int middlegamePhase = Math.min(phase, MAXIMUM_PHASE);
+        final int score = 
+                ((middlegameScore + PawnStructure.middlegame(pawnScore) + 
+                  kingShelter) * middlegamePhase + 
+                 (endgameScore + PawnStructure.endgame(pawnScore)) * 
+                         (MAXIMUM_PHASE - middlegamePhase)) / 
+                MAXIMUM_PHASE;
+        final int relativeScore = 
+                state.getSideToMove() == ChessColor.WHITE ? score : -score;
+        
+        evaluationCache.store(key, relativeScore);
+        return relativeScore;
+    }
+    
+    /**
+     * Returns the packed pawn structure score, from the pawn hash table if 
+     * possible.
+     */
+    private int evaluatePawnStructure() {
+        final long pawnKey = standardState.getPawnKey();
+        int pawnScore = pawnHashTable.probe(pawnKey);
+        
+        if (pawnScore == ScoreCache.MISS) {
+            pawnScore = PawnStructure.evaluate(
+                    standardState.getPieceBitboard(ChessColor.WHITE, 
+                                                   ChessPieceType.PAWN),
+                    standardState.getPieceBitboard(ChessColor.BLACK, 
+                                                   ChessPieceType.PAWN));
+            pawnHashTable.store(pawnKey, pawnScore);
+        }
+        
+        return pawnScore;
+    }
+    
+    /**
+     * Returns the middlegame king shelter score of the king of color 
+     * {@code color} from the point of view of its owner, from the king 
+     * shelter cache if possible.
+     */
+    private int evaluateKingShelter(final ChessColor color) {
+        final long king = standardState.getPieceBitboard(color, 
+                                                         ChessPieceType.KING);
+        
+        if (king == 0L) {
+            return 0;
+        }
+        
+        final int kingSquare = Bitboards.lowestSquare(king);
+        final long key = standardState.getPawnKey() ^ 
+                         KING_SQUARE_KEYS[color.ordinal()][kingSquare];
+        int shelter = kingShelterCache.probe(key);
+        
+        if (shelter == ScoreCache.MISS) {
+            final ChessColor enemy = color == ChessColor.WHITE ? 
+                                     ChessColor.BLACK : 
+                                     ChessColor.WHITE;
+            shelter = PawnStructure.kingShelter(
+                    standardState.getPieceBitboard(color, 
+                                                   ChessPieceType.PAWN),
+                    standardState.getPieceBitboard(enemy, 
+                                                   ChessPieceType.PAWN),
+                    kingSquare,
+                    color.ordinal());
+            kingShelterCache.store(key, shelter);
+        }
+        
+        return shelter;
+    }
+    
+    @Override
+    public void pieceAdded(final int square, final int pieceCode) {
+        middlegameScore += middlegameScores[pieceCode][square];
+        endgameScore    += endgameScores[pieceCode][square];
+        phase           += PIECE_PHASES[pieceCode];
+    }
+    
+    @Override
+    public void pieceRemoved(final int square, final int pieceCode) {
+        middlegameScore -= middlegameScores[pieceCode][square];
+        endgameScore    -= endgameScores[pieceCode][square];
+        phase           -= PIECE_PHASES[pieceCode];
+    }
+    
+    /**
+     * Returns the value of each piece on each square of a board of 
+     * {@code width} files and {@code height} ranks, indexed by the piece 
+     * code and the square, adding the piece values {@code values} to the 
+     * 8x8 piece-square tables {@code tables}. A square reads the table 
+     * entry at the same relative position, so that the tables stretch over
+     * the board and the 8x8 board reads them as they are.
+     */
+    private static int[][] computeScores(final int[] values,
+                                         final int[][] tables,
+                                         final int width,
+                                         final int height) {
+        final int[][] scores = new int[ChessPiece.CODES][width * height];
+        
+        for (int rank = 0; rank < height; ++rank) {
+            // The tables start from the eighth rank of white, so a white 
+            // piece reads the mirrored row and a black piece the row of its
+            // own rank.
+            final int whiteRow = 7 - stretch(rank, height);
+            final int blackRow = 7 - stretch(height - 1 - rank, height);
+            
+            for (int file = 0; file < width; ++file) {
+                final int column = stretch(file, width);
+                final int square = rank * width + file;
+                
+                for (final ChessPieceType pieceType : TYPES) {
+                    final int type = pieceType.ordinal();
+                    final int white = ChessPiece.code(ChessColor.WHITE, 
+                                                      pieceType);
+                    final int black = ChessPiece.code(ChessColor.BLACK, 
+                                                      pieceType);
+                    scores[white][square] = 
+                            values[type] + tables[type][8 * whiteRow + column];
+                    scores[black][square] = 
+                            -values[type] - tables[type][8 * blackRow + column];
+                }
+            }
+        }
+        
+        return scores;
+    }
+    
+    /**
+     * Maps the index {@code index} of {@code count} files or ranks to the 
+     * nearest of the 8 files or ranks of the tables.
+     */
+    private static int stretch(final int index, final int count) {
+        return (14 * index + count - 1) / (2 * (count - 1));
+    }
+}
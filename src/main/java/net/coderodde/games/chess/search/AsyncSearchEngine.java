@@ -0,0 +1,262 @@
+package net.coderodde.games.chess.search;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import net.coderodde.games.chess.Move;
+import net.coderodde.games.chess.Position;
+
+/**
+ * This class runs the searches of a {@link SearchEngine} asynchronously, so
+ * that the calling thread, such as the Swing event dispatch thread, never 
+ * blocks on a search. A search is submitted to an executor, which may be 
+ * supplied by the caller, and returns a {@link Future} of its result. 
+ * Cancelling the future stops the search immediately. Submitting a new 
+ * search cancels the previous one, if it is still running.
+ * <p>
+ * After its move the engine may {@link #ponder ponder} on the time of the 
+ * opponent, searching the position after the reply it expects. If the 
+ * opponent plays that reply, {@link #ponderHit(int)} turns the pondering 
+ * search into the real one, which keeps everything it has searched so 
+ * far; any other reply cancels it at once.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class AsyncSearchEngine {
+    
+    private final SearchEngine engine;
+    private final ExecutorService executor;
+    
+    /**
+     * Whether the executor was created by this object and must be shut down
+     * along with it.
+     */
+    private final boolean ownsExecutor;
+    
+    /**
+     * The most recently submitted search.
+     */
+    private SearchTask currentTask;
+    
+    /**
+     * The reply expected by the current pondering search, or 
+     * {@link Move#NONE} if the current search is not pondering.
+     */
+    private int ponderMove = Move.NONE;
+    
+    public AsyncSearchEngine(final SearchEngine engine, 
+                             final ExecutorService executor) {
+        this(engine, executor, false);
+    }
+    
+    public AsyncSearchEngine(final SearchEngine engine) {
+        this(engine, 
+             Executors.newSingleThreadExecutor(new ThreadFactory() {
+                 @Override
+                 public Thread newThread(final Runnable runnable) {
+                     final Thread thread = new Thread(runnable, 
+                                                      "async-search");
+                     thread.setDaemon(true);
+                     return thread;
+                 }
+             }),
+             true);
+    }
+    
+    private AsyncSearchEngine(final SearchEngine engine,
+                              final ExecutorService executor,
+                              final boolean ownsExecutor) {
+        this.engine = Objects.requireNonNull(engine, 
+                                             "The input engine is null.");
+        this.executor = Objects.requireNonNull(executor, 
+                                               "The input executor is null.");
+        this.ownsExecutor = ownsExecutor;
+    }
+    
+    public SearchEngine getEngine() {
+        return engine;
+    }
+    
+    /**
+     * Starts searching a copy of {@code root} in the background. The listener
+     * receives the progress after each iteration and the final result, both 
+     * on the search thread.
+     * 
+     * @param root     the position to search. Copied before returning.
+     * @param limits   the limits of the search.
+     * @param listener the listener to notify, or {@code null}.
+     * @return the future of the search result.
+     */
+    public synchronized Future<SearchResult> search(
+            final Position root,
+            final SearchLimits limits,
+            final SearchListener listener) {
+        Objects.requireNonNull(limits, "The input search limits are null.");
+        final Position position = root.copyInto(null);
+        
+        cancel();
+        
+        final SearchTask task = new SearchTask(position, limits, listener);
+        currentTask = task;
+        executor.execute(task);
+        return task;
+    }
+    
+    /**
+     * Starts pondering in the background: searches the position after the 
+     * expected reply {@code expectedMove} of the opponent in {@code root}. 
+     * The search does not start its clock nor finish before 
+     * {@link #ponderHit(int)} confirms the reply. The listener is notified 
+     * as by {@link #search(Position, SearchLimits, SearchListener)}.
+     * 
+     * @param root         the position in which the opponent is to move. 
+     *                     Copied before returning.
+     * @param expectedMove the expected reply of the opponent.
+     * @param limits       the limits of the search after the ponder hit. 
+     *                     Marked as pondering.
+     * @param listener     the listener to notify, or {@code null}.
+     * @return the future of the search result.
+     * @throws IllegalArgumentException if the expected reply is illegal.
+     */
+    public synchronized Future<SearchResult> ponder(
+            final Position root,
+            final int expectedMove,
+            final SearchLimits limits,
+            final SearchListener listener) {
+        Objects.requireNonNull(limits, "The input search limits are null.");
+        final Position position = root.copyInto(null);
+        final int[] moves = new int[position.getMaxMoves()];
+        final int moveCount = position.generateLegalMoves(moves);
+        boolean legal = false;
+        
+        for (int i = 0; i < moveCount && !legal; ++i) {
+            legal = moves[i] == expectedMove;
+        }
+        
+        if (!legal) {
+            throw new IllegalArgumentException(
+                    "Illegal expected move: " + 
+                    position.formatMove(expectedMove) + ".");
+        }
+        
+        position.makeMove(expectedMove);
+        
+        final Future<SearchResult> future = 
+                search(position, limits.setPonder(true), listener);
+        ponderMove = expectedMove;
+        return future;
+    }
+    
+    /**
+     * Returns the reply the current pondering search expects.
+     * 
+     * @return the expected reply, or {@link Move#NONE} if not pondering.
+     */
+    public synchronized int getPonderMove() {
+        return ponderMove;
+    }
+    
+    /**
+     * Reports the reply {@code move} of the opponent to the pondering 
+     * search. If it is the expected reply, the pondering search goes on as 
+     * the real search and finishes as usual. Otherwise it is cancelled 
+     * immediately and the caller must start a new search.
+     * 
+     * @param move the reply of the opponent.
+     * @return {@code true} on a ponder hit.
+     */
+    public synchronized boolean ponderHit(final int move) {
+        if (ponderMove != Move.NONE
+                && ponderMove == move
+                && !currentTask.isDone()) {
+            ponderMove = Move.NONE;
+            engine.ponderHit(currentTask.limits);
+            return true;
+        }
+        
+        cancel();
+        return false;
+    }
+    
+    /**
+     * Cancels the most recently submitted search, if it is not over yet.
+     */
+    public synchronized void cancel() {
+        ponderMove = Move.NONE;
+        
+        if (currentTask != null) {
+            currentTask.cancel(false);
+            currentTask = null;
+        }
+    }
+    
+    /**
+     * Cancels the running search and releases the threads. Shuts down the 
+     * executor only if it was created by this object.
+     */
+    public void shutdown() {
+        cancel();
+        
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+        
+        engine.shutdown();
+    }
+    
+    /**
+     * This class implements a search task whose cancellation also stops its
+     * search in the engine, even if the search is just starting.
+     */
+    private final class SearchTask extends FutureTask<SearchResult> {
+        
+        private final SearchLimits limits;
+        private final SearchListener listener;
+        
+        SearchTask(final Position root,
+                   final SearchLimits limits,
+                   final SearchListener listener) {
+            super(new Callable<SearchResult>() {
+                @Override
+                public SearchResult call() {
+                    return engine.search(root, limits, listener);
+                }
+            });
+            
+            this.limits = limits;
+            this.listener = listener;
+        }
+        
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(false);
+            
+            if (cancelled) {
+                // Marks the limits, so that a search about to start stops at
+                // once instead of running its whole time budget.
+                engine.stop(limits);
+            }
+            
+            return cancelled;
+        }
+        
+        @Override
+        protected void done() {
+            if (listener == null || isCancelled()) {
+                return;
+            }
+            
+            try {
+                listener.searchFinished(get());
+            } catch (final InterruptedException | ExecutionException ex) {
+                // The failure is reported to the callers of get().
+            }
+        }
+    }
+}
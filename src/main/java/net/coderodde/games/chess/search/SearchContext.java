@@ -0,0 +1,201 @@
+package net.coderodde.games.chess.search;
+
+import net.coderodde.games.chess.tablebase.Tablebases;
+
+/**
+ * This class holds the state shared by all the worker threads of a single 
+ * search: the transposition table, the endgame tables, the limits and the
+ * stop signal. The clock of the time limit starts when the main worker 
+ * starts searching, not when the search is submitted, so that a search 
+ * queued behind others in a shared thread pool gets its whole budget. The 
+ * clock of a pondering search starts only once it ends pondering.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+final class SearchContext {
+    
+    final TranspositionTable transpositionTable;
+    final SearchWorker[] workers;
+    
+    /**
+     * The endgame tables probed by the workers, or {@code null}.
+     */
+    final Tablebases tablebases;
+    final SearchLimits limits;
+    final int maximumDepth;
+    final long nodeLimit;
+    
+    /**
+     * The value of {@link System#nanoTime()} when the main worker started 
+     * searching, or when the search was created until then.
+     */
+    private volatile long startTimeNanos;
+    private final long timeLimitMillis;
+    
+    /**
+     * The value of {@link System#nanoTime()} after which the search must 
+     * stop.
+     */
+    volatile long deadlineNanos = Long.MAX_VALUE;
+    
+    /**
+     * The value of {@link System#nanoTime()} after which no new iteration is
+     * started, since it would most likely not complete before the deadline.
+     */
+    volatile long softDeadlineNanos = Long.MAX_VALUE;
+    
+    /**
+     * The listener of the search progress, or {@code null}.
+     */
+    private final SearchListener listener;
+    
+    private volatile boolean stopped;
+    
+    /**
+     * Whether the search is searching on the time of the opponent.
+     */
+    private volatile boolean pondering;
+    
+    /**
+     * Whether the main worker has started searching.
+     */
+    private boolean mainWorkerStarted;
+    
+    SearchContext(final TranspositionTable transpositionTable,
+                  final SearchWorker[] workers,
+                  final Tablebases tablebases,
+                  final SearchLimits limits,
+                  final SearchListener listener) {
+        this.transpositionTable = transpositionTable;
+        this.listener = listener;
+        this.workers = workers;
+        this.tablebases = tablebases;
+        this.limits = limits;
+        this.maximumDepth = limits.getMaximumDepth();
+        this.nodeLimit = limits.getNodeLimit();
+        this.startTimeNanos = System.nanoTime();
+        this.timeLimitMillis = limits.getTimeLimitMillis();
+        this.pondering = limits.isPonder();
+    }
+    
+    boolean isStopped() {
+        return stopped;
+    }
+    
+    void stop() {
+        stopped = true;
+    }
+    
+    boolean isPondering() {
+        return pondering;
+    }
+    
+    /**
+     * Starts the clock of the time limit, unless the search is pondering. 
+     * Called by the main worker as it starts searching.
+     */
+    synchronized void mainWorkerStarted() {
+        mainWorkerStarted = true;
+        startTimeNanos = System.nanoTime();
+        
+        if (!pondering) {
+            startClock(startTimeNanos);
+        }
+    }
+    
+    /**
+     * Ends the pondering, starting the clock of the time limit now if the 
+     * main worker is searching already, and releasing 
+     * {@link #awaitPonderHit()}.
+     * 
+     * @return {@code false} if the search was not pondering.
+     */
+    synchronized boolean endPondering() {
+        if (!pondering) {
+            return false;
+        }
+        
+        if (mainWorkerStarted) {
+            startClock(System.nanoTime());
+        }
+        
+        pondering = false;
+        notifyAll();
+        return true;
+    }
+    
+    /**
+     * Blocks until the search ends pondering, so that a pondering search
+     * never answers before the opponent has moved.
+     */
+    synchronized void awaitPonderHit() {
+        boolean interrupted = false;
+        
+        while (pondering) {
+            try {
+                wait();
+            } catch (final InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Stops the search if the deadline has passed or the node budget is 
+     * exhausted. Called periodically by every worker.
+     */
+    void checkLimits() {
+        final long deadline = deadlineNanos;
+        
+        if (System.nanoTime() - deadline >= 0L
+                && deadline != Long.MAX_VALUE) {
+            stopped = true;
+            return;
+        }
+        
+        if (nodeLimit != SearchLimits.UNLIMITED && getNodes() >= nodeLimit) {
+            stopped = true;
+        }
+    }
+    
+    /**
+     * Reports the completed iteration of the main worker to the listener.
+     */
+    void iterationCompleted(final SearchWorker worker) {
+        if (listener != null) {
+            listener.searchProgress(
+                    new SearchResult(worker.getBestMove(),
+                                     worker.getBestScore(),
+                                     worker.getCompletedDepth(),
+                                     getNodes(),
+                                     getElapsedMillis(),
+                                     worker.getPrincipalVariation()));
+        }
+    }
+    
+    private void startClock(final long nowNanos) {
+        if (timeLimitMillis != SearchLimits.UNLIMITED) {
+            softDeadlineNanos = nowNanos + timeLimitMillis * 500000L;
+            deadlineNanos = nowNanos + timeLimitMillis * 1000000L;
+        }
+    }
+    
+    long getNodes() {
+        long nodes = 0L;
+        
+        for (final SearchWorker worker : workers) {
+            nodes += worker.getPublishedNodes();
+        }
+        
+        return nodes;
+    }
+    
+    long getElapsedMillis() {
+        return (System.nanoTime() - startTimeNanos) / 1000000L;
+    }
+}
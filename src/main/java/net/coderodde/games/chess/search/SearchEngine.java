@@ -0,0 +1,506 @@
+package net.coderodde.games.chess.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Move;
+import net.coderodde.games.chess.Position;
+import net.coderodde.games.chess.book.OpeningBook;
+import net.coderodde.games.chess.evaluation.EvaluatorFactory;
+import net.coderodde.games.chess.evaluation.TaperedEvaluator;
+import net.coderodde.games.chess.tablebase.Tablebases;
+
+/**
+ * This class implements a parallel alpha-beta search engine in the Lazy SMP
+ * style: all the worker threads run an iterative deepening search of the 
+ * same root position and communicate only through the shared lock-free 
+ * {@link TranspositionTable}. The workers do not share any other mutable 
+ * state, so the search scales with the number of cores. The search stops at
+ * the maximum depth, at the time or node budget of its {@link SearchLimits},
+ * or when {@link #stop()} is called, and the result of the main worker is 
+ * returned.
+ * <p>
+ * The transposition table and the move ordering history of the workers 
+ * outlive a search, so each search starts from what the previous ones 
+ * found. A pondering search (see {@link SearchLimits#setPonder(boolean)}) 
+ * carries on as the real search after {@link #ponderHit(SearchLimits)}, 
+ * keeping its iterations as well.
+ * <p>
+ * The engine searches any {@link Position}, including the game states of 
+ * the chess variants. The opening book and the endgame tables cover the 
+ * standard {@link ChessGameState} only, and are not consulted for other 
+ * positions.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class SearchEngine {
+    
+    private static final AtomicInteger ENGINE_COUNTER = new AtomicInteger();
+    
+    private final TranspositionTable transpositionTable;
+    private final SearchWorker[] workers;
+    private final ExecutorService executor;
+    
+    /**
+     * Whether the executor was created by this engine and must be shut down
+     * along with it.
+     */
+    private final boolean ownsExecutor;
+    
+    /**
+     * Creates the evaluators of the workers.
+     */
+    private volatile EvaluatorFactory evaluatorFactory = 
+            TaperedEvaluator.FACTORY;
+    
+    /**
+     * The book consulted before searching, or {@code null}.
+     */
+    private volatile OpeningBook openingBook;
+    
+    /**
+     * The endgame tables, or {@code null}.
+     */
+    private volatile Tablebases tablebases;
+    
+    /**
+     * Chooses among the book moves.
+     */
+    private final Random random = new Random();
+    
+    /**
+     * The context of the running search, or {@code null}.
+     */
+    private volatile SearchContext currentContext;
+    
+    /**
+     * Guards the ponder flags of the limits against the start of a search, 
+     * so that a ponder hit or a stop is never lost.
+     */
+    private final Object ponderLock = new Object();
+    
+    public SearchEngine(final int threads, 
+                        final TranspositionTable transpositionTable) {
+        this(threads, transpositionTable, null);
+    }
+    
+    /**
+     * Creates an engine whose search threads run on the executor 
+     * {@code executor}, which may be shared by many engines, such as the 
+     * engines of the sessions of a server. The tasks of a search never wait 
+     * for each other, so a shared pool smaller than the total number of 
+     * threads only slows the searches down.
+     * 
+     * @param threads            the number of search threads.
+     * @param transpositionTable the transposition table.
+     * @param executor           the executor of the search threads, or 
+     *                           {@code null} for a private pool.
+     */
+    public SearchEngine(final int threads, 
+                        final TranspositionTable transpositionTable,
+                        final ExecutorService executor) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "The number of threads must be at least 1, received " +
+                    threads + ".");
+        }
+        
+        this.transpositionTable = 
+                Objects.requireNonNull(transpositionTable,
+                                       "The input transposition table is " + 
+                                       "null.");
+        this.workers = new SearchWorker[threads];
+        
+        for (int i = 0; i < threads; ++i) {
+            workers[i] = new SearchWorker(i);
+        }
+        
+        this.ownsExecutor = executor == null;
+        this.executor = ownsExecutor ?
+                Executors.newFixedThreadPool(
+                        threads, 
+                        new SearchThreadFactory(
+                                ENGINE_COUNTER.incrementAndGet())) :
+                executor;
+    }
+    
+    public SearchEngine(final int threads) {
+        this(threads, new TranspositionTable());
+    }
+    
+    public SearchEngine() {
+        this(1);
+    }
+    
+    public int getThreadCount() {
+        return workers.length;
+    }
+    
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+    
+    public EvaluatorFactory getEvaluatorFactory() {
+        return evaluatorFactory;
+    }
+    
+    /**
+     * Sets the factory of the evaluators used by the search threads, so that
+     * evaluation variants may be compared under the same search. May be 
+     * called at any time; takes effect from the next search.
+     * 
+     * @param evaluatorFactory the evaluator factory.
+     */
+    public void setEvaluatorFactory(final EvaluatorFactory evaluatorFactory) {
+        this.evaluatorFactory = 
+                Objects.requireNonNull(evaluatorFactory, 
+                                       "The input evaluator factory is " + 
+                                       "null.");
+    }
+    
+    public OpeningBook getOpeningBook() {
+        return openingBook;
+    }
+    
+    /**
+     * Sets the opening book. While the root position is in the book, a book
+     * move is returned at once without searching. May be called at any 
+     * time; takes effect from the next search.
+     * 
+     * @param openingBook the opening book, or {@code null} for none.
+     */
+    public void setOpeningBook(final OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+    
+    public Tablebases getTablebases() {
+        return tablebases;
+    }
+    
+    /**
+     * Sets the endgame tables. A root position in the tables is answered at
+     * once with its best move, and the positions in the tables are not 
+     * searched further. May be called at any time; takes effect from the 
+     * next search.
+     * 
+     * @param tablebases the endgame tables, or {@code null} for none.
+     */
+    public void setTablebases(final Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+    
+    /**
+     * Searches the position {@code root} within the limits {@code limits} 
+     * and blocks until the search is over. Only one search runs at a time;
+     * concurrent calls are serialized.
+     * 
+     * @param root   the position to search.
+     * @param limits the limits of the search.
+     * @return the result of the search.
+     */
+    public SearchResult search(final Position root, 
+                               final SearchLimits limits) {
+        return search(root, limits, null);
+    }
+    
+    /**
+     * Searches the position {@code root} within the limits {@code limits} 
+     * and blocks until the search is over, reporting the result of each 
+     * completed iteration to {@code listener} on the main search thread. 
+     * Does not call {@link SearchListener#searchFinished(SearchResult)}; the
+     * result is returned instead.
+     * 
+     * @param root     the position to search.
+     * @param limits   the limits of the search.
+     * @param listener the progress listener, or {@code null}.
+     * @return the result of the search.
+     */
+    public synchronized SearchResult search(final Position root, 
+                                            final SearchLimits limits,
+                                            final SearchListener listener) {
+        Objects.requireNonNull(root, "The input position is null.");
+        Objects.requireNonNull(limits, "The input search limits are null.");
+        
+        final SearchContext context;
+        
+        synchronized (ponderLock) {
+            context = new SearchContext(transpositionTable,
+                                        workers, 
+                                        tablebases,
+                                        limits,
+                                        listener);
+            currentContext = context;
+            
+            if (limits.isStopped()) {
+                // Stopped between being submitted and starting.
+                context.stop();
+                context.endPondering();
+            }
+        }
+        
+        try {
+            final SearchResult result = search(root, context);
+            context.awaitPonderHit();
+            return result;
+        } finally {
+            context.stop();
+            currentContext = null;
+        }
+    }
+    
+    /**
+     * Ends the pondering of the search with the limits {@code limits}: the 
+     * opponent played the expected move, so the search goes on as the real 
+     * one, its time limit counting from now. If the search has not started 
+     * yet, it starts as the real one. May be called from any thread.
+     * 
+     * @param limits the limits of the pondering search.
+     */
+    public void ponderHit(final SearchLimits limits) {
+        synchronized (ponderLock) {
+            limits.setPonder(false);
+            final SearchContext context = currentContext;
+            
+            if (context != null && context.limits == limits) {
+                context.endPondering();
+            }
+        }
+    }
+    
+    /**
+     * Asks the running search, if any, to stop as soon as possible. A 
+     * pondering search stops too, and returns its result. May be called from
+     * any thread.
+     */
+    public void stop() {
+        synchronized (ponderLock) {
+            final SearchContext context = currentContext;
+            
+            if (context != null) {
+                context.stop();
+                context.endPondering();
+            }
+        }
+    }
+    
+    /**
+     * Asks the search with the limits {@code limits} to stop as soon as 
+     * possible, like {@link #stop()}, but leaves any other search running.
+     * If the search has not started yet, it stops as soon as it starts. May
+     * be called from any thread.
+     * 
+     * @param limits the limits of the search to stop.
+     */
+    public void stop(final SearchLimits limits) {
+        synchronized (ponderLock) {
+            limits.setStopped();
+            final SearchContext context = currentContext;
+            
+            if (context != null && context.limits == limits) {
+                context.stop();
+                context.endPondering();
+            }
+        }
+    }
+    
+    /**
+     * Searches {@code root} within the context {@code context}.
+     */
+    private SearchResult search(final Position root,
+                                final SearchContext context) {
+        final int[] rootMoves = new int[root.getMaxMoves()];
+        final int rootMoveCount = root.generateLegalMoves(rootMoves);
+        
+        if (rootMoveCount == 0) {
+            final int score = root.isInCheck() ? 
+                              -SearchWorker.MATE_SCORE : 
+                              0;
+            return new SearchResult(Move.NONE, score, 0, 0L, 0L, new int[0]);
+        }
+        
+        final ChessGameState standardRoot = root instanceof ChessGameState ?
+                                            (ChessGameState) root :
+                                            null;
+        final OpeningBook book = openingBook;
+        
+        if (book != null && standardRoot != null) {
+            final int bookMove = book.chooseMove(standardRoot, random);
+            
+            if (bookMove != Move.NONE) {
+                return new SearchResult(bookMove, 0, 0, 0L, 0L, 
+                                        new int[]{ bookMove });
+            }
+        }
+        
+        final Tablebases tables = context.tablebases;
+        
+        if (tables != null && standardRoot != null) {
+            final SearchResult result = 
+                    probeRoot(standardRoot, rootMoves, rootMoveCount, tables);
+            
+            if (result != null) {
+                return result;
+            }
+        }
+        
+        transpositionTable.newSearch();
+        
+        final EvaluatorFactory factory = evaluatorFactory;
+        
+        for (final SearchWorker worker : workers) {
+            worker.prepare(root, context, factory);
+        }
+        
+        final List<Future<?>> futures = new ArrayList<>(workers.length);
+        
+        try {
+            for (final SearchWorker worker : workers) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        worker.run();
+                        return null;
+                    }
+                }));
+            }
+            
+            // The search is over once the main worker is done; the helpers
+            // are then told to stop.
+            waitFor(futures.get(0));
+            context.stop();
+            
+            for (int i = 1; i < futures.size(); ++i) {
+                waitFor(futures.get(i));
+            }
+        } finally {
+            context.stop();
+        }
+        
+        final SearchWorker mainWorker = workers[0];
+        int bestMove = mainWorker.getBestMove();
+        int[] principalVariation = mainWorker.getPrincipalVariation();
+        
+        if (bestMove == Move.NONE) {
+            // Stopped before the first iteration produced anything.
+            bestMove = rootMoves[0];
+            principalVariation = new int[] { bestMove };
+        }
+        
+        return new SearchResult(bestMove,
+                                mainWorker.getBestScore(),
+                                mainWorker.getCompletedDepth(),
+                                context.getNodes(),
+                                context.getElapsedMillis(),
+                                principalVariation);
+    }
+    
+    /**
+     * Stops the running search and releases the worker threads. The engine
+     * may not be used afterwards.
+     */
+    public void shutdown() {
+        stop();
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Returns the best move of the root position {@code root} according to 
+     * the endgame tables {@code tablebases}, or {@code null} if the root 
+     * position or one of its successors is not in the tables.
+     */
+    private static SearchResult probeRoot(final ChessGameState root,
+                                          final int[] rootMoves,
+                                          final int rootMoveCount,
+                                          final Tablebases tablebases) {
+        if (tablebases.probe(root) == Tablebases.NOT_FOUND) {
+            return null;
+        }
+        
+        final ChessGameState state = new ChessGameState(root);
+        int bestMove = Move.NONE;
+        int bestValue = Integer.MIN_VALUE;
+        
+        for (int i = 0; i < rootMoveCount; ++i) {
+            state.makeMove(rootMoves[i]);
+            final int childValue = tablebases.probe(state);
+            state.unmakeMove();
+            
+            if (childValue == Tablebases.NOT_FOUND) {
+                return null;
+            }
+            
+            // The value for the other side, one ply further from the mate.
+            final int value = childValue == 0 ? 0 :
+                              childValue > 0 ? 1 - childValue : 
+                                               -1 - childValue;
+            
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = rootMoves[i];
+            }
+        }
+        
+        return new SearchResult(bestMove, 
+                                SearchWorker.scoreFromTablebase(bestValue, 0),
+                                0, 
+                                0L, 
+                                0L, 
+                                new int[]{ bestMove });
+    }
+    
+    private static void waitFor(final Future<?> future) {
+        boolean interrupted = false;
+        
+        while (true) {
+            try {
+                future.get();
+                break;
+            } catch (final InterruptedException ex) {
+                interrupted = true;
+            } catch (final ExecutionException ex) {
+                throw new IllegalStateException("A search thread failed.", 
+                                                ex.getCause());
+            }
+        }
+        
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Creates the named daemon threads of an engine, so that a forgotten 
+     * engine does not keep the JVM alive.
+     */
+    private static final class SearchThreadFactory implements ThreadFactory {
+        
+        private final int engineNumber;
+        private final AtomicInteger threadCounter = new AtomicInteger();
+        
+        SearchThreadFactory(final int engineNumber) {
+            this.engineNumber = engineNumber;
+        }
+        
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = 
+                    new Thread(runnable,
+                               "search-" + engineNumber + "-" + 
+                               threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package net.coderodde.games.chess.search;
+
+/**
+ * This class describes when a search must stop: after a maximum depth, a 
+ * wall-clock time budget or a node budget, whichever comes first. A search
+ * may also be cancelled externally via {@link SearchEngine#stop()} or 
+ * {@link SearchEngine#stop(SearchLimits)}.
+ * <p>
+ * A pondering search, one searching the position after the expected reply 
+ * of the opponent on the time of the opponent, does not start its clock 
+ * and does not return its result until 
+ * {@link SearchEngine#ponderHit(SearchLimits)} tells that the opponent 
+ * played the expected move. The search then 
+ * continues as a normal one, keeping everything it has found so far.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class SearchLimits {
+    
+    /**
+     * Denotes an absent time or node limit.
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    
+    private int maximumDepth = SearchWorker.MAX_PLY - 1;
+    private long timeLimitMillis = UNLIMITED;
+    private long nodeLimit = UNLIMITED;
+    private boolean ponder;
+    
+    /**
+     * Whether the search with these limits was stopped by 
+     * {@link SearchEngine#stop(SearchLimits)}, possibly before it started.
+     * Guarded by the engine.
+     */
+    private boolean stopped;
+    
+    public int getMaximumDepth() {
+        return maximumDepth;
+    }
+    
+    public long getTimeLimitMillis() {
+        return timeLimitMillis;
+    }
+    
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+    
+    public boolean isPonder() {
+        return ponder;
+    }
+    
+    public SearchLimits setMaximumDepth(final int maximumDepth) {
+        this.maximumDepth = 
+                Math.max(1, Math.min(maximumDepth, SearchWorker.MAX_PLY - 1));
+        return this;
+    }
+    
+    public SearchLimits setTimeLimitMillis(final long timeLimitMillis) {
+        this.timeLimitMillis = Math.max(1L, timeLimitMillis);
+        return this;
+    }
+    
+    public SearchLimits setNodeLimit(final long nodeLimit) {
+        this.nodeLimit = Math.max(1L, nodeLimit);
+        return this;
+    }
+    
+    public SearchLimits setPonder(final boolean ponder) {
+        this.ponder = ponder;
+        return this;
+    }
+    
+    boolean isStopped() {
+        return stopped;
+    }
+    
+    void setStopped() {
+        stopped = true;
+    }
+    
+    @Override
+    public String toString() {
+        return "[depth: " + maximumDepth + 
+               ", time: " + (timeLimitMillis == UNLIMITED ? 
+                             "unlimited" : 
+                             timeLimitMillis + " ms") +
+               ", nodes: " + (nodeLimit == UNLIMITED ? 
+                              "unlimited" : 
+                              nodeLimit) + 
+               (ponder ? ", ponder" : "") + "]";
+    }
+}
@@ -0,0 +1,26 @@
+package net.coderodde.games.chess.search;
+
+/**
+ * This interface defines the callbacks of a search. The callbacks are 
+ * invoked on the search thread, so the implementations must be fast and must
+ * not touch Swing components directly.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public interface SearchListener {
+    
+    /**
+     * Called after each completed iteration of the main search thread.
+     * 
+     * @param progress the best move, score and principal variation so far.
+     */
+    void searchProgress(SearchResult progress);
+    
+    /**
+     * Called once the search is over, unless it was cancelled.
+     * 
+     * @param result the final result of the search.
+     */
+    void searchFinished(SearchResult result);
+}
@@ -0,0 +1,312 @@
+package net.coderodde.games.chess.search;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class aggregates the search statistics of all the search threads of
+ * the process. The workers count into plain fields of their own and add the
+ * counts to the striped counters of this class every few thousand nodes, so
+ * the collection adds no shared writes to the search itself.
+ * <p>
+ * The collection is switched on with the system property
+ * {@code net.coderodde.games.chess.metrics}. Since {@link #ENABLED} is a
+ * static final field, the JIT compiles the counting code away when the
+ * collection is disabled. An enabled collection registers the metrics as
+ * the MBean {@link #OBJECT_NAME} and logs a summary line every
+ * {@code net.coderodde.games.chess.metrics.interval} milliseconds, ten
+ * seconds by default, or never if the interval is zero.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class SearchMetrics implements SearchMetricsMBean {
+    
+    /**
+     * Whether the search statistics are collected.
+     */
+    public static final boolean ENABLED =
+            Boolean.getBoolean("net.coderodde.games.chess.metrics");
+    
+    /**
+     * The name the metrics are registered under with the platform MBean
+     * server.
+     */
+    public static final String OBJECT_NAME =
+            "net.coderodde.games.chess:type=SearchMetrics";
+    
+    /**
+     * The default interval between two log lines in milliseconds.
+     */
+    public static final long DEFAULT_LOG_INTERVAL_MILLIS = 10000L;
+    
+    private static final Logger LOGGER =
+            Logger.getLogger(SearchMetrics.class.getName());
+    
+    private static final SearchMetrics INSTANCE = new SearchMetrics();
+    
+    static {
+        if (ENABLED) {
+            INSTANCE.register();
+            INSTANCE.startLogging(
+                    Long.getLong("net.coderodde.games.chess.metrics.interval",
+                                 DEFAULT_LOG_INTERVAL_MILLIS));
+        }
+    }
+    
+    private final StripedCounter nodes                 = new StripedCounter();
+    private final StripedCounter quiescenceNodes       = new StripedCounter();
+    private final StripedCounter betaCutoffs           = new StripedCounter();
+    private final StripedCounter firstMoveCutoffs      = new StripedCounter();
+    private final StripedCounter ttProbes              = new StripedCounter();
+    private final StripedCounter ttHits                = new StripedCounter();
+    private final StripedCounter evaluationCacheProbes = new StripedCounter();
+    private final StripedCounter evaluationCacheHits   = new StripedCounter();
+    
+    // The node counts of the iterations of depth two and more, and of the
+    // iterations one ply shallower.
+    private final StripedCounter deepIterationNodes    = new StripedCounter();
+    private final StripedCounter shallowIterationNodes = new StripedCounter();
+    
+    // The state of the logging thread.
+    private long lastLogNodes;
+    private long lastLogNanos = System.nanoTime();
+    
+    private SearchMetrics() {}
+    
+    /**
+     * Returns the metrics of the process.
+     * 
+     * @return the only instance.
+     */
+    public static SearchMetrics getInstance() {
+        return INSTANCE;
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+    
+    @Override
+    public long getNodes() {
+        return nodes.sum();
+    }
+    
+    @Override
+    public long getQuiescenceNodes() {
+        return quiescenceNodes.sum();
+    }
+    
+    @Override
+    public long getBetaCutoffs() {
+        return betaCutoffs.sum();
+    }
+    
+    @Override
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs.sum();
+    }
+    
+    @Override
+    public double getFirstMoveCutoffRate() {
+        return rate(firstMoveCutoffs.sum(), betaCutoffs.sum());
+    }
+    
+    @Override
+    public long getTranspositionTableProbes() {
+        return ttProbes.sum();
+    }
+    
+    @Override
+    public long getTranspositionTableHits() {
+        return ttHits.sum();
+    }
+    
+    @Override
+    public double getTranspositionTableHitRate() {
+        return rate(ttHits.sum(), ttProbes.sum());
+    }
+    
+    @Override
+    public long getEvaluationCacheProbes() {
+        return evaluationCacheProbes.sum();
+    }
+    
+    @Override
+    public long getEvaluationCacheHits() {
+        return evaluationCacheHits.sum();
+    }
+    
+    @Override
+    public double getEvaluationCacheHitRate() {
+        return rate(evaluationCacheHits.sum(), evaluationCacheProbes.sum());
+    }
+    
+    @Override
+    public double getBranchingFactor() {
+        return rate(deepIterationNodes.sum(), shallowIterationNodes.sum());
+    }
+    
+    @Override
+    public void reset() {
+        nodes.reset();
+        quiescenceNodes.reset();
+        betaCutoffs.reset();
+        firstMoveCutoffs.reset();
+        ttProbes.reset();
+        ttHits.reset();
+        evaluationCacheProbes.reset();
+        evaluationCacheHits.reset();
+        deepIterationNodes.reset();
+        shallowIterationNodes.reset();
+    }
+    
+    /**
+     * Returns the metrics as short lines of text, one per measure, such as
+     * for an overlay.
+     * 
+     * @return the summary lines.
+     */
+    public List<String> getSummaryLines() {
+        final List<String> lines = new ArrayList<>(6);
+        final long nodeCount = nodes.sum();
+        final long quiescenceNodeCount = quiescenceNodes.sum();
+        
+        lines.add("nodes " + nodeCount);
+        lines.add(String.format("qnodes %d (%.1f%%)",
+                                quiescenceNodeCount,
+                                100.0 * rate(quiescenceNodeCount,
+                                             nodeCount)));
+        lines.add(String.format("cutoffs %d (%.1f%% first move)",
+                                betaCutoffs.sum(),
+                                100.0 * getFirstMoveCutoffRate()));
+        lines.add(String.format("tt hits %.1f%% of %d",
+                                100.0 * getTranspositionTableHitRate(),
+                                ttProbes.sum()));
+        lines.add(String.format("eval cache hits %.1f%% of %d",
+                                100.0 * getEvaluationCacheHitRate(),
+                                evaluationCacheProbes.sum()));
+        lines.add(String.format("branching factor %.2f",
+                                getBranchingFactor()));
+        return lines;
+    }
+    
+    /**
+     * Returns the metrics as a single line of text.
+     * 
+     * @return the summary line.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        
+        for (final String line : getSummaryLines()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            
+            sb.append(line);
+        }
+        
+        return sb.toString();
+    }
+    
+    /**
+     * Adds the counts of a search thread accumulated since its previous
+     * call.
+     */
+    void add(final long nodeCount,
+             final long quiescenceNodeCount,
+             final long betaCutoffCount,
+             final long firstMoveCutoffCount,
+             final long ttProbeCount,
+             final long ttHitCount,
+             final long evaluationCacheProbeCount,
+             final long evaluationCacheHitCount) {
+        nodes.add(nodeCount);
+        quiescenceNodes.add(quiescenceNodeCount);
+        betaCutoffs.add(betaCutoffCount);
+        firstMoveCutoffs.add(firstMoveCutoffCount);
+        ttProbes.add(ttProbeCount);
+        ttHits.add(ttHitCount);
+        evaluationCacheProbes.add(evaluationCacheProbeCount);
+        evaluationCacheHits.add(evaluationCacheHitCount);
+    }
+    
+    /**
+     * Records that an iteration searched {@code nodeCount} nodes, and the
+     * iteration one ply shallower {@code previousNodeCount} nodes.
+     */
+    void addIteration(final long nodeCount, final long previousNodeCount) {
+        deepIterationNodes.add(nodeCount);
+        shallowIterationNodes.add(previousNodeCount);
+    }
+    
+    private void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (final JMException ex) {
+            LOGGER.log(Level.WARNING, "Could not register the search metrics.",
+                       ex);
+        }
+    }
+    
+    private void startLogging(final long intervalMillis) {
+        if (intervalMillis <= 0L) {
+            return;
+        }
+        
+        final ScheduledExecutorService executor =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread =
+                                new Thread(runnable, "search-metrics");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                log();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Logs the summary line together with the node rate since the previous
+     * line.
+     */
+    private void log() {
+        final long now = System.nanoTime();
+        final long nodeCount = nodes.sum();
+        final long nodesPerSecond =
+                (long)((nodeCount - lastLogNodes) * 1e9 /
+                       Math.max(1L, now - lastLogNanos));
+        
+        lastLogNodes = nodeCount;
+        lastLogNanos = now;
+        
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info(this + ", nps " + Math.max(0L, nodesPerSecond));
+        }
+    }
+    
+    private static double rate(final long count, final long total) {
+        return total == 0L ? 0.0 : (double) count / total;
+    }
+}
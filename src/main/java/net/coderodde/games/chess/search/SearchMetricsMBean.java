@@ -0,0 +1,61 @@
+package net.coderodde.games.chess.search;
+
+/**
+ * This interface defines the management view of the {@link SearchMetrics}.
+ * All the counts are totals over every search of the process since the
+ * last reset.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public interface SearchMetricsMBean {
+    
+    /**
+     * Returns whether the metrics are collected at all.
+     * 
+     * @return {@code true} if the metrics are collected.
+     */
+    boolean isEnabled();
+    
+    long getNodes();
+    
+    long getQuiescenceNodes();
+    
+    long getBetaCutoffs();
+    
+    long getFirstMoveCutoffs();
+    
+    /**
+     * Returns the share of the beta cutoffs caused by the first move
+     * searched, a measure of the move ordering quality.
+     * 
+     * @return the first move cutoff rate between 0 and 1.
+     */
+    double getFirstMoveCutoffRate();
+    
+    long getTranspositionTableProbes();
+    
+    long getTranspositionTableHits();
+    
+    double getTranspositionTableHitRate();
+    
+    long getEvaluationCacheProbes();
+    
+    long getEvaluationCacheHits();
+    
+    double getEvaluationCacheHitRate();
+    
+    /**
+     * Returns the effective branching factor: the ratio of the nodes
+     * searched by the iterations of depth two and more to the nodes searched
+     * by the iterations one ply shallower.
+     * 
+     * @return the effective branching factor, or zero if unknown.
+     */
+    double getBranchingFactor();
+    
+    /**
+     * Resets all the counts to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,150 @@
+package net.coderodde.games.chess.search;
+
+import net.coderodde.games.chess.Move;
+import net.coderodde.games.chess.Position;
+
+/**
+ * This class holds the outcome of a search: the best move, its score from 
+ * the point of view of the side to move, the principal variation and the 
+ * search statistics. The moves are packed by the searched position and are
+ * written out with its {@link Position#formatMove(int)}; 
+ * {@link #toString()} writes them as the moves of the standard board.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class SearchResult {
+    
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long timeMillis;
+    private final int[] principalVariation;
+    
+    public SearchResult(final int bestMove,
+                        final int score,
+                        final int depth,
+                        final long nodes,
+                        final long timeMillis,
+                        final int[] principalVariation) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+        this.principalVariation = principalVariation.clone();
+    }
+    
+    /**
+     * Returns the best move, or {@link Move#NONE} if the root position has
+     * no legal moves.
+     * 
+     * @return the best move.
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+    
+    public int getScore() {
+        return score;
+    }
+    
+    /**
+     * Returns the depth of the last completed iteration.
+     * 
+     * @return the search depth.
+     */
+    public int getDepth() {
+        return depth;
+    }
+    
+    /**
+     * Returns the number of nodes searched by all the search threads.
+     * 
+     * @return the node count.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+    
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+    
+    /**
+     * Returns the number of nodes searched per second.
+     * 
+     * @return the search speed.
+     */
+    public long getNodesPerSecond() {
+        return nodes * 1000L / Math.max(1L, timeMillis);
+    }
+    
+    /**
+     * Returns a copy of the principal variation, starting with the best move.
+     * 
+     * @return the principal variation.
+     */
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+    
+    /**
+     * Returns the expected reply of the opponent to the best move, the 
+     * second move of the principal variation, to ponder on.
+     * 
+     * @return the expected reply, or {@link Move#NONE} if there is none.
+     */
+    public int getPonderMove() {
+        return principalVariation.length >= 2 ? 
+               principalVariation[1] : 
+               Move.NONE;
+    }
+    
+    /**
+     * Checks whether the score is a forced mate for either side.
+     * 
+     * @return {@code true} if the score denotes a mate.
+     */
+    public boolean isMateScore() {
+        return Math.abs(score) >= 
+               SearchWorker.MATE_SCORE - SearchWorker.MAX_PLY;
+    }
+    
+    /**
+     * Returns the number of moves to the forced mate: positive if the side to
+     * move delivers the mate, negative if it gets mated, and zero if the 
+     * score is not a mate score.
+     * 
+     * @return the signed distance to mate in moves.
+     */
+    public int getMovesToMate() {
+        if (!isMateScore()) {
+            return 0;
+        }
+        
+        final int moves = (SearchWorker.MATE_SCORE - Math.abs(score) + 1) / 2;
+        return score > 0 ? moves : -moves;
+    }
+    
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        
+        for (final int move : principalVariation) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            
+            sb.append(Move.toString(move));
+        }
+        
+        return "[best move: " + Move.toString(bestMove) + 
+               ", score: " + score + 
+               ", depth: " + depth + 
+               ", nodes: " + nodes + 
+               ", time: " + timeMillis + " ms" +
+               ", pv: " + sb + "]";
+    }
+}
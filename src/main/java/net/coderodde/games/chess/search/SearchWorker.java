@@ -0,0 +1,859 @@
+package net.coderodde.games.chess.search;
+
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.ChessPiece;
+import net.coderodde.games.chess.ChessPieceType;
+import net.coderodde.games.chess.Move;
+import net.coderodde.games.chess.MoveGenerator;
+import net.coderodde.games.chess.Position;
+import net.coderodde.games.chess.evaluation.Evaluator;
+import net.coderodde.games.chess.evaluation.EvaluatorFactory;
+import net.coderodde.games.chess.evaluation.ScoreCache;
+import net.coderodde.games.chess.evaluation.TaperedEvaluator;
+import net.coderodde.games.chess.tablebase.Tablebases;
+
+/**
+ * This class implements a single search thread: an iterative deepening
+ * principal variation search with a quiescence search, transposition table
+ * cutoffs, null move pruning, late move reductions and killer/history move
+ * ordering. The worker walks its private copy of the root position with 
+ * make/unmake, so it searches any {@link Position}: the standard game 
+ * state or the game state of a chess variant. The buffers are allocated 
+ * once per worker, and again only when the board grows.
+ * <p>
+ * Several workers searching the same root and sharing the transposition
+ * table make up a Lazy SMP search: the helpers fill the table with results
+ * the main worker then reuses.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+final class SearchWorker {
+    
+    /**
+     * The maximum search ply.
+     */
+    static final int MAX_PLY = 128;
+    
+    /**
+     * The score of delivering mate at the root. A mate in {@code n} plies
+     * scores {@code MATE_SCORE - n}.
+     */
+    static final int MATE_SCORE = 32000;
+    
+    static final int INFINITY = 32500;
+    
+    private static final int DRAW_SCORE = 0;
+    
+    /**
+     * The number of nodes between two checks of the search limits.
+     */
+    private static final int CHECK_INTERVAL = 2048;
+    
+    private static final int ASPIRATION_WINDOW = 25;
+    
+    /**
+     * The piece values indexed by the ordinals of {@link ChessPieceType}.
+     */
+    private static final int[] PIECE_VALUES = { 
+        0, 900, 500, 330, 320, 100, 850, 875 
+    };
+    
+    private static final int TT_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int KILLER_SCORE  = 1 << 27;
+    private static final int HISTORY_LIMIT = 1 << 24;
+    
+    private final int id;
+    private Position state = new ChessGameState();
+    
+    /**
+     * The searched position if it is a {@link ChessGameState}, which the 
+     * tablebases are probed with, and {@code null} otherwise.
+     */
+    private ChessGameState standardState;
+    private int[][] moves = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private int[][] moveScores = 
+            new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    
+    /**
+     * Two killer moves per ply: quiet moves that caused a beta cutoff at the
+     * same ply in a sibling node.
+     */
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    
+    /**
+     * The history scores of quiet moves indexed by the color and by the 
+     * source square times the number of squares plus the target square.
+     */
+    private int[][] history = new int[2][64 * 64];
+    private int squareCount = 64;
+    
+    /**
+     * The triangular principal variation table.
+     */
+    private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    
+    private SearchContext context;
+    private TranspositionTable transpositionTable;
+    private Tablebases tablebases;
+    
+    /**
+     * The evaluator attached to {@link #state}, and the factory it came from.
+     */
+    private Evaluator evaluator;
+    private EvaluatorFactory evaluatorFactory;
+    private long nodes;
+    private volatile long publishedNodes;
+    
+    // The counts not yet added to the SearchMetrics. Maintained only if 
+    // SearchMetrics.ENABLED is set.
+    private long metricsNodes;
+    private long quiescenceNodes;
+    private long betaCutoffs;
+    private long firstMoveCutoffs;
+    private long ttProbes;
+    private long ttHits;
+    
+    /**
+     * The evaluation cache of {@link #evaluator}, or {@code null}, and its
+     * counts already added to the {@code SearchMetrics}.
+     */
+    private ScoreCache evaluationCache;
+    private long evaluationCacheProbes;
+    private long evaluationCacheHits;
+    
+    // The node counts of the current and the previous iteration of the main
+    // worker, for the branching factor.
+    private long iterationStartNodes;
+    private long previousIterationNodes;
+    
+    // The result of the last completed iteration.
+    private int completedDepth;
+    private int bestMove;
+    private int bestScore;
+    private int[] principalVariation = new int[0];
+    
+    /**
+     * The score of the best root move of the current iteration.
+     */
+    private int rootScore;
+    
+    SearchWorker(final int id) {
+        this.id = id;
+    }
+    
+    /**
+     * Prepares this worker for a new search of {@code root}, evaluating the
+     * positions with an evaluator of {@code evaluatorFactory}.
+     */
+    void prepare(final Position root, 
+                 final SearchContext context,
+                 final EvaluatorFactory evaluatorFactory) {
+        if (this.evaluatorFactory != evaluatorFactory) {
+            this.evaluatorFactory = evaluatorFactory;
+            this.evaluator = evaluatorFactory.createEvaluator();
+        }
+        
+        this.state.setBoardListener(null);
+        this.state = root.copyInto(state);
+        this.standardState = state instanceof ChessGameState ?
+                             (ChessGameState) state :
+                             null;
+        
+        if (moves[0].length < state.getMaxMoves()) {
+            this.moves = new int[MAX_PLY + 1][state.getMaxMoves()];
+            this.moveScores = new int[MAX_PLY + 1][state.getMaxMoves()];
+        }
+        
+        this.evaluator.attach(state);
+        this.context = context;
+        this.transpositionTable = context.transpositionTable;
+        this.tablebases = standardState != null ? context.tablebases : null;
+        this.nodes = 0L;
+        this.publishedNodes = 0L;
+        this.metricsNodes = 0L;
+        this.iterationStartNodes = 0L;
+        this.previousIterationNodes = 0L;
+        this.evaluationCache = evaluator instanceof TaperedEvaluator ?
+                ((TaperedEvaluator) evaluator).getEvaluationCache() :
+                null;
+        
+        if (evaluationCache != null) {
+            this.evaluationCacheProbes = evaluationCache.getProbes();
+            this.evaluationCacheHits = evaluationCache.getHits();
+        }
+        
+        this.completedDepth = 0;
+        this.bestMove = Move.NONE;
+        this.bestScore = 0;
+        this.principalVariation = new int[0];
+        
+        for (final int[] plyKillers : killers) {
+            plyKillers[0] = plyKillers[1] = Move.NONE;
+        }
+        
+        if (state.getSquareCount() != squareCount) {
+            squareCount = state.getSquareCount();
+            history = new int[2][squareCount * squareCount];
+        }
+        
+        // Keep the move ordering knowledge of the previous searches, but let
+        // it fade.
+        for (final int[] colorHistory : history) {
+            for (int i = 0; i < colorHistory.length; ++i) {
+                colorHistory[i] >>= 1;
+            }
+        }
+    }
+    
+    long getPublishedNodes() {
+        return publishedNodes;
+    }
+    
+    int getCompletedDepth() {
+        return completedDepth;
+    }
+    
+    int getBestMove() {
+        return bestMove;
+    }
+    
+    int getBestScore() {
+        return bestScore;
+    }
+    
+    int[] getPrincipalVariation() {
+        return principalVariation;
+    }
+    
+    /**
+     * Runs the iterative deepening loop until the maximum depth is reached or
+     * the search is stopped.
+     */
+    void run() {
+        if (id == 0) {
+            context.mainWorkerStarted();
+        }
+        
+        // Every other helper starts one ply deeper, so that the threads
+        // spread over neighbouring depths instead of all duplicating the
+        // same iteration.
+        final int firstDepth = 1 + (id & 1);
+        int previousScore = 0;
+        
+        for (int depth = firstDepth;
+                depth <= context.maximumDepth;
+                ++depth) {
+            int alpha = -INFINITY;
+            int beta  = INFINITY;
+            int window = ASPIRATION_WINDOW;
+            
+            if (depth >= 5) {
+                alpha = Math.max(-INFINITY, previousScore - window);
+                beta  = Math.min(INFINITY,  previousScore + window);
+            }
+            
+            int score;
+            
+            while (true) {
+                score = search(depth, 0, alpha, beta, true, false);
+                
+                if (context.isStopped()) {
+                    break;
+                }
+                
+                if (score <= alpha) {
+                    alpha = Math.max(-INFINITY, alpha - window);
+                } else if (score >= beta) {
+                    beta = Math.min(INFINITY, beta + window);
+                } else {
+                    break;
+                }
+                
+                window *= 2;
+            }
+            
+            if (context.isStopped()) {
+                // Every root move improving on alpha was searched to the end,
+                // so an interrupted iteration still yields a usable move.
+                if (pvLength[0] > 0) {
+                    recordIteration(completedDepth, rootScore);
+                }
+                
+                break;
+            }
+            
+            recordIteration(depth, score);
+            
+            if (id == 0) {
+                publishedNodes = nodes;
+                
+                if (SearchMetrics.ENABLED) {
+                    recordIterationNodes();
+                }
+                
+                context.iterationCompleted(this);
+            }
+            
+            previousScore = score;
+            final long softDeadline = context.softDeadlineNanos;
+            
+            if (id == 0 && System.nanoTime() - softDeadline >= 0L
+                    && softDeadline != Long.MAX_VALUE) {
+                break;
+            }
+        }
+        
+        publishedNodes = nodes;
+        
+        if (SearchMetrics.ENABLED) {
+            publishMetrics();
+        }
+    }
+    
+    /**
+     * Adds the counts of this worker since the previous call to the
+     * {@code SearchMetrics}.
+     */
+    private void publishMetrics() {
+        long cacheProbes = 0L;
+        long cacheHits = 0L;
+        
+        if (evaluationCache != null) {
+            cacheProbes = evaluationCache.getProbes() - evaluationCacheProbes;
+            cacheHits = evaluationCache.getHits() - evaluationCacheHits;
+            evaluationCacheProbes += cacheProbes;
+            evaluationCacheHits += cacheHits;
+        }
+        
+        SearchMetrics.getInstance().add(nodes - metricsNodes,
+                                        quiescenceNodes,
+                                        betaCutoffs,
+                                        firstMoveCutoffs,
+                                        ttProbes,
+                                        ttHits,
+                                        cacheProbes,
+                                        cacheHits);
+        metricsNodes = nodes;
+        quiescenceNodes = 0L;
+        betaCutoffs = 0L;
+        firstMoveCutoffs = 0L;
+        ttProbes = 0L;
+        ttHits = 0L;
+    }
+    
+    /**
+     * Adds the node counts of the iteration just completed and of its 
+     * predecessor to the {@code SearchMetrics}.
+     */
+    private void recordIterationNodes() {
+        final long iterationNodes = nodes - iterationStartNodes;
+        
+        if (previousIterationNodes > 0L) {
+            SearchMetrics.getInstance().addIteration(iterationNodes,
+                                                     previousIterationNodes);
+        }
+        
+        previousIterationNodes = iterationNodes;
+        iterationStartNodes = nodes;
+    }
+    
+    private void recordIteration(final int depth, final int score) {
+        completedDepth = depth;
+        bestMove = pvTable[0][0];
+        bestScore = score;
+        principalVariation = new int[pvLength[0]];
+        System.arraycopy(pvTable[0],
+                         0,
+                         principalVariation,
+                         0,
+                         principalVariation.length);
+    }
+    
+    private int search(int depth,
+                       final int ply,
+                       int alpha,
+                       final int beta,
+                       final boolean pvNode,
+                       final boolean nullMoveAllowed) {
+        pvLength[ply] = 0;
+        
+        if ((++nodes & (CHECK_INTERVAL - 1)) == 0) {
+            publishedNodes = nodes;
+            context.checkLimits();
+            
+            if (SearchMetrics.ENABLED) {
+                publishMetrics();
+            }
+        }
+        
+        if (context.isStopped()) {
+            return 0;
+        }
+        
+        if (ply > 0) {
+            if (state.isRepetition() 
+                    || state.getHalfmoveClock() >= 100
+                    || state.isInsufficientMaterial()) {
+                return DRAW_SCORE;
+            }
+            
+            if (ply >= MAX_PLY) {
+                return evaluate();
+            }
+            
+            if (tablebases != null 
+                    && Long.bitCount(standardState.getOccupancy()) 
+                            <= tablebases.getMaximumPieces()) {
+                final int value = tablebases.probe(standardState);
+                
+                if (value != Tablebases.NOT_FOUND) {
+                    return scoreFromTablebase(value, ply);
+                }
+            }
+        }
+        
+        final boolean inCheck = state.isInCheck();
+        
+        if (inCheck) {
+            ++depth;
+        }
+        
+        if (depth <= 0) {
+            return quiescence(ply, alpha, beta);
+        }
+        
+        final long key = state.getZobristKey();
+        final long entry = transpositionTable.probe(key);
+        int ttMove = Move.NONE;
+        
+        if (SearchMetrics.ENABLED) {
+            ++ttProbes;
+            
+            if (entry != 0L) {
+                ++ttHits;
+            }
+        }
+        
+        if (entry != 0L) {
+            ttMove = TranspositionTable.getMove(entry);
+            
+            if (!pvNode && TranspositionTable.getDepth(entry) >= depth) {
+                final int ttScore =
+                        scoreFromTable(TranspositionTable.getScore(entry),
+                                       ply);
+                
+                switch (TranspositionTable.getBound(entry)) {
+                    case TranspositionTable.BOUND_EXACT:
+                        return ttScore;
+                    
+                    case TranspositionTable.BOUND_LOWER:
+                        if (ttScore >= beta) {
+                            return ttScore;
+                        }
+                    
+                        break;
+                    
+                    case TranspositionTable.BOUND_UPPER:
+                        if (ttScore <= alpha) {
+                            return ttScore;
+                        }
+                    
+                        break;
+                }
+            }
+        }
+        
+        if (nullMoveAllowed
+                && !pvNode
+                && !inCheck
+                && depth >= 3
+                && state.hasNonPawnMaterial(state.getSideToMove())
+                && evaluate() >= beta) {
+            final int reduction = 2 + depth / 4;
+            state.makeNullMove();
+            final int score = -search(depth - 1 - reduction,
+                                      ply + 1,
+                                      -beta,
+                                      -beta + 1,
+                                      false,
+                                      false);
+            state.unmakeMove();
+            
+            if (context.isStopped()) {
+                return 0;
+            }
+            
+            if (score >= beta) {
+                return score >= MATE_SCORE - MAX_PLY ? beta : score;
+            }
+        }
+        
+        final int[] plyMoves = moves[ply];
+        final int moveCount = state.generateLegalMoves(plyMoves);
+        
+        if (moveCount == 0) {
+            return inCheck ? -MATE_SCORE + ply : DRAW_SCORE;
+        }
+        
+        scoreMoves(ply, moveCount, ttMove);
+        
+        final int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        
+        for (int i = 0; i < moveCount; ++i) {
+            final int move = pickNextMove(ply, i, moveCount);
+            final boolean quiet = isQuiet(move);
+            
+            state.makeMove(move);
+            int score;
+            
+            if (i == 0) {
+                score = -search(depth - 1, 
+                                ply + 1,
+                                -beta, 
+                                -alpha, 
+                                pvNode,
+                                true);
+            } else {
+                int reduction = 0;
+                
+                if (depth >= 3 && i >= 3 && quiet && !inCheck
+                        && !state.isInCheck()) {
+                    reduction = i >= 8 ? 2 : 1;
+                }
+                
+                score = -search(depth - 1 - reduction,
+                                ply + 1,
+                                -alpha - 1,
+                                -alpha,
+                                false,
+                                true);
+                
+                if (score > alpha && reduction > 0) {
+                    score = -search(depth - 1,
+                                    ply + 1,
+                                    -alpha - 1,
+                                    -alpha,
+                                    false,
+                                    true);
+                }
+                
+                if (score > alpha && score < beta) {
+                    score = -search(depth - 1,
+                                    ply + 1,
+                                    -beta,
+                                    -alpha,
+                                    true,
+                                    true);
+                }
+            }
+            
+            state.unmakeMove();
+            
+            if (context.isStopped()) {
+                return 0;
+            }
+            
+            if (score > bestScore) {
+                bestScore = score;
+                
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    updatePrincipalVariation(ply, move);
+                    
+                    if (ply == 0) {
+                        rootScore = score;
+                    }
+                    
+                    if (alpha >= beta) {
+                        if (quiet) {
+                            updateQuietMoveStatistics(ply, move, depth);
+                        }
+                        
+                        if (SearchMetrics.ENABLED) {
+                            ++betaCutoffs;
+                            
+                            if (i == 0) {
+                                ++firstMoveCutoffs;
+                            }
+                        }
+                        
+                        break;
+                    }
+                }
+            }
+        }
+        
+        final int bound = bestScore >= beta ?
+                          TranspositionTable.BOUND_LOWER :
+                          (bestScore > originalAlpha ?
+                                  TranspositionTable.BOUND_EXACT :
+                                  TranspositionTable.BOUND_UPPER);
+        
+        transpositionTable.store(key,
+                                 bestMove,
+                                 scoreToTable(bestScore, ply),
+                                 depth,
+                                 bound);
+        return bestScore;
+    }
+    
+    private int quiescence(final int ply, int alpha, final int beta) {
+        pvLength[ply] = 0;
+        
+        if (SearchMetrics.ENABLED) {
+            ++quiescenceNodes;
+        }
+        
+        if ((++nodes & (CHECK_INTERVAL - 1)) == 0) {
+            publishedNodes = nodes;
+            context.checkLimits();
+            
+            if (SearchMetrics.ENABLED) {
+                publishMetrics();
+            }
+        }
+        
+        if (context.isStopped()) {
+            return 0;
+        }
+        
+        if (ply >= MAX_PLY) {
+            return evaluate();
+        }
+        
+        final boolean inCheck = state.isInCheck();
+        final int[] plyMoves = moves[ply];
+        int bestScore;
+        int moveCount;
+        
+        if (inCheck) {
+            // In check every evasion is searched, so that mates are found.
+            moveCount = state.generateLegalMoves(plyMoves);
+            
+            if (moveCount == 0) {
+                return -MATE_SCORE + ply;
+            }
+            
+            bestScore = -INFINITY;
+        } else {
+            bestScore = evaluate();
+            
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+            
+            if (bestScore > alpha) {
+                alpha = bestScore;
+            }
+            
+            moveCount = state.generateLegalCaptures(plyMoves);
+        }
+        
+        scoreMoves(ply, moveCount, Move.NONE);
+        
+        for (int i = 0; i < moveCount; ++i) {
+            final int move = pickNextMove(ply, i, moveCount);
+            state.makeMove(move);
+            final int score = -quiescence(ply + 1, -beta, -alpha);
+            state.unmakeMove();
+            
+            if (context.isStopped()) {
+                return 0;
+            }
+            
+            if (score > bestScore) {
+                bestScore = score;
+                
+                if (score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                    
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        
+        return bestScore;
+    }
+    
+    /**
+     * Returns the static score from the point of view of the side to move.
+     */
+    private int evaluate() {
+        return evaluator.evaluate();
+    }
+    
+    private boolean isQuiet(final int move) {
+        return state.getPieceCode(state.getMoveTo(move)) == ChessPiece.NONE
+                && !state.isEnPassant(move)
+                && state.getMovePromotion(move) == null;
+    }
+    
+    /**
+     * Returns the index of the quiet move {@code move} in the history 
+     * tables.
+     */
+    private int historyIndex(final int move) {
+        return state.getMoveFrom(move) * squareCount + state.getMoveTo(move);
+    }
+    
+    /**
+     * Assigns the ordering scores to the moves of the ply {@code ply}: the
+     * transposition table move first, then the captures and promotions by
+     * the most valuable victim and the least valuable attacker, then the
+     * killer moves, then the rest by their history scores.
+     */
+    private void scoreMoves(final int ply,
+                            final int moveCount,
+                            final int ttMove) {
+        final int[] plyMoves = moves[ply];
+        final int[] scores = moveScores[ply];
+        final int[] colorHistory =
+                history[state.getSideToMove().ordinal()];
+        
+        for (int i = 0; i < moveCount; ++i) {
+            final int move = plyMoves[i];
+            
+            if (move == ttMove) {
+                scores[i] = TT_MOVE_SCORE;
+                continue;
+            }
+            
+            final ChessPiece victim = state.getPiece(state.getMoveTo(move));
+            final ChessPieceType promotion = state.getMovePromotion(move);
+            
+            if (victim != null
+                    || state.isEnPassant(move)
+                    || promotion != null) {
+                final int victimValue =
+                        victim == null ?
+                        PIECE_VALUES[ChessPieceType.PAWN.ordinal()] :
+                        PIECE_VALUES[victim.getType().ordinal()];
+                final int attackerValue =
+                        PIECE_VALUES[state.getPiece(state.getMoveFrom(move))
+                                          .getType()
+                                          .ordinal()];
+                final int promotionValue =
+                        promotion == null ? 
+                        0 : 
+                        PIECE_VALUES[promotion.ordinal()];
+                
+                scores[i] = CAPTURE_SCORE
+                          + 16 * (victimValue + promotionValue)
+                          - attackerValue / 10;
+            } else if (move == killers[ply][0]) {
+                scores[i] = KILLER_SCORE;
+            } else if (move == killers[ply][1]) {
+                scores[i] = KILLER_SCORE - 1;
+            } else {
+                scores[i] = colorHistory[historyIndex(move)];
+            }
+        }
+    }
+    
+    /**
+     * Moves the highest-scoring remaining move to the index {@code index}
+     * and returns it.
+     */
+    private int pickNextMove(final int ply, final int index, final int count) {
+        final int[] plyMoves = moves[ply];
+        final int[] scores = moveScores[ply];
+        int bestIndex = index;
+        
+        for (int i = index + 1; i < count; ++i) {
+            if (scores[i] > scores[bestIndex]) {
+                bestIndex = i;
+            }
+        }
+        
+        final int move = plyMoves[bestIndex];
+        plyMoves[bestIndex] = plyMoves[index];
+        plyMoves[index] = move;
+        
+        final int score = scores[bestIndex];
+        scores[bestIndex] = scores[index];
+        scores[index] = score;
+        return move;
+    }
+    
+    private void updateQuietMoveStatistics(final int ply,
+                                           final int move,
+                                           final int depth) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        
+        final int[] colorHistory = history[state.getSideToMove().ordinal()];
+        final int index = historyIndex(move);
+        colorHistory[index] += depth * depth;
+        
+        if (colorHistory[index] > HISTORY_LIMIT) {
+            for (int i = 0; i < colorHistory.length; ++i) {
+                colorHistory[i] >>= 1;
+            }
+        }
+    }
+    
+    private void updatePrincipalVariation(final int ply, final int move) {
+        final int[] line = pvTable[ply];
+        line[0] = move;
+        
+        final int childLength = pvLength[ply + 1];
+        System.arraycopy(pvTable[ply + 1], 0, line, 1, childLength);
+        pvLength[ply] = childLength + 1;
+    }
+    
+    /**
+     * Converts the tablebase value {@code value} of a position at the ply 
+     * {@code ply} into a score. The mates too distant for a mate score get 
+     * the score just below the mate scores.
+     */
+    static int scoreFromTablebase(final int value, final int ply) {
+        if (value == 0) {
+            return DRAW_SCORE;
+        }
+        
+        final int plies = ply + Tablebases.MATE - Math.abs(value);
+        final int score = plies < MAX_PLY ? 
+                          MATE_SCORE - plies : 
+                          MATE_SCORE - MAX_PLY - 1;
+        return value > 0 ? score : -score;
+    }
+    
+    /**
+     * Converts a mate score relative to the root into one relative to the
+     * current node before storing it into the transposition table.
+     */
+    private static int scoreToTable(final int score, final int ply) {
+        if (score >= MATE_SCORE - MAX_PLY) {
+            return score + ply;
+        }
+        
+        if (score <= -MATE_SCORE + MAX_PLY) {
+            return score - ply;
+        }
+        
+        return score;
+    }
+    
+    private static int scoreFromTable(final int score, final int ply) {
+        if (score >= MATE_SCORE - MAX_PLY) {
+            return score - ply;
+        }
+        
+        if (score <= -MATE_SCORE + MAX_PLY) {
+            return score + ply;
+        }
+        
+        return score;
+    }
+}
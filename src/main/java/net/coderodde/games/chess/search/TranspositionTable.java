@@ -0,0 +1,344 @@
+package net.coderodde.games.chess.search;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a fixed-size transposition table packed into a 
+ * {@code long[]}. Each entry takes two longs: the Zobrist key XORed with the
+ * entry data, and the data itself. The table may be shared by any number of 
+ * search threads without locking: an entry torn by concurrent writers fails
+ * the XOR check on the next probe and is treated as a miss.
+ * <p>
+ * The entries are grouped into buckets of four, which fill a typical 64-byte
+ * cache line. A store replaces the entry of the same position if there is 
+ * one, then an empty entry, then the entry with the smallest depth, entries
+ * from earlier searches being considered shallower the older they are.
+ * <p>
+ * The entry data packs the best move (bits 0-23, wide enough for the moves
+ * of the variant boards), the score (bits 24-39), the depth (bits 40-47), 
+ * the bound type (bits 48-49) and the search generation (bits 50-55). The 
+ * probe returns the data as a {@code long}, which is decoded with the 
+ * static accessors of this class.
+ * <p>
+ * The probe, hit, store and collision counts are always kept, so that the 
+ * table can be sized in production. They cost one striped counter update 
+ * per probe or store, unlike the per-node counts of the 
+ * {@link SearchMetrics}, which are switchable.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class TranspositionTable {
+    
+    /**
+     * The bound type of an empty entry.
+     */
+    public static final int BOUND_NONE = 0;
+    
+    /**
+     * The bound type of a score that is at most the true score.
+     */
+    public static final int BOUND_LOWER = 1;
+    
+    /**
+     * The bound type of a score that is at least the true score.
+     */
+    public static final int BOUND_UPPER = 2;
+    
+    /**
+     * The bound type of an exact score.
+     */
+    public static final int BOUND_EXACT = 3;
+    
+    /**
+     * The default size of the table in megabytes.
+     */
+    public static final int DEFAULT_SIZE_IN_MEGABYTES = 16;
+    
+    /**
+     * The number of entries per bucket.
+     */
+    private static final int BUCKET_SIZE = 4;
+    
+    /**
+     * The number of longs per entry.
+     */
+    private static final int ENTRY_LONGS = 2;
+    
+    private static final int BUCKET_LONGS = BUCKET_SIZE * ENTRY_LONGS;
+    private static final int BUCKET_BYTES = BUCKET_LONGS * 8;
+    
+    private static final int SCORE_SHIFT      = 24;
+    private static final int DEPTH_SHIFT      = 40;
+    private static final int BOUND_SHIFT      = 48;
+    private static final int GENERATION_SHIFT = 50;
+    private static final int SCORE_OFFSET     = 1 << 15;
+    private static final int MAX_DEPTH        = 255;
+    private static final int GENERATIONS      = 64;
+    
+    private final long[] table;
+    
+    /**
+     * The mask selecting the bucket index from a key.
+     */
+    private final long bucketMask;
+    
+    /**
+     * The generation of the current search. Stored entries of older 
+     * generations are replaced first.
+     */
+    private int generation;
+    
+    private final StripedCounter probes     = new StripedCounter();
+    private final StripedCounter hits       = new StripedCounter();
+    private final StripedCounter stores     = new StripedCounter();
+    private final StripedCounter collisions = new StripedCounter();
+    
+    /**
+     * Constructs a transposition table of at most {@code sizeInMegabytes} 
+     * megabytes. The number of buckets is rounded down to a power of two.
+     * 
+     * @param sizeInMegabytes the memory budget of the table.
+     */
+    public TranspositionTable(final int sizeInMegabytes) {
+        if (sizeInMegabytes < 1) {
+            throw new IllegalArgumentException(
+                    "The table size must be at least 1 MB, received " + 
+                    sizeInMegabytes + ".");
+        }
+        
+        final long buckets = 
+                Long.highestOneBit(((long) sizeInMegabytes << 20) 
+                                    / BUCKET_BYTES);
+        
+        if (buckets * BUCKET_LONGS > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(
+                    "The table size is too large: " + sizeInMegabytes + 
+                    " MB.");
+        }
+        
+        this.table = new long[(int)(buckets * BUCKET_LONGS)];
+        this.bucketMask = buckets - 1;
+    }
+    
+    public TranspositionTable() {
+        this(DEFAULT_SIZE_IN_MEGABYTES);
+    }
+    
+    /**
+     * Returns the number of entries in this table.
+     * 
+     * @return the capacity of the table.
+     */
+    public int getCapacity() {
+        return table.length / ENTRY_LONGS;
+    }
+    
+    /**
+     * Returns the size of this table in bytes.
+     * 
+     * @return the memory taken by the entries.
+     */
+    public long getSizeInBytes() {
+        return 8L * table.length;
+    }
+    
+    /**
+     * Removes all the entries and resets the counters. Must not be called
+     * while a search is using the table.
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        generation = 0;
+        resetStatistics();
+    }
+    
+    /**
+     * Starts a new search generation. The entries stored during earlier 
+     * generations are replaced more eagerly. Must be called before the 
+     * search threads are started.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & (GENERATIONS - 1);
+    }
+    
+    /**
+     * Looks up the entry of the position with the key {@code key}.
+     * 
+     * @param key the Zobrist key of the position.
+     * @return the entry data, or zero if there is no valid entry.
+     */
+    public long probe(final long key) {
+        probes.increment();
+        final int bucket = bucketIndex(key);
+        
+        for (int i = bucket; i < bucket + BUCKET_LONGS; i += ENTRY_LONGS) {
+            final long data = table[i + 1];
+            
+            if (data != 0L && (table[i] ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        
+        return 0L;
+    }
+    
+    /**
+     * Stores an entry for the position with the key {@code key}.
+     * 
+     * @param key   the Zobrist key of the position.
+     * @param move  the best move found, or {@code Move.NONE}.
+     * @param score the score of the position, which must fit in a 
+     *              {@code short}.
+     * @param depth the depth of the search that produced the score.
+     * @param bound the bound type of the score.
+     */
+    public void store(final long key, 
+                      int move,
+                      final int score, 
+                      final int depth,
+                      final int bound) {
+        final int bucket = bucketIndex(key);
+        int victim = -1;
+        int victimWorth = Integer.MAX_VALUE;
+        
+        for (int i = bucket; i < bucket + BUCKET_LONGS; i += ENTRY_LONGS) {
+            final long data = table[i + 1];
+            
+            if (data == 0L) {
+                if (victimWorth != Integer.MIN_VALUE) {
+                    victim = i;
+                    victimWorth = Integer.MIN_VALUE;
+                }
+                
+                continue;
+            }
+            
+            if ((table[i] ^ data) == key) {
+                // The same position: keep a deeper entry of this search 
+                // unless the new score is exact.
+                if (bound != BOUND_EXACT 
+                        && getGeneration(data) == generation
+                        && getDepth(data) > depth + 2) {
+                    return;
+                }
+                
+                if (move == 0) {
+                    move = getMove(data);
+                }
+                
+                write(i, key, move, score, depth, bound);
+                return;
+            }
+            
+            final int age = (generation - getGeneration(data)) 
+                          & (GENERATIONS - 1);
+            final int worth = getDepth(data) - 8 * age;
+            
+            if (worth < victimWorth) {
+                victim = i;
+                victimWorth = worth;
+            }
+        }
+        
+        if (victimWorth != Integer.MIN_VALUE) {
+            collisions.increment();
+        }
+        
+        write(victim, key, move, score, depth, bound);
+    }
+    
+    /**
+     * Returns the number of entries per thousand filled during the current
+     * search generation, estimated from the first buckets.
+     * 
+     * @return the fill rate in permille.
+     */
+    public int getHashFull() {
+        final int sampledEntries = Math.min(1000, getCapacity());
+        int filled = 0;
+        
+        for (int i = 0; i < sampledEntries; ++i) {
+            final long data = table[i * ENTRY_LONGS + 1];
+            
+            if (data != 0L && getGeneration(data) == generation) {
+                ++filled;
+            }
+        }
+        
+        return filled * 1000 / sampledEntries;
+    }
+    
+    public long getProbeCount() {
+        return probes.sum();
+    }
+    
+    public long getHitCount() {
+        return hits.sum();
+    }
+    
+    public long getStoreCount() {
+        return stores.sum();
+    }
+    
+    /**
+     * Returns the number of stores that evicted the entry of another 
+     * position.
+     * 
+     * @return the number of collisions.
+     */
+    public long getCollisionCount() {
+        return collisions.sum();
+    }
+    
+    public void resetStatistics() {
+        probes.reset();
+        hits.reset();
+        stores.reset();
+        collisions.reset();
+    }
+    
+    public static int getMove(final long data) {
+        return (int)(data & ((1L << SCORE_SHIFT) - 1));
+    }
+    
+    public static int getScore(final long data) {
+        return (int)((data >>> SCORE_SHIFT) & 0xffff) - SCORE_OFFSET;
+    }
+    
+    public static int getDepth(final long data) {
+        return (int)((data >>> DEPTH_SHIFT) & MAX_DEPTH);
+    }
+    
+    public static int getBound(final long data) {
+        return (int)((data >>> BOUND_SHIFT) & 3);
+    }
+    
+    private static int getGeneration(final long data) {
+        return (int)((data >>> GENERATION_SHIFT) & (GENERATIONS - 1));
+    }
+    
+    private int bucketIndex(final long key) {
+        return (int)(key & bucketMask) * BUCKET_LONGS;
+    }
+    
+    private void write(final int index,
+                       final long key,
+                       final int move,
+                       final int score, 
+                       final int depth, 
+                       final int bound) {
+        final long data = 
+                  (move & ((1L << SCORE_SHIFT) - 1))
+                | ((long)(score + SCORE_OFFSET) << SCORE_SHIFT)
+                | ((long) Math.max(0, Math.min(depth, MAX_DEPTH)) 
+                        << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+        
+        table[index]     = key ^ data;
+        table[index + 1] = data;
+        stores.increment();
+    }
+}
@@ -0,0 +1,73 @@
+package net.coderodde.games.chess.store;
+
+/**
+ * This class describes a game of a {@link GameStore} as listed by its 
+ * index: the players, the creation time, the number of plies and the 
+ * result. The instances are immutable snapshots.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class GameInfo {
+    
+    private final int id;
+    private final String white;
+    private final String black;
+    private final long createdMillis;
+    private final int plyCount;
+    private final String result;
+    
+    GameInfo(final int id,
+             final String white,
+             final String black,
+             final long createdMillis,
+             final int plyCount,
+             final String result) {
+        this.id            = id;
+        this.white         = white;
+        this.black         = black;
+        this.createdMillis = createdMillis;
+        this.plyCount      = plyCount;
+        this.result        = result;
+    }
+    
+    public int getId() {
+        return id;
+    }
+    
+    public String getWhite() {
+        return white;
+    }
+    
+    public String getBlack() {
+        return black;
+    }
+    
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+    
+    public int getPlyCount() {
+        return plyCount;
+    }
+    
+    /**
+     * Returns the result in the notation of the PGN result tag, <i>*</i> 
+     * for a game in progress.
+     * 
+     * @return the PGN result.
+     */
+    public String getResult() {
+        return result;
+    }
+    
+    public boolean isFinished() {
+        return !result.equals("*");
+    }
+    
+    @Override
+    public String toString() {
+        return id + "\t" + white + "\t" + black + "\t" + plyCount + "\t" + 
+               result;
+    }
+}
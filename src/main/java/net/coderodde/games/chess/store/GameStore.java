@@ -0,0 +1,1164 @@
+package net.coderodde.games.chess.store;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.GameResult;
+import net.coderodde.games.chess.PositionCodec;
+import net.coderodde.games.chess.analysis.PgnWriter;
+
+/**
+ * This class stores games in a directory so that they survive the restarts
+ * of the JVM. The store consists of two files:
+ * <ul>
+ *   <li><i>games.log</i>, an append-only log of the records of all the
+ *       games. Each record names its game and the offset of the previous
+ *       record of the same game, so the records of a game form a chain
+ *       that is walked backwards from its last record. A move takes one
+ *       record of {@value #MOVE_RECORD_SIZE} bytes, and every
+ *       {@code snapshotInterval} moves a snapshot record holding the
+ *       position in the format of {@link PositionCodec} is added, so that a
+ *       position is restored by replaying at most {@code snapshotInterval}
+ *       moves. The snapshots form a chain of their own.</li>
+ *   <li><i>games.idx</i>, a file of fixed-width entries, one per game,
+ *       holding the players, the creation time, the number of plies, the
+ *       result and the offsets of the last record and the last snapshot of
+ *       the game. The games are listed from the index without touching the
+ *       log.</li>
+ * </ul>
+ * The records are collected in a buffer and written to the log in large
+ * blocks, or at once by {@link #flush()} and {@link #createGame}. The log 
+ * and the index are forced to the disk together by a background thread at
+ * most once per sync interval, so a burst of moves costs one 
+ * {@code fsync}, and by {@link #sync()} and {@link #close()}. The index 
+ * records the size of the log at the last sync; on opening, the records 
+ * written after it are replayed into the index, skipping those the index 
+ * already covers, and a torn record at the end of the log is truncated. 
+ * Once written, the records thus survive the crash of the JVM, and a crash
+ * of the machine loses at most the moves of the last sync interval.
+ * <p>
+ * A position restored from a snapshot has no move history before the
+ * snapshot, so the repetitions of the positions preceding it are not
+ * detected. All the methods are thread-safe.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class GameStore implements Closeable {
+    
+    /**
+     * The default number of moves between two snapshots.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 32;
+    
+    /**
+     * The default interval between two syncs in milliseconds.
+     */
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000L;
+    
+    /**
+     * The maximum length of a player name in bytes. Longer names are
+     * truncated.
+     */
+    public static final int MAX_NAME_LENGTH = 40;
+    
+    private static final String LOG_FILE_NAME   = "games.log";
+    private static final String INDEX_FILE_NAME = "games.idx";
+    
+    /**
+     * The magic number of the index file, <i>CGIX</i>.
+     */
+    private static final int INDEX_MAGIC   = 0x43474958;
+    private static final int INDEX_VERSION = 1;
+    
+    // The layout of the index header: the magic number, the version and the
+    // size of the log at the last sync.
+    private static final int INDEX_HEADER_SIZE    = 16;
+    private static final int INDEX_SYNCED_SIZE    = 8;
+    
+    // The layout of an index entry.
+    private static final int INDEX_ENTRY_SIZE     = 128;
+    private static final int ENTRY_CREATED        = 0;
+    private static final int ENTRY_PLIES          = 8;
+    private static final int ENTRY_RESULT         = 12;
+    private static final int ENTRY_LAST_RECORD    = 16;
+    private static final int ENTRY_LAST_SNAPSHOT  = 24;
+    private static final int ENTRY_WHITE          = 32;
+    private static final int ENTRY_BLACK          = ENTRY_WHITE +
+                                                    MAX_NAME_LENGTH;
+    
+    // The record types.
+    private static final byte GAME_RECORD     = 1;
+    private static final byte MOVE_RECORD     = 2;
+    private static final byte SNAPSHOT_RECORD = 3;
+    private static final byte RESULT_RECORD   = 4;
+    
+    /**
+     * The size of the record header: the type, the game ID and the offset of
+     * the previous record of the game.
+     */
+    private static final int HEADER_SIZE = 13;
+    
+    /**
+     * The size of a move record: the header and the packed move.
+     */
+    private static final int MOVE_RECORD_SIZE = HEADER_SIZE + 4;
+    
+    /**
+     * The size of a snapshot record: the header, the ply, the offset of the
+     * previous snapshot and the position.
+     */
+    private static final int SNAPSHOT_RECORD_SIZE =
+            HEADER_SIZE + 12 + PositionCodec.ENCODED_SIZE;
+    
+    /**
+     * The size of a result record: the header and the result code.
+     */
+    private static final int RESULT_RECORD_SIZE = HEADER_SIZE + 1;
+    
+    /**
+     * The maximum size of a game record: the header, the creation time and
+     * the two length-prefixed player names.
+     */
+    private static final int GAME_RECORD_MAX_SIZE =
+            HEADER_SIZE + 8 + 2 * (1 + MAX_NAME_LENGTH);
+    
+    /**
+     * The offset of the snapshot position within a snapshot record.
+     */
+    private static final int SNAPSHOT_POSITION = HEADER_SIZE + 12;
+    
+    /**
+     * Denotes the absence of a record.
+     */
+    private static final long NONE = -1L;
+    
+    /**
+     * The size of the write buffer of the log in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    /**
+     * The PGN results indexed by the result codes.
+     */
+    private static final String[] RESULTS = { "*", "1-0", "0-1", "1/2-1/2" };
+    
+    private final FileChannel log;
+    private final FileChannel index;
+    private final int snapshotInterval;
+    private final List<Entry> entries = new ArrayList<>();
+    private final ByteBuffer writeBuffer =
+            ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer readBuffer =
+            ByteBuffer.allocate(SNAPSHOT_RECORD_SIZE);
+    private final ByteBuffer entryBuffer =
+            ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+    
+    /**
+     * Runs the periodic syncs, or {@code null} if there are none.
+     */
+    private final ScheduledExecutorService syncExecutor;
+    
+    /**
+     * The size of the log including the buffered records.
+     */
+    private long logSize;
+    
+    /**
+     * The size of the log written to the channel.
+     */
+    private long writtenSize;
+    
+    /**
+     * Whether anything was written since the last sync.
+     */
+    private boolean dirty;
+    
+    /**
+     * The failure of the last background sync, reported by the next call.
+     */
+    private IOException syncFailure;
+    
+    private boolean closed;
+    
+    /**
+     * Opens the store in the directory {@code directory} with the default
+     * snapshot and sync intervals, creating it if it does not exist.
+     * 
+     * @param directory the directory of the store.
+     * @throws IOException if the store cannot be opened.
+     */
+    public GameStore(final Path directory) throws IOException {
+        this(directory,
+             DEFAULT_SNAPSHOT_INTERVAL,
+             DEFAULT_SYNC_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Opens the store in the directory {@code directory}, creating it if it
+     * does not exist, and recovers the records written after the last sync.
+     * 
+     * @param directory          the directory of the store.
+     * @param snapshotInterval   the number of moves between two snapshots.
+     * @param syncIntervalMillis the interval between two syncs in
+     *                           milliseconds, or zero to sync only on
+     *                           request.
+     * @throws IOException if the store cannot be opened.
+     */
+    public GameStore(final Path directory,
+                     final int snapshotInterval,
+                     final long syncIntervalMillis) throws IOException {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException(
+                    "The snapshot interval must be at least 1, received " +
+                    snapshotInterval + ".");
+        }
+        
+        if (syncIntervalMillis < 0L) {
+            throw new IllegalArgumentException(
+                    "The sync interval must not be negative, received " +
+                    syncIntervalMillis + ".");
+        }
+        
+        this.snapshotInterval = snapshotInterval;
+        Files.createDirectories(directory);
+        this.log = FileChannel.open(directory.resolve(LOG_FILE_NAME),
+                                    StandardOpenOption.CREATE,
+                                    StandardOpenOption.READ,
+                                    StandardOpenOption.WRITE);
+        
+        try {
+            this.index = FileChannel.open(directory.resolve(INDEX_FILE_NAME),
+                                          StandardOpenOption.CREATE,
+                                          StandardOpenOption.READ,
+                                          StandardOpenOption.WRITE);
+        } catch (final IOException ex) {
+            log.close();
+            throw ex;
+        }
+        
+        try {
+            recover(readIndex());
+            
+            if (dirty) {
+                sync();
+            }
+        } catch (final IOException | RuntimeException ex) {
+            log.close();
+            index.close();
+            throw ex;
+        }
+        
+        if (syncIntervalMillis == 0L) {
+            this.syncExecutor = null;
+            return;
+        }
+        
+        this.syncExecutor =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "game-store-sync");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        
+        syncExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                syncInBackground();
+            }
+        }, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Starts a new game from the position {@code start}.
+     * 
+     * @param start the starting position.
+     * @param white the name of the white player.
+     * @param black the name of the black player.
+     * @return the ID of the new game.
+     * @throws IOException if writing the log fails.
+     */
+    public synchronized int createGame(final ChessGameState start,
+                                       final String white,
+                                       final String black)
+    throws IOException {
+        checkOpen();
+        Objects.requireNonNull(start, "The starting position is null.");
+        final int id = entries.size();
+        final Entry entry = new Entry(System.currentTimeMillis(),
+                                      truncateName(white),
+                                      truncateName(black));
+        entries.add(entry);
+        
+        final byte[] whiteBytes = entry.white.getBytes(
+                StandardCharsets.ISO_8859_1);
+        final byte[] blackBytes = entry.black.getBytes(
+                StandardCharsets.ISO_8859_1);
+        appendHeader(GAME_RECORD,
+                     id,
+                     entry,
+                     HEADER_SIZE + 8 + 2 + whiteBytes.length +
+                     blackBytes.length);
+        writeBuffer.putLong(entry.createdMillis)
+                   .put((byte) whiteBytes.length)
+                   .put(whiteBytes)
+                   .put((byte) blackBytes.length)
+                   .put(blackBytes);
+        appendSnapshot(id, entry, start);
+        
+        // A game that the JVM may lose entirely is not worth an ID.
+        flushBuffer();
+        return id;
+    }
+    
+    /**
+     * Appends the move {@code move} to the game {@code gameId}, and a
+     * snapshot of {@code after} if the snapshot interval is reached.
+     * 
+     * @param gameId the ID of the game.
+     * @param move   the move played.
+     * @param after  the position after the move.
+     * @throws IOException if writing the log fails.
+     * @throws IllegalStateException if the game is finished.
+     */
+    public synchronized void recordMove(final int gameId,
+                                        final int move,
+                                        final ChessGameState after)
+    throws IOException {
+        checkOpen();
+        Objects.requireNonNull(after, "The position after the move is null.");
+        final Entry entry = getEntry(gameId);
+        
+        if (entry.result != 0) {
+            throw new IllegalStateException(
+                    "The game " + gameId + " is finished.");
+        }
+        
+        appendHeader(MOVE_RECORD, gameId, entry, MOVE_RECORD_SIZE);
+        writeBuffer.putInt(move);
+        ++entry.plyCount;
+        
+        if (entry.plyCount % snapshotInterval == 0) {
+            appendSnapshot(gameId, entry, after);
+        }
+    }
+    
+    /**
+     * Records the result of the game {@code gameId}, after which no more
+     * moves may be recorded.
+     * 
+     * @param gameId the ID of the game.
+     * @param result the result of the game.
+     * @throws IOException if writing the log fails.
+     * @throws IllegalArgumentException if the game is not over.
+     */
+    public synchronized void finishGame(final int gameId,
+                                        final GameResult result)
+    throws IOException {
+        checkOpen();
+        
+        if (!result.isGameOver()) {
+            throw new IllegalArgumentException("The game is not over.");
+        }
+        
+        final Entry entry = getEntry(gameId);
+        final byte code = result.isDraw() ?
+                          (byte) 3 :
+                          result.getWinner() == ChessColor.WHITE ?
+                          (byte) 1 :
+                          (byte) 2;
+        appendHeader(RESULT_RECORD, gameId, entry, RESULT_RECORD_SIZE);
+        writeBuffer.put(code);
+        entry.result = code;
+    }
+    
+    public synchronized int getGameCount() {
+        return entries.size();
+    }
+    
+    /**
+     * Lists the games from the index. Reads no files.
+     * 
+     * @return the games in the order of their IDs.
+     */
+    public synchronized List<GameInfo> listGames() {
+        final List<GameInfo> games = new ArrayList<>(entries.size());
+        
+        for (int id = 0; id < entries.size(); ++id) {
+            games.add(getGameInfo(id));
+        }
+        
+        return games;
+    }
+    
+    /**
+     * Returns the index entry of the game {@code gameId}.
+     * 
+     * @param gameId the ID of the game.
+     * @return the description of the game.
+     */
+    public synchronized GameInfo getGameInfo(final int gameId) {
+        final Entry entry = getEntry(gameId);
+        return new GameInfo(gameId,
+                            entry.white,
+                            entry.black,
+                            entry.createdMillis,
+                            entry.plyCount,
+                            RESULTS[entry.result]);
+    }
+    
+    /**
+     * Restores the current position of the game {@code gameId}, such as to
+     * continue it after a restart.
+     * 
+     * @param gameId the ID of the game.
+     * @return the position after the last recorded move.
+     * @throws IOException if reading the log fails.
+     */
+    public synchronized ChessGameState resume(final int gameId)
+    throws IOException {
+        return getPosition(gameId, getEntry(gameId).plyCount);
+    }
+    
+    /**
+     * Restores the position of the game {@code gameId} after {@code ply}
+     * moves from its nearest preceding snapshot. Reads at most two snapshot
+     * intervals of records past the snapshots skipped.
+     * 
+     * @param gameId the ID of the game.
+     * @param ply    the number of moves played.
+     * @return the position.
+     * @throws IOException if reading the log fails.
+     */
+    public synchronized ChessGameState getPosition(final int gameId,
+                                                   final int ply)
+    throws IOException {
+        checkOpen();
+        final Entry entry = getEntry(gameId);
+        
+        if (ply < 0 || ply > entry.plyCount) {
+            throw new IllegalArgumentException(
+                    "The ply must be within [0, " + entry.plyCount +
+                    "], received " + ply + ".");
+        }
+        
+        flushBuffer();
+        
+        // Find the latest snapshot at or before the ply, and the record
+        // after which the walk back to the snapshot passes all the moves
+        // up to the ply.
+        long walkStart = entry.lastRecord;
+        int walkStartPly = entry.plyCount;
+        long snapshot = entry.lastSnapshot;
+        ByteBuffer record = readRecord(snapshot, SNAPSHOT_RECORD_SIZE);
+        
+        while (record.getInt(HEADER_SIZE) > ply) {
+            walkStart = snapshot;
+            walkStartPly = record.getInt(HEADER_SIZE);
+            snapshot = record.getLong(HEADER_SIZE + 4);
+            record = readRecord(snapshot, SNAPSHOT_RECORD_SIZE);
+        }
+        
+        final int snapshotPly = record.getInt(HEADER_SIZE);
+        final ChessGameState state = new ChessGameState();
+        PositionCodec.decode(record, SNAPSHOT_POSITION, state);
+        
+        final int[] moves = collectMoves(walkStart,
+                                         walkStartPly,
+                                         snapshot,
+                                         snapshotPly,
+                                         ply);
+        
+        for (final int move : moves) {
+            state.makeMove(move);
+        }
+        
+        return state;
+    }
+    
+    /**
+     * Returns all the recorded moves of the game {@code gameId}.
+     * 
+     * @param gameId the ID of the game.
+     * @return the moves in the order they were played.
+     * @throws IOException if reading the log fails.
+     */
+    public synchronized int[] getMoves(final int gameId) throws IOException {
+        checkOpen();
+        final Entry entry = getEntry(gameId);
+        flushBuffer();
+        return collectMoves(entry.lastRecord,
+                            entry.plyCount,
+                            NONE,
+                            0,
+                            entry.plyCount);
+    }
+    
+    /**
+     * Writes the buffered records to the log without forcing them to the 
+     * disk. This costs a system call but no {@code fsync}, so it may be 
+     * called after each move of an interactive game; the moves then survive
+     * the crash of the JVM.
+     * 
+     * @throws IOException if writing fails.
+     */
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        flushBuffer();
+    }
+    
+    /**
+     * Writes the buffered records to the log and forces the log and the
+     * index to the disk.
+     * 
+     * @throws IOException if writing fails.
+     */
+    public synchronized void sync() throws IOException {
+        checkOpen();
+        
+        if (!dirty) {
+            return;
+        }
+        
+        flushBuffer();
+        log.force(false);
+        
+        for (int id = 0; id < entries.size(); ++id) {
+            final Entry entry = entries.get(id);
+            
+            if (entry.dirty) {
+                writeEntry(id, entry);
+                entry.dirty = false;
+            }
+        }
+        
+        entryBuffer.clear();
+        entryBuffer.putLong(0, writtenSize).limit(8);
+        writeFully(index, entryBuffer, INDEX_SYNCED_SIZE);
+        index.force(false);
+        dirty = false;
+    }
+    
+    /**
+     * Syncs and closes the store. Does nothing if it is already closed.
+     * 
+     * @throws IOException if the final sync fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncExecutor != null) {
+            syncExecutor.shutdown();
+        }
+        
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            
+            try {
+                sync();
+            } finally {
+                closed = true;
+                
+                try {
+                    log.close();
+                } finally {
+                    index.close();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Lists the games of a store, or writes one of them as PGN, from the
+     * command line:
+     * <pre>
+     * games &lt;directory&gt; [game ID]
+     * </pre>
+     * 
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 2 || !args[0].equals("games")) {
+            System.err.println("Usage: games <directory> [game ID]");
+            System.exit(1);
+        }
+        
+        try (final GameStore store = new GameStore(Paths.get(args[1]),
+                                                   DEFAULT_SNAPSHOT_INTERVAL,
+                                                   0L)) {
+            if (args.length == 2) {
+                for (final GameInfo game : store.listGames()) {
+                    System.out.println(game);
+                }
+                
+                return;
+            }
+            
+            final int id = Integer.parseInt(args[2]);
+            final GameInfo game = store.getGameInfo(id);
+            final int[] moves = store.getMoves(id);
+            final Map<String, String> tags = new LinkedHashMap<>();
+            tags.put("Event", "?");
+            tags.put("Site", "?");
+            tags.put("Date",
+                     new SimpleDateFormat("yyyy.MM.dd")
+                             .format(new Date(game.getCreatedMillis())));
+            tags.put("Round", Integer.toString(id + 1));
+            tags.put("White", game.getWhite());
+            tags.put("Black", game.getBlack());
+            
+            final Writer output =
+                    new BufferedWriter(
+                            new OutputStreamWriter(
+                                    System.out,
+                                    StandardCharsets.ISO_8859_1));
+            new PgnWriter(output).writeGame(tags,
+                                            store.getPosition(id, 0),
+                                            moves,
+                                            moves.length,
+                                            parseResult(game.getResult()));
+            output.flush();
+        } catch (final IOException | IllegalArgumentException ex) {
+            System.err.println("Reading the store failed: " + ex);
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Returns a game result matching the PGN result {@code result}. The
+     * reason of the result is not stored, so any reason will do.
+     */
+    private static GameResult parseResult(final String result) {
+        switch (result) {
+            case "1-0":
+                return GameResult.WHITE_WINS_BY_CHECKMATE;
+            
+            case "0-1":
+                return GameResult.BLACK_WINS_BY_CHECKMATE;
+            
+            case "1/2-1/2":
+                return GameResult.DRAW_BY_ADJUDICATION;
+            
+            default:
+                return GameResult.IN_PROGRESS;
+        }
+    }
+    
+    /**
+     * Walks the record chain back from the record at {@code walkStart},
+     * after which {@code walkStartPly} moves were played, to the record at
+     * {@code stop}, after which {@code stopPly} moves were played, and
+     * returns the moves numbered from {@code stopPly + 1} to {@code ply}.
+     */
+    private int[] collectMoves(final long walkStart,
+                               final int walkStartPly,
+                               final long stop,
+                               final int stopPly,
+                               final int ply) throws IOException {
+        final int[] moves = new int[ply - stopPly];
+        long offset = walkStart;
+        int currentPly = walkStartPly;
+        
+        while (offset != stop) {
+            final ByteBuffer record = readRecord(offset, HEADER_SIZE);
+            final long previous = record.getLong(5);
+            
+            if (record.get(0) == MOVE_RECORD) {
+                if (currentPly <= ply) {
+                    moves[currentPly - stopPly - 1] =
+                            readRecord(offset, MOVE_RECORD_SIZE)
+                                    .getInt(HEADER_SIZE);
+                }
+                
+                --currentPly;
+            }
+            
+            offset = previous;
+        }
+        
+        return moves;
+    }
+    
+    /**
+     * Appends a snapshot of {@code state} to the game {@code gameId}.
+     */
+    private void appendSnapshot(final int gameId,
+                                final Entry entry,
+                                final ChessGameState state)
+    throws IOException {
+        final long previousSnapshot = entry.lastSnapshot;
+        appendHeader(SNAPSHOT_RECORD, gameId, entry, SNAPSHOT_RECORD_SIZE);
+        entry.lastSnapshot = entry.lastRecord;
+        writeBuffer.putInt(entry.plyCount)
+                   .putLong(previousSnapshot);
+        PositionCodec.encode(state, writeBuffer);
+    }
+    
+    /**
+     * Appends the header of a record of {@code size} bytes to the write
+     * buffer, linking the record to the chain of the game.
+     */
+    private void appendHeader(final byte type,
+                              final int gameId,
+                              final Entry entry,
+                              final int size) throws IOException {
+        if (writeBuffer.remaining() < size) {
+            flushBuffer();
+        }
+        
+        writeBuffer.put(type)
+                   .putInt(gameId)
+                   .putLong(entry.lastRecord);
+        entry.lastRecord = logSize;
+        entry.dirty = true;
+        logSize += size;
+        dirty = true;
+    }
+    
+    /**
+     * Writes the buffered records to the log without forcing them to the
+     * disk.
+     */
+    private void flushBuffer() throws IOException {
+        writeBuffer.flip();
+        writeFully(log, writeBuffer, writtenSize);
+        writtenSize += writeBuffer.limit();
+        writeBuffer.clear();
+    }
+    
+    /**
+     * Reads {@code size} bytes of the record at the offset {@code offset}
+     * into the read buffer.
+     */
+    private ByteBuffer readRecord(final long offset, final int size)
+    throws IOException {
+        readBuffer.clear().limit(size);
+        
+        while (readBuffer.hasRemaining()) {
+            if (log.read(readBuffer,
+                         offset + readBuffer.position()) < 0) {
+                throw new IOException(
+                        "Unexpected end of the log at offset " + offset +
+                        ".");
+            }
+        }
+        
+        return readBuffer;
+    }
+    
+    /**
+     * Reads the index into the entries and returns the size of the log at
+     * the last sync. Initializes an empty index.
+     */
+    private long readIndex() throws IOException {
+        if (index.size() < INDEX_HEADER_SIZE) {
+            final ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+            header.putInt(INDEX_MAGIC)
+                  .putInt(INDEX_VERSION)
+                  .putLong(0L)
+                  .flip();
+            index.truncate(0L);
+            writeFully(index, header, 0L);
+            return 0L;
+        }
+        
+        final long entryCount =
+                (index.size() - INDEX_HEADER_SIZE) / INDEX_ENTRY_SIZE;
+        final ByteBuffer buffer =
+                ByteBuffer.allocate(INDEX_HEADER_SIZE +
+                                    (int) entryCount * INDEX_ENTRY_SIZE);
+        
+        while (buffer.hasRemaining()) {
+            if (index.read(buffer, buffer.position()) < 0) {
+                throw new IOException("The game index is truncated.");
+            }
+        }
+        
+        if (buffer.getInt(0) != INDEX_MAGIC
+                || buffer.getInt(4) != INDEX_VERSION) {
+            throw new IOException("Not a game index of version " +
+                                  INDEX_VERSION + ".");
+        }
+        
+        final long syncedSize = buffer.getLong(INDEX_SYNCED_SIZE);
+        
+        if (syncedSize > log.size()) {
+            throw new IOException(
+                    "The game log is shorter than its index claims.");
+        }
+        
+        for (int i = 0; i < entryCount; ++i) {
+            final int base = INDEX_HEADER_SIZE + i * INDEX_ENTRY_SIZE;
+            final Entry entry =
+                    new Entry(buffer.getLong(base + ENTRY_CREATED),
+                              readName(buffer, base + ENTRY_WHITE),
+                              readName(buffer, base + ENTRY_BLACK));
+            entry.plyCount     = buffer.getInt(base + ENTRY_PLIES);
+            entry.result       = buffer.get(base + ENTRY_RESULT);
+            entry.lastRecord   = buffer.getLong(base + ENTRY_LAST_RECORD);
+            entry.lastSnapshot = buffer.getLong(base + ENTRY_LAST_SNAPSHOT);
+            entry.dirty        = false;
+            entries.add(entry);
+        }
+        
+        return syncedSize;
+    }
+    
+    /**
+     * Replays the records of the log from the offset {@code from} into the
+     * entries, and truncates the log after the last complete and consistent
+     * record.
+     */
+    private void recover(final long from) throws IOException {
+        final long end = log.size();
+        final ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE);
+        long chunkStart = from;
+        long position = from;
+        chunk.limit(0);
+        
+        while (position < end) {
+            int offset = (int)(position - chunkStart);
+            
+            if (chunk.limit() - offset < GAME_RECORD_MAX_SIZE
+                    && chunkStart + chunk.limit() < end) {
+                chunk.position(offset);
+                chunk.compact();
+                chunkStart = position;
+                offset = 0;
+                
+                while (chunk.hasRemaining()) {
+                    if (log.read(chunk, chunkStart + chunk.position()) < 0) {
+                        break;
+                    }
+                }
+                
+                chunk.flip();
+            }
+            
+            final int length = getRecordLength(chunk, offset);
+            
+            if (length < 0 || !applyRecord(chunk, offset, position)) {
+                break;
+            }
+            
+            position += length;
+        }
+        
+        // A game is usable only once its first snapshot is written.
+        while (!entries.isEmpty()
+                && entries.get(entries.size() - 1).lastSnapshot == NONE) {
+            position = Math.min(position,
+                                entries.remove(entries.size() - 1)
+                                       .lastRecord);
+        }
+        
+        if (position < end) {
+            log.truncate(position);
+            dirty = true;
+        }
+        
+        logSize = writtenSize = position;
+    }
+    
+    /**
+     * Returns the length of the record at the offset {@code offset} of
+     * {@code chunk}, or -1 if it is incomplete or malformed.
+     */
+    private static int getRecordLength(final ByteBuffer chunk,
+                                       final int offset) {
+        final int available = chunk.limit() - offset;
+        
+        if (available < HEADER_SIZE) {
+            return -1;
+        }
+        
+        final int length;
+        
+        switch (chunk.get(offset)) {
+            case MOVE_RECORD:
+                length = MOVE_RECORD_SIZE;
+                break;
+            
+            case SNAPSHOT_RECORD:
+                length = SNAPSHOT_RECORD_SIZE;
+                break;
+            
+            case RESULT_RECORD:
+                length = RESULT_RECORD_SIZE;
+                break;
+            
+            case GAME_RECORD:
+                if (available < HEADER_SIZE + 9) {
+                    return -1;
+                }
+            
+                final int whiteLength = chunk.get(offset + HEADER_SIZE + 8);
+            
+                if (whiteLength < 0
+                        || whiteLength > MAX_NAME_LENGTH
+                        || available < HEADER_SIZE + 10 + whiteLength) {
+                    return -1;
+                }
+            
+                final int blackLength =
+                        chunk.get(offset + HEADER_SIZE + 9 + whiteLength);
+            
+                if (blackLength < 0 || blackLength > MAX_NAME_LENGTH) {
+                    return -1;
+                }
+            
+                length = HEADER_SIZE + 10 + whiteLength + blackLength;
+                break;
+            
+            default:
+                return -1;
+        }
+        
+        return length <= available ? length : -1;
+    }
+    
+    /**
+     * Applies the record at the offset {@code offset} of {@code chunk},
+     * located at the offset {@code position} of the log, to its entry.
+     * 
+     * @return {@code false} if the record does not continue the chain of its
+     *         game.
+     */
+    private boolean applyRecord(final ByteBuffer chunk,
+                                final int offset,
+                                final long position) {
+        final byte type = chunk.get(offset);
+        final int gameId = chunk.getInt(offset + 1);
+        final long previous = chunk.getLong(offset + 5);
+        
+        // The index entries may have been written before a crash prevented
+        // the synced size from being updated, so they may already cover the
+        // record.
+        if (gameId >= 0
+                && gameId < entries.size()
+                && position <= entries.get(gameId).lastRecord) {
+            return true;
+        }
+        
+        if (type == GAME_RECORD) {
+            if (gameId != entries.size() || previous != NONE) {
+                return false;
+            }
+            
+            final int whiteLength = chunk.get(offset + HEADER_SIZE + 8);
+            final Entry entry =
+                    new Entry(chunk.getLong(offset + HEADER_SIZE),
+                              readName(chunk,
+                                       offset + HEADER_SIZE + 9,
+                                       whiteLength),
+                              readName(chunk,
+                                       offset + HEADER_SIZE + 10 +
+                                               whiteLength,
+                                       chunk.get(offset + HEADER_SIZE + 9 +
+                                                 whiteLength)));
+            entry.lastRecord = position;
+            entries.add(entry);
+            dirty = true;
+            return true;
+        }
+        
+        if (gameId < 0
+                || gameId >= entries.size()
+                || entries.get(gameId).lastRecord != previous) {
+            return false;
+        }
+        
+        final Entry entry = entries.get(gameId);
+        
+        switch (type) {
+            case MOVE_RECORD:
+                if (entry.result != 0) {
+                    return false;
+                }
+            
+                ++entry.plyCount;
+                break;
+            
+            case SNAPSHOT_RECORD:
+                if (chunk.getInt(offset + HEADER_SIZE) != entry.plyCount) {
+                    return false;
+                }
+            
+                entry.lastSnapshot = position;
+                break;
+            
+            case RESULT_RECORD:
+                final byte result = chunk.get(offset + HEADER_SIZE);
+            
+                if (result < 1 || result >= RESULTS.length) {
+                    return false;
+                }
+            
+                entry.result = result;
+                break;
+        }
+        
+        entry.lastRecord = position;
+        entry.dirty = true;
+        dirty = true;
+        return true;
+    }
+    
+    private void writeEntry(final int id, final Entry entry)
+    throws IOException {
+        entryBuffer.clear();
+        entryBuffer.putLong(ENTRY_CREATED, entry.createdMillis)
+                   .putInt(ENTRY_PLIES, entry.plyCount)
+                   .put(ENTRY_RESULT, entry.result)
+                   .putLong(ENTRY_LAST_RECORD, entry.lastRecord)
+                   .putLong(ENTRY_LAST_SNAPSHOT, entry.lastSnapshot);
+        writeName(entry.white, ENTRY_WHITE);
+        writeName(entry.black, ENTRY_BLACK);
+        writeFully(index,
+                   entryBuffer,
+                   INDEX_HEADER_SIZE + (long) id * INDEX_ENTRY_SIZE);
+    }
+    
+    /**
+     * Writes the name {@code name} zero-padded into the entry buffer at the
+     * offset {@code offset}.
+     */
+    private void writeName(final String name, final int offset) {
+        final byte[] bytes = name.getBytes(StandardCharsets.ISO_8859_1);
+        
+        for (int i = 0; i < MAX_NAME_LENGTH; ++i) {
+            entryBuffer.put(offset + i, i < bytes.length ? bytes[i] : 0);
+        }
+    }
+    
+    /**
+     * Reads the zero-padded name at the offset {@code offset} of
+     * {@code buffer}.
+     */
+    private static String readName(final ByteBuffer buffer,
+                                   final int offset) {
+        int length = 0;
+        
+        while (length < MAX_NAME_LENGTH && buffer.get(offset + length) != 0) {
+            ++length;
+        }
+        
+        return readName(buffer, offset, length);
+    }
+    
+    private static String readName(final ByteBuffer buffer,
+                                   final int offset,
+                                   final int length) {
+        final byte[] bytes = new byte[length];
+        
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+    
+    private static String truncateName(final String name) {
+        final String text = name == null ? "?" : name;
+        return text.length() > MAX_NAME_LENGTH ?
+               text.substring(0, MAX_NAME_LENGTH) :
+               text;
+    }
+    
+    private static void writeFully(final FileChannel channel,
+                                   final ByteBuffer buffer,
+                                   final long position) throws IOException {
+        long offset = position;
+        
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+    
+    private Entry getEntry(final int gameId) {
+        if (gameId < 0 || gameId >= entries.size()) {
+            throw new IllegalArgumentException(
+                    "No game with the ID " + gameId + ".");
+        }
+        
+        return entries.get(gameId);
+    }
+    
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The game store is closed.");
+        }
+        
+        if (syncFailure != null) {
+            final IOException failure = syncFailure;
+            syncFailure = null;
+            throw new IOException("A background sync failed.", failure);
+        }
+    }
+    
+    private synchronized void syncInBackground() {
+        if (closed || syncFailure != null) {
+            return;
+        }
+        
+        try {
+            sync();
+        } catch (final IOException ex) {
+            syncFailure = ex;
+        }
+    }
+    
+    /**
+     * Holds the index entry of a game.
+     */
+    private static final class Entry {
+        
+        final long createdMillis;
+        final String white;
+        final String black;
+        int plyCount;
+        byte result;
+        long lastRecord = NONE;
+        long lastSnapshot = NONE;
+        
+        /**
+         * Whether the entry changed since it was last written to the index.
+         */
+        boolean dirty = true;
+        
+        Entry(final long createdMillis,
+              final String white,
+              final String black) {
+            this.createdMillis = createdMillis;
+            this.white = white;
+            this.black = black;
+        }
+    }
+}
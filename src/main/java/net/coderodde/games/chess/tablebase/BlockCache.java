@@ -0,0 +1,111 @@
+package net.coderodde.games.chess.tablebase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class caches the decompressed table blocks, evicting the least 
+ * recently used block of a segment when the segment is full. The cache is 
+ * split into independently locked segments, so that the search threads 
+ * rarely wait for each other; the blocks are decompressed outside the 
+ * locks.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+final class BlockCache {
+    
+    /**
+     * The number of segments. Must be a power of two.
+     */
+    private static final int SEGMENTS = 16;
+    
+    private final Segment[] segments = new Segment[SEGMENTS];
+    
+    BlockCache(final int capacityInBlocks) {
+        final int segmentCapacity = Math.max(1, capacityInBlocks / SEGMENTS);
+        
+        for (int i = 0; i < SEGMENTS; ++i) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+    
+    /**
+     * Returns the cached block with the key {@code key}, or {@code null}.
+     */
+    byte[] get(final long key) {
+        final Segment segment = segment(key);
+        
+        synchronized (segment) {
+            ++segment.probes;
+            final byte[] block = segment.get(key);
+            
+            if (block != null) {
+                ++segment.hits;
+            }
+            
+            return block;
+        }
+    }
+    
+    void put(final long key, final byte[] block) {
+        final Segment segment = segment(key);
+        
+        synchronized (segment) {
+            segment.put(key, block);
+        }
+    }
+    
+    long getProbes() {
+        long probes = 0L;
+        
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                probes += segment.probes;
+            }
+        }
+        
+        return probes;
+    }
+    
+    long getHits() {
+        long hits = 0L;
+        
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+            }
+        }
+        
+        return hits;
+    }
+    
+    private Segment segment(final long key) {
+        final long hash = key * 0x9e3779b97f4a7c15L;
+        return segments[(int)(hash >>> 60) & (SEGMENTS - 1)];
+    }
+    
+    /**
+     * A map kept in the access order, which drops its eldest entry once it 
+     * grows past its capacity.
+     */
+    private static final class Segment extends LinkedHashMap<Long, byte[]> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int capacity;
+        long probes;
+        long hits;
+        
+        Segment(final int capacity) {
+            super(2 * capacity, 0.75f, true);
+            this.capacity = capacity;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(
+                final Map.Entry<Long, byte[]> eldest) {
+            return size() > capacity;
+        }
+    }
+}
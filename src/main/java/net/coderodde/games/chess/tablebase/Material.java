@@ -0,0 +1,463 @@
+package net.coderodde.games.chess.tablebase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import net.coderodde.games.chess.Bitboards;
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.ChessPieceType;
+import net.coderodde.games.chess.Fen;
+
+/**
+ * This class describes the material of an endgame, such as <i>KQvK</i> or 
+ * <i>KRvKP</i>, and maps its positions to the indices of a table. The index
+ * of a position is made of the side to move and the squares of the white 
+ * king, the black king, the other white pieces and the other black pieces,
+ * six bits each, so a table of <i>n</i> pieces holds 
+ * 2 &middot; 64<sup><i>n</i></sup> entries. Some of them are illegal 
+ * positions; no symmetry is exploited, which keeps the indexing trivial.
+ * <p>
+ * A material is <i>canonical</i> if white has the stronger pieces. Only the
+ * canonical materials have tables; the positions of the other ones are
+ * looked up with the colors swapped and the board mirrored.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class Material {
+    
+    /**
+     * The maximum number of pieces, kings included, of a material.
+     */
+    public static final int MAX_PIECES = 4;
+    
+    /**
+     * The letters of the piece types indexed by their ordinals.
+     */
+    private static final String PIECE_LETTERS = "KQRBNP";
+    
+    private static final ChessPieceType[] TYPES = ChessPieceType.values();
+    
+    /**
+     * The non-king piece types of white and black, strongest first.
+     */
+    private final ChessPieceType[] whitePieces;
+    private final ChessPieceType[] blackPieces;
+    
+    /**
+     * The piece counts of this material as computed by 
+     * {@link #computeKey(ChessGameState)}, as is and with the colors 
+     * swapped.
+     */
+    private final long key;
+    private final long flippedKey;
+    
+    private Material(final ChessPieceType[] whitePieces,
+                     final ChessPieceType[] blackPieces) {
+        this.whitePieces = whitePieces.clone();
+        this.blackPieces = blackPieces.clone();
+        Arrays.sort(this.whitePieces);
+        Arrays.sort(this.blackPieces);
+        this.key        = computeKey(this.whitePieces, this.blackPieces);
+        this.flippedKey = computeKey(this.blackPieces, this.whitePieces);
+        
+        if (getPieceCount() > MAX_PIECES) {
+            throw new IllegalArgumentException(
+                    "A material may have at most " + MAX_PIECES + 
+                    " pieces: " + this + ".");
+        }
+    }
+    
+    /**
+     * Parses a material name such as <i>KQvK</i>.
+     * 
+     * @param name the name of the material.
+     * @return the material.
+     * @throws IllegalArgumentException if {@code name} is not a valid name.
+     */
+    public static Material parse(final String name) {
+        Objects.requireNonNull(name, "The input material name is null.");
+        final int separator = name.indexOf('v');
+        
+        if (separator < 0 
+                || !name.startsWith("K") 
+                || !name.startsWith("K", separator + 1)) {
+            throw new IllegalArgumentException(
+                    "Bad material name: \"" + name + "\".");
+        }
+        
+        return new Material(parsePieces(name.substring(1, separator), name),
+                            parsePieces(name.substring(separator + 2), name));
+    }
+    
+    /**
+     * Returns the material of the position {@code state}, which must have 
+     * exactly one king of each color.
+     * 
+     * @param state the position.
+     * @return the material of the position.
+     */
+    public static Material of(final ChessGameState state) {
+        return new Material(piecesOf(state, ChessColor.WHITE),
+                            piecesOf(state, ChessColor.BLACK));
+    }
+    
+    /**
+     * Computes the key of the material of the position {@code state}. Two 
+     * positions have the same material if and only if their keys are equal.
+     * Does not allocate.
+     * 
+     * @param state the position.
+     * @return the material key.
+     */
+    public static long computeKey(final ChessGameState state) {
+        long key = 0L;
+        
+        for (int type = 1; type < ChessGameState.PIECE_TYPES; ++type) {
+            key |= (long) Long.bitCount(
+                    state.getPieceBitboard(ChessColor.WHITE, TYPES[type])) 
+                    << (8 * type);
+            key |= (long) Long.bitCount(
+                    state.getPieceBitboard(ChessColor.BLACK, TYPES[type])) 
+                    << (8 * type + 4);
+        }
+        
+        return key;
+    }
+    
+    public long getKey() {
+        return key;
+    }
+    
+    /**
+     * Returns the key of this material with the colors swapped.
+     * 
+     * @return the flipped material key.
+     */
+    public long getFlippedKey() {
+        return flippedKey;
+    }
+    
+    /**
+     * Returns the number of pieces, kings included.
+     * 
+     * @return the number of pieces.
+     */
+    public int getPieceCount() {
+        return 2 + whitePieces.length + blackPieces.length;
+    }
+    
+    /**
+     * Returns the number of entries in the table of this material.
+     * 
+     * @return the table size.
+     */
+    public int getTableSize() {
+        return 2 << (6 * getPieceCount());
+    }
+    
+    public boolean hasPawns(final ChessColor color) {
+        return Arrays.asList(color == ChessColor.WHITE ? 
+                             whitePieces : 
+                             blackPieces).contains(ChessPieceType.PAWN);
+    }
+    
+    /**
+     * Returns this material with the colors swapped.
+     * 
+     * @return the flipped material.
+     */
+    public Material flip() {
+        return new Material(blackPieces, whitePieces);
+    }
+    
+    /**
+     * Checks whether white has the stronger pieces: more of them, or the 
+     * stronger one at the first difference.
+     * 
+     * @return {@code true} if this material is canonical.
+     */
+    public boolean isCanonical() {
+        if (whitePieces.length != blackPieces.length) {
+            return whitePieces.length > blackPieces.length;
+        }
+        
+        for (int i = 0; i < whitePieces.length; ++i) {
+            if (whitePieces[i] != blackPieces[i]) {
+                return whitePieces[i].ordinal() < blackPieces[i].ordinal();
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Returns the canonical one of this material and its flip.
+     * 
+     * @return the canonical material.
+     */
+    public Material canonical() {
+        return isCanonical() ? this : flip();
+    }
+    
+    /**
+     * Returns the materials reached from this one by a capture, a promotion
+     * or a promotion capturing a piece, in canonical form.
+     * 
+     * @return the successor materials.
+     */
+    public Material[] getSuccessors() {
+        final List<Material> successors = new ArrayList<>();
+        
+        for (int i = 0; i < whitePieces.length; ++i) {
+            successors.add(new Material(remove(whitePieces, i), blackPieces)
+                                   .canonical());
+        }
+        
+        for (int i = 0; i < blackPieces.length; ++i) {
+            successors.add(new Material(whitePieces, remove(blackPieces, i))
+                                   .canonical());
+        }
+        
+        addPromotions(whitePieces, blackPieces, false, successors);
+        addPromotions(blackPieces, whitePieces, true, successors);
+        return successors.toArray(new Material[successors.size()]);
+    }
+    
+    /**
+     * Computes the index of the position {@code state} of this material. If
+     * {@code flipped} is set, the position is indexed with the colors 
+     * swapped and the board mirrored, so that a position of the flipped 
+     * material maps to this table. Equal pieces are indexed in the ascending
+     * order of their squares. Does not allocate.
+     * 
+     * @param state   the position.
+     * @param flipped whether to swap the colors.
+     * @return the index of the position.
+     */
+    public int index(final ChessGameState state, final boolean flipped) {
+        final ChessColor white = flipped ? ChessColor.BLACK : ChessColor.WHITE;
+        final ChessColor black = flipped ? ChessColor.WHITE : ChessColor.BLACK;
+        final int mirror = flipped ? 56 : 0;
+        int index = state.getSideToMove() == white ? 0 : 1;
+        index = (index << 6) | 
+                (mirror ^ lowestSquare(state, white, ChessPieceType.KING, 0));
+        index = (index << 6) | 
+                (mirror ^ lowestSquare(state, black, ChessPieceType.KING, 0));
+        index = appendPieces(index, state, white, whitePieces, mirror);
+        return appendPieces(index, state, black, blackPieces, mirror);
+    }
+    
+    /**
+     * Sets up the position with the index {@code index} in {@code state}. 
+     * Returns {@code false} and leaves {@code state} undefined if two pieces
+     * share a square.
+     * 
+     * @param index the index of the position.
+     * @param state the game state to set up.
+     * @return {@code true} if the index denotes a placement of the pieces.
+     */
+    public boolean setUp(final int index, final ChessGameState state) {
+        state.clear();
+        final int pieceCount = getPieceCount();
+        int shift = 6 * (pieceCount - 1);
+        
+        for (int i = 0; i < pieceCount; ++i, shift -= 6) {
+            final int square = (index >>> shift) & 63;
+            
+            if (state.getPiece(square) != null) {
+                return false;
+            }
+            
+            if (i == 0) {
+                state.putPiece(square, ChessColor.WHITE, ChessPieceType.KING);
+            } else if (i == 1) {
+                state.putPiece(square, ChessColor.BLACK, ChessPieceType.KING);
+            } else if (i - 2 < whitePieces.length) {
+                state.putPiece(square, ChessColor.WHITE, whitePieces[i - 2]);
+            } else {
+                state.putPiece(square, 
+                               ChessColor.BLACK, 
+                               blackPieces[i - 2 - whitePieces.length]);
+            }
+        }
+        
+        state.setSideToMove((index >>> (6 * pieceCount)) == 0 ?
+                            ChessColor.WHITE :
+                            ChessColor.BLACK);
+        return true;
+    }
+    
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof Material && ((Material) o).key == key;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.valueOf(key).hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("K");
+        
+        for (final ChessPieceType type : whitePieces) {
+            sb.append(PIECE_LETTERS.charAt(type.ordinal()));
+        }
+        
+        sb.append("vK");
+        
+        for (final ChessPieceType type : blackPieces) {
+            sb.append(PIECE_LETTERS.charAt(type.ordinal()));
+        }
+        
+        return sb.toString();
+    }
+    
+    private static long computeKey(final ChessPieceType[] whitePieces,
+                                   final ChessPieceType[] blackPieces) {
+        long key = 0L;
+        
+        for (final ChessPieceType type : whitePieces) {
+            key += 1L << (8 * type.ordinal());
+        }
+        
+        for (final ChessPieceType type : blackPieces) {
+            key += 1L << (8 * type.ordinal() + 4);
+        }
+        
+        return key;
+    }
+    
+    private static ChessPieceType[] parsePieces(final String letters,
+                                                final String name) {
+        final ChessPieceType[] pieces = new ChessPieceType[letters.length()];
+        
+        for (int i = 0; i < pieces.length; ++i) {
+            final int index = PIECE_LETTERS.indexOf(letters.charAt(i));
+            
+            if (index <= 0) {
+                throw new IllegalArgumentException(
+                        "Bad material name: \"" + name + "\".");
+            }
+            
+            pieces[i] = TYPES[index];
+        }
+        
+        return pieces;
+    }
+    
+    private static ChessPieceType[] piecesOf(final ChessGameState state,
+                                             final ChessColor color) {
+        final ChessPieceType[] pieces = new ChessPieceType[MAX_PIECES];
+        int count = 0;
+        
+        for (int type = 1; type < ChessGameState.PIECE_TYPES; ++type) {
+            final int typeCount = Long.bitCount(
+                    state.getPieceBitboard(color, TYPES[type]));
+            
+            for (int i = 0; i < typeCount; ++i) {
+                if (count == pieces.length) {
+                    throw new IllegalArgumentException(
+                            "Too many pieces for a tablebase: " + 
+                            Fen.toString(state));
+                }
+                
+                pieces[count++] = TYPES[type];
+            }
+        }
+        
+        return Arrays.copyOf(pieces, count);
+    }
+    
+    /**
+     * Adds to {@code successors} the canonical materials reached by the 
+     * promotions of the pawns among {@code pieces}, with or without a 
+     * capture of one of the {@code enemyPieces}. The pieces are white 
+     * unless {@code black} is set.
+     */
+    private static void addPromotions(final ChessPieceType[] pieces,
+                                      final ChessPieceType[] enemyPieces,
+                                      final boolean black,
+                                      final List<Material> successors) {
+        for (int i = 0; i < pieces.length; ++i) {
+            if (pieces[i] != ChessPieceType.PAWN) {
+                continue;
+            }
+            
+            for (int type = 1; type < ChessGameState.PIECE_TYPES - 1; ++type) {
+                final ChessPieceType[] promoted = 
+                        replace(pieces, i, TYPES[type]);
+                
+                for (int j = -1; j < enemyPieces.length; ++j) {
+                    final ChessPieceType[] enemies = 
+                            j < 0 ? enemyPieces : remove(enemyPieces, j);
+                    successors.add((black ? new Material(enemies, promoted) :
+                                            new Material(promoted, enemies))
+                                           .canonical());
+                }
+            }
+        }
+    }
+    
+    private static ChessPieceType[] remove(final ChessPieceType[] pieces,
+                                           final int index) {
+        final ChessPieceType[] result = 
+                new ChessPieceType[pieces.length - 1];
+        System.arraycopy(pieces, 0, result, 0, index);
+        System.arraycopy(pieces, 
+                         index + 1, 
+                         result, 
+                         index, 
+                         result.length - index);
+        return result;
+    }
+    
+    private static ChessPieceType[] replace(final ChessPieceType[] pieces,
+                                            final int index,
+                                            final ChessPieceType type) {
+        final ChessPieceType[] result = pieces.clone();
+        result[index] = type;
+        return result;
+    }
+    
+    /**
+     * Returns the square of the {@code rank}th lowest piece of color 
+     * {@code color} and type {@code type}.
+     */
+    private static int lowestSquare(final ChessGameState state,
+                                    final ChessColor color,
+                                    final ChessPieceType type,
+                                    final int rank) {
+        long bitboard = state.getPieceBitboard(color, type);
+        
+        for (int i = 0; i < rank; ++i) {
+            bitboard &= bitboard - 1;
+        }
+        
+        return Bitboards.lowestSquare(bitboard);
+    }
+    
+    private static int appendPieces(int index,
+                                    final ChessGameState state,
+                                    final ChessColor color,
+                                    final ChessPieceType[] pieces,
+                                    final int mirror) {
+        for (int i = 0; i < pieces.length; ++i) {
+            // The pieces are sorted, so equal ones are adjacent.
+            int rank = 0;
+            
+            while (i - rank > 0 && pieces[i - rank - 1] == pieces[i]) {
+                ++rank;
+            }
+            
+            index = (index << 6) | 
+                    (mirror ^ lowestSquare(state, color, pieces[i], rank));
+        }
+        
+        return index;
+    }
+}
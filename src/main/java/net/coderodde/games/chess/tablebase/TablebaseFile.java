@@ -0,0 +1,225 @@
+package net.coderodde.games.chess.tablebase;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class reads and writes the table files. A table holds one byte per 
+ * position: zero for a draw or an illegal position, and <i>d</i> + 1 for a
+ * position mated in <i>d</i> plies, which the side to move wins if 
+ * <i>d</i> is odd and loses if it is even. The table is cut into blocks of
+ * {@link #BLOCK_SIZE} entries, each compressed on its own, so that a single
+ * block may be read without the rest. The file layout, big-endian, is:
+ * <pre>
+ *  0-3   the magic number;
+ *  4-7   the number of entries;
+ *  8-11  the number of blocks, <i>b</i>;
+ *  12-   <i>b</i> + 1 block offsets, relative to the end of the offsets;
+ *  ...   the compressed blocks.
+ * </pre>
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+final class TablebaseFile {
+    
+    /**
+     * The number of entries per block.
+     */
+    static final int BLOCK_SIZE = 1 << 12;
+    
+    /**
+     * The file name extension of the tables.
+     */
+    static final String EXTENSION = ".tb";
+    
+    private static final int MAGIC = 0x43525442;
+    private static final int HEADER_SIZE = 12;
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int entryCount;
+    private final int blockCount;
+    private final int dataOffset;
+    
+    /**
+     * Maps the table file {@code path}.
+     */
+    TablebaseFile(final Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        
+        try {
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 
+                                      0L, 
+                                      channel.size());
+            
+            if (buffer.capacity() < HEADER_SIZE 
+                    || buffer.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException(
+                        "\"" + path + "\" is not a table file.");
+            }
+            
+            this.entryCount = buffer.getInt(4);
+            this.blockCount = buffer.getInt(8);
+            this.dataOffset = HEADER_SIZE + 4 * (blockCount + 1);
+            
+            if (blockCount != (entryCount + BLOCK_SIZE - 1) / BLOCK_SIZE
+                    || dataOffset > buffer.capacity()
+                    || dataOffset + blockOffset(blockCount) 
+                            != buffer.capacity()) {
+                throw new IllegalArgumentException(
+                        "The table file \"" + path + "\" is corrupt.");
+            }
+        } catch (final IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+    
+    int getEntryCount() {
+        return entryCount;
+    }
+    
+    int getBlockCount() {
+        return blockCount;
+    }
+    
+    /**
+     * Decompresses the block {@code block} into {@code output}, using 
+     * {@code input} as the buffer of the compressed bytes. Returns the 
+     * buffer of the compressed bytes, which is {@code input} unless it is 
+     * too small.
+     */
+    byte[] readBlock(final int block, 
+                     final byte[] output,
+                     byte[] input,
+                     final Inflater inflater) {
+        final int start = blockOffset(block);
+        final int length = blockOffset(block + 1) - start;
+        
+        if (input.length < length) {
+            input = new byte[length];
+        }
+        
+        // The absolute bulk get of ByteBuffer is newer than Java 7.
+        final ByteBuffer view = buffer.duplicate();
+        view.position(dataOffset + start);
+        view.get(input, 0, length);
+        inflater.reset();
+        inflater.setInput(input, 0, length);
+        
+        try {
+            final int expected = 
+                    Math.min(BLOCK_SIZE, entryCount - block * BLOCK_SIZE);
+            
+            if (inflater.inflate(output, 0, expected) != expected) {
+                throw new IllegalStateException(
+                        "Truncated table block " + block + ".");
+            }
+        } catch (final DataFormatException ex) {
+            throw new IllegalStateException("Corrupt table block " + block + 
+                                            ".", ex);
+        }
+        
+        return input;
+    }
+    
+    void close() throws IOException {
+        channel.close();
+    }
+    
+    /**
+     * Reads the whole table file {@code path} into memory.
+     */
+    static byte[] read(final Path path) throws IOException {
+        final TablebaseFile file = new TablebaseFile(path);
+        
+        try {
+            final byte[] table = new byte[file.entryCount];
+            final byte[] block = new byte[BLOCK_SIZE];
+            final Inflater inflater = new Inflater();
+            byte[] input = new byte[BLOCK_SIZE];
+            
+            for (int i = 0; i < file.blockCount; ++i) {
+                input = file.readBlock(i, block, input, inflater);
+                System.arraycopy(block, 
+                                 0, 
+                                 table, 
+                                 i * BLOCK_SIZE, 
+                                 Math.min(BLOCK_SIZE, 
+                                          table.length - i * BLOCK_SIZE));
+            }
+            
+            inflater.end();
+            return table;
+        } finally {
+            file.close();
+        }
+    }
+    
+    /**
+     * Writes the table {@code table} into the file {@code path}, through a 
+     * temporary file so that a reader never sees a partial table.
+     */
+    static void write(final Path path, final byte[] table) 
+    throws IOException {
+        final int blockCount = (table.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int[] offsets = new int[blockCount + 1];
+        final byte[][] blocks = new byte[blockCount][];
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        final byte[] output = new byte[2 * BLOCK_SIZE];
+        
+        for (int i = 0; i < blockCount; ++i) {
+            final int start = i * BLOCK_SIZE;
+            deflater.reset();
+            deflater.setInput(table, 
+                              start, 
+                              Math.min(BLOCK_SIZE, table.length - start));
+            deflater.finish();
+            final int length = deflater.deflate(output);
+            blocks[i] = Arrays.copyOf(output, length);
+            offsets[i + 1] = offsets[i] + length;
+        }
+        
+        deflater.end();
+        final Path temporary = 
+                path.resolveSibling(path.getFileName() + ".tmp");
+        
+        try (final DataOutputStream out = 
+                new DataOutputStream(
+                        new BufferedOutputStream(
+                                Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(table.length);
+            out.writeInt(blockCount);
+            
+            for (final int offset : offsets) {
+                out.writeInt(offset);
+            }
+            
+            for (final byte[] block : blocks) {
+                out.write(block);
+            }
+        }
+        
+        Files.move(temporary, 
+                   path, 
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    private int blockOffset(final int block) {
+        return buffer.getInt(HEADER_SIZE + 4 * block);
+    }
+}
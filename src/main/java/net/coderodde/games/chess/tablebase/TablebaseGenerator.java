@@ -0,0 +1,845 @@
+package net.coderodde.games.chess.tablebase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.coderodde.games.chess.Bitboards;
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.ChessPieceType;
+import net.coderodde.games.chess.Move;
+import net.coderodde.games.chess.MoveGenerator;
+
+/**
+ * This class generates the endgame tables read by {@link Tablebases} by 
+ * retrograde analysis. The mated positions are found first; then each pass
+ * <i>n</i> resolves the positions won in <i>n</i> plies, which have a move 
+ * to a position lost in <i>n</i> - 1 plies, and the positions lost in 
+ * <i>n</i> plies, all of whose moves lead to positions won in at most 
+ * <i>n</i> - 1 plies. The captures and the promotions leave the table; 
+ * their values are looked up once in the tables of the smaller materials, 
+ * which are generated first. The positions still unresolved when a pass 
+ * changes nothing are draws.
+ * <p>
+ * A position can only be resolved in the pass after one of its successors
+ * was, or when its captures and promotions decide it, so each pass marks 
+ * the predecessors of the positions it resolves, found by taking the moves 
+ * back, and the next pass examines only those.
+ * <p>
+ * The tables hold no en passant rights. When both sides have pawns, a 
+ * double push that allows an en passant capture leads to the position 
+ * without the right, plus the capture, which leaves the table. Such a 
+ * position is valued from both, and the positions with such a push are 
+ * examined in every pass.
+ * <p>
+ * Each pass splits the table into chunks processed by a pool of threads. A
+ * pass reads only the values resolved by the previous passes, so the 
+ * threads need no synchronization beyond the end of each pass.
+ * <p>
+ * The materials are capped at {@link Material#MAX_PIECES} pieces. A table 
+ * of <i>n</i> pieces needs 6 &middot; 2 &middot; 64<sup><i>n</i></sup> 
+ * bytes of memory during the generation, about 200 MB for four pieces. On 
+ * a single core a three piece table takes about a second and a four piece 
+ * one one to two minutes, such as <i>KQvKR</i> 94 s and <i>KPvKP</i> 81 s. 
+ * A material with pawns needs the tables of all its promotions first, so 
+ * generating <i>KPvKP</i> took eight and a half minutes even with the 
+ * tables of a queen against a piece already present.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class TablebaseGenerator {
+    
+    /**
+     * The materials generated by default from the command line.
+     */
+    public static final String[] DEFAULT_MATERIALS = 
+            { "KQvK", "KRvK", "KPvK", "KQvKR" };
+    
+    /**
+     * The number of positions handed to a thread at a time.
+     */
+    private static final int CHUNK_SIZE = 1 << 13;
+    
+    /**
+     * The largest distance to mate a table entry can hold.
+     */
+    private static final int MAXIMUM_PLIES = 252;
+    
+    /**
+     * The entry of an illegal position during the generation.
+     */
+    private static final byte ILLEGAL = (byte) 255;
+    
+    /**
+     * The entry of a stalemate during the generation.
+     */
+    private static final byte STALEMATE = (byte) 254;
+    
+    /**
+     * The exit summary of a position with a drawing or winning capture or 
+     * promotion, which therefore cannot be lost.
+     */
+    private static final int CANNOT_LOSE = 255;
+    
+    private static final ChessPieceType[] TYPES = ChessPieceType.values();
+    
+    private final Path directory;
+    private final int threads;
+    
+    /**
+     * The tables generated or loaded so far.
+     */
+    private final Map<Material, byte[]> tables = new HashMap<>();
+    
+    public TablebaseGenerator(final Path directory, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "The number of threads must be at least 1, received " +
+                    threads + ".");
+        }
+        
+        this.directory = directory;
+        this.threads = threads;
+    }
+    
+    /**
+     * Generates the table of the material {@code material} and writes it to
+     * the directory of this generator, generating first the tables of the 
+     * materials its captures and promotions lead to. The tables already in 
+     * the directory are loaded instead of generated.
+     * 
+     * @param material the material.
+     * @throws IOException if reading or writing a table fails.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    public void generate(Material material) 
+    throws IOException, InterruptedException {
+        material = material.canonical();
+        
+        if (tables.containsKey(material) || isDraw(material)) {
+            return;
+        }
+        
+        final Path path = 
+                directory.resolve(material + TablebaseFile.EXTENSION);
+        
+        if (Files.exists(path)) {
+            tables.put(material, TablebaseFile.read(path));
+            return;
+        }
+        
+        for (final Material successor : material.getSuccessors()) {
+            generate(successor);
+        }
+        
+        final byte[] table = compute(material);
+        Files.createDirectories(directory);
+        TablebaseFile.write(path, table);
+        tables.put(material, table);
+    }
+    
+    /**
+     * Generates tables from the command line:
+     * <pre>
+     * tablebase &lt;directory&gt; [material...] [-threads N]
+     * </pre>
+     * The default materials are {@link #DEFAULT_MATERIALS}.
+     * 
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 2 || !args[0].equals("tablebase")) {
+            printUsage();
+            System.exit(1);
+        }
+        
+        final List<Material> materials = new ArrayList<>();
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        
+        try {
+            for (int i = 2; i < args.length; ++i) {
+                if (!args[i].equals("-threads")) {
+                    materials.add(Material.parse(args[i]));
+                } else if (i + 1 < args.length) {
+                    threadCount = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException(
+                            "Missing value of option -threads.");
+                }
+            }
+        } catch (final IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(1);
+        }
+        
+        if (materials.isEmpty()) {
+            for (final String name : DEFAULT_MATERIALS) {
+                materials.add(Material.parse(name));
+            }
+        }
+        
+        try {
+            final TablebaseGenerator generator = 
+                    new TablebaseGenerator(Paths.get(args[1]), threadCount);
+            
+            for (final Material material : materials) {
+                final long startTime = System.currentTimeMillis();
+                generator.generate(material);
+                System.err.println(material.canonical() + " done in " + 
+                                   (System.currentTimeMillis() - startTime) +
+                                   " ms");
+            }
+        } catch (final IOException | IllegalArgumentException ex) {
+            System.err.println("Generating the tables failed: " + ex);
+            System.exit(1);
+        } catch (final InterruptedException ex) {
+            System.exit(1);
+        }
+    }
+    
+    private static void printUsage() {
+        System.err.println(
+                "Usage: tablebase <directory> [material...] [-threads N]");
+    }
+    
+    /**
+     * Checks whether no position of the material {@code material} can be 
+     * won: the kings are alone or with a single minor piece.
+     */
+    private static boolean isDraw(final Material material) {
+        final String name = material.toString();
+        return name.equals("KvK") 
+            || name.equals("KBvK") 
+            || name.equals("KNvK");
+    }
+    
+    /**
+     * Runs the retrograde analysis of the material {@code material}.
+     */
+    private byte[] compute(final Material material) 
+    throws InterruptedException {
+        final Generation generation = new Generation(material);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Worker> workers = new ArrayList<>(threads);
+        
+        for (int i = 0; i < threads; ++i) {
+            workers.add(new Worker(generation));
+        }
+        
+        try {
+            generation.pass = 0;
+            runPass(executor, workers, generation);
+            generation.swapCandidates();
+            
+            for (int n = 1; ; ++n) {
+                if (n > MAXIMUM_PLIES) {
+                    throw new IllegalStateException(
+                            "The distances to mate of " + material + 
+                            " exceed " + MAXIMUM_PLIES + " plies.");
+                }
+                
+                generation.pass = n;
+                final long resolved = runPass(executor, workers, generation);
+                generation.swapCandidates();
+                
+                if (resolved == 0L && n >= generation.maximumExitPlies) {
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        final byte[] codes = generation.codes;
+        
+        for (int i = 0; i < codes.length; ++i) {
+            if (codes[i] == ILLEGAL || codes[i] == STALEMATE) {
+                codes[i] = 0;
+            }
+        }
+        
+        return codes;
+    }
+    
+    /**
+     * Runs one pass over the whole table with all the workers and returns 
+     * the number of positions resolved.
+     */
+    private static long runPass(final ExecutorService executor,
+                                final List<Worker> workers,
+                                final Generation generation) 
+    throws InterruptedException {
+        generation.nextChunk.set(0);
+        final List<Future<Long>> futures = executor.invokeAll(workers);
+        long resolved = 0L;
+        
+        for (final Future<Long> future : futures) {
+            try {
+                resolved += future.get();
+            } catch (final ExecutionException ex) {
+                throw new IllegalStateException(
+                        "A tablebase worker failed.", ex.getCause());
+            }
+        }
+        
+        return resolved;
+    }
+    
+    /**
+     * The state of the generation of a single table shared by the workers.
+     */
+    private final class Generation {
+        
+        final Material material;
+        
+        /**
+         * The table entries being computed: zero for unresolved positions, 
+         * <i>d</i> + 1 for the positions mated in <i>d</i> plies, 
+         * {@link #ILLEGAL} or {@link #STALEMATE}.
+         */
+        final byte[] codes;
+        
+        /**
+         * The shortest win through a capture or a promotion of each 
+         * position in plies, or zero.
+         */
+        final byte[] exitWins;
+        
+        /**
+         * The longest loss through a capture or a promotion of each position
+         * in plies, zero if there is none, or {@link #CANNOT_LOSE}.
+         */
+        final byte[] exitLosses;
+        
+        /**
+         * The materials and the tables the captures and the promotions lead
+         * to.
+         */
+        final Material[] successors;
+        final byte[][] successorTables;
+        
+        /**
+         * The positions to examine in the current pass, and the positions 
+         * marked for the next one. Marked by setting to one, which needs no
+         * synchronization.
+         */
+        byte[] candidates;
+        byte[] nextCandidates;
+        
+        /**
+         * The positions with a double push allowing an en passant capture, 
+         * examined in every pass, or {@code null} if only one side has 
+         * pawns.
+         */
+        final byte[] enPassantParents;
+        
+        final AtomicInteger nextChunk = new AtomicInteger();
+        volatile int pass;
+        volatile int maximumExitPlies;
+        
+        Generation(final Material material) {
+            this.material = material;
+            this.codes = new byte[material.getTableSize()];
+            this.exitWins = new byte[codes.length];
+            this.exitLosses = new byte[codes.length];
+            this.candidates = new byte[codes.length];
+            this.nextCandidates = new byte[codes.length];
+            this.enPassantParents = 
+                    material.hasPawns(ChessColor.WHITE)
+                            && material.hasPawns(ChessColor.BLACK) ?
+                    new byte[codes.length] :
+                    null;
+            
+            final List<Material> materials = new ArrayList<>();
+            
+            for (final Material successor : material.getSuccessors()) {
+                if (tables.containsKey(successor) 
+                        && !materials.contains(successor)) {
+                    materials.add(successor);
+                }
+            }
+            
+            this.successors = materials.toArray(new Material[0]);
+            this.successorTables = new byte[successors.length][];
+            
+            for (int i = 0; i < successors.length; ++i) {
+                successorTables[i] = tables.get(successors[i]);
+            }
+        }
+        
+        synchronized void updateMaximumExitPlies(final int plies) {
+            maximumExitPlies = Math.max(maximumExitPlies, plies);
+        }
+        
+        /**
+         * Makes the positions marked in the pass just finished the 
+         * candidates of the next one. Called between the passes.
+         */
+        void swapCandidates() {
+            final byte[] marked = nextCandidates;
+            nextCandidates = candidates;
+            candidates = marked;
+            Arrays.fill(nextCandidates, (byte) 0);
+        }
+        
+        /**
+         * Checks whether the unresolved position {@code index} may be 
+         * resolved in the pass {@code pass}.
+         */
+        boolean isCandidate(final int index, final int pass) {
+            return candidates[index] != 0
+                || (exitWins[index] & 0xff) == pass
+                || (exitLosses[index] & 0xff) == pass
+                || (enPassantParents != null && enPassantParents[index] != 0);
+        }
+    }
+    
+    /**
+     * Processes chunks of positions of a pass until none is left.
+     */
+    private static final class Worker implements Callable<Long> {
+        
+        private final Generation generation;
+        private final ChessGameState state = new ChessGameState();
+        private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        
+        /**
+         * The moves of a position reached by a double push, searched for its
+         * en passant captures.
+         */
+        private final int[] childMoves = new int[MoveGenerator.MAX_MOVES];
+        
+        Worker(final Generation generation) {
+            this.generation = generation;
+        }
+        
+        @Override
+        public Long call() {
+            final int size = generation.codes.length;
+            final int pass = generation.pass;
+            long resolved = 0L;
+            int chunk;
+            
+            while ((chunk = generation.nextChunk.getAndIncrement()) 
+                    * CHUNK_SIZE < size) {
+                final int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+                
+                for (int index = chunk * CHUNK_SIZE; index < end; ++index) {
+                    if (pass == 0) {
+                        initialize(index);
+                        
+                        if (generation.codes[index] == 1) {
+                            markPredecessors(index);
+                        }
+                    } else if (generation.codes[index] == 0
+                            && generation.isCandidate(index, pass)
+                            && resolve(index, pass)) {
+                        markPredecessors(index);
+                        ++resolved;
+                    }
+                }
+            }
+            
+            return resolved;
+        }
+        
+        /**
+         * Marks the position {@code index} as illegal, mated or stalemated,
+         * and summarizes its moves leaving the table.
+         */
+        private void initialize(final int index) {
+            final byte[] codes = generation.codes;
+            
+            if (!generation.material.setUp(index, state) || !isLegal()) {
+                codes[index] = ILLEGAL;
+                return;
+            }
+            
+            final int moveCount = 
+                    MoveGenerator.generateLegalMoves(state, moves);
+            
+            if (moveCount == 0) {
+                codes[index] = MoveGenerator.isInCheck(state) ? 
+                               1 : 
+                               STALEMATE;
+                return;
+            }
+            
+            int shortestWin = 0;
+            int longestLoss = 0;
+            
+            for (int i = 0; i < moveCount; ++i) {
+                if (!isExit(moves[i])) {
+                    if (generation.enPassantParents != null) {
+                        checkEnPassant(index, moves[i]);
+                    }
+                    
+                    continue;
+                }
+                
+                state.makeMove(moves[i]);
+                final int code = probeSuccessor();
+                state.unmakeMove();
+                
+                if (code == 0) {
+                    longestLoss = CANNOT_LOSE;
+                } else if (((code - 1) & 1) == 0) {
+                    // The opponent is mated in code - 1 plies.
+                    shortestWin = shortestWin == 0 ? 
+                                  code : 
+                                  Math.min(shortestWin, code);
+                } else if (longestLoss != CANNOT_LOSE) {
+                    longestLoss = Math.max(longestLoss, code);
+                }
+            }
+            
+            if (shortestWin > 0) {
+                longestLoss = CANNOT_LOSE;
+            }
+            
+            generation.exitWins[index] = (byte) shortestWin;
+            generation.exitLosses[index] = (byte) longestLoss;
+            
+            if (shortestWin > 0 || (longestLoss > 0 
+                                    && longestLoss != CANNOT_LOSE)) {
+                generation.updateMaximumExitPlies(
+                        longestLoss != CANNOT_LOSE ? 
+                        Math.max(shortestWin, longestLoss) : 
+                        shortestWin);
+            }
+        }
+        
+        /**
+         * Tries to resolve the unresolved position {@code index} in the pass
+         * {@code pass}, that is, with a distance to mate of {@code pass} 
+         * plies.
+         */
+        private boolean resolve(final int index, final int pass) {
+            final byte[] codes = generation.codes;
+            final int exitWin = generation.exitWins[index] & 0xff;
+            
+            if (exitWin == pass) {
+                codes[index] = (byte)(pass + 1);
+                return true;
+            }
+            
+            final int exitLoss = generation.exitLosses[index] & 0xff;
+            final boolean winning = (pass & 1) != 0;
+            
+            if (!winning && exitLoss == CANNOT_LOSE) {
+                return false;
+            }
+            
+            generation.material.setUp(index, state);
+            final int moveCount = 
+                    MoveGenerator.generateLegalMoves(state, moves);
+            int longestLoss = exitLoss;
+            
+            for (int i = 0; i < moveCount; ++i) {
+                if (isExit(moves[i])) {
+                    continue;
+                }
+                
+                state.makeMove(moves[i]);
+                int child = 
+                        codes[generation.material.index(state, false)] & 0xff;
+                
+                if (state.getEnPassantSquare() != Bitboards.NO_SQUARE) {
+                    child = combineEnPassant(child, pass);
+                }
+                
+                state.unmakeMove();
+                
+                if (winning) {
+                    // A move to a position lost in pass - 1 plies.
+                    if (child == pass) {
+                        codes[index] = (byte)(pass + 1);
+                        return true;
+                    }
+                } else {
+                    // The positions resolved in this pass have the code 
+                    // pass + 1 and are not yet visible.
+                    if (child == 0 || child > pass || (child & 1) != 0) {
+                        return false;
+                    }
+                    
+                    longestLoss = Math.max(longestLoss, child);
+                }
+            }
+            
+            if (!winning && longestLoss == pass) {
+                codes[index] = (byte)(pass + 1);
+                return true;
+            }
+            
+            return false;
+        }
+        
+        /**
+         * Marks the position {@code index} for the next pass if the move 
+         * {@code move} is a double push allowing an en passant capture, and
+         * counts the distances of the captures to mate into the number of 
+         * passes.
+         */
+        private void checkEnPassant(final int index, final int move) {
+            state.makeMove(move);
+            
+            if (state.getEnPassantSquare() != Bitboards.NO_SQUARE) {
+                final int moveCount = 
+                        MoveGenerator.generateLegalMoves(state, childMoves);
+                
+                for (int i = 0; i < moveCount; ++i) {
+                    if (Move.getKind(childMoves[i]) != Move.EN_PASSANT) {
+                        continue;
+                    }
+                    
+                    generation.enPassantParents[index] = 1;
+                    state.makeMove(childMoves[i]);
+                    final int code = probeSuccessor();
+                    state.unmakeMove();
+                    
+                    if (code != 0) {
+                        generation.updateMaximumExitPlies(code + 1);
+                    }
+                }
+            }
+            
+            state.unmakeMove();
+        }
+        
+        /**
+         * Returns the table entry of the current position, which has an en 
+         * passant right, as seen by the pass {@code pass}: the better of the
+         * entry {@code code} of the same position without the right and its 
+         * en passant captures for the side to move. Returns zero while the 
+         * entry is not known yet, as well as for a draw.
+         */
+        private int combineEnPassant(final int code, final int pass) {
+            final int moveCount = 
+                    MoveGenerator.generateLegalMoves(state, childMoves);
+            boolean hasOtherMoves = false;
+            boolean canDraw = false;
+            int shortestWin = 0;
+            int longestLoss = 0;
+            int captureCount = 0;
+            
+            for (int i = 0; i < moveCount; ++i) {
+                if (Move.getKind(childMoves[i]) != Move.EN_PASSANT) {
+                    hasOtherMoves = true;
+                    continue;
+                }
+                
+                ++captureCount;
+                state.makeMove(childMoves[i]);
+                final int captureCode = probeSuccessor();
+                state.unmakeMove();
+                
+                if (captureCode == 0) {
+                    canDraw = true;
+                } else if (((captureCode - 1) & 1) == 0) {
+                    shortestWin = shortestWin == 0 ? 
+                                  captureCode + 1 : 
+                                  Math.min(shortestWin, captureCode + 1);
+                } else {
+                    longestLoss = Math.max(longestLoss, captureCode + 1);
+                }
+            }
+            
+            if (captureCount == 0) {
+                // The capture would expose the king.
+                return code;
+            }
+            
+            if (!hasOtherMoves) {
+                return shortestWin > 0 ? 
+                       shortestWin : 
+                       canDraw ? 0 : longestLoss;
+            }
+            
+            // The entries resolved in this pass are not yet visible.
+            final int known = code > pass ? 0 : code;
+            final int win = known > 0 && (known & 1) == 0 ? known : 0;
+            
+            if (shortestWin > 0) {
+                if (win > 0) {
+                    return Math.min(win, shortestWin);
+                }
+                
+                // An unknown entry is a longer win at best.
+                return known != 0 || shortestWin <= pass ? shortestWin : 0;
+            }
+            
+            if (win > 0 || known == 0) {
+                return win;
+            }
+            
+            return canDraw ? 0 : Math.max(known, longestLoss);
+        }
+        
+        /**
+         * Marks for the next pass the positions with a move to the position
+         * {@code index}: those with a piece of the side not to move standing
+         * where it could have come from.
+         */
+        private void markPredecessors(final int index) {
+            final Material material = generation.material;
+            final byte[] marks = generation.nextCandidates;
+            material.setUp(index, state);
+            final ChessColor us = state.getSideToMove();
+            final ChessColor them = us == ChessColor.WHITE ? 
+                                    ChessColor.BLACK : 
+                                    ChessColor.WHITE;
+            final long occupancy = state.getOccupancy();
+            state.setSideToMove(them);
+            
+            for (int i = 0; i < ChessGameState.PIECE_TYPES; ++i) {
+                final ChessPieceType type = TYPES[i];
+                long pieces = state.getPieceBitboard(them, type);
+                
+                while (pieces != 0L) {
+                    final int to = Bitboards.lowestSquare(pieces);
+                    pieces &= pieces - 1;
+                    long origins = origins(them, type, to, occupancy);
+                    
+                    while (origins != 0L) {
+                        final int from = Bitboards.lowestSquare(origins);
+                        origins &= origins - 1;
+                        state.removePiece(to);
+                        state.putPiece(from, them, type);
+                        marks[material.index(state, false)] = 1;
+                        state.removePiece(from);
+                        state.putPiece(to, them, type);
+                    }
+                }
+            }
+            
+            state.setSideToMove(us);
+        }
+        
+        /**
+         * Returns the empty squares from which a piece of color 
+         * {@code color} and type {@code type} could have moved to 
+         * {@code square} without capturing or promoting.
+         */
+        private static long origins(final ChessColor color,
+                                    final ChessPieceType type,
+                                    final int square,
+                                    final long occupancy) {
+            final long empty = ~occupancy;
+            
+            switch (type) {
+                case KING:
+                    return Bitboards.kingAttacks(square) & empty;
+                
+                case QUEEN:
+                    return Bitboards.queenAttacks(square, occupancy) & empty;
+                
+                case ROOK:
+                    return Bitboards.rookAttacks(square, occupancy) & empty;
+                
+                case BISHOP:
+                    return Bitboards.bishopAttacks(square, occupancy) & empty;
+                
+                case KNIGHT:
+                    return Bitboards.knightAttacks(square) & empty;
+            }
+            
+            // A pawn came from behind, and from its starting rank over an 
+            // empty square.
+            final boolean white = color == ChessColor.WHITE;
+            final int rank = Bitboards.rank(square);
+            final int behind = white ? square - 8 : square + 8;
+            
+            if ((white ? rank < 2 : rank > 5) 
+                    || (occupancy & Bitboards.bit(behind)) != 0L) {
+                return 0L;
+            }
+            
+            long origins = Bitboards.bit(behind);
+            
+            if (rank == (white ? 3 : 4)) {
+                origins |= Bitboards.bit(white ? square - 16 : square + 16) 
+                         & empty;
+            }
+            
+            return origins;
+        }
+        
+        /**
+         * Checks whether the side not to move is not in check and no pawn 
+         * stands on the first or the last rank.
+         */
+        private boolean isLegal() {
+            final long pawns = 
+                    state.getPieceBitboard(ChessColor.WHITE, 
+                                           ChessPieceType.PAWN) |
+                    state.getPieceBitboard(ChessColor.BLACK, 
+                                           ChessPieceType.PAWN);
+            
+            if ((pawns & (Bitboards.RANK_1 | Bitboards.RANK_8)) != 0L) {
+                return false;
+            }
+            
+            final ChessColor us = state.getSideToMove();
+            final ChessColor them = us == ChessColor.WHITE ? 
+                                    ChessColor.BLACK : 
+                                    ChessColor.WHITE;
+            final int theirKing = Bitboards.lowestSquare(
+                    state.getPieceBitboard(them, ChessPieceType.KING));
+            return !MoveGenerator.isSquareAttacked(state, theirKing, us);
+        }
+        
+        /**
+         * Checks whether the move {@code move} leaves the material of the 
+         * table.
+         */
+        private boolean isExit(final int move) {
+            return Move.isPromotion(move) 
+                || Move.getKind(move) == Move.EN_PASSANT
+                || state.getPiece(Move.getTo(move)) != null;
+        }
+        
+        /**
+         * Returns the table entry of the current position, which has left 
+         * the material of the table.
+         */
+        private int probeSuccessor() {
+            if (state.isInsufficientMaterial()) {
+                return 0;
+            }
+            
+            final long key = Material.computeKey(state);
+            
+            for (int i = 0; i < generation.successors.length; ++i) {
+                final Material successor = generation.successors[i];
+                
+                if (successor.getKey() == key) {
+                    return generation.successorTables[i]
+                            [successor.index(state, false)] & 0xff;
+                }
+                
+                if (successor.getFlippedKey() == key) {
+                    return generation.successorTables[i]
+                            [successor.index(state, true)] & 0xff;
+                }
+            }
+            
+            throw new IllegalStateException(
+                    "No table for the material " + Material.of(state) + ".");
+        }
+    }
+}
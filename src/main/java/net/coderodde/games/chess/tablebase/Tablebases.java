@@ -0,0 +1,246 @@
+package net.coderodde.games.chess.tablebase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Inflater;
+import net.coderodde.games.chess.Bitboards;
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.ChessPieceType;
+
+/**
+ * This class probes the endgame tables generated by 
+ * {@link TablebaseGenerator}. The table files are mapped into memory, and 
+ * the blocks decompressed from them are kept in a least recently used cache
+ * of a fixed size, so the heap used does not depend on the number of 
+ * tables. Probing may happen from many threads at once and allocates only 
+ * when a block is missing from the cache.
+ * <p>
+ * A probe returns the value of the position for the side to move: 
+ * {@code MATE - d} if it mates in <i>d</i> plies, {@code -(MATE - d)} if it
+ * gets mated in <i>d</i> plies, and zero for a draw. The fifty-move rule is
+ * ignored.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class Tablebases implements Closeable {
+    
+    /**
+     * The value of a position with the side to move mated.
+     */
+    public static final int MATE = 1000;
+    
+    /**
+     * Returned by {@link #probe(ChessGameState)} when the position is not in
+     * the tables.
+     */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+    
+    /**
+     * The default size of the block cache in kilobytes.
+     */
+    public static final int DEFAULT_CACHE_SIZE_IN_KILOBYTES = 4096;
+    
+    private static final int BLOCK_MASK = TablebaseFile.BLOCK_SIZE - 1;
+    
+    private final Material[] materials;
+    private final TablebaseFile[] files;
+    private final int maximumPieces;
+    private final BlockCache cache;
+    
+    /**
+     * The inflater and the input buffer of each probing thread.
+     */
+    private final ThreadLocal<Decoder> decoders = new ThreadLocal<Decoder>() {
+        @Override
+        protected Decoder initialValue() {
+            return new Decoder();
+        }
+    };
+    
+    /**
+     * Opens all the tables in the directory {@code directory}.
+     * 
+     * @param directory            the directory of the table files.
+     * @param cacheSizeInKilobytes the size of the block cache.
+     * @throws IOException if a table cannot be opened.
+     * @throws IllegalArgumentException if a table file is invalid.
+     */
+    public Tablebases(final Path directory, final int cacheSizeInKilobytes)
+    throws IOException {
+        if (cacheSizeInKilobytes < 1) {
+            throw new IllegalArgumentException(
+                    "The cache size must be at least 1 KB, received " + 
+                    cacheSizeInKilobytes + ".");
+        }
+        
+        final List<Material> materialList = new ArrayList<>();
+        final List<TablebaseFile> fileList = new ArrayList<>();
+        
+        try (final DirectoryStream<Path> stream = 
+                Files.newDirectoryStream(directory, 
+                                         "*" + TablebaseFile.EXTENSION)) {
+            for (final Path path : stream) {
+                final String name = path.getFileName().toString();
+                final Material material = 
+                        Material.parse(name.substring(
+                                0, 
+                                name.length() - 
+                                        TablebaseFile.EXTENSION.length()));
+                final TablebaseFile file = new TablebaseFile(path);
+                fileList.add(file);
+                
+                if (!material.isCanonical() 
+                        || file.getEntryCount() != material.getTableSize()) {
+                    throw new IllegalArgumentException(
+                            "The table file \"" + path + "\" does not " + 
+                            "match its material.");
+                }
+                
+                materialList.add(material);
+            }
+        } catch (final IOException | RuntimeException ex) {
+            for (final TablebaseFile file : fileList) {
+                file.close();
+            }
+            
+            throw ex;
+        }
+        
+        int pieces = 0;
+        
+        for (final Material material : materialList) {
+            pieces = Math.max(pieces, material.getPieceCount());
+        }
+        
+        this.materials = materialList.toArray(new Material[0]);
+        this.files = fileList.toArray(new TablebaseFile[0]);
+        this.maximumPieces = pieces;
+        this.cache = new BlockCache((int) Math.min(
+                cacheSizeInKilobytes * 1024L / TablebaseFile.BLOCK_SIZE,
+                Integer.MAX_VALUE));
+    }
+    
+    /**
+     * Returns the largest number of pieces, kings included, of a table.
+     * 
+     * @return the maximum number of pieces.
+     */
+    public int getMaximumPieces() {
+        return maximumPieces;
+    }
+    
+    /**
+     * Returns the materials of the tables.
+     * 
+     * @return the materials.
+     */
+    public Material[] getMaterials() {
+        return materials.clone();
+    }
+    
+    public long getCacheProbes() {
+        return cache.getProbes();
+    }
+    
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+    
+    /**
+     * Returns the value of the position {@code state} for the side to move.
+     * Positions with castling rights or an en passant square are not in the
+     * tables, and the positions with insufficient material are draws.
+     * 
+     * @param state the position.
+     * @return the value of the position, or {@link #NOT_FOUND}.
+     */
+    public int probe(final ChessGameState state) {
+        if (Long.bitCount(state.getOccupancy()) > maximumPieces
+                || state.getCastlingRights() != 0
+                || state.getEnPassantSquare() != Bitboards.NO_SQUARE
+                || Long.bitCount(state.getPieceBitboard(
+                        ChessColor.WHITE, ChessPieceType.KING)) != 1
+                || Long.bitCount(state.getPieceBitboard(
+                        ChessColor.BLACK, ChessPieceType.KING)) != 1) {
+            return NOT_FOUND;
+        }
+        
+        if (state.isInsufficientMaterial()) {
+            return 0;
+        }
+        
+        final long key = Material.computeKey(state);
+        
+        for (int i = 0; i < materials.length; ++i) {
+            final Material material = materials[i];
+            
+            if (material.getKey() == key) {
+                return toValue(entry(i, material.index(state, false)));
+            }
+            
+            if (material.getFlippedKey() == key) {
+                return toValue(entry(i, material.index(state, true)));
+            }
+        }
+        
+        return NOT_FOUND;
+    }
+    
+    /**
+     * Closes the table files. The tables may not be probed afterwards.
+     * 
+     * @throws IOException if closing a file fails.
+     */
+    @Override
+    public void close() throws IOException {
+        for (final TablebaseFile file : files) {
+            file.close();
+        }
+    }
+    
+    /**
+     * Converts the table entry {@code code} into a probe value.
+     */
+    static int toValue(final int code) {
+        if (code == 0) {
+            return 0;
+        }
+        
+        final int plies = code - 1;
+        return (plies & 1) != 0 ? MATE - plies : -(MATE - plies);
+    }
+    
+    /**
+     * Returns the entry with index {@code index} of the table 
+     * {@code table}.
+     */
+    private int entry(final int table, final int index) {
+        final int block = index / TablebaseFile.BLOCK_SIZE;
+        final long key = ((long) table << 32) | block;
+        byte[] data = cache.get(key);
+        
+        if (data == null) {
+            final Decoder decoder = decoders.get();
+            data = new byte[TablebaseFile.BLOCK_SIZE];
+            decoder.input = files[table].readBlock(block, 
+                                                   data, 
+                                                   decoder.input,
+                                                   decoder.inflater);
+            cache.put(key, data);
+        }
+        
+        return data[index & BLOCK_MASK] & 0xff;
+    }
+    
+    private static final class Decoder {
+        final Inflater inflater = new Inflater();
+        byte[] input = new byte[TablebaseFile.BLOCK_SIZE];
+    }
+}
@@ -0,0 +1,629 @@
+package net.coderodde.games.chess.tournament;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Fen;
+import net.coderodde.games.chess.GameResult;
+import net.coderodde.games.chess.Move;
+import net.coderodde.games.chess.analysis.AnalysisPosition;
+import net.coderodde.games.chess.analysis.EpdReader;
+import net.coderodde.games.chess.analysis.PgnReader;
+import net.coderodde.games.chess.analysis.PgnWriter;
+import net.coderodde.games.chess.analysis.PositionReader;
+import net.coderodde.games.chess.evaluation.EvaluatorFactory;
+import net.coderodde.games.chess.evaluation.MaterialEvaluator;
+import net.coderodde.games.chess.evaluation.TaperedEvaluator;
+import net.coderodde.games.chess.search.SearchEngine;
+import net.coderodde.games.chess.search.SearchLimits;
+import net.coderodde.games.chess.search.SearchResult;
+import net.coderodde.games.chess.search.TranspositionTable;
+import net.coderodde.games.chess.tablebase.Tablebases;
+
+/**
+ * This class plays engine-versus-engine matches without a display. Each 
+ * opening position is played twice with the colors swapped, and the games
+ * are scheduled over a pool of worker threads, each of which owns one 
+ * single-threaded {@link SearchEngine} per player with a private 
+ * transposition table. A game thus keeps exactly one search thread busy, 
+ * and the number of workers sets the number of cores used.
+ * <p>
+ * Every move is searched within the same {@link SearchLimits}, typically a
+ * fixed time or a fixed node count. A game ends by the rules as detected by 
+ * {@link ChessGameState#checkVictory(Tablebases)}, or is adjudicated a draw
+ * after the maximum number of plies. After each game the {@link Sprt} of 
+ * the match is updated, and no further games are started once it reaches a
+ * decision.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class SelfPlayRunner {
+    
+    /**
+     * The default number of plies after which a game is adjudicated a draw.
+     */
+    public static final int DEFAULT_MAXIMUM_PLIES = 400;
+    
+    /**
+     * The default number of games of the command line mode.
+     */
+    public static final int DEFAULT_GAMES = 1000;
+    
+    /**
+     * The default node limit per move of the command line mode.
+     */
+    public static final long DEFAULT_NODES = 20000L;
+    
+    /**
+     * This class describes a player of a match: a name and the evaluator of
+     * its engine.
+     */
+    public static final class Player {
+        
+        private final String name;
+        private final EvaluatorFactory evaluatorFactory;
+        
+        public Player(final String name, 
+                      final EvaluatorFactory evaluatorFactory) {
+            this.name = Objects.requireNonNull(name, 
+                                               "The input name is null.");
+            this.evaluatorFactory = 
+                    Objects.requireNonNull(evaluatorFactory,
+                                           "The input evaluator factory " +
+                                           "is null.");
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public EvaluatorFactory getEvaluatorFactory() {
+            return evaluatorFactory;
+        }
+    }
+    
+    private final Player first;
+    private final Player second;
+    private final int workerCount;
+    private final int hashSizeInMegabytes;
+    private final SearchLimits limits;
+    private int maximumPlies = DEFAULT_MAXIMUM_PLIES;
+    private Tablebases tablebases;
+    
+    public SelfPlayRunner(final Player first,
+                          final Player second,
+                          final int workerCount,
+                          final int hashSizeInMegabytes,
+                          final SearchLimits limits) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException(
+                    "The number of workers must be at least 1, received " +
+                    workerCount + ".");
+        }
+        
+        this.first = Objects.requireNonNull(first, 
+                                            "The first player is null.");
+        this.second = Objects.requireNonNull(second,
+                                             "The second player is null.");
+        this.workerCount = workerCount;
+        this.hashSizeInMegabytes = hashSizeInMegabytes;
+        this.limits = Objects.requireNonNull(limits,
+                                             "The input search limits are " +
+                                             "null.");
+    }
+    
+    public int getMaximumPlies() {
+        return maximumPlies;
+    }
+    
+    public void setMaximumPlies(final int maximumPlies) {
+        if (maximumPlies < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum number of plies must be at least 1, " +
+                    "received " + maximumPlies + ".");
+        }
+        
+        this.maximumPlies = maximumPlies;
+    }
+    
+    public Tablebases getTablebases() {
+        return tablebases;
+    }
+    
+    /**
+     * Sets the endgame tables the engines probe and the games are 
+     * adjudicated by, or {@code null} for none.
+     * 
+     * @param tablebases the endgame tables.
+     */
+    public void setTablebases(final Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+    
+    /**
+     * Plays at most {@code maximumGames} games cycling through 
+     * {@code openings}, and stops early once {@code sprt} reaches a 
+     * decision. The games are written to {@code pgn} in the order they 
+     * finish, and the standing of the match is reported to 
+     * {@code progress} after each game.
+     * 
+     * @param openings     the opening positions.
+     * @param maximumGames the maximum number of games.
+     * @param sprt         the test recording the results of the first 
+     *                     player.
+     * @param pgn          the writer receiving the games, or {@code null}.
+     * @param progress     the stream receiving the progress reports.
+     * @return the number of games played.
+     * @throws IOException          if writing the games fails.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    public int run(final List<ChessGameState> openings,
+                   final int maximumGames,
+                   final Sprt sprt,
+                   final PgnWriter pgn,
+                   final PrintStream progress)
+    throws IOException, InterruptedException {
+        if (openings.isEmpty()) {
+            throw new IllegalArgumentException("No opening positions.");
+        }
+        
+        final Match match = new Match(openings, 
+                                      maximumGames, 
+                                      sprt, 
+                                      pgn, 
+                                      progress);
+        final Worker[] workers = new Worker[workerCount];
+        
+        for (int i = 0; i < workerCount; ++i) {
+            workers[i] = new Worker(i, match);
+            workers[i].start();
+        }
+        
+        try {
+            for (final Worker worker : workers) {
+                worker.join();
+            }
+        } catch (final InterruptedException ex) {
+            match.finished = true;
+            throw ex;
+        }
+        
+        if (pgn != null) {
+            pgn.flush();
+        }
+        
+        final Throwable cause = match.failure.get();
+        
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause != null) {
+            throw new IllegalStateException("A self-play worker failed.",
+                                            cause);
+        }
+        
+        return match.playedCount;
+    }
+    
+    /**
+     * Runs a match from the command line:
+     * <pre>
+     * selfplay &lt;openings.epd|openings.pgn&gt; [-o output.pgn]
+     *          [-threads N] [-games N] [-time MS] [-nodes N] [-hash MB]
+     *          [-plies N] [-tb directory] [-first tapered|material]
+     *          [-second tapered|material] [-elo0 E] [-elo1 E] 
+     *          [-alpha A] [-beta B]
+     * </pre>
+     * The moves are searched with {@value #DEFAULT_NODES} nodes unless a 
+     * time or node limit is given. The PGN is written to the standard 
+     * output unless an output file is given, and the progress is reported 
+     * to the standard error.
+     * 
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 2 || !args[0].equals("selfplay")) {
+            printUsage();
+            System.exit(1);
+        }
+        
+        final Path input = Paths.get(args[1]);
+        Path outputPath = null;
+        Path tablebasePath = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hash = TranspositionTable.DEFAULT_SIZE_IN_MEGABYTES;
+        int games = DEFAULT_GAMES;
+        int plies = DEFAULT_MAXIMUM_PLIES;
+        String firstName = "tapered";
+        String secondName = "material";
+        double elo0 = 0.0;
+        double elo1 = 5.0;
+        double alpha = 0.05;
+        double beta = 0.05;
+        final SearchLimits limits = new SearchLimits();
+        boolean limited = false;
+        Player first = null;
+        Player second = null;
+        Sprt sprt = null;
+        
+        try {
+            for (int i = 2; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException(
+                            "Missing value of option " + args[i] + ".");
+                }
+                
+                final String value = args[i + 1];
+                
+                switch (args[i]) {
+                    case "-o":
+                        outputPath = Paths.get(value);
+                        break;
+                    
+                    case "-threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    
+                    case "-games":
+                        games = Integer.parseInt(value);
+                        break;
+                    
+                    case "-time":
+                        limits.setTimeLimitMillis(Long.parseLong(value));
+                        limited = true;
+                        break;
+                    
+                    case "-nodes":
+                        limits.setNodeLimit(Long.parseLong(value));
+                        limited = true;
+                        break;
+                    
+                    case "-hash":
+                        hash = Integer.parseInt(value);
+                        break;
+                    
+                    case "-plies":
+                        plies = Integer.parseInt(value);
+                        break;
+                    
+                    case "-tb":
+                        tablebasePath = Paths.get(value);
+                        break;
+                    
+                    case "-first":
+                        firstName = value;
+                        break;
+                    
+                    case "-second":
+                        secondName = value;
+                        break;
+                    
+                    case "-elo0":
+                        elo0 = Double.parseDouble(value);
+                        break;
+                    
+                    case "-elo1":
+                        elo1 = Double.parseDouble(value);
+                        break;
+                    
+                    case "-alpha":
+                        alpha = Double.parseDouble(value);
+                        break;
+                    
+                    case "-beta":
+                        beta = Double.parseDouble(value);
+                        break;
+                    
+                    default:
+                        throw new IllegalArgumentException(
+                                "Unknown option " + args[i] + ".");
+                }
+            }
+            
+            if (!limited) {
+                limits.setNodeLimit(DEFAULT_NODES);
+            }
+            
+            first = createPlayer(firstName);
+            second = createPlayer(secondName);
+            sprt = new Sprt(elo0, elo1, alpha, beta);
+        } catch (final IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(1);
+        }
+        
+        // ISO-8859-1 decodes any byte sequence, and FEN, EPD and the PGN
+        // movetext are ASCII anyway.
+        try (final Writer output = outputPath == null ?
+                     new BufferedWriter(
+                             new OutputStreamWriter(
+                                     System.out,
+                                     StandardCharsets.ISO_8859_1)) :
+                     Files.newBufferedWriter(outputPath,
+                                             StandardCharsets.ISO_8859_1);
+             final Tablebases tables = tablebasePath == null ? 
+                     null : 
+                     new Tablebases(
+                             tablebasePath,
+                             Tablebases.DEFAULT_CACHE_SIZE_IN_KILOBYTES)) {
+            final SelfPlayRunner runner = 
+                    new SelfPlayRunner(first, second, threads, hash, limits);
+            runner.setMaximumPlies(plies);
+            runner.setTablebases(tables);
+            runner.run(readOpenings(input), 
+                       games, 
+                       sprt, 
+                       new PgnWriter(output), 
+                       System.err);
+            System.err.println(sprt.getDecision());
+        } catch (final IOException | IllegalArgumentException
+                     | IllegalStateException ex) {
+            System.err.println("Self-play failed: " + ex);
+            System.exit(1);
+        } catch (final InterruptedException ex) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Reads all the positions of {@code input}, choosing the format by the
+     * file name extension.
+     */
+    private static List<ChessGameState> readOpenings(final Path input)
+    throws IOException {
+        final String name = input.getFileName().toString().toLowerCase();
+        final List<ChessGameState> openings = new ArrayList<>();
+        
+        try (final PositionReader reader = name.endsWith(".pgn") ?
+                new PgnReader(
+                        Files.newBufferedReader(input,
+                                                StandardCharsets.ISO_8859_1)) :
+                new EpdReader(
+                        Files.newBufferedReader(input,
+                                                StandardCharsets.ISO_8859_1))) {
+            AnalysisPosition position;
+            
+            while ((position = reader.read()) != null) {
+                openings.add(position.getState());
+            }
+        }
+        
+        return openings;
+    }
+    
+    private static Player createPlayer(final String name) {
+        switch (name) {
+            case "tapered":
+                return new Player(name, TaperedEvaluator.FACTORY);
+            
+            case "material":
+                return new Player(name, MaterialEvaluator.FACTORY);
+            
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown evaluator \"" + name + "\".");
+        }
+    }
+    
+    private static void printUsage() {
+        System.err.println(
+                "Usage: selfplay <openings.epd|openings.pgn> " +
+                "[-o output.pgn] [-threads N] [-games N] [-time MS] " +
+                "[-nodes N] [-hash MB] [-plies N] [-tb directory] " +
+                "[-first tapered|material] [-second tapered|material] " +
+                "[-elo0 E] [-elo1 E] [-alpha A] [-beta B]");
+    }
+    
+    /**
+     * Holds the state of a running match shared by the workers.
+     */
+    private static final class Match {
+        
+        final List<ChessGameState> openings;
+        final int maximumGames;
+        final Sprt sprt;
+        final PgnWriter pgn;
+        final PrintStream progress;
+        final AtomicInteger nextGame = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final String date = 
+                new SimpleDateFormat("yyyy.MM.dd").format(new Date());
+        
+        /**
+         * Tells the workers to start no more games.
+         */
+        volatile boolean finished;
+        
+        /**
+         * The number of games played, guarded by {@link #sprt}.
+         */
+        int playedCount;
+        
+        Match(final List<ChessGameState> openings,
+              final int maximumGames,
+              final Sprt sprt,
+              final PgnWriter pgn,
+              final PrintStream progress) {
+            this.openings = openings;
+            this.maximumGames = maximumGames;
+            this.sprt = Objects.requireNonNull(sprt, 
+                                               "The input SPRT is null.");
+            this.pgn = pgn;
+            this.progress = progress;
+        }
+    }
+    
+    /**
+     * Plays the games of a match until it is finished.
+     */
+    private final class Worker extends Thread {
+        
+        private final Match match;
+        private final int[] moves = new int[maximumPlies];
+        
+        Worker(final int id, final Match match) {
+            super("selfplay-" + id);
+            setDaemon(true);
+            this.match = match;
+        }
+        
+        @Override
+        public void run() {
+            final SearchEngine firstEngine = createEngine(first);
+            final SearchEngine secondEngine = createEngine(second);
+            
+            try {
+                int game;
+                
+                while (!match.finished
+                        && match.failure.get() == null
+                        && (game = match.nextGame.getAndIncrement()) 
+                           < match.maximumGames) {
+                    // Each opening is played by both players as white.
+                    final ChessGameState opening = 
+                            match.openings.get((game / 2) % 
+                                               match.openings.size());
+                    final boolean firstIsWhite = (game & 1) == 0;
+                    final SearchEngine white = firstIsWhite ? 
+                                               firstEngine : 
+                                               secondEngine;
+                    final SearchEngine black = firstIsWhite ? 
+                                               secondEngine : 
+                                               firstEngine;
+                    
+                    firstEngine.getTranspositionTable().clear();
+                    secondEngine.getTranspositionTable().clear();
+                    
+                    final int[] plies = new int[1];
+                    final GameResult result = 
+                            playGame(opening, white, black, plies);
+                    
+                    record(game, opening, firstIsWhite, plies[0], result);
+                }
+            } catch (final Throwable ex) {
+                match.failure.compareAndSet(null, ex);
+            } finally {
+                firstEngine.shutdown();
+                secondEngine.shutdown();
+            }
+        }
+        
+        private SearchEngine createEngine(final Player player) {
+            final SearchEngine engine = 
+                    new SearchEngine(
+                            1,
+                            new TranspositionTable(hashSizeInMegabytes));
+            engine.setEvaluatorFactory(player.getEvaluatorFactory());
+            engine.setTablebases(tablebases);
+            return engine;
+        }
+        
+        /**
+         * Plays a game from {@code opening} into {@link #moves}, storing the
+         * number of plies in {@code plies[0]}.
+         */
+        private GameResult playGame(final ChessGameState opening,
+                                    final SearchEngine white,
+                                    final SearchEngine black,
+                                    final int[] plies) {
+            final ChessGameState state = new ChessGameState(opening);
+            int ply = 0;
+            GameResult result;
+            
+            while (!(result = state.checkVictory(tablebases)).isGameOver()) {
+                if (ply == maximumPlies) {
+                    result = GameResult.DRAW_BY_ADJUDICATION;
+                    break;
+                }
+                
+                final SearchEngine engine = 
+                        state.getSideToMove() == ChessColor.WHITE ? 
+                        white : 
+                        black;
+                final SearchResult searchResult = 
+                        engine.search(state, limits);
+                final int move = searchResult.getBestMove();
+                
+                if (move == Move.NONE) {
+                    throw new IllegalStateException(
+                            "No move found in " + Fen.toString(state) + 
+                            ".");
+                }
+                
+                moves[ply++] = move;
+                state.makeMove(move);
+            }
+            
+            plies[0] = ply;
+            return result;
+        }
+        
+        /**
+         * Records the finished game {@code game} in the test and in the PGN,
+         * and finishes the match once the test is decided.
+         */
+        private void record(final int game,
+                            final ChessGameState opening,
+                            final boolean firstIsWhite,
+                            final int plies,
+                            final GameResult result) throws IOException {
+            final ChessColor winner = result.getWinner();
+            final double whiteScore = winner == null ? 
+                                      0.5 : 
+                                      winner == ChessColor.WHITE ? 1.0 : 0.0;
+            
+            synchronized (match.sprt) {
+                match.sprt.addGame(firstIsWhite ? 
+                                   whiteScore : 
+                                   1.0 - whiteScore);
+                ++match.playedCount;
+                
+                if (match.sprt.getDecision() != Sprt.Decision.CONTINUE) {
+                    match.finished = true;
+                }
+                
+                match.progress.println("Game " + (game + 1) + ": " + 
+                                       result + ", " + match.sprt);
+            }
+            
+            if (match.pgn == null) {
+                return;
+            }
+            
+            final Map<String, String> tags = new LinkedHashMap<>();
+            tags.put("Event", first.getName() + " vs. " + 
+                              second.getName());
+            tags.put("Site", "?");
+            tags.put("Date", match.date);
+            tags.put("Round", Integer.toString(game + 1));
+            tags.put("White", firstIsWhite ? 
+                              first.getName() : 
+                              second.getName());
+            tags.put("Black", firstIsWhite ? 
+                              second.getName() : 
+                              first.getName());
+            
+            synchronized (match.pgn) {
+                match.pgn.writeGame(tags, opening, moves, plies, result);
+            }
+        }
+    }
+}
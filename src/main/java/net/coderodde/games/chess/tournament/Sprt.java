@@ -0,0 +1,269 @@
+package net.coderodde.games.chess.tournament;
+
+/**
+ * This class runs the sequential probability ratio test (SPRT) of a match
+ * between two engines. The null hypothesis <i>H0</i> states that the Elo
+ * difference of the first engine over the second one is {@code elo0}, and
+ * the alternative hypothesis <i>H1</i> that it is {@code elo1}. After each 
+ * game the log-likelihood ratio of the two hypotheses is compared to the 
+ * bounds derived from the error rates {@code alpha} and {@code beta}, so 
+ * that the match stops as soon as the outcome is statistically clear.
+ * <p>
+ * The ratio is computed with the trinomial normal approximation used by the
+ * common engine testing frameworks, which needs only the counts of wins, 
+ * draws and losses. This class is not thread-safe.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class Sprt {
+    
+    /**
+     * This enumeration enumerates the states of the test.
+     */
+    public enum Decision {
+        
+        /**
+         * The games so far are not conclusive.
+         */
+        CONTINUE,
+        
+        /**
+         * The null hypothesis is accepted: the first engine is not stronger
+         * by {@code elo1}.
+         */
+        ACCEPT_H0,
+        
+        /**
+         * The alternative hypothesis is accepted: the first engine is 
+         * stronger by {@code elo1}.
+         */
+        ACCEPT_H1
+    }
+    
+    /**
+     * The quantile of the standard normal distribution of the 95% 
+     * confidence interval of the Elo estimate.
+     */
+    private static final double Z_95 = 1.959964;
+    
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+    
+    private long wins;
+    private long draws;
+    private long losses;
+    
+    /**
+     * Constructs a test of the hypotheses {@code elo0} and {@code elo1} with
+     * the probability {@code alpha} of accepting <i>H1</i> when <i>H0</i> 
+     * holds and the probability {@code beta} of accepting <i>H0</i> when 
+     * <i>H1</i> holds.
+     * 
+     * @param elo0  the Elo difference of the null hypothesis.
+     * @param elo1  the Elo difference of the alternative hypothesis.
+     * @param alpha the false positive rate.
+     * @param beta  the false negative rate.
+     * @throws IllegalArgumentException if {@code elo0 >= elo1} or an error 
+     *                                  rate is not within (0, 1).
+     */
+    public Sprt(final double elo0, 
+                final double elo1, 
+                final double alpha, 
+                final double beta) {
+        if (!(elo0 < elo1)) {
+            throw new IllegalArgumentException(
+                    "elo0 must be less than elo1, received " + elo0 + 
+                    " and " + elo1 + ".");
+        }
+        
+        checkErrorRate("alpha", alpha);
+        checkErrorRate("beta", beta);
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lowerBound = Math.log(beta / (1.0 - alpha));
+        this.upperBound = Math.log((1.0 - beta) / alpha);
+    }
+    
+    /**
+     * Records a game from the point of view of the first engine.
+     * 
+     * @param score 1 for a win, 0.5 for a draw and 0 for a loss.
+     * @throws IllegalArgumentException if the score is none of those.
+     */
+    public void addGame(final double score) {
+        if (score == 1.0) {
+            ++wins;
+        } else if (score == 0.5) {
+            ++draws;
+        } else if (score == 0.0) {
+            ++losses;
+        } else {
+            throw new IllegalArgumentException(
+                    "Bad game score: " + score + ".");
+        }
+    }
+    
+    public long getWins() {
+        return wins;
+    }
+    
+    public long getDraws() {
+        return draws;
+    }
+    
+    public long getLosses() {
+        return losses;
+    }
+    
+    public long getGames() {
+        return wins + draws + losses;
+    }
+    
+    public double getLowerBound() {
+        return lowerBound;
+    }
+    
+    public double getUpperBound() {
+        return upperBound;
+    }
+    
+    /**
+     * Returns the log-likelihood ratio of <i>H1</i> against <i>H0</i>, or 
+     * zero while the games carry no information on the variance.
+     * 
+     * @return the log-likelihood ratio.
+     */
+    public double getLogLikelihoodRatio() {
+        final long games = getGames();
+        
+        if (games == 0L) {
+            return 0.0;
+        }
+        
+        final double score = getScore();
+        final double variance = (wins + draws / 4.0) / games - score * score;
+        
+        if (variance <= 0.0) {
+            return 0.0;
+        }
+        
+        final double score0 = expectedScore(elo0);
+        final double score1 = expectedScore(elo1);
+        return (score1 - score0) * (2.0 * score - score0 - score1) 
+                * games / (2.0 * variance);
+    }
+    
+    /**
+     * Returns the state of the test after the games recorded so far.
+     * 
+     * @return the decision.
+     */
+    public Decision getDecision() {
+        final double llr = getLogLikelihoodRatio();
+        
+        if (llr >= upperBound) {
+            return Decision.ACCEPT_H1;
+        }
+        
+        if (llr <= lowerBound) {
+            return Decision.ACCEPT_H0;
+        }
+        
+        return Decision.CONTINUE;
+    }
+    
+    /**
+     * Returns the mean score of the first engine, or 0.5 before the first 
+     * game.
+     * 
+     * @return the mean score within [0, 1].
+     */
+    public double getScore() {
+        final long games = getGames();
+        return games == 0L ? 0.5 : (wins + draws / 2.0) / games;
+    }
+    
+    /**
+     * Returns the Elo difference of the first engine over the second one 
+     * estimated from its mean score. The estimate is infinite if one of the
+     * engines scored every point.
+     * 
+     * @return the Elo estimate.
+     */
+    public double getElo() {
+        return elo(getScore());
+    }
+    
+    /**
+     * Returns the half width of the 95% confidence interval of 
+     * {@link #getElo()}.
+     * 
+     * @return the Elo error margin.
+     */
+    public double getEloMargin() {
+        final long games = getGames();
+        
+        if (games == 0L) {
+            return Double.POSITIVE_INFINITY;
+        }
+        
+        final double score = getScore();
+        
+        if (score <= 0.0 || score >= 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        
+        final double variance = (wins + draws / 4.0) / games - score * score;
+        final double delta = Z_95 * Math.sqrt(variance / games);
+        return (elo(score + delta) - elo(score - delta)) / 2.0;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+                "Games: %d (+%d =%d -%d), Elo: %.1f +/- %.1f, " + 
+                "LLR: %.2f [%.2f, %.2f]",
+                getGames(),
+                wins,
+                draws,
+                losses,
+                getElo(),
+                getEloMargin(),
+                getLogLikelihoodRatio(),
+                lowerBound,
+                upperBound);
+    }
+    
+    /**
+     * Returns the expected score of a player stronger by {@code elo}.
+     */
+    private static double expectedScore(final double elo) {
+        return 1.0 / (1.0 + Math.pow(10.0, -elo / 400.0));
+    }
+    
+    /**
+     * Returns the Elo difference yielding the expected score {@code score}.
+     */
+    private static double elo(final double score) {
+        if (score <= 0.0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        
+        if (score >= 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        
+        return -400.0 * Math.log10(1.0 / score - 1.0);
+    }
+    
+    private static void checkErrorRate(final String name, 
+                                       final double rate) {
+        if (!(rate > 0.0 && rate < 1.0)) {
+            throw new IllegalArgumentException(
+                    name + " must be within (0, 1), received " + rate + ".");
+        }
+    }
+}
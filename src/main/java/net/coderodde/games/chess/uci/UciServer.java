@@ -0,0 +1,210 @@
+package net.coderodde.games.chess.uci;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class serves UCI sessions over TCP connections on the loopback 
+ * interface, so that a single process hosts many games. Each connection is
+ * a {@link UciSession} with its own position, engine and transposition 
+ * table, while the search threads of all the sessions come from one shared
+ * pool sized to the number of cores. The clock of a search starts when its
+ * main thread gets a thread of the pool, so a search waiting for a thread 
+ * under load still gets its whole time budget; the client waits longer 
+ * instead.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class UciServer implements Closeable {
+    
+    /**
+     * The default port of the command line mode.
+     */
+    public static final int DEFAULT_PORT = 7777;
+    
+    private final ServerSocket serverSocket;
+    
+    /**
+     * Runs the search threads of all the sessions.
+     */
+    private final ExecutorService searchExecutor;
+    
+    /**
+     * Runs the sessions and their searches.
+     */
+    private final ExecutorService sessionExecutor;
+    
+    /**
+     * Listens on the port {@code port} of the loopback interface.
+     * 
+     * @param port          the port, or zero for any free port.
+     * @param searchThreads the size of the shared search thread pool.
+     * @throws IOException if the port cannot be bound.
+     */
+    public UciServer(final int port, final int searchThreads) 
+    throws IOException {
+        if (searchThreads < 1) {
+            throw new IllegalArgumentException(
+                    "The number of threads must be at least 1, received " +
+                    searchThreads + ".");
+        }
+        
+        this.serverSocket = new ServerSocket(port, 
+                                             50, 
+                                             InetAddress.getLoopbackAddress());
+        this.searchExecutor = 
+                Executors.newFixedThreadPool(
+                        searchThreads, 
+                        new DaemonThreadFactory("uci-search"));
+        this.sessionExecutor = 
+                Executors.newCachedThreadPool(
+                        new DaemonThreadFactory("uci-session"));
+    }
+    
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    /**
+     * Accepts the connections until the server is closed, running each as a
+     * session of its own.
+     * 
+     * @throws IOException if accepting a connection fails.
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            
+            try {
+                socket = serverSocket.accept();
+            } catch (final SocketException ex) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                
+                throw ex;
+            }
+            
+            socket.setTcpNoDelay(true);
+            sessionExecutor.execute(new Connection(socket));
+        }
+    }
+    
+    /**
+     * Stops accepting connections and releases the threads. The sessions 
+     * in progress are cut off.
+     * 
+     * @throws IOException if closing the server socket fails.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        sessionExecutor.shutdownNow();
+        searchExecutor.shutdownNow();
+    }
+    
+    /**
+     * Runs the server from the command line:
+     * <pre>
+     * server [port] [-threads N]
+     * </pre>
+     * 
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        
+        try {
+            for (int i = 1; i < args.length; ++i) {
+                if (!args[i].equals("-threads")) {
+                    port = Integer.parseInt(args[i]);
+                } else if (i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException(
+                            "Missing value of option -threads.");
+                }
+            }
+        } catch (final IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: server [port] [-threads N]");
+            System.exit(1);
+        }
+        
+        try (final UciServer server = new UciServer(port, threads)) {
+            System.err.println("Serving UCI on port " + server.getPort());
+            server.serve();
+        } catch (final IOException ex) {
+            System.err.println("The server failed: " + ex);
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Runs the session of a single connection.
+     */
+    private final class Connection implements Runnable {
+        
+        private final Socket socket;
+        
+        Connection(final Socket socket) {
+            this.socket = socket;
+        }
+        
+        @Override
+        public void run() {
+            try (final Socket s = socket) {
+                new UciSession(
+                        new BufferedReader(
+                                new InputStreamReader(
+                                        s.getInputStream(),
+                                        StandardCharsets.ISO_8859_1)),
+                        new BufferedWriter(
+                                new OutputStreamWriter(
+                                        s.getOutputStream(),
+                                        StandardCharsets.ISO_8859_1)),
+                        searchExecutor,
+                        sessionExecutor).run();
+            } catch (final IOException ex) {
+                // The client is gone.
+            }
+        }
+    }
+    
+    /**
+     * Creates the named daemon threads of a pool.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        
+        private final String prefix;
+        private final AtomicInteger threadCounter = new AtomicInteger();
+        
+        DaemonThreadFactory(final String prefix) {
+            this.prefix = prefix;
+        }
+        
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = 
+                    new Thread(runnable, 
+                               prefix + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,781 @@
+package net.coderodde.games.chess.uci;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Fen;
+import net.coderodde.games.chess.Move;
+import net.coderodde.games.chess.Position;
+import net.coderodde.games.chess.book.OpeningBook;
+import net.coderodde.games.chess.search.SearchEngine;
+import net.coderodde.games.chess.search.SearchLimits;
+import net.coderodde.games.chess.search.SearchListener;
+import net.coderodde.games.chess.search.SearchResult;
+import net.coderodde.games.chess.search.TranspositionTable;
+import net.coderodde.games.chess.tablebase.Tablebases;
+import net.coderodde.games.chess.variant.ChessVariant;
+import net.coderodde.games.chess.variant.VariantGameState;
+import net.coderodde.games.chess.variant.VariantMove;
+
+/**
+ * This class talks the Universal Chess Interface (UCI) protocol with a 
+ * single client, such as a chess GUI over the standard streams or a 
+ * connection of a {@link UciServer}. The session owns its position and its
+ * {@link SearchEngine}, transposition table included; the threads may be 
+ * shared with other sessions. The commands are read on the thread running 
+ * the session, and the searches run on a separate thread, so that 
+ * {@code stop} and {@code isready} are answered during a search.
+ * <p>
+ * The supported commands are {@code uci}, {@code isready}, 
+ * {@code ucinewgame}, {@code setoption}, {@code position}, {@code go}, 
+ * {@code ponderhit}, {@code stop} and {@code quit}; the others are ignored,
+ * as the protocol requires. The options are {@code Hash}, {@code Threads}, 
+ * {@code Ponder}, {@code Clear Hash}, {@code BookFile}, 
+ * {@code TablebasePath} and {@code UCI_Variant}.
+ * <p>
+ * {@code UCI_Variant} selects {@code chess} or {@code capablanca} and resets
+ * the position to the start of the variant. The variant positions are set 
+ * up with {@code position startpos} only, since they have no FEN here.
+ * <p>
+ * A {@code go ponder} search runs on the time of the opponent without a 
+ * clock. On {@code ponderhit} it goes on as the real search with the time 
+ * limit of the {@code go} command, counting from the ponder hit, and keeps
+ * what it has searched so far; on {@code stop} it reports its best move at
+ * once. The transposition table is kept between the moves.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class UciSession implements Runnable {
+    
+    public static final String ENGINE_NAME = "coderodde chess";
+    public static final String ENGINE_AUTHOR = "Rodion \"rodde\" Efremov";
+    
+    public static final int MAXIMUM_HASH_SIZE_IN_MEGABYTES = 4096;
+    public static final int MAXIMUM_THREADS = 256;
+    
+    /**
+     * The time reserved for the communication with the GUI on each move.
+     */
+    private static final long MOVE_OVERHEAD_MILLIS = 50L;
+    
+    /**
+     * The number of moves the remaining time is divided by when the GUI 
+     * does not tell the number of moves to the next time control.
+     */
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    
+    private static final String EMPTY_STRING = "<empty>";
+    
+    /**
+     * The variants of {@code UCI_Variant} and their names, the standard 
+     * chess first.
+     */
+    private static final ChessVariant[] VARIANTS = {
+        ChessVariant.STANDARD,
+        ChessVariant.CAPABLANCA,
+    };
+    
+    private static final String[] VARIANT_NAMES = { "chess", "capablanca" };
+    
+    private final BufferedReader input;
+    private final Writer output;
+    
+    /**
+     * The executor of the search threads, or {@code null} if each engine 
+     * creates its own.
+     */
+    private final ExecutorService searchExecutor;
+    
+    /**
+     * Runs the {@code go} commands.
+     */
+    private final ExecutorService sessionExecutor;
+    private final boolean ownsSessionExecutor;
+    
+    private ChessVariant variant = ChessVariant.STANDARD;
+    private Position position = new ChessGameState();
+    private int hashSizeInMegabytes = 
+            TranspositionTable.DEFAULT_SIZE_IN_MEGABYTES;
+    private int threads = 1;
+    private OpeningBook openingBook;
+    private Tablebases tablebases;
+    
+    /**
+     * The engine, or {@code null} until the next search creates it with the
+     * current options.
+     */
+    private SearchEngine engine;
+    
+    /**
+     * The running or the last search.
+     */
+    private Future<?> search;
+    
+    /**
+     * The limits of the running or the last search.
+     */
+    private SearchLimits searchLimits;
+    
+    /**
+     * Released by {@code stop}, so that an infinite search reports its best
+     * move only then.
+     */
+    private volatile CountDownLatch stopSignal = new CountDownLatch(0);
+    
+    /**
+     * Creates a session that searches on the threads of 
+     * {@code searchExecutor} and runs the {@code go} commands on 
+     * {@code sessionExecutor}. Either may be {@code null}, in which case the
+     * session creates its own threads.
+     * 
+     * @param input           the reader of the commands.
+     * @param output          the writer of the responses.
+     * @param searchExecutor  the executor of the search threads, or 
+     *                        {@code null}.
+     * @param sessionExecutor the executor of the searches, or {@code null}.
+     */
+    public UciSession(final BufferedReader input,
+                      final Writer output,
+                      final ExecutorService searchExecutor,
+                      final ExecutorService sessionExecutor) {
+        this.input = Objects.requireNonNull(input, "The input is null.");
+        this.output = Objects.requireNonNull(output, "The output is null.");
+        this.searchExecutor = searchExecutor;
+        this.ownsSessionExecutor = sessionExecutor == null;
+        this.sessionExecutor = ownsSessionExecutor ? 
+                Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, 
+                                                         "uci-search");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }) : 
+                sessionExecutor;
+    }
+    
+    public UciSession(final BufferedReader input, final Writer output) {
+        this(input, output, null, null);
+    }
+    
+    /**
+     * Runs the session on the standard streams.
+     * 
+     * @param args the command line arguments, ignored.
+     */
+    public static void main(final String[] args) {
+        new UciSession(
+                new BufferedReader(
+                        new InputStreamReader(System.in, 
+                                              StandardCharsets.ISO_8859_1)),
+                new OutputStreamWriter(System.out, 
+                                       StandardCharsets.ISO_8859_1)).run();
+    }
+    
+    /**
+     * Handles the commands until {@code quit} or the end of the input, and 
+     * then releases the resources of the session.
+     */
+    @Override
+    public void run() {
+        try {
+            String line;
+            
+            while ((line = input.readLine()) != null) {
+                if (!handle(line.trim())) {
+                    break;
+                }
+            }
+        } catch (final IOException ex) {
+            // The client is gone.
+        } finally {
+            close();
+        }
+    }
+    
+    /**
+     * Handles the command {@code line}.
+     * 
+     * @param line the command line.
+     * @return {@code false} if the session must end.
+     * @throws IOException if writing the response fails.
+     */
+    public boolean handle(final String line) throws IOException {
+        final String[] tokens = line.split("\\s+");
+        
+        try {
+            switch (tokens[0]) {
+                case "uci":
+                    sendIdentity();
+                    break;
+                
+                case "isready":
+                    send("readyok");
+                    break;
+                
+                case "ucinewgame":
+                    awaitSearch();
+                    position = createStartPosition();
+                
+                    if (engine != null) {
+                        engine.getTranspositionTable().clear();
+                    }
+                
+                    break;
+                
+                case "setoption":
+                    awaitSearch();
+                    setOption(line);
+                    break;
+                
+                case "position":
+                    awaitSearch();
+                    setPosition(tokens);
+                    break;
+                
+                case "go":
+                    awaitSearch();
+                    go(tokens);
+                    break;
+                
+                case "ponderhit":
+                    ponderHit();
+                    break;
+                
+                case "stop":
+                    stop();
+                    break;
+                
+                case "quit":
+                    stop();
+                    return false;
+            }
+        } catch (final IllegalArgumentException ex) {
+            send("info string " + ex.getMessage());
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Stops the search and releases the engine and the threads of the 
+     * session.
+     */
+    public void close() {
+        awaitSearch();
+        
+        if (engine != null) {
+            engine.shutdown();
+            engine = null;
+        }
+        
+        if (ownsSessionExecutor) {
+            sessionExecutor.shutdownNow();
+        }
+        
+        closeOpeningBook();
+        closeTablebases();
+    }
+    
+    private void sendIdentity() throws IOException {
+        send("id name " + ENGINE_NAME);
+        send("id author " + ENGINE_AUTHOR);
+        send("option name Hash type spin default " + 
+             TranspositionTable.DEFAULT_SIZE_IN_MEGABYTES + " min 1 max " + 
+             MAXIMUM_HASH_SIZE_IN_MEGABYTES);
+        send("option name Threads type spin default 1 min 1 max " + 
+             MAXIMUM_THREADS);
+        send("option name Ponder type check default false");
+        send("option name Clear Hash type button");
+        send("option name BookFile type string default " + EMPTY_STRING);
+        send("option name TablebasePath type string default " + 
+             EMPTY_STRING);
+        
+        final StringBuilder variants = 
+                new StringBuilder("option name UCI_Variant type combo ")
+                        .append("default ").append(VARIANT_NAMES[0]);
+        
+        for (final String name : VARIANT_NAMES) {
+            variants.append(" var ").append(name);
+        }
+        
+        send(variants.toString());
+        send("uciok");
+    }
+    
+    /**
+     * Handles {@code setoption name <id> [value <x>]}. The name may contain
+     * spaces. A book or tablebase path that cannot be opened is reported as
+     * an {@code info string} and leaves the option unset.
+     */
+    private void setOption(final String line) throws IOException {
+        final int nameIndex = line.indexOf(" name ");
+        
+        if (nameIndex < 0) {
+            throw new IllegalArgumentException("Bad setoption command.");
+        }
+        
+        final int valueIndex = line.indexOf(" value ", nameIndex);
+        final String name = valueIndex < 0 ? 
+                            line.substring(nameIndex + 6).trim() :
+                            line.substring(nameIndex + 6, valueIndex).trim();
+        final String value = valueIndex < 0 ?
+                             "" :
+                             line.substring(valueIndex + 7).trim();
+        
+        switch (name.toLowerCase()) {
+            case "hash":
+                hashSizeInMegabytes = parseSpin(name, value, 1, 
+                        MAXIMUM_HASH_SIZE_IN_MEGABYTES);
+                discardEngine();
+                break;
+            
+            case "threads":
+                threads = parseSpin(name, value, 1, MAXIMUM_THREADS);
+                discardEngine();
+                break;
+            
+            case "ponder":
+                // The GUI decides when to ponder; nothing to set up.
+                break;
+            
+            case "clear hash":
+                if (engine != null) {
+                    engine.getTranspositionTable().clear();
+                }
+            
+                break;
+            
+            case "bookfile":
+                closeOpeningBook();
+                discardEngine();
+            
+                if (!value.isEmpty() && !value.equals(EMPTY_STRING)) {
+                    try {
+                        openingBook = new OpeningBook(Paths.get(value));
+                    } catch (final IOException ex) {
+                        send("info string Cannot open the book \"" + value + 
+                             "\": " + ex);
+                    }
+                }
+            
+                break;
+            
+            case "tablebasepath":
+                closeTablebases();
+                discardEngine();
+            
+                if (!value.isEmpty() && !value.equals(EMPTY_STRING)) {
+                    try {
+                        tablebases = new Tablebases(
+                                Paths.get(value), 
+                                Tablebases.DEFAULT_CACHE_SIZE_IN_KILOBYTES);
+                    } catch (final IOException ex) {
+                        send("info string Cannot open the tablebases \"" + 
+                             value + "\": " + ex);
+                    }
+                }
+            
+                break;
+            
+            case "uci_variant":
+                variant = parseVariant(value);
+                position = createStartPosition();
+            
+                if (engine != null) {
+                    engine.getTranspositionTable().clear();
+                }
+            
+                break;
+            
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown option \"" + name + "\".");
+        }
+    }
+    
+    /**
+     * Handles {@code position [startpos | fen <fen>] [moves <move>...]}.
+     */
+    private void setPosition(final String[] tokens) {
+        int index = 1;
+        final Position state;
+        
+        if (tokens.length > 1 && tokens[1].equals("startpos")) {
+            state = createStartPosition();
+            index = 2;
+        } else if (tokens.length > 1 && tokens[1].equals("fen")) {
+            if (!variant.isStandard()) {
+                throw new IllegalArgumentException(
+                        "No FEN support for " + variant.getName() + ".");
+            }
+            
+            final StringBuilder fen = new StringBuilder();
+            
+            for (index = 2; 
+                    index < tokens.length && !tokens[index].equals("moves");
+                    ++index) {
+                fen.append(tokens[index]).append(' ');
+            }
+            
+            state = Fen.parse(fen.toString());
+        } else {
+            throw new IllegalArgumentException("Bad position command.");
+        }
+        
+        if (index < tokens.length && tokens[index].equals("moves")) {
+            for (++index; index < tokens.length; ++index) {
+                state.makeMove(parseMove(state, tokens[index]));
+            }
+        }
+        
+        position = state;
+    }
+    
+    /**
+     * Handles {@code go} with the time controls {@code wtime}, 
+     * {@code btime}, {@code winc}, {@code binc}, {@code movestogo} and 
+     * {@code movetime}, the limits {@code depth}, {@code nodes} and 
+     * {@code infinite}, and {@code ponder}.
+     */
+    private void go(final String[] tokens) {
+        final SearchLimits limits = new SearchLimits();
+        final boolean white = position.getSideToMove() == ChessColor.WHITE;
+        long time = -1L;
+        long increment = 0L;
+        long moveTime = -1L;
+        int movesToGo = DEFAULT_MOVES_TO_GO;
+        boolean infinite = false;
+        
+        for (int i = 1; i < tokens.length; ++i) {
+            switch (tokens[i]) {
+                case "infinite":
+                    infinite = true;
+                    continue;
+                
+                case "ponder":
+                    limits.setPonder(true);
+                    continue;
+            }
+            
+            if (i + 1 == tokens.length) {
+                break;
+            }
+            
+            final String value = tokens[++i];
+            
+            try {
+                switch (tokens[i - 1]) {
+                    case "wtime":
+                        time = white ? Long.parseLong(value) : time;
+                        break;
+                    
+                    case "btime":
+                        time = white ? time : Long.parseLong(value);
+                        break;
+                    
+                    case "winc":
+                        increment = white ? 
+                                    Long.parseLong(value) : 
+                                    increment;
+                        break;
+                    
+                    case "binc":
+                        increment = white ? 
+                                    increment : 
+                                    Long.parseLong(value);
+                        break;
+                    
+                    case "movestogo":
+                        movesToGo = Math.max(1, Integer.parseInt(value));
+                        break;
+                    
+                    case "movetime":
+                        moveTime = Long.parseLong(value);
+                        break;
+                    
+                    case "depth":
+                        limits.setMaximumDepth(Integer.parseInt(value));
+                        break;
+                    
+                    case "nodes":
+                        limits.setNodeLimit(Long.parseLong(value));
+                        break;
+                    
+                    default:
+                        --i;
+                }
+            } catch (final NumberFormatException ex) {
+                throw new IllegalArgumentException(
+                        "Bad value of " + tokens[i - 1] + ": " + value, ex);
+            }
+        }
+        
+        if (!infinite) {
+            if (moveTime >= 0L) {
+                limits.setTimeLimitMillis(moveTime - MOVE_OVERHEAD_MILLIS);
+            } else if (time >= 0L) {
+                final long budget = time / movesToGo + increment * 3 / 4;
+                limits.setTimeLimitMillis(
+                        Math.min(budget, time - MOVE_OVERHEAD_MILLIS));
+            }
+        }
+        
+        final SearchEngine searchEngine = getEngine();
+        final Position root = position;
+        final CountDownLatch signal = new CountDownLatch(infinite ? 1 : 0);
+        stopSignal = signal;
+        searchLimits = limits;
+        
+        search = sessionExecutor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException, InterruptedException {
+                SearchResult result = null;
+                
+                try {
+                    result = searchEngine.search(root, 
+                                                 limits, 
+                                                 new InfoSender(searchEngine,
+                                                                root));
+                } catch (final RuntimeException ex) {
+                    // The GUI waits for a best move whatever happens.
+                    send("info string The search failed: " + ex);
+                }
+                
+                // The protocol forbids an early best move when searching
+                // infinitely.
+                signal.await();
+                
+                if (result == null) {
+                    send("bestmove " + root.formatMove(Move.NONE));
+                    return null;
+                }
+                
+                final int[] pv = result.getPrincipalVariation();
+                send("bestmove " + root.formatMove(result.getBestMove()) + 
+                     (pv.length >= 2 ? 
+                      " ponder " + root.formatMove(pv[1]) : 
+                      ""));
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * Tells the pondering search that the opponent played the expected move.
+     */
+    private void ponderHit() {
+        if (engine != null && searchLimits != null) {
+            engine.ponderHit(searchLimits);
+        }
+    }
+    
+    /**
+     * Stops the running search, which then reports its best move.
+     */
+    private void stop() {
+        stopSignal.countDown();
+        
+        if (engine != null) {
+            // A pondering search that has not started yet must not wait for
+            // its ponder hit.
+            ponderHit();
+            engine.stop();
+        }
+    }
+    
+    /**
+     * Waits for the running search to report its best move, stopping it 
+     * first.
+     */
+    private void awaitSearch() {
+        if (search == null) {
+            return;
+        }
+        
+        stop();
+        
+        try {
+            search.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException ex) {
+            // The search failed or the client is gone; the next command 
+            // finds out.
+        }
+        
+        search = null;
+        searchLimits = null;
+    }
+    
+    private SearchEngine getEngine() {
+        if (engine == null) {
+            engine = new SearchEngine(
+                    threads,
+                    new TranspositionTable(hashSizeInMegabytes),
+                    searchExecutor);
+            engine.setOpeningBook(openingBook);
+            engine.setTablebases(tablebases);
+        }
+        
+        return engine;
+    }
+    
+    /**
+     * Returns a new game state holding the starting position of the current
+     * variant.
+     */
+    private Position createStartPosition() {
+        return variant.isStandard() ? 
+               new ChessGameState() : 
+               variant.createGameState();
+    }
+    
+    private void discardEngine() {
+        if (engine != null) {
+            engine.shutdown();
+            engine = null;
+        }
+    }
+    
+    private void closeOpeningBook() {
+        if (openingBook != null) {
+            try {
+                openingBook.close();
+            } catch (final IOException ignored) {}
+            
+            openingBook = null;
+        }
+    }
+    
+    private void closeTablebases() {
+        if (tablebases != null) {
+            try {
+                tablebases.close();
+            } catch (final IOException ignored) {}
+            
+            tablebases = null;
+        }
+    }
+    
+    private static ChessVariant parseVariant(final String value) {
+        for (int i = 0; i < VARIANTS.length; ++i) {
+            if (VARIANT_NAMES[i].equalsIgnoreCase(value)) {
+                return VARIANTS[i];
+            }
+        }
+        
+        throw new IllegalArgumentException(
+                "Unknown variant \"" + value + "\".");
+    }
+    
+    /**
+     * Parses the move {@code text} in the long algebraic notation, which 
+     * must be legal in {@code state}.
+     */
+    private static int parseMove(final Position state, final String text) {
+        return state instanceof ChessGameState ? 
+               Move.parse((ChessGameState) state, text) : 
+               VariantMove.parse((VariantGameState) state, text);
+    }
+    
+    private static int parseSpin(final String name,
+                                 final String value,
+                                 final int minimum,
+                                 final int maximum) {
+        try {
+            final int spin = Integer.parseInt(value);
+            
+            if (spin >= minimum && spin <= maximum) {
+                return spin;
+            }
+        } catch (final NumberFormatException ex) {
+            // Reported below.
+        }
+        
+        throw new IllegalArgumentException(
+                "The value of " + name + " must be within [" + minimum + 
+                ", " + maximum + "], received \"" + value + "\".");
+    }
+    
+    /**
+     * Writes the line {@code line} and flushes it. Called by both the 
+     * session thread and the search thread.
+     */
+    private void send(final String line) throws IOException {
+        synchronized (output) {
+            output.write(line);
+            output.write('\n');
+            output.flush();
+        }
+    }
+    
+    /**
+     * Formats the score of the result {@code result} as in UCI.
+     */
+    private static String formatScore(final SearchResult result) {
+        return result.isMateScore() ?
+               "mate " + result.getMovesToMate() :
+               "cp " + result.getScore();
+    }
+    
+    /**
+     * Reports each completed iteration as an {@code info} line.
+     */
+    private final class InfoSender implements SearchListener {
+        
+        private final SearchEngine searchEngine;
+        
+        /**
+         * The root of the search, which formats the moves.
+         */
+        private final Position root;
+        
+        InfoSender(final SearchEngine searchEngine, final Position root) {
+            this.searchEngine = searchEngine;
+            this.root = root;
+        }
+        
+        @Override
+        public void searchProgress(final SearchResult progress) {
+            final StringBuilder sb = new StringBuilder("info");
+            sb.append(" depth ").append(progress.getDepth())
+              .append(" score ").append(formatScore(progress))
+              .append(" nodes ").append(progress.getNodes())
+              .append(" nps ").append(progress.getNodesPerSecond())
+              .append(" time ").append(progress.getTimeMillis())
+              .append(" hashfull ")
+              .append(searchEngine.getTranspositionTable().getHashFull())
+              .append(" pv");
+            
+            for (final int move : progress.getPrincipalVariation()) {
+                sb.append(' ').append(root.formatMove(move));
+            }
+            
+            try {
+                send(sb.toString());
+            } catch (final IOException ex) {
+                // The client is gone; the session notices on its next read.
+            }
+        }
+        
+        @Override
+        public void searchFinished(final SearchResult result) {}
+    }
+}
@@ -0,0 +1,81 @@
+package net.coderodde.games.chess.variant;
+
+/**
+ * This class contains the operations on the {@code long[]} bitsets the
+ * generic game state uses in place of the 64-bit bitboards. Bit {@code i}
+ * of a bitset is bit {@code i & 63} of the long {@code i >>> 6}.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+final class Bitsets {
+    
+    private Bitsets() {}
+    
+    static boolean get(final long[] bitset, final int index) {
+        return (bitset[index >>> 6] & (1L << index)) != 0L;
+    }
+    
+    static void set(final long[] bitset, final int index) {
+        bitset[index >>> 6] |= 1L << index;
+    }
+    
+    static void clear(final long[] bitset, final int index) {
+        bitset[index >>> 6] &= ~(1L << index);
+    }
+    
+    static void clear(final long[] bitset) {
+        for (int i = 0; i < bitset.length; ++i) {
+            bitset[i] = 0L;
+        }
+    }
+    
+    static int count(final long[] bitset) {
+        int count = 0;
+        
+        for (final long word : bitset) {
+            count += Long.bitCount(word);
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Returns the index of the lowest set bit at or above {@code from}, or
+     * -1 if there is none.
+     */
+    static int nextSetBit(final long[] bitset, final int from) {
+        int i = from >>> 6;
+        
+        if (i >= bitset.length) {
+            return -1;
+        }
+        
+        long word = bitset[i] & (-1L << from);
+        
+        while (true) {
+            if (word != 0L) {
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+            
+            if (++i == bitset.length) {
+                return -1;
+            }
+            
+            word = bitset[i];
+        }
+    }
+    
+    /**
+     * Returns whether {@code a} and {@code b} have a set bit in common.
+     */
+    static boolean intersects(final long[] a, final long[] b) {
+        for (int i = 0; i < a.length; ++i) {
+            if ((a[i] & b[i]) != 0L) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+}
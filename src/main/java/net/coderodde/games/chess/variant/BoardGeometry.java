@@ -0,0 +1,319 @@
+package net.coderodde.games.chess.variant;
+
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessPiece;
+
+/**
+ * This class describes a rectangular board of any size up to
+ * {@link #MAX_SIZE} by {@link #MAX_SIZE} squares, together with the tables
+ * the generic move generator needs: the leaper attacks as bitsets, the
+ * sliding rays as square lists and the Zobrist keys. Square {@code 0} is
+ * <i>a1</i>, and the squares are numbered rank by rank, so that the square
+ * of the file {@code f} and the rank {@code r} is {@code r * width + f}.
+ * <p>
+ * The geometries are immutable and may be shared by any number of game
+ * states and threads.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class BoardGeometry {
+    
+    /**
+     * The minimum width and height of a board.
+     */
+    public static final int MIN_SIZE = 4;
+    
+    /**
+     * The maximum width and height of a board. The squares of the largest
+     * board fit in the 8 bits the generic moves reserve for them.
+     */
+    public static final int MAX_SIZE = 16;
+    
+    /**
+     * The number of sliding directions. The first four are orthogonal, the
+     * last four diagonal.
+     */
+    static final int DIRECTIONS = 8;
+    
+    private static final int[] DIRECTION_FILE_DELTAS =
+            { 0, 1,  0, -1,  1, -1, -1,  1 };
+    
+    private static final int[] DIRECTION_RANK_DELTAS =
+            { 1, 0, -1,  0,  1,  1, -1, -1 };
+    
+    private static final int[] KNIGHT_FILE_DELTAS =
+            { 1, 2,  2,  1, -1, -2, -2, -1 };
+    
+    private static final int[] KNIGHT_RANK_DELTAS =
+            { 2, 1, -1, -2, -2, -1,  1,  2 };
+    
+    private static final long SEED = 0x5eedc0dde5eedL;
+    
+    private final int width;
+    private final int height;
+    private final int squareCount;
+    
+    /**
+     * The number of longs of a bitset holding one bit per square.
+     */
+    private final int words;
+    
+    // The leaper attacks indexed by the squares.
+    final long[][] knightAttacks;
+    final long[][] kingAttacks;
+    
+    /**
+     * The squares attacked by a pawn, indexed by its color ordinal and its
+     * square.
+     */
+    final long[][][] pawnAttacks;
+    
+    /**
+     * The squares along each ray, nearest first, indexed by the direction
+     * and the origin square.
+     */
+    final int[][][] rays;
+    
+    // The Zobrist keys.
+    final long[][] pieceSquareKeys;
+    final long[] castlingKeys = new long[16];
+    final long[] enPassantKeys;
+    final long blackToMoveKey;
+    
+    /**
+     * Constructs the geometry of a board of {@code width} files and
+     * {@code height} ranks.
+     * 
+     * @param width  the number of files.
+     * @param height the number of ranks.
+     * @throws IllegalArgumentException if a dimension is out of range.
+     */
+    public BoardGeometry(final int width, final int height) {
+        checkSize("width", width);
+        checkSize("height", height);
+        this.width = width;
+        this.height = height;
+        this.squareCount = width * height;
+        this.words = (squareCount + 63) >>> 6;
+        this.knightAttacks = new long[squareCount][];
+        this.kingAttacks = new long[squareCount][];
+        this.pawnAttacks = new long[2][squareCount][];
+        this.rays = new int[DIRECTIONS][squareCount][];
+        
+        for (int square = 0; square < squareCount; ++square) {
+            final int file = file(square);
+            final int rank = rank(square);
+            
+            knightAttacks[square] =
+                    leaperAttacks(file,
+                                  rank,
+                                  KNIGHT_FILE_DELTAS,
+                                  KNIGHT_RANK_DELTAS);
+            kingAttacks[square] =
+                    leaperAttacks(file,
+                                  rank,
+                                  DIRECTION_FILE_DELTAS,
+                                  DIRECTION_RANK_DELTAS);
+            pawnAttacks[ChessColor.WHITE.ordinal()][square] =
+                    leaperAttacks(file,
+                                  rank,
+                                  new int[] { -1, 1 },
+                                  new int[] {  1, 1 });
+            pawnAttacks[ChessColor.BLACK.ordinal()][square] =
+                    leaperAttacks(file,
+                                  rank,
+                                  new int[] { -1,  1 },
+                                  new int[] { -1, -1 });
+            
+            for (int direction = 0; direction < DIRECTIONS; ++direction) {
+                rays[direction][square] = ray(file, rank, direction);
+            }
+        }
+        
+        // The keys depend on the dimensions, so that equal piece placements
+        // on different boards hash differently.
+        long state = SEED ^ (width * 31L + height);
+        this.pieceSquareKeys = new long[ChessPiece.CODES][squareCount];
+        
+        for (final long[] keys : pieceSquareKeys) {
+            for (int i = 0; i < keys.length; ++i) {
+                keys[i] = mix(state += 0x9e3779b97f4a7c15L);
+            }
+        }
+        
+        for (int i = 1; i < castlingKeys.length; ++i) {
+            castlingKeys[i] = mix(state += 0x9e3779b97f4a7c15L);
+        }
+        
+        this.enPassantKeys = new long[width];
+        
+        for (int i = 0; i < width; ++i) {
+            enPassantKeys[i] = mix(state += 0x9e3779b97f4a7c15L);
+        }
+        
+        this.blackToMoveKey = mix(state + 0x9e3779b97f4a7c15L);
+    }
+    
+    public int getWidth() {
+        return width;
+    }
+    
+    public int getHeight() {
+        return height;
+    }
+    
+    public int getSquareCount() {
+        return squareCount;
+    }
+    
+    /**
+     * Returns whether this is the standard 8x8 board, which the bitboard
+     * based {@link net.coderodde.games.chess.ChessGameState} handles faster.
+     * 
+     * @return {@code true} for the 8x8 board.
+     */
+    public boolean isStandard() {
+        return width == 8 && height == 8;
+    }
+    
+    public int square(final int file, final int rank) {
+        return rank * width + file;
+    }
+    
+    public int file(final int square) {
+        return square % width;
+    }
+    
+    public int rank(final int square) {
+        return square / width;
+    }
+    
+    /**
+     * Returns the algebraic name of the square {@code square}, such as
+     * <i>j8</i> or <i>a10</i>.
+     * 
+     * @param square the square index.
+     * @return the name of the square.
+     */
+    public String squareName(final int square) {
+        return (char)('a' + file(square)) + Integer.toString(rank(square) + 1);
+    }
+    
+    /**
+     * Parses the algebraic square name such as <i>e4</i> or <i>a10</i>.
+     * 
+     * @param name the name of the square.
+     * @return the square index.
+     * @throws IllegalArgumentException if the name is not a square of this
+     *                                  board.
+     */
+    public int parseSquare(final String name) {
+        if (name.length() < 2) {
+            throw new IllegalArgumentException(
+                    "Bad square name: \"" + name + "\".");
+        }
+        
+        final int file = name.charAt(0) - 'a';
+        final int rank;
+        
+        try {
+            rank = Integer.parseInt(name.substring(1)) - 1;
+        } catch (final NumberFormatException ex) {
+            throw new IllegalArgumentException(
+                    "Bad square name: \"" + name + "\".", ex);
+        }
+        
+        if (file < 0 || file >= width || rank < 0 || rank >= height) {
+            throw new IllegalArgumentException(
+                    "Bad square name: \"" + name + "\".");
+        }
+        
+        return square(file, rank);
+    }
+    
+    /**
+     * Returns a new empty bitset with one bit per square of this board.
+     * 
+     * @return the new bitset.
+     */
+    long[] newBitset() {
+        return new long[words];
+    }
+    
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof BoardGeometry)) {
+            return false;
+        }
+        
+        final BoardGeometry other = (BoardGeometry) o;
+        return width == other.width && height == other.height;
+    }
+    
+    @Override
+    public int hashCode() {
+        return width * MAX_SIZE + height;
+    }
+    
+    @Override
+    public String toString() {
+        return width + "x" + height;
+    }
+    
+    private long[] leaperAttacks(final int file,
+                                 final int rank,
+                                 final int[] fileDeltas,
+                                 final int[] rankDeltas) {
+        final long[] attacks = newBitset();
+        
+        for (int i = 0; i < fileDeltas.length; ++i) {
+            final int targetFile = file + fileDeltas[i];
+            final int targetRank = rank + rankDeltas[i];
+            
+            if (contains(targetFile, targetRank)) {
+                Bitsets.set(attacks, square(targetFile, targetRank));
+            }
+        }
+        
+        return attacks;
+    }
+    
+    private int[] ray(final int file, final int rank, final int direction) {
+        final int[] squares = new int[MAX_SIZE];
+        int length = 0;
+        int targetFile = file + DIRECTION_FILE_DELTAS[direction];
+        int targetRank = rank + DIRECTION_RANK_DELTAS[direction];
+        
+        while (contains(targetFile, targetRank)) {
+            squares[length++] = square(targetFile, targetRank);
+            targetFile += DIRECTION_FILE_DELTAS[direction];
+            targetRank += DIRECTION_RANK_DELTAS[direction];
+        }
+        
+        final int[] result = new int[length];
+        System.arraycopy(squares, 0, result, 0, length);
+        return result;
+    }
+    
+    private boolean contains(final int file, final int rank) {
+        return file >= 0 && file < width && rank >= 0 && rank < height;
+    }
+    
+    private static void checkSize(final String name, final int size) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException(
+                    "The board " + name + " must be within [" + MIN_SIZE +
+                    ", " + MAX_SIZE + "], received " + size + ".");
+        }
+    }
+    
+    /**
+     * The SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
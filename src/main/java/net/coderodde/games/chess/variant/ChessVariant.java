@@ -0,0 +1,146 @@
+package net.coderodde.games.chess.variant;
+
+import java.util.Arrays;
+import java.util.Objects;
+import net.coderodde.games.chess.ChessPieceType;
+
+/**
+ * This class describes a chess variant: a board size and the order of the
+ * pieces on the back rank, which may hold the archbishop and the chancellor
+ * of Capablanca chess besides the standard pieces. The standard
+ * variant is played faster with
+ * {@link net.coderodde.games.chess.ChessGameState} and its bitboard move
+ * generator, which {@link #isStandard()} tells apart; the moves of every
+ * other variant are generated with a {@link VariantGameState}, which the
+ * search engine plays as well.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class ChessVariant {
+    
+    /**
+     * The standard chess.
+     */
+    public static final ChessVariant STANDARD =
+            new ChessVariant("Standard", 8, 8, "RNBQKBNR");
+    
+    /**
+     * Capablanca chess, played on a 10x8 board with an archbishop and a
+     * chancellor on each side.
+     */
+    public static final ChessVariant CAPABLANCA =
+            new ChessVariant("Capablanca", 10, 8, "RNABQKBCNR");
+    
+    private final String name;
+    private final BoardGeometry geometry;
+    private final ChessPieceType[] backRank;
+    
+    /**
+     * Constructs a variant played on a board of {@code width} files and
+     * {@code height} ranks, with the back rank written as piece letters from
+     * the <i>a</i>-file, such as {@code "RNBQKBNR"}. The letter {@code A}
+     * denotes an archbishop and {@code C} a chancellor.
+     * 
+     * @param name     the name of the variant.
+     * @param width    the number of files.
+     * @param height   the number of ranks.
+     * @param backRank the back rank in piece letters.
+     * @throws IllegalArgumentException if the board size or the back rank
+     *                                  is invalid.
+     */
+    public ChessVariant(final String name,
+                        final int width,
+                        final int height,
+                        final String backRank) {
+        this.name = Objects.requireNonNull(name, "The input name is null.");
+        this.geometry = new BoardGeometry(width, height);
+        this.backRank = parseBackRank(
+                Objects.requireNonNull(backRank,
+                                       "The input back rank is null."));
+        
+        // Fail fast on a bad back rank.
+        new VariantGameState(geometry, this.backRank);
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+    
+    public ChessPieceType[] getBackRank() {
+        return backRank.clone();
+    }
+    
+    /**
+     * Returns whether this variant is the standard chess, which should be
+     * played with the bitboard based game state.
+     * 
+     * @return {@code true} for the standard chess.
+     */
+    public boolean isStandard() {
+        return geometry.isStandard()
+                && Arrays.equals(backRank, STANDARD.backRank);
+    }
+    
+    /**
+     * Returns a new game state holding the starting position of this
+     * variant.
+     * 
+     * @return the new game state.
+     */
+    public VariantGameState createGameState() {
+        return new VariantGameState(geometry, backRank);
+    }
+    
+    @Override
+    public String toString() {
+        return name + " (" + geometry + ")";
+    }
+    
+    private static ChessPieceType[] parseBackRank(final String backRank) {
+        final ChessPieceType[] types = new ChessPieceType[backRank.length()];
+        
+        for (int i = 0; i < types.length; ++i) {
+            switch (Character.toUpperCase(backRank.charAt(i))) {
+                case 'K':
+                    types[i] = ChessPieceType.KING;
+                    break;
+                
+                case 'Q':
+                    types[i] = ChessPieceType.QUEEN;
+                    break;
+                
+                case 'R':
+                    types[i] = ChessPieceType.ROOK;
+                    break;
+                
+                case 'B':
+                    types[i] = ChessPieceType.BISHOP;
+                    break;
+                
+                case 'N':
+                    types[i] = ChessPieceType.KNIGHT;
+                    break;
+                
+                case 'A':
+                    types[i] = ChessPieceType.ARCHBISHOP;
+                    break;
+                
+                case 'C':
+                    types[i] = ChessPieceType.CHANCELLOR;
+                    break;
+                
+                default:
+                    throw new IllegalArgumentException(
+                            "Bad back rank piece '" + backRank.charAt(i) +
+                            "' in \"" + backRank + "\".");
+            }
+        }
+        
+        return types;
+    }
+}
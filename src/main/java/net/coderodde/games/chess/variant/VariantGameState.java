@@ -0,0 +1,1054 @@
+package net.coderodde.games.chess.variant;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import net.coderodde.games.chess.Bitboards;
+import net.coderodde.games.chess.BoardListener;
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.ChessPiece;
+import net.coderodde.games.chess.ChessPieceType;
+import net.coderodde.games.chess.GameResult;
+import net.coderodde.games.chess.Move;
+import net.coderodde.games.chess.Position;
+
+/**
+ * This class maintains the game state of a chess match on a board of any
+ * {@link BoardGeometry}. It is the generic counterpart of
+ * {@link ChessGameState}: the position is stored as one {@code long[]}
+ * bitset per color/piece type pair next to a mailbox, and the moves are
+ * played in place with {@link #makeMove(int)} and taken back with
+ * {@link #unmakeMove()}, both updating the Zobrist key incrementally. The
+ * moves are packed by {@link VariantMove}. As a {@link Position} the game 
+ * state is searched by the same engine and evaluators as the standard one.
+ * <p>
+ * The pieces start on the first and the last rank in the order of the back
+ * rank given, with the pawns in front of them. The back rank may hold the
+ * archbishop and the chancellor of Capablanca chess. The pawns promote on
+ * the last rank, to a queen, a rook, a bishop, a knight or a compound piece
+ * of the back rank, and may advance two squares from their starting rank.
+ * A king castles with the outermost rook on either side, provided they are
+ * at least three files apart: the king moves to the third file from the
+ * edge, and the rook to the square next to it on the inner side, as in the
+ * standard chess and in Capablanca chess. All the squares between the king,
+ * the rook and their targets must be empty.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class VariantGameState implements Position {
+    
+    private static final int PIECE_TYPES = ChessGameState.PIECE_TYPES;
+    private static final int PIECE_CODES = ChessPiece.CODES;
+    private static final int KING = ChessPieceType.KING.ordinal();
+    private static final int ROOK = ChessPieceType.ROOK.ordinal();
+    private static final int PAWN = ChessPieceType.PAWN.ordinal();
+    private static final byte EMPTY = ChessPiece.NONE;
+    
+    /**
+     * The color ordinal and the type ordinal of each piece code.
+     */
+    private static final int[] COLOR_INDICES = new int[PIECE_CODES];
+    private static final int[] TYPE_INDICES  = new int[PIECE_CODES];
+    
+    static {
+        for (int code = 0; code < PIECE_CODES; ++code) {
+            final ChessPiece piece = ChessPiece.valueOf(code);
+            COLOR_INDICES[code] = piece.getColor().ordinal();
+            TYPE_INDICES[code]  = piece.getType().ordinal();
+        }
+    }
+    
+    /**
+     * The piece types every pawn may promote to.
+     */
+    private static final ChessPieceType[] STANDARD_PROMOTIONS = {
+        ChessPieceType.QUEEN,
+        ChessPieceType.ROOK,
+        ChessPieceType.BISHOP,
+        ChessPieceType.KNIGHT,
+    };
+    
+    private static final int INITIAL_HISTORY_CAPACITY = 256;
+    
+    // The layout of the undo records: the move, the captured piece code plus
+    // one, the castling rights, the en passant square plus one and the
+    // halfmove clock.
+    private static final int UNDO_CAPTURE_SHIFT    = 22;
+    private static final int UNDO_CASTLING_SHIFT   = 27;
+    private static final int UNDO_EN_PASSANT_SHIFT = 31;
+    private static final int UNDO_HALFMOVE_SHIFT   = 40;
+    private static final long UNDO_MOVE_MASK       = (1L << 22) - 1;
+    
+    private final BoardGeometry geometry;
+    private final ChessPieceType[] backRank;
+    
+    /**
+     * The piece types the pawns promote to: the standard ones followed by
+     * the compound pieces of the back rank.
+     */
+    private final ChessPieceType[] promotions;
+    
+    /**
+     * The rook squares of the castling rights, indexed by the bit indices
+     * of the rights, or {@link Bitboards#NO_SQUARE}.
+     */
+    private final int[] castlingRookSquares = new int[4];
+    
+    /**
+     * The castling rights possible from the starting position.
+     */
+    private final int availableCastlingRights;
+    
+    /**
+     * The castling rights surviving a move from or to each square.
+     */
+    private final int[] castlingRightsMasks;
+    
+    /**
+     * The piece bitsets indexed by piece codes.
+     */
+    private final long[][] pieceBitsets = new long[PIECE_CODES][];
+    
+    /**
+     * The occupancy bitsets indexed by color ordinals.
+     */
+    private final long[][] colorBitsets = new long[2][];
+    
+    /**
+     * The piece code of each square, or -1 for an empty one.
+     */
+    private final byte[] mailbox;
+    
+    private ChessColor sideToMove;
+    private int castlingRights;
+    private int enPassantSquare;
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    private long zobristKey;
+    
+    private long[] undoRecords = new long[INITIAL_HISTORY_CAPACITY];
+    private long[] keyHistory = new long[INITIAL_HISTORY_CAPACITY];
+    private int historySize;
+    
+    /**
+     * The move buffer of {@link #checkVictory()}, allocated on first use.
+     */
+    private int[] moveBuffer;
+    
+    /**
+     * The listener notified of the piece changes, or {@code null}.
+     */
+    private BoardListener boardListener;
+    
+    /**
+     * Constructs the starting position of the board {@code geometry} with
+     * the pieces {@code backRank} on the first and the last rank, listed
+     * from the <i>a</i>-file.
+     * 
+     * @param geometry the board.
+     * @param backRank the back rank pieces.
+     * @throws IllegalArgumentException if the back rank does not span the
+     *                                  board, or does not hold exactly one
+     *                                  king and no pawns.
+     */
+    public VariantGameState(final BoardGeometry geometry,
+                            final ChessPieceType[] backRank) {
+        this.geometry = Objects.requireNonNull(geometry,
+                                               "The input geometry is null.");
+        this.backRank = checkBackRank(geometry, backRank).clone();
+        this.mailbox = new byte[geometry.getSquareCount()];
+        this.promotions = computePromotions(this.backRank);
+        
+        for (int i = 0; i < PIECE_CODES; ++i) {
+            pieceBitsets[i] = geometry.newBitset();
+        }
+        
+        colorBitsets[0] = geometry.newBitset();
+        colorBitsets[1] = geometry.newBitset();
+        
+        final int kingFile = Arrays.asList(backRank)
+                                   .indexOf(ChessPieceType.KING);
+        final int lastRank = geometry.getHeight() - 1;
+        int rights = 0;
+        
+        Arrays.fill(castlingRookSquares, Bitboards.NO_SQUARE);
+        this.castlingRightsMasks = new int[geometry.getSquareCount()];
+        Arrays.fill(castlingRightsMasks, ChessGameState.ALL_CASTLING_RIGHTS);
+        
+        for (int file = 0; file < kingFile - 2; ++file) {
+            if (backRank[file] == ChessPieceType.ROOK) {
+                rights |= ChessGameState.WHITE_QUEEN_SIDE_CASTLING
+                        | ChessGameState.BLACK_QUEEN_SIDE_CASTLING;
+                castlingRookSquares[1] = geometry.square(file, 0);
+                castlingRookSquares[3] = geometry.square(file, lastRank);
+                break;
+            }
+        }
+        
+        for (int file = geometry.getWidth() - 1; file > kingFile + 2; --file) {
+            if (backRank[file] == ChessPieceType.ROOK) {
+                rights |= ChessGameState.WHITE_KING_SIDE_CASTLING
+                        | ChessGameState.BLACK_KING_SIDE_CASTLING;
+                castlingRookSquares[0] = geometry.square(file, 0);
+                castlingRookSquares[2] = geometry.square(file, lastRank);
+                break;
+            }
+        }
+        
+        this.availableCastlingRights = rights;
+        
+        for (int right = 0; right < 4; ++right) {
+            if (castlingRookSquares[right] != Bitboards.NO_SQUARE) {
+                castlingRightsMasks[castlingRookSquares[right]] &=
+                        ~(1 << right);
+            }
+        }
+        
+        castlingRightsMasks[geometry.square(kingFile, 0)] &=
+                ~(ChessGameState.WHITE_KING_SIDE_CASTLING |
+                  ChessGameState.WHITE_QUEEN_SIDE_CASTLING);
+        castlingRightsMasks[geometry.square(kingFile, lastRank)] &=
+                ~(ChessGameState.BLACK_KING_SIDE_CASTLING |
+                  ChessGameState.BLACK_QUEEN_SIDE_CASTLING);
+        
+        populateBoard();
+    }
+    
+    /**
+     * Constructs a copy of the game state {@code other}.
+     * 
+     * @param other the game state to copy.
+     */
+    public VariantGameState(final VariantGameState other) {
+        this(other.geometry, other.backRank);
+        copyFrom(other);
+    }
+    
+    /**
+     * {@inheritDoc} A game state is copied into another
+     * {@code VariantGameState} of the same board and back rank.
+     */
+    @Override
+    public Position copyInto(final Position target) {
+        if (target instanceof VariantGameState
+                && ((VariantGameState) target).isSameVariant(this)) {
+            ((VariantGameState) target).copyFrom(this);
+            return target;
+        }
+        
+        return new VariantGameState(this);
+    }
+    
+    /**
+     * Makes this game state identical to {@code other}, which must have the
+     * same board and back rank. Does not allocate unless the move history
+     * of {@code other} is longer.
+     * 
+     * @param other the game state to copy.
+     */
+    public void copyFrom(final VariantGameState other) {
+        if (!isSameVariant(other)) {
+            throw new IllegalArgumentException(
+                    "Cannot copy a game state of another variant.");
+        }
+        
+        if (boardListener != null) {
+            notifyAllPieces(false);
+        }
+        
+        for (int i = 0; i < PIECE_CODES; ++i) {
+            System.arraycopy(other.pieceBitsets[i],
+                             0,
+                             pieceBitsets[i],
+                             0,
+                             pieceBitsets[i].length);
+        }
+        
+        for (int i = 0; i < 2; ++i) {
+            System.arraycopy(other.colorBitsets[i],
+                             0,
+                             colorBitsets[i],
+                             0,
+                             colorBitsets[i].length);
+        }
+        
+        System.arraycopy(other.mailbox, 0, mailbox, 0, mailbox.length);
+        sideToMove      = other.sideToMove;
+        castlingRights  = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock   = other.halfmoveClock;
+        fullmoveNumber  = other.fullmoveNumber;
+        zobristKey      = other.zobristKey;
+        historySize     = other.historySize;
+        
+        if (undoRecords.length < historySize) {
+            undoRecords = new long[other.undoRecords.length];
+            keyHistory  = new long[other.keyHistory.length];
+        }
+        
+        System.arraycopy(other.undoRecords, 0, undoRecords, 0, historySize);
+        System.arraycopy(other.keyHistory,  0, keyHistory,  0, historySize);
+        
+        if (boardListener != null) {
+            notifyAllPieces(true);
+        }
+    }
+    
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+    
+    @Override
+    public int getBoardWidth() {
+        return geometry.getWidth();
+    }
+    
+    @Override
+    public int getBoardHeight() {
+        return geometry.getHeight();
+    }
+    
+    @Override
+    public ChessPiece getPieceAt(final int file, final int rank) {
+        return getPiece(geometry.square(file, rank));
+    }
+    
+    @Override
+    public byte getPieceCodeAt(final int file, final int rank) {
+        return mailbox[geometry.square(file, rank)];
+    }
+    
+    @Override
+    public int getSquareCount() {
+        return geometry.getSquareCount();
+    }
+    
+    @Override
+    public int getMaxMoves() {
+        return VariantMoveGenerator.MAX_MOVES;
+    }
+    
+    @Override
+    public ChessPiece getPiece(final int square) {
+        return ChessPiece.valueOf(mailbox[square]);
+    }
+    
+    @Override
+    public byte getPieceCode(final int square) {
+        return mailbox[square];
+    }
+    
+    @Override
+    public ChessColor getSideToMove() {
+        return sideToMove;
+    }
+    
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+    
+    /**
+     * Returns the en passant square: the square skipped by the pawn that
+     * has just advanced two squares, provided an enemy pawn attacks it.
+     * 
+     * @return the en passant square or {@link Bitboards#NO_SQUARE}.
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+    
+    @Override
+    public long getZobristKey() {
+        return zobristKey;
+    }
+    
+    @Override
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+    
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+    
+    /**
+     * Returns the number of moves that may be taken back.
+     * 
+     * @return the size of the move history.
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+    
+    /**
+     * Returns the last move played, or {@link VariantMove#NONE}.
+     * 
+     * @return the last move.
+     */
+    public int getLastMove() {
+        return historySize == 0 ?
+               VariantMove.NONE :
+               (int)(undoRecords[historySize - 1] & UNDO_MOVE_MASK);
+    }
+    
+    @Override
+    public BoardListener getBoardListener() {
+        return boardListener;
+    }
+    
+    @Override
+    public void setBoardListener(final BoardListener boardListener) {
+        this.boardListener = boardListener;
+    }
+    
+    public void setHalfmoveClock(final int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+    
+    public void setFullmoveNumber(final int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+    
+    public void setSideToMove(final ChessColor sideToMove) {
+        Objects.requireNonNull(sideToMove, "The input side to move is null.");
+        
+        if (this.sideToMove != sideToMove) {
+            this.sideToMove = sideToMove;
+            zobristKey ^= geometry.blackToMoveKey;
+        }
+    }
+    
+    /**
+     * Sets the castling rights. The rights the back rank does not allow are
+     * dropped.
+     * 
+     * @param castlingRights the castling right bits of
+     *                       {@link ChessGameState}.
+     */
+    public void setCastlingRights(final int castlingRights) {
+        final int rights = castlingRights & availableCastlingRights;
+        zobristKey ^= geometry.castlingKeys[this.castlingRights]
+                    ^ geometry.castlingKeys[rights];
+        this.castlingRights = rights;
+    }
+    
+    public void setEnPassantSquare(final int enPassantSquare) {
+        toggleEnPassantKey();
+        this.enPassantSquare = enPassantSquare;
+        toggleEnPassantKey();
+    }
+    
+    /**
+     * Places a piece at the square {@code square}, replacing the piece that
+     * was there.
+     * 
+     * @param square the target square.
+     * @param color  the color of the new piece.
+     * @param type   the type of the new piece.
+     */
+    public void putPiece(final int square,
+                         final ChessColor color,
+                         final ChessPieceType type) {
+        Objects.requireNonNull(color, "The input piece color is null.");
+        Objects.requireNonNull(type, "The input piece type is null.");
+        removePiece(square);
+        addPiece(square, ChessPiece.code(color, type));
+    }
+    
+    /**
+     * Removes the piece at the square {@code square}, if there is one.
+     * 
+     * @param square the square to clear.
+     */
+    public void removePiece(final int square) {
+        final byte code = mailbox[square];
+        
+        if (code != EMPTY) {
+            Bitsets.clear(pieceBitsets[code], square);
+            Bitsets.clear(colorBitsets[COLOR_INDICES[code]], square);
+            mailbox[square] = EMPTY;
+            zobristKey ^= geometry.pieceSquareKeys[code][square];
+            
+            if (boardListener != null) {
+                boardListener.pieceRemoved(square, code);
+            }
+        }
+    }
+    
+    /**
+     * Removes all the pieces from the board and resets the rest of the state,
+     * including the move history.
+     */
+    public void clear() {
+        if (boardListener != null) {
+            notifyAllPieces(false);
+        }
+        
+        for (final long[] bitset : pieceBitsets) {
+            Bitsets.clear(bitset);
+        }
+        
+        Bitsets.clear(colorBitsets[0]);
+        Bitsets.clear(colorBitsets[1]);
+        Arrays.fill(mailbox, EMPTY);
+        sideToMove = ChessColor.WHITE;
+        castlingRights = 0;
+        enPassantSquare = Bitboards.NO_SQUARE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        zobristKey = 0L;
+        historySize = 0;
+    }
+    
+    /**
+     * Plays the move {@code move}, which must be legal in this position (see
+     * {@link VariantMoveGenerator#generateLegalMoves(VariantGameState,
+     * int[])}). The move may be taken back with {@link #unmakeMove()}.
+     * 
+     * @param move the packed move to play.
+     */
+    @Override
+    public void makeMove(final int move) {
+        final int from = VariantMove.getFrom(move);
+        final int to   = VariantMove.getTo(move);
+        final int kind = VariantMove.getKind(move);
+        final int us   = sideToMove.ordinal();
+        final boolean isPawnMove = mailbox[from] == us * PIECE_TYPES + PAWN;
+        final int captureSquare =
+                kind != Move.EN_PASSANT ? to : enPassantVictim(to, us);
+        final int captured = kind == Move.CASTLING ?
+                             EMPTY :
+                             mailbox[captureSquare];
+        
+        if (historySize == undoRecords.length) {
+            undoRecords = Arrays.copyOf(undoRecords, 2 * historySize);
+            keyHistory  = Arrays.copyOf(keyHistory,  2 * historySize);
+        }
+        
+        keyHistory[historySize] = zobristKey;
+        undoRecords[historySize++] =
+                  move
+                | ((long)(captured + 1) << UNDO_CAPTURE_SHIFT)
+                | ((long) castlingRights << UNDO_CASTLING_SHIFT)
+                | ((long)(enPassantSquare + 1) << UNDO_EN_PASSANT_SHIFT)
+                | ((long) halfmoveClock << UNDO_HALFMOVE_SHIFT);
+        
+        ++halfmoveClock;
+        
+        if (captured != EMPTY) {
+            removePiece(captureSquare);
+            halfmoveClock = 0;
+        }
+        
+        if (kind == Move.CASTLING) {
+            // The king may land on the rook square and the rook on the king
+            // square, so the rook is lifted first.
+            removePiece(castlingRookSquare(from, to, us));
+            movePiece(from, to);
+            addPiece(castlingRookTarget(from, to), us * PIECE_TYPES + ROOK);
+        } else if (VariantMove.isPromotion(move)) {
+            removePiece(from);
+            addPiece(to, ChessPiece.code(sideToMove,
+                                         VariantMove.getPromotion(move)));
+        } else {
+            movePiece(from, to);
+        }
+        
+        final int newCastlingRights = castlingRights
+                                    & castlingRightsMasks[from]
+                                    & castlingRightsMasks[to];
+        
+        if (newCastlingRights != castlingRights) {
+            zobristKey ^= geometry.castlingKeys[castlingRights]
+                        ^ geometry.castlingKeys[newCastlingRights];
+            castlingRights = newCastlingRights;
+        }
+        
+        toggleEnPassantKey();
+        enPassantSquare = Bitboards.NO_SQUARE;
+        
+        if (isPawnMove) {
+            halfmoveClock = 0;
+            
+            if (Math.abs(to - from) == 2 * geometry.getWidth()) {
+                final int skippedSquare = (from + to) >>> 1;
+                
+                // Record the en passant square only if an enemy pawn can
+                // actually capture there, so that equal positions have equal
+                // keys.
+                if (Bitsets.intersects(
+                        geometry.pawnAttacks[us][skippedSquare],
+                        pieceBitsets[(us ^ 1) * PIECE_TYPES + PAWN])) {
+                    enPassantSquare = skippedSquare;
+                    toggleEnPassantKey();
+                }
+            }
+        }
+        
+        if (sideToMove == ChessColor.BLACK) {
+            ++fullmoveNumber;
+            sideToMove = ChessColor.WHITE;
+        } else {
+            sideToMove = ChessColor.BLACK;
+        }
+        
+        zobristKey ^= geometry.blackToMoveKey;
+    }
+    
+    @Override
+    public void makeNullMove() {
+        if (historySize == undoRecords.length) {
+            undoRecords = Arrays.copyOf(undoRecords, 2 * historySize);
+            keyHistory  = Arrays.copyOf(keyHistory,  2 * historySize);
+        }
+        
+        keyHistory[historySize] = zobristKey;
+        undoRecords[historySize++] =
+                  VariantMove.NONE
+                | ((long) castlingRights << UNDO_CASTLING_SHIFT)
+                | ((long)(enPassantSquare + 1) << UNDO_EN_PASSANT_SHIFT)
+                | ((long) halfmoveClock << UNDO_HALFMOVE_SHIFT);
+        
+        toggleEnPassantKey();
+        enPassantSquare = Bitboards.NO_SQUARE;
+        halfmoveClock = 0;
+        
+        if (sideToMove == ChessColor.BLACK) {
+            ++fullmoveNumber;
+            sideToMove = ChessColor.WHITE;
+        } else {
+            sideToMove = ChessColor.BLACK;
+        }
+        
+        zobristKey ^= geometry.blackToMoveKey;
+    }
+    
+    /**
+     * Takes back the last move played with {@link #makeMove(int)} or
+     * {@link #makeNullMove()}.
+     * 
+     * @throws IllegalStateException if there is no move to take back.
+     */
+    @Override
+    public void unmakeMove() {
+        if (historySize == 0) {
+            throw new IllegalStateException("There is no move to unmake.");
+        }
+        
+        final long record = undoRecords[--historySize];
+        final int move = (int)(record & UNDO_MOVE_MASK);
+        final int from = VariantMove.getFrom(move);
+        final int to   = VariantMove.getTo(move);
+        
+        if (sideToMove == ChessColor.WHITE) {
+            --fullmoveNumber;
+            sideToMove = ChessColor.BLACK;
+        } else {
+            sideToMove = ChessColor.WHITE;
+        }
+        
+        if (move == VariantMove.NONE) {
+            enPassantSquare =
+                    (int)((record >>> UNDO_EN_PASSANT_SHIFT) & 0x1ff) - 1;
+            halfmoveClock = (int)(record >>> UNDO_HALFMOVE_SHIFT);
+            zobristKey    = keyHistory[historySize];
+            return;
+        }
+        
+        final int us   = sideToMove.ordinal();
+        final int kind = VariantMove.getKind(move);
+        
+        if (kind == Move.CASTLING) {
+            removePiece(castlingRookTarget(from, to));
+            movePiece(to, from);
+            addPiece(castlingRookSquare(from, to, us), 
+                     us * PIECE_TYPES + ROOK);
+        } else if (VariantMove.isPromotion(move)) {
+            removePiece(to);
+            addPiece(from, us * PIECE_TYPES + PAWN);
+        } else {
+            movePiece(to, from);
+        }
+        
+        final int captured =
+                (int)((record >>> UNDO_CAPTURE_SHIFT) & 0x1f) - 1;
+        
+        if (captured != EMPTY) {
+            addPiece(kind != Move.EN_PASSANT ? to : enPassantVictim(to, us),
+                     captured);
+        }
+        
+        castlingRights  = (int)((record >>> UNDO_CASTLING_SHIFT) & 0xf);
+        enPassantSquare =
+                (int)((record >>> UNDO_EN_PASSANT_SHIFT) & 0x1ff) - 1;
+        halfmoveClock   = (int)(record >>> UNDO_HALFMOVE_SHIFT);
+        zobristKey      = keyHistory[historySize];
+    }
+    
+    /**
+     * Checks whether the current position has occurred before since the last
+     * capture or pawn move, with the same side to move.
+     * 
+     * @return {@code true} if the position is a repetition.
+     */
+    @Override
+    public boolean isRepetition() {
+        return countRepetitions(1);
+    }
+    
+    /**
+     * Checks whether the current position has occurred at least twice
+     * before since the last capture or pawn move, with the same side to move.
+     * 
+     * @return {@code true} if the position occurred three times.
+     */
+    public boolean isThreefoldRepetition() {
+        return countRepetitions(2);
+    }
+    
+    /**
+     * Checks whether neither player can possibly checkmate: the kings are
+     * alone or accompanied by a single minor piece.
+     * 
+     * @return {@code true} if the material is insufficient for a checkmate.
+     */
+    @Override
+    public boolean isInsufficientMaterial() {
+        int minorPieces = 0;
+        
+        for (int code = 0; code < PIECE_CODES; ++code) {
+            final int type = TYPE_INDICES[code];
+            
+            if (type == KING) {
+                continue;
+            }
+            
+            final int count = Bitsets.count(pieceBitsets[code]);
+            
+            if (count == 0) {
+                continue;
+            }
+            
+            if (type != ChessPieceType.KNIGHT.ordinal()
+                    && type != ChessPieceType.BISHOP.ordinal()) {
+                return false;
+            }
+            
+            minorPieces += count;
+        }
+        
+        return minorPieces <= 1;
+    }
+    
+    @Override
+    public boolean hasNonPawnMaterial(final ChessColor color) {
+        for (int code = 0; code < PIECE_CODES; ++code) {
+            final int type = TYPE_INDICES[code];
+            
+            if (COLOR_INDICES[code] == color.ordinal()
+                    && type != KING
+                    && type != PAWN
+                    && Bitsets.count(pieceBitsets[code]) != 0) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    @Override
+    public int generateLegalMoves(final int[] moves) {
+        return VariantMoveGenerator.generateLegalMoves(this, moves);
+    }
+    
+    @Override
+    public int generateLegalCaptures(final int[] moves) {
+        return VariantMoveGenerator.generateLegalCaptures(this, moves);
+    }
+    
+    @Override
+    public boolean isInCheck() {
+        return VariantMoveGenerator.isInCheck(this);
+    }
+    
+    @Override
+    public int getMoveFrom(final int move) {
+        return VariantMove.getFrom(move);
+    }
+    
+    @Override
+    public int getMoveTo(final int move) {
+        return VariantMove.getTo(move);
+    }
+    
+    @Override
+    public boolean isEnPassant(final int move) {
+        return VariantMove.getKind(move) == Move.EN_PASSANT;
+    }
+    
+    @Override
+    public ChessPieceType getMovePromotion(final int move) {
+        return VariantMove.getPromotion(move);
+    }
+    
+    @Override
+    public String formatMove(final int move) {
+        return VariantMove.toString(geometry, move);
+    }
+    
+    /**
+     * Checks whether the game is over: by checkmate, stalemate, threefold
+     * repetition, the fifty-move rule or insufficient material.
+     * 
+     * @return the result of the game.
+     */
+    public GameResult checkVictory() {
+        if (kingSquare(sideToMove.ordinal()) == Bitboards.NO_SQUARE) {
+            return GameResult.checkmate(sideToMove);
+        }
+        
+        if (isInsufficientMaterial()) {
+            return GameResult.DRAW_BY_INSUFFICIENT_MATERIAL;
+        }
+        
+        if (isThreefoldRepetition()) {
+            return GameResult.DRAW_BY_THREEFOLD_REPETITION;
+        }
+        
+        if (moveBuffer == null) {
+            moveBuffer = new int[VariantMoveGenerator.MAX_MOVES];
+        }
+        
+        if (VariantMoveGenerator.generateLegalMoves(this, moveBuffer) == 0) {
+            return VariantMoveGenerator.isInCheck(this) ?
+                   GameResult.checkmate(sideToMove) :
+                   GameResult.DRAW_BY_STALEMATE;
+        }
+        
+        if (halfmoveClock >= 100) {
+            return GameResult.DRAW_BY_FIFTY_MOVE_RULE;
+        }
+        
+        return GameResult.IN_PROGRESS;
+    }
+    
+    long[] pieces(final int code) {
+        return pieceBitsets[code];
+    }
+    
+    long[] occupancy(final int colorIndex) {
+        return colorBitsets[colorIndex];
+    }
+    
+    int pieceCodeAt(final int square) {
+        return mailbox[square];
+    }
+    
+    /**
+     * Returns the piece types a pawn promotes to, which the caller must not
+     * modify.
+     */
+    ChessPieceType[] promotions() {
+        return promotions;
+    }
+    
+    /**
+     * Returns the color ordinal of the piece code {@code code}.
+     */
+    static int colorIndex(final int code) {
+        return COLOR_INDICES[code];
+    }
+    
+    /**
+     * Returns the type ordinal of the piece code {@code code}.
+     */
+    static int typeIndex(final int code) {
+        return TYPE_INDICES[code];
+    }
+    
+    /**
+     * Returns the square of the king of the color {@code colorIndex}, or
+     * {@link Bitboards#NO_SQUARE} if there is none.
+     */
+    int kingSquare(final int colorIndex) {
+        return Bitsets.nextSetBit(pieceBitsets[colorIndex * PIECE_TYPES + KING],
+                                  0);
+    }
+    
+    /**
+     * Returns the rook square of the castling right with the bit index
+     * {@code right}, or {@link Bitboards#NO_SQUARE}.
+     */
+    int getCastlingRookSquare(final int right) {
+        return castlingRookSquares[right];
+    }
+    
+    /**
+     * Returns the square of the pawn captured en passant by a pawn of the
+     * color {@code us} moving to {@code to}.
+     */
+    int enPassantVictim(final int to, final int us) {
+        return us == 0 ? to - geometry.getWidth() : to + geometry.getWidth();
+    }
+    
+    /**
+     * Returns the square the king castling with the rook of the castling
+     * right with the bit index {@code right} moves to: the third square
+     * from the edge of the board.
+     */
+    int castlingKingTarget(final int right) {
+        final int rank = right < 2 ? 0 : geometry.getHeight() - 1;
+        final int file = (right & 1) == 0 ? geometry.getWidth() - 2 : 2;
+        return geometry.square(file, rank);
+    }
+    
+    /**
+     * Returns the square the rook castling with the king moving from 
+     * {@code from} to {@code to} moves to: the square next to the king on 
+     * the inner side.
+     */
+    static int castlingRookTarget(final int from, final int to) {
+        return to > from ? to - 1 : to + 1;
+    }
+    
+    private int castlingRookSquare(final int from, final int to, final int us) {
+        return castlingRookSquares[2 * us + (to > from ? 0 : 1)];
+    }
+    
+    private boolean isSameVariant(final VariantGameState other) {
+        return geometry.equals(other.geometry)
+                && Arrays.equals(backRank, other.backRank);
+    }
+    
+    private boolean countRepetitions(final int needed) {
+        final int limit = Math.max(0, historySize - halfmoveClock);
+        int repetitions = 0;
+        
+        for (int i = historySize - 4; i >= limit; i -= 2) {
+            if (keyHistory[i] == zobristKey && ++repetitions == needed) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private void addPiece(final int square, final int code) {
+        Bitsets.set(pieceBitsets[code], square);
+        Bitsets.set(colorBitsets[COLOR_INDICES[code]], square);
+        mailbox[square] = (byte) code;
+        zobristKey ^= geometry.pieceSquareKeys[code][square];
+        
+        if (boardListener != null) {
+            boardListener.pieceAdded(square, code);
+        }
+    }
+    
+    private void movePiece(final int from, final int to) {
+        final int code = mailbox[from];
+        removePiece(from);
+        addPiece(to, code);
+    }
+    
+    /**
+     * Reports every piece on the board to the board listener as added if
+     * {@code added} is {@code true}, and as removed otherwise.
+     */
+    private void notifyAllPieces(final boolean added) {
+        for (int square = 0; square < mailbox.length; ++square) {
+            final int code = mailbox[square];
+            
+            if (code == EMPTY) {
+                continue;
+            }
+            
+            if (added) {
+                boardListener.pieceAdded(square, code);
+            } else {
+                boardListener.pieceRemoved(square, code);
+            }
+        }
+    }
+    
+    private void toggleEnPassantKey() {
+        if (enPassantSquare != Bitboards.NO_SQUARE) {
+            zobristKey ^= geometry.enPassantKeys[
+                    geometry.file(enPassantSquare)];
+        }
+    }
+    
+    private void populateBoard() {
+        clear();
+        final int lastRank = geometry.getHeight() - 1;
+        
+        for (int file = 0; file < geometry.getWidth(); ++file) {
+            putPiece(geometry.square(file, 0),
+                     ChessColor.WHITE,
+                     backRank[file]);
+            putPiece(geometry.square(file, 1),
+                     ChessColor.WHITE,
+                     ChessPieceType.PAWN);
+            putPiece(geometry.square(file, lastRank - 1),
+                     ChessColor.BLACK,
+                     ChessPieceType.PAWN);
+            putPiece(geometry.square(file, lastRank),
+                     ChessColor.BLACK,
+                     backRank[file]);
+        }
+        
+        setCastlingRights(availableCastlingRights);
+    }
+    
+    private static ChessPieceType[] computePromotions(
+            final ChessPieceType[] backRank) {
+        final List<ChessPieceType> promotions = 
+                new ArrayList<>(Arrays.asList(STANDARD_PROMOTIONS));
+        
+        for (final ChessPieceType type : backRank) {
+            if (type.ordinal() >= PIECE_TYPES 
+                    && !promotions.contains(type)) {
+                promotions.add(type);
+            }
+        }
+        
+        return promotions.toArray(new ChessPieceType[promotions.size()]);
+    }
+    
+    private static ChessPieceType[] checkBackRank(
+            final BoardGeometry geometry,
+            final ChessPieceType[] backRank) {
+        Objects.requireNonNull(backRank, "The input back rank is null.");
+        
+        if (backRank.length != geometry.getWidth()) {
+            throw new IllegalArgumentException(
+                    "The back rank must have " + geometry.getWidth() +
+                    " pieces, received " + backRank.length + ".");
+        }
+        
+        int kings = 0;
+        
+        for (final ChessPieceType type : backRank) {
+            Objects.requireNonNull(type, "The back rank holds a null piece.");
+            
+            if (type == ChessPieceType.PAWN) {
+                throw new IllegalArgumentException(
+                        "The back rank may not hold pawns.");
+            }
+            
+            if (type == ChessPieceType.KING) {
+                ++kings;
+            }
+        }
+        
+        if (kings != 1) {
+            throw new IllegalArgumentException(
+                    "The back rank must hold exactly one king, received " +
+                    kings + ".");
+        }
+        
+        return backRank;
+    }
+}
@@ -0,0 +1,147 @@
+package net.coderodde.games.chess.variant;
+
+import net.coderodde.games.chess.ChessPieceType;
+import net.coderodde.games.chess.Move;
+
+/**
+ * This class packs the moves of the generic game state into primitive
+ * {@code int}s. Bits 0-7 hold the source square, bits 8-15 the target
+ * square, bits 16-19 the promotion piece type ({@code ordinal() + 1}, or
+ * zero if the move is not a promotion), and bits 20-21 the kind of the
+ * move, one of the kinds of {@link Move}.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class VariantMove {
+    
+    /**
+     * The value denoting the absence of a move.
+     */
+    public static final int NONE = 0;
+    
+    private static final int TO_SHIFT        = 8;
+    private static final int PROMOTION_SHIFT = 16;
+    private static final int KIND_SHIFT      = 20;
+    
+    private static final ChessPieceType[] TYPES = ChessPieceType.values();
+    
+    private VariantMove() {}
+    
+    public static int create(final int from, final int to) {
+        return from | (to << TO_SHIFT);
+    }
+    
+    public static int create(final int from, final int to, final int kind) {
+        return from | (to << TO_SHIFT) | (kind << KIND_SHIFT);
+    }
+    
+    public static int createPromotion(final int from,
+                                      final int to,
+                                      final ChessPieceType promotion) {
+        return from | (to << TO_SHIFT)
+                    | ((promotion.ordinal() + 1) << PROMOTION_SHIFT);
+    }
+    
+    public static int getFrom(final int move) {
+        return move & 0xff;
+    }
+    
+    public static int getTo(final int move) {
+        return (move >>> TO_SHIFT) & 0xff;
+    }
+    
+    public static int getKind(final int move) {
+        return move >>> KIND_SHIFT;
+    }
+    
+    public static boolean isPromotion(final int move) {
+        return ((move >>> PROMOTION_SHIFT) & 0xf) != 0;
+    }
+    
+    /**
+     * Returns the piece type a pawn promotes to, or {@code null} if the move
+     * is not a promotion.
+     * 
+     * @param move the move.
+     * @return the promotion piece type.
+     */
+    public static ChessPieceType getPromotion(final int move) {
+        final int index = (move >>> PROMOTION_SHIFT) & 0xf;
+        return index == 0 ? null : TYPES[index - 1];
+    }
+    
+    /**
+     * Returns the legal move of {@code state} written in the long algebraic
+     * notation, such as <i>e2e4</i> or <i>j7j8q</i>.
+     * 
+     * @param state the position the move is played in.
+     * @param text  the move in the long algebraic notation.
+     * @return the packed move.
+     * @throws IllegalArgumentException if {@code text} does not denote a
+     *                                  legal move.
+     */
+    public static int parse(final VariantGameState state, final String text) {
+        final int[] moves = new int[VariantMoveGenerator.MAX_MOVES];
+        final int moveCount =
+                VariantMoveGenerator.generateLegalMoves(state, moves);
+        
+        for (int i = 0; i < moveCount; ++i) {
+            if (toString(state.getGeometry(), moves[i]).equals(text)) {
+                return moves[i];
+            }
+        }
+        
+        throw new IllegalArgumentException("Illegal move: \"" + text +
+                                           "\".");
+    }
+    
+    /**
+     * Returns the move in the long algebraic notation, such as <i>e2e4</i>,
+     * <i>a9a10</i> or <i>e7e8q</i>, with <i>a</i> and <i>c</i> denoting a
+     * promotion to an archbishop and to a chancellor.
+     * 
+     * @param geometry the board the move is played on.
+     * @param move     the move.
+     * @return the textual representation of the move.
+     */
+    public static String toString(final BoardGeometry geometry,
+                                  final int move) {
+        if (move == NONE) {
+            return "0000";
+        }
+        
+        final String text = geometry.squareName(getFrom(move)) +
+                            geometry.squareName(getTo(move));
+        
+        final ChessPieceType promotion = getPromotion(move);
+        
+        if (promotion == null) {
+            return text;
+        }
+        
+        switch (promotion) {
+            case QUEEN:
+                return text + "q";
+            
+            case ROOK:
+                return text + "r";
+            
+            case BISHOP:
+                return text + "b";
+            
+            case KNIGHT:
+                return text + "n";
+            
+            case ARCHBISHOP:
+                return text + "a";
+            
+            case CHANCELLOR:
+                return text + "c";
+            
+            default:
+                throw new IllegalStateException(
+                        "Should never get here: bad promotion piece type.");
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package net.coderodde.games.chess.variant;
+
+import net.coderodde.games.chess.Bitboards;
+import net.coderodde.games.chess.ChessColor;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.ChessPiece;
+import net.coderodde.games.chess.ChessPieceType;
+import net.coderodde.games.chess.Move;
+
+/**
+ * This class generates the legal moves of a {@link VariantGameState}. The
+ * leaper attacks come from the bitsets of the {@link BoardGeometry}, and the
+ * sliding pieces walk their rays over the mailbox, which works on a board
+ * of any size; the archbishop and the chancellor combine the knight leaps
+ * with the bishop and the rook rays. The pseudo-legal moves leaving the own
+ * king in check are filtered out by playing them.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class VariantMoveGenerator {
+    
+    /**
+     * The size of a move buffer sufficient for any position on the largest
+     * board.
+     */
+    public static final int MAX_MOVES = 1024;
+    
+    private static final int KING       = ChessPieceType.KING.ordinal();
+    private static final int QUEEN      = ChessPieceType.QUEEN.ordinal();
+    private static final int ROOK       = ChessPieceType.ROOK.ordinal();
+    private static final int BISHOP     = ChessPieceType.BISHOP.ordinal();
+    private static final int KNIGHT     = ChessPieceType.KNIGHT.ordinal();
+    private static final int PAWN       = ChessPieceType.PAWN.ordinal();
+    private static final int ARCHBISHOP = ChessPieceType.ARCHBISHOP.ordinal();
+    private static final int CHANCELLOR = ChessPieceType.CHANCELLOR.ordinal();
+    
+    private static final int PIECE_TYPES = ChessGameState.PIECE_TYPES;
+    
+    /**
+     * The codes of the compound pieces indexed by the color ordinals.
+     */
+    private static final int[] ARCHBISHOP_CODES = {
+        ChessPiece.code(ChessColor.WHITE, ChessPieceType.ARCHBISHOP),
+        ChessPiece.code(ChessColor.BLACK, ChessPieceType.ARCHBISHOP),
+    };
+    
+    private static final int[] CHANCELLOR_CODES = {
+        ChessPiece.code(ChessColor.WHITE, ChessPieceType.CHANCELLOR),
+        ChessPiece.code(ChessColor.BLACK, ChessPieceType.CHANCELLOR),
+    };
+    
+    /**
+     * The number of orthogonal directions, which come first in the rays of
+     * the geometry.
+     */
+    private static final int ORTHOGONAL_DIRECTIONS = 4;
+    
+    private VariantMoveGenerator() {}
+    
+    /**
+     * Stores the legal moves of {@code state} in {@code moves}.
+     * 
+     * @param state the position.
+     * @param moves the buffer of at least {@link #MAX_MOVES} components.
+     * @return the number of legal moves.
+     */
+    public static int generateLegalMoves(final VariantGameState state,
+                                         final int[] moves) {
+        return removeIllegalMoves(state, 
+                                  moves, 
+                                  generatePseudoLegalMoves(state, moves));
+    }
+    
+    /**
+     * Stores the legal captures and promotions of {@code state} in 
+     * {@code moves}. This is the move set searched by a quiescence search.
+     * 
+     * @param state the position.
+     * @param moves the buffer of at least {@link #MAX_MOVES} components.
+     * @return the number of legal captures and promotions.
+     */
+    public static int generateLegalCaptures(final VariantGameState state,
+                                            final int[] moves) {
+        final int moveCount = generatePseudoLegalMoves(state, moves);
+        int captureCount = 0;
+        
+        for (int i = 0; i < moveCount; ++i) {
+            final int move = moves[i];
+            
+            if (state.pieceCodeAt(VariantMove.getTo(move)) >= 0
+                    || VariantMove.getKind(move) == Move.EN_PASSANT
+                    || VariantMove.isPromotion(move)) {
+                moves[captureCount++] = move;
+            }
+        }
+        
+        return removeIllegalMoves(state, moves, captureCount);
+    }
+    
+    /**
+     * Returns whether the side to move of {@code state} is in check.
+     * 
+     * @param state the position.
+     * @return {@code true} if the king of the side to move is attacked.
+     */
+    public static boolean isInCheck(final VariantGameState state) {
+        return isKingAttacked(state, state.getSideToMove().ordinal());
+    }
+    
+    /**
+     * Returns whether the square {@code square} is attacked by a piece of
+     * the color {@code attacker}.
+     * 
+     * @param state    the position.
+     * @param square   the attacked square.
+     * @param attacker the color of the attacking pieces.
+     * @return {@code true} if the square is attacked.
+     */
+    public static boolean isSquareAttacked(final VariantGameState state,
+                                           final int square,
+                                           final ChessColor attacker) {
+        return isSquareAttacked(state, square, attacker.ordinal());
+    }
+    
+    /**
+     * Drops the moves leaving the own king in check from the first 
+     * {@code moveCount} moves of {@code moves}, keeping the order of the 
+     * rest, and returns the number of the moves kept.
+     */
+    private static int removeIllegalMoves(final VariantGameState state,
+                                          final int[] moves,
+                                          final int moveCount) {
+        final int us = state.getSideToMove().ordinal();
+        int legalMoveCount = 0;
+        
+        for (int i = 0; i < moveCount; ++i) {
+            state.makeMove(moves[i]);
+            
+            if (!isKingAttacked(state, us)) {
+                moves[legalMoveCount++] = moves[i];
+            }
+            
+            state.unmakeMove();
+        }
+        
+        return legalMoveCount;
+    }
+    
+    private static boolean isKingAttacked(final VariantGameState state,
+                                          final int colorIndex) {
+        final int kingSquare = state.kingSquare(colorIndex);
+        return kingSquare != Bitboards.NO_SQUARE
+                && isSquareAttacked(state, kingSquare, colorIndex ^ 1);
+    }
+    
+    private static boolean isSquareAttacked(final VariantGameState state,
+                                            final int square,
+                                            final int them) {
+        final BoardGeometry geometry = state.getGeometry();
+        final int base = them * PIECE_TYPES;
+        final int archbishop = ARCHBISHOP_CODES[them];
+        final int chancellor = CHANCELLOR_CODES[them];
+        final long[] knightAttacks = geometry.knightAttacks[square];
+        
+        if (Bitsets.intersects(knightAttacks, state.pieces(base + KNIGHT))
+                || Bitsets.intersects(knightAttacks, state.pieces(archbishop))
+                || Bitsets.intersects(knightAttacks, state.pieces(chancellor))
+                || Bitsets.intersects(geometry.kingAttacks[square],
+                                      state.pieces(base + KING))
+                || Bitsets.intersects(geometry.pawnAttacks[them ^ 1][square],
+                                      state.pieces(base + PAWN))) {
+            return true;
+        }
+        
+        for (int direction = 0;
+                direction < BoardGeometry.DIRECTIONS;
+                ++direction) {
+            final boolean orthogonal = direction < ORTHOGONAL_DIRECTIONS;
+            final int slider = base + (orthogonal ? ROOK : BISHOP);
+            final int compound = orthogonal ? chancellor : archbishop;
+            
+            for (final int target : geometry.rays[direction][square]) {
+                final int code = state.pieceCodeAt(target);
+                
+                if (code < 0) {
+                    continue;
+                }
+                
+                if (code == slider 
+                        || code == base + QUEEN 
+                        || code == compound) {
+                    return true;
+                }
+                
+                break;
+            }
+        }
+        
+        return false;
+    }
+    
+    private static int generatePseudoLegalMoves(final VariantGameState state,
+                                                final int[] moves) {
+        final BoardGeometry geometry = state.getGeometry();
+        final int us = state.getSideToMove().ordinal();
+        final long[] own = state.occupancy(us);
+        int count = 0;
+        
+        for (int square = Bitsets.nextSetBit(own, 0);
+                square >= 0;
+                square = Bitsets.nextSetBit(own, square + 1)) {
+            final int type = 
+                    VariantGameState.typeIndex(state.pieceCodeAt(square));
+            
+            if (type == PAWN) {
+                count = addPawnMoves(state, square, us, moves, count);
+            } else if (type == KNIGHT) {
+                count = addLeaperMoves(square,
+                                       geometry.knightAttacks[square],
+                                       own,
+                                       moves,
+                                       count);
+            } else if (type == KING) {
+                count = addLeaperMoves(square,
+                                       geometry.kingAttacks[square],
+                                       own,
+                                       moves,
+                                       count);
+                count = addCastlingMoves(state, square, us, moves, count);
+            } else {
+                if (type == ARCHBISHOP || type == CHANCELLOR) {
+                    count = addLeaperMoves(square,
+                                           geometry.knightAttacks[square],
+                                           own,
+                                           moves,
+                                           count);
+                }
+                
+                final int firstDirection = 
+                        type == BISHOP || type == ARCHBISHOP ?
+                        ORTHOGONAL_DIRECTIONS :
+                        0;
+                final int lastDirection = 
+                        type == ROOK || type == CHANCELLOR ?
+                        ORTHOGONAL_DIRECTIONS :
+                        BoardGeometry.DIRECTIONS;
+                
+                for (int direction = firstDirection;
+                        direction < lastDirection;
+                        ++direction) {
+                    for (final int target : geometry.rays[direction][square]) {
+                        final int code = state.pieceCodeAt(target);
+                        
+                        if (code < 0 
+                                || VariantGameState.colorIndex(code) != us) {
+                            moves[count++] = VariantMove.create(square,
+                                                                target);
+                        }
+                        
+                        if (code >= 0) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        
+        return count;
+    }
+    
+    private static int addLeaperMoves(final int from,
+                                      final long[] attacks,
+                                      final long[] own,
+                                      final int[] moves,
+                                      int count) {
+        for (int to = Bitsets.nextSetBit(attacks, 0);
+                to >= 0;
+                to = Bitsets.nextSetBit(attacks, to + 1)) {
+            if (!Bitsets.get(own, to)) {
+                moves[count++] = VariantMove.create(from, to);
+            }
+        }
+        
+        return count;
+    }
+    
+    private static int addPawnMoves(final VariantGameState state,
+                                    final int from,
+                                    final int us,
+                                    final int[] moves,
+                                    int count) {
+        final BoardGeometry geometry = state.getGeometry();
+        final int height = geometry.getHeight();
+        final int forward = us == 0 ? geometry.getWidth()
+                                    : -geometry.getWidth();
+        final int promotionRank = us == 0 ? height - 1 : 0;
+        final int startRank = us == 0 ? 1 : height - 2;
+        final int rank = geometry.rank(from);
+        
+        if (rank == promotionRank) {
+            return count;
+        }
+        
+        final int oneStep = from + forward;
+        
+        if (state.pieceCodeAt(oneStep) < 0) {
+            count = addPawnMove(state,
+                                from,
+                                oneStep,
+                                promotionRank,
+                                moves,
+                                count);
+            final int twoSteps = oneStep + forward;
+            
+            if (rank == startRank
+                    && geometry.rank(oneStep) != promotionRank
+                    && geometry.rank(twoSteps) != promotionRank
+                    && state.pieceCodeAt(twoSteps) < 0) {
+                moves[count++] = VariantMove.create(from, twoSteps);
+            }
+        }
+        
+        final long[] attacks = geometry.pawnAttacks[us][from];
+        
+        for (int to = Bitsets.nextSetBit(attacks, 0);
+                to >= 0;
+                to = Bitsets.nextSetBit(attacks, to + 1)) {
+            final int code = state.pieceCodeAt(to);
+            
+            if (code >= 0 && VariantGameState.colorIndex(code) != us) {
+                count = addPawnMove(state,
+                                    from,
+                                    to,
+                                    promotionRank,
+                                    moves,
+                                    count);
+            } else if (to == state.getEnPassantSquare()) {
+                moves[count++] =
+                        VariantMove.create(from, to, Move.EN_PASSANT);
+            }
+        }
+        
+        return count;
+    }
+    
+    private static int addPawnMove(final VariantGameState state,
+                                   final int from,
+                                   final int to,
+                                   final int promotionRank,
+                                   final int[] moves,
+                                   int count) {
+        if (state.getGeometry().rank(to) != promotionRank) {
+            moves[count++] = VariantMove.create(from, to);
+            return count;
+        }
+        
+        for (final ChessPieceType promotion : state.promotions()) {
+            moves[count++] = VariantMove.createPromotion(from, to, promotion);
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Adds the castling moves whose squares are free and whose king path is
+     * not attacked. The target square of the king is checked with the other
+     * moves.
+     */
+    private static int addCastlingMoves(final VariantGameState state,
+                                        final int kingSquare,
+                                        final int us,
+                                        final int[] moves,
+                                        int count) {
+        final int rights = state.getCastlingRights() >>> (2 * us) & 3;
+        
+        if (rights == 0 || isSquareAttacked(state, kingSquare, us ^ 1)) {
+            return count;
+        }
+        
+        for (int side = 0; side < 2; ++side) {
+            if ((rights & (1 << side)) == 0) {
+                continue;
+            }
+            
+            final int right = 2 * us + side;
+            final int rookSquare = state.getCastlingRookSquare(right);
+            final int kingTarget = state.castlingKingTarget(right);
+            final int rookTarget = 
+                    VariantGameState.castlingRookTarget(kingSquare, 
+                                                        kingTarget);
+            final int step = rookSquare > kingSquare ? 1 : -1;
+            
+            if (isCastlingPathFree(state,
+                                   kingSquare,
+                                   rookSquare,
+                                   Math.min(Math.min(kingSquare, kingTarget),
+                                            Math.min(rookSquare, rookTarget)),
+                                   Math.max(Math.max(kingSquare, kingTarget),
+                                            Math.max(rookSquare, rookTarget)))
+                    && !isPathAttacked(state, 
+                                       kingSquare + step, 
+                                       kingTarget, 
+                                       step, 
+                                       us ^ 1)) {
+                moves[count++] = VariantMove.create(kingSquare,
+                                                    kingTarget,
+                                                    Move.CASTLING);
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Returns whether the squares from {@code first} to {@code last} are 
+     * empty but for the castling king and rook.
+     */
+    private static boolean isCastlingPathFree(final VariantGameState state,
+                                              final int kingSquare,
+                                              final int rookSquare,
+                                              final int first,
+                                              final int last) {
+        for (int square = first; square <= last; ++square) {
+            if (square != kingSquare
+                    && square != rookSquare
+                    && state.pieceCodeAt(square) >= 0) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Returns whether any square from {@code from} up to, but excluding, 
+     * {@code to} is attacked by the color {@code them}.
+     */
+    private static boolean isPathAttacked(final VariantGameState state,
+                                          final int from,
+                                          final int to,
+                                          final int step,
+                                          final int them) {
+        for (int square = from; square != to; square += step) {
+            if (isSquareAttacked(state, square, them)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+}
@@ -0,0 +1,147 @@
+package net.coderodde.games.chess.variant;
+
+import java.io.PrintStream;
+import net.coderodde.games.chess.ChessGameState;
+import net.coderodde.games.chess.Perft;
+
+/**
+ * This class counts the leaf nodes of the legal move tree of a variant
+ * position up to a given depth, like {@link Perft} does for the standard
+ * chess. The tree is walked in place with make/unmake over preallocated
+ * move buffers.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Jun 21, 2016)
+ */
+public final class VariantPerft {
+    
+    /**
+     * The maximum supported depth.
+     */
+    public static final int MAX_DEPTH = 32;
+    
+    private final VariantGameState state;
+    
+    /**
+     * The move buffer of each ply.
+     */
+    private final int[][] moveBuffers =
+            new int[MAX_DEPTH + 1][VariantMoveGenerator.MAX_MOVES];
+    
+    public VariantPerft(final VariantGameState root) {
+        this.state = new VariantGameState(root);
+    }
+    
+    /**
+     * Counts the leaf nodes of the legal move tree of depth {@code depth}.
+     * 
+     * @param depth the depth of the tree.
+     * @return the number of leaf nodes.
+     */
+    public long perft(final int depth) {
+        checkDepth(depth);
+        return depth == 0 ? 1L : perft(0, depth);
+    }
+    
+    /**
+     * Counts the leaf nodes below each root move, printing one line per move
+     * followed by the total node count.
+     * 
+     * @param depth the depth of the tree.
+     * @param out   the stream to print to.
+     * @return the total number of leaf nodes.
+     */
+    public long divide(final int depth, final PrintStream out) {
+        checkDepth(depth);
+        
+        if (depth == 0) {
+            return 1L;
+        }
+        
+        final int[] moves = moveBuffers[0];
+        final int moveCount =
+                VariantMoveGenerator.generateLegalMoves(state, moves);
+        long total = 0L;
+        
+        for (int i = 0; i < moveCount; ++i) {
+            state.makeMove(moves[i]);
+            final long nodes = depth == 1 ? 1L : perft(1, depth - 1);
+            state.unmakeMove();
+            total += nodes;
+            out.println(VariantMove.toString(state.getGeometry(), moves[i]) +
+                        ": " + nodes);
+        }
+        
+        out.println();
+        out.println("Moves: " + moveCount);
+        out.println("Nodes: " + total);
+        return total;
+    }
+    
+    private long perft(final int ply, final int depth) {
+        final int[] moves = moveBuffers[ply];
+        final int moveCount =
+                VariantMoveGenerator.generateLegalMoves(state, moves);
+        
+        if (depth == 1) {
+            return moveCount;
+        }
+        
+        long nodes = 0L;
+        
+        for (int i = 0; i < moveCount; ++i) {
+            state.makeMove(moves[i]);
+            nodes += perft(ply + 1, depth - 1);
+            state.unmakeMove();
+        }
+        
+        return nodes;
+    }
+    
+    private static void checkDepth(final int depth) {
+        if (depth < 0 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException(
+                    "The depth must be within [0, " + MAX_DEPTH + "], " +
+                    "received " + depth + ".");
+        }
+    }
+    
+    /**
+     * Runs perft with divide output on the starting position of a variant:
+     * <pre>
+     * variant-perft &lt;width&gt; &lt;height&gt; &lt;back rank&gt; [depth]
+     * </pre>
+     * The standard chess is handed to the bitboard based {@link Perft}.
+     * 
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 4) {
+            System.err.println(
+                    "Usage: variant-perft <width> <height> <back rank> " +
+                    "[depth]");
+            System.exit(1);
+        }
+        
+        final ChessVariant variant =
+                new ChessVariant(args[3],
+                                 Integer.parseInt(args[1]),
+                                 Integer.parseInt(args[2]),
+                                 args[3]);
+        final int depth = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        final long startTime = System.nanoTime();
+        final long nodes;
+        
+        if (variant.isStandard()) {
+            nodes = new Perft(new ChessGameState()).divide(depth, System.out);
+        } else {
+            nodes = new VariantPerft(variant.createGameState())
+                    .divide(depth, System.out);
+        }
+        
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("Time: %.3f s, %.0f nodes/s%n",
+                          seconds,
+                          nodes / Math.max(seconds, 1e-9));
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * Provides chess on boards from 4x4 to 16x16, played with the standard
+ * pieces and the archbishop and the chancellor of Capablanca chess
+ * ({@link net.coderodde.games.chess.variant.ChessVariant#CAPABLANCA}).
+ * {@link net.coderodde.games.chess.variant.VariantGameState}
+ * generates and plays the legal moves of a {@link
+ * net.coderodde.games.chess.variant.ChessVariant}, and
+ * {@link net.coderodde.games.chess.variant.VariantPerft} verifies them
+ * ({@code variant-perft} on the command line). The game state is a
+ * {@link net.coderodde.games.chess.Position}, so the search engine and the
+ * evaluators play it like the standard game state; the piece-square tables
+ * are stretched over the board, and the pawn structure terms, the opening
+ * book and the tablebases apply to the standard board only. A UCI client
+ * selects the variant with the {@code UCI_Variant} option of
+ * {@link net.coderodde.games.chess.uci.UciSession}.
+ * <p>
+ * The follow-up work: variant support in the GUI game, whose board, move
+ * input and notation assume the standard game state.
+ */
+package net.coderodde.games.chess.variant;